@@ -32,7 +32,8 @@ public class CorsConfig {
         
         config.setAllowedHeaders(List.of("*"));
         config.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
-        config.setExposedHeaders(List.of("*"));
+        // Con credenciales el navegador no acepta "*": el cursor del listado se expone explícitamente
+        config.setExposedHeaders(List.of("*", "X-Next-Cursor"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", config);
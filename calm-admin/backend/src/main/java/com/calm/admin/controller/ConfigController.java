@@ -3,16 +3,23 @@ package com.calm.admin.controller;
 import com.calm.admin.dto.PromptConfigDTO;
 import com.calm.admin.model.SystemConfig;
 import com.calm.admin.repository.SystemConfigRepository;
+import com.calm.admin.service.ChatGPTAnalyzerService;
+import com.calm.admin.service.LlmClient;
+import com.calm.admin.service.SaleSignalMatcher;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/config")
 @CrossOrigin(origins = "*")
 public class ConfigController {
 
     private final SystemConfigRepository configRepository;
+    private final LlmClient llmClient;
+    private final ChatGPTAnalyzerService analyzerService;
 
     @Value("${openai.model}")
     private String defaultModel;
@@ -226,8 +233,11 @@ Prioriza confiabilidad, explicabilidad y usabilidad por sobre completitud.
 Si no hay evidencia, dilo y deja arrays vacíos.
 """;
 
-    public ConfigController(SystemConfigRepository configRepository) {
+    public ConfigController(SystemConfigRepository configRepository, LlmClient llmClient,
+                            ChatGPTAnalyzerService analyzerService) {
         this.configRepository = configRepository;
+        this.llmClient = llmClient;
+        this.analyzerService = analyzerService;
     }
 
     @GetMapping("/prompt")
@@ -248,11 +258,19 @@ Si no hay evidencia, dilo y deja arrays vacíos.
                 .map(c -> Integer.parseInt(c.getConfigValue()))
                 .orElse(2000);
 
-        return ResponseEntity.ok(new PromptConfigDTO(prompt, model, temperature, maxTokens));
+        PromptConfigDTO dto = new PromptConfigDTO(prompt, model, temperature, maxTokens);
+        dto.setVersion(analyzerService.getConfigVersion());
+        return ResponseEntity.ok(dto);
     }
 
     @PutMapping("/prompt")
     public ResponseEntity<PromptConfigDTO> updatePromptConfig(@RequestBody PromptConfigDTO config) {
+        // Los valores y la nueva versión se guardan juntos
+        config.setVersion(analyzerService.updateConfig(() -> savePromptConfig(config)));
+        return ResponseEntity.ok(config);
+    }
+
+    private void savePromptConfig(PromptConfigDTO config) {
         // Save prompt
         SystemConfig promptConfig = configRepository.findByConfigKey(PROMPT_KEY)
                 .orElse(new SystemConfig(PROMPT_KEY, "", "System prompt for ChatGPT analysis"));
@@ -282,18 +300,53 @@ Si no hay evidencia, dilo y deja arrays vacíos.
             tokensConfig.setConfigValue(String.valueOf(config.getMaxTokens()));
             configRepository.save(tokensConfig);
         }
-
-        return ResponseEntity.ok(config);
     }
 
     @PostMapping("/prompt/reset")
     public ResponseEntity<PromptConfigDTO> resetPromptConfig() {
-        SystemConfig promptConfig = configRepository.findByConfigKey(PROMPT_KEY)
-                .orElse(new SystemConfig(PROMPT_KEY, "", "System prompt for ChatGPT analysis"));
-        promptConfig.setConfigValue(DEFAULT_PROMPT);
-        configRepository.save(promptConfig);
+        analyzerService.updateConfig(() -> {
+            SystemConfig promptConfig = configRepository.findByConfigKey(PROMPT_KEY)
+                    .orElse(new SystemConfig(PROMPT_KEY, "", "System prompt for ChatGPT analysis"));
+            promptConfig.setConfigValue(DEFAULT_PROMPT);
+            configRepository.save(promptConfig);
+        });
 
         return getPromptConfig();
     }
+
+    /**
+     * Diccionario de frases que confirman una venta aunque GPT no la detecte (una señal por línea).
+     */
+    @GetMapping("/sale-signals")
+    public ResponseEntity<Map<String, Object>> getSaleSignals() {
+        String dictionary = configRepository.findByConfigKey(ChatGPTAnalyzerService.SALE_SIGNALS_KEY)
+                .map(SystemConfig::getConfigValue)
+                .orElse(SaleSignalMatcher.DEFAULT_DICTIONARY);
+        return ResponseEntity.ok(Map.of("dictionary", dictionary, "version", analyzerService.getConfigVersion()));
+    }
+
+    @PutMapping("/sale-signals")
+    public ResponseEntity<Map<String, Object>> updateSaleSignals(@RequestBody Map<String, String> body) {
+        String dictionary = body.get("dictionary");
+        if (dictionary == null || dictionary.isBlank()) {
+            dictionary = SaleSignalMatcher.DEFAULT_DICTIONARY;
+        }
+        String value = dictionary;
+        long version = analyzerService.updateConfig(() -> {
+            SystemConfig signalsConfig = configRepository.findByConfigKey(ChatGPTAnalyzerService.SALE_SIGNALS_KEY)
+                    .orElse(new SystemConfig(ChatGPTAnalyzerService.SALE_SIGNALS_KEY, "", "Sale signal phrases, one per line"));
+            signalsConfig.setConfigValue(value);
+            configRepository.save(signalsConfig);
+        });
+        return ResponseEntity.ok(Map.of("dictionary", dictionary, "version", version));
+    }
+
+    /**
+     * Latencia, tokens y conexiones del cliente de OpenAI desde el arranque.
+     */
+    @GetMapping("/llm-metrics")
+    public ResponseEntity<Map<String, Object>> getLlmMetrics() {
+        return ResponseEntity.ok(llmClient.getMetrics());
+    }
 }
 
@@ -0,0 +1,51 @@
+package com.calm.admin.controller;
+
+import com.calm.admin.model.AnalysisJob;
+import com.calm.admin.service.AnalysisJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+/**
+ * Estado de los trabajos largos (sincronización, re-análisis) y reconexión a su progreso.
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    private final AnalysisJobService jobService;
+
+    public JobController(AnalysisJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<AnalysisJob>> getRecentJobs() {
+        return ResponseEntity.ok(jobService.getRecentJobs());
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<AnalysisJob> getJob(@PathVariable Long jobId) {
+        return jobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Re-conecta un cliente al progreso de un trabajo (mismos eventos que el stream que lo inició).
+     */
+    @GetMapping(value = "/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJob(@PathVariable Long jobId, jakarta.servlet.http.HttpServletResponse response) {
+        AnalysisJob job = jobService.getJob(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found: " + jobId));
+        response.setHeader("Cache-Control", "no-cache, no-transform");
+        response.setHeader("Connection", "keep-alive");
+        response.setHeader("X-Accel-Buffering", "no");
+        return jobService.attach(job);
+    }
+}
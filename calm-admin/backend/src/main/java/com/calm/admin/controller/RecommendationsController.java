@@ -1,5 +1,6 @@
 package com.calm.admin.controller;
 
+import com.calm.admin.dto.MissingAnalysisDTO;
 import com.calm.admin.service.AdvancedAnalyzerService;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -50,7 +51,7 @@ public class RecommendationsController {
      * Obtiene lista de transcripciones sin análisis
      */
     @GetMapping("/missing")
-    public ResponseEntity<List<Map<String, Object>>> getMissing() {
+    public ResponseEntity<List<MissingAnalysisDTO>> getMissing() {
         return ResponseEntity.ok(advancedAnalyzerService.getMissingAnalyses());
     }
     
@@ -2,7 +2,8 @@ package com.calm.admin.controller;
 
 import com.calm.admin.model.TimelineEvent;
 import com.calm.admin.repository.TimelineEventRepository;
-import com.calm.admin.repository.TranscriptionRepository;
+import com.calm.admin.service.TimelineMetricsService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -11,21 +12,19 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/timeline")
 public class TimelineController {
 
     private final TimelineEventRepository eventRepository;
-    private final TranscriptionRepository transcriptionRepository;
+    private final TimelineMetricsService timelineMetricsService;
 
     public TimelineController(TimelineEventRepository eventRepository,
-                              TranscriptionRepository transcriptionRepository) {
+                              TimelineMetricsService timelineMetricsService) {
         this.eventRepository = eventRepository;
-        this.transcriptionRepository = transcriptionRepository;
+        this.timelineMetricsService = timelineMetricsService;
     }
 
     @GetMapping("/events")
@@ -73,67 +72,14 @@ public class TimelineController {
     @GetMapping("/metrics")
     public ResponseEntity<Map<String, Object>> getMetrics(
             @RequestParam(defaultValue = "week") String groupBy,
-            @RequestParam(required = false) Long sellerId
+            @RequestParam(required = false) Long sellerId,
+            @RequestParam(required = false) Long branchId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo
     ) {
-        var all = transcriptionRepository.findAll();
-
-        var analyzed = all.stream()
-                .filter(t -> Boolean.TRUE.equals(t.getAnalyzed()))
-                .filter(t -> t.getRecordingDate() != null)
-                .filter(t -> sellerId == null || sellerId.equals(t.getUserId()))
-                .collect(Collectors.toList());
-
-        Map<String, List<com.calm.admin.model.Transcription>> grouped;
-
-        if ("month".equals(groupBy)) {
-            grouped = analyzed.stream().collect(Collectors.groupingBy(
-                    t -> {
-                        LocalDate d = t.getRecordingDate().toLocalDate();
-                        return d.getYear() + "-" + String.format("%02d", d.getMonthValue());
-                    },
-                    TreeMap::new,
-                    Collectors.toList()
-            ));
-        } else {
-            grouped = analyzed.stream().collect(Collectors.groupingBy(
-                    t -> {
-                        LocalDate d = t.getRecordingDate().toLocalDate();
-                        LocalDate weekStart = d.minusDays(d.getDayOfWeek().getValue() - 1);
-                        return weekStart.toString();
-                    },
-                    TreeMap::new,
-                    Collectors.toList()
-            ));
-        }
-
-        List<Map<String, Object>> series = new ArrayList<>();
-        for (var entry : grouped.entrySet()) {
-            var list = entry.getValue();
-            long total = list.size();
-            long sales = list.stream().filter(t -> Boolean.TRUE.equals(t.getSaleCompleted())).count();
-            double saleRate = total > 0 ? Math.round(sales * 1000.0 / total) / 10.0 : 0;
-            double avgScore = list.stream()
-                    .filter(t -> t.getSellerScore() != null)
-                    .mapToInt(com.calm.admin.model.Transcription::getSellerScore)
-                    .average().orElse(0);
-            double avgConfidence = list.stream()
-                    .filter(t -> t.getAnalysisConfidence() != null)
-                    .mapToInt(com.calm.admin.model.Transcription::getAnalysisConfidence)
-                    .average().orElse(0);
-
-            Map<String, Object> point = new LinkedHashMap<>();
-            point.put("period", entry.getKey());
-            point.put("total", total);
-            point.put("sales", sales);
-            point.put("saleRate", saleRate);
-            point.put("avgScore", Math.round(avgScore * 10.0) / 10.0);
-            point.put("avgConfidence", Math.round(avgConfidence * 10.0) / 10.0);
-            series.add(point);
-        }
-
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("groupBy", groupBy);
-        result.put("series", series);
+        result.put("series", timelineMetricsService.getSeries(groupBy, sellerId, branchId, dateFrom, dateTo));
         return ResponseEntity.ok(result);
     }
 
@@ -143,46 +89,21 @@ public class TimelineController {
             @RequestParam(defaultValue = "14") int days,
             @RequestParam(required = false) Long sellerId
     ) {
-        LocalDate pivot = LocalDate.parse(eventDate);
-        LocalDateTime beforeStart = pivot.minusDays(days).atStartOfDay();
-        LocalDateTime beforeEnd = pivot.atStartOfDay();
-        LocalDateTime afterStart = pivot.atStartOfDay();
-        LocalDateTime afterEnd = pivot.plusDays(days).atTime(23, 59, 59);
-
-        var all = transcriptionRepository.findAll().stream()
-                .filter(t -> Boolean.TRUE.equals(t.getAnalyzed()) && t.getRecordingDate() != null)
-                .filter(t -> sellerId == null || sellerId.equals(t.getUserId()))
-                .collect(Collectors.toList());
-
-        var before = all.stream()
-                .filter(t -> !t.getRecordingDate().isBefore(beforeStart) && t.getRecordingDate().isBefore(beforeEnd))
-                .collect(Collectors.toList());
-
-        var after = all.stream()
-                .filter(t -> !t.getRecordingDate().isBefore(afterStart) && !t.getRecordingDate().isAfter(afterEnd))
-                .collect(Collectors.toList());
-
-        Map<String, Object> result = new LinkedHashMap<>();
-        result.put("before", buildPeriodStats(before));
-        result.put("after", buildPeriodStats(after));
-        result.put("dayRange", days);
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok(timelineMetricsService.compareAround(LocalDate.parse(eventDate), days, sellerId));
     }
 
-    private Map<String, Object> buildPeriodStats(List<com.calm.admin.model.Transcription> list) {
-        long total = list.size();
-        long sales = list.stream().filter(t -> Boolean.TRUE.equals(t.getSaleCompleted())).count();
-        double saleRate = total > 0 ? Math.round(sales * 1000.0 / total) / 10.0 : 0;
-        double avgScore = list.stream()
-                .filter(t -> t.getSellerScore() != null)
-                .mapToInt(com.calm.admin.model.Transcription::getSellerScore)
-                .average().orElse(0);
-
-        Map<String, Object> stats = new LinkedHashMap<>();
-        stats.put("total", total);
-        stats.put("sales", sales);
-        stats.put("saleRate", saleRate);
-        stats.put("avgScore", Math.round(avgScore * 10.0) / 10.0);
-        return stats;
+    /**
+     * Antes/después de varios eventos a la vez (por defecto, todos) para analizar su impacto.
+     */
+    @GetMapping("/compare/events")
+    public ResponseEntity<List<Map<String, Object>>> compareEvents(
+            @RequestParam(required = false) List<Long> eventIds,
+            @RequestParam(defaultValue = "14") int days,
+            @RequestParam(required = false) Long sellerId
+    ) {
+        List<TimelineEvent> events = eventIds == null || eventIds.isEmpty()
+                ? eventRepository.findAllByOrderByEventDateAsc()
+                : eventRepository.findByIdInOrderByEventDateAsc(eventIds);
+        return ResponseEntity.ok(timelineMetricsService.compareEvents(events, days, sellerId));
     }
 }
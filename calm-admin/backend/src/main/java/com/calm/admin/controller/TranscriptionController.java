@@ -3,9 +3,15 @@ package com.calm.admin.controller;
 import com.calm.admin.dto.DashboardMetricsDTO;
 import com.calm.admin.dto.FilterDTO;
 import com.calm.admin.dto.TranscriptionDTO;
+import com.calm.admin.dto.TranscriptionSummaryDTO;
 import com.calm.admin.model.TranscriptionComment;
 import com.calm.admin.repository.TranscriptionCommentRepository;
+import com.calm.admin.service.AnalysisJobService;
+import com.calm.admin.service.DashboardRollupService;
 import com.calm.admin.service.S3Service;
+import com.calm.admin.service.SaleSignalMatcher;
+import com.calm.admin.service.TranscriptSearchService;
+import com.calm.admin.service.TranscriptionExportService;
 import com.calm.admin.service.TranscriptionService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -32,15 +38,33 @@ public class TranscriptionController {
     private final TranscriptionService transcriptionService;
     private final S3Service s3Service;
     private final TranscriptionCommentRepository commentRepository;
+    private final AnalysisJobService jobService;
+    private final DashboardRollupService rollupService;
+    private final TranscriptionExportService exportService;
+    private final TranscriptSearchService searchService;
     
     // Only allow alphanumeric recording IDs (prevent path traversal)
     private static final Pattern VALID_RECORDING_ID = Pattern.compile("^[a-zA-Z0-9_-]{1,50}$");
 
+    // Paginación del listado de transcripciones
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 2000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     public TranscriptionController(TranscriptionService transcriptionService, S3Service s3Service,
-                                   TranscriptionCommentRepository commentRepository) {
+                                   TranscriptionCommentRepository commentRepository,
+                                   AnalysisJobService jobService,
+                                   DashboardRollupService rollupService,
+                                   TranscriptionExportService exportService,
+                                   TranscriptSearchService searchService) {
         this.transcriptionService = transcriptionService;
         this.s3Service = s3Service;
         this.commentRepository = commentRepository;
+        this.jobService = jobService;
+        this.rollupService = rollupService;
+        this.exportService = exportService;
+        this.searchService = searchService;
     }
 
     @GetMapping("/dashboard")
@@ -48,16 +72,50 @@ public class TranscriptionController {
         return ResponseEntity.ok(transcriptionService.getDashboardMetrics());
     }
 
+    /**
+     * Métricas por día de grabación, leídas de los agregados (por defecto los últimos 30 días).
+     */
+    @GetMapping("/dashboard/daily")
+    public ResponseEntity<List<Map<String, Object>>> getDailyMetrics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo) {
+        LocalDate to = dateTo != null ? dateTo : LocalDate.now();
+        LocalDate from = dateFrom != null ? dateFrom : to.minusDays(30);
+        return ResponseEntity.ok(rollupService.getDailyMetrics(from, to));
+    }
+
+    @PostMapping("/dashboard/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildDashboardRollups() {
+        return ResponseEntity.ok(Map.of("rows", rollupService.rebuild()));
+    }
+
+    /**
+     * Listado liviano con paginación por cursor. Si hay más resultados, el cursor de la
+     * página siguiente va en el header {@code X-Next-Cursor}.
+     */
     @GetMapping("/transcriptions")
-    public ResponseEntity<List<TranscriptionDTO>> getTranscriptions(
+    public ResponseEntity<List<TranscriptionSummaryDTO>> getTranscriptions(
             @RequestParam(required = false) Long userId,
             @RequestParam(required = false) Long branchId,
             @RequestParam(required = false) Boolean saleCompleted,
+            @RequestParam(required = false) String saleStatus,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
             @RequestParam(required = false) Integer minScore,
-            @RequestParam(required = false) Integer maxScore
+            @RequestParam(required = false) Integer maxScore,
+            @RequestParam(defaultValue = "recordingDate") String sort,
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit
     ) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "direction debe ser asc o desc");
+        }
+
         // Validate score range
         if (minScore != null && (minScore < 0 || minScore > 10)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "minScore debe estar entre 0 y 10");
@@ -78,12 +136,24 @@ public class TranscriptionController {
         filter.setUserId(userId);
         filter.setBranchId(branchId);
         filter.setSaleCompleted(saleCompleted);
+        filter.setSaleStatus(saleStatus);
         filter.setDateFrom(dateFrom);
         filter.setDateTo(dateTo);
         filter.setMinScore(minScore);
         filter.setMaxScore(maxScore);
         
-        return ResponseEntity.ok(transcriptionService.getTranscriptions(filter));
+        TranscriptionService.SummaryPage page;
+        try {
+            page = transcriptionService.getTranscriptionSummaries(filter, sort,
+                    direction.equalsIgnoreCase("asc"), cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 
     @GetMapping("/transcriptions/{recordingId}")
@@ -92,6 +162,18 @@ public class TranscriptionController {
         return ResponseEntity.ok(transcriptionService.getTranscription(recordingId));
     }
 
+    @GetMapping("/transcriptions/{recordingId}/turns")
+    public ResponseEntity<Map<String, Object>> getTurns(@PathVariable String recordingId) {
+        validateRecordingId(recordingId);
+        return ResponseEntity.ok(transcriptionService.getTurns(recordingId));
+    }
+
+    @GetMapping("/transcriptions/{recordingId}/sale-signals")
+    public ResponseEntity<List<SaleSignalMatcher.Match>> getSaleSignals(@PathVariable String recordingId) {
+        validateRecordingId(recordingId);
+        return ResponseEntity.ok(transcriptionService.getSaleSignals(recordingId));
+    }
+
     @PostMapping("/transcriptions/{recordingId}/analyze")
     public ResponseEntity<TranscriptionDTO> analyzeTranscription(@PathVariable String recordingId) {
         validateRecordingId(recordingId);
@@ -99,8 +181,9 @@ public class TranscriptionController {
     }
 
     @PostMapping("/sync")
-    public ResponseEntity<Map<String, Object>> syncTranscriptions() {
-        return ResponseEntity.ok(transcriptionService.forceSync());
+    public ResponseEntity<Map<String, Object>> syncTranscriptions(
+            @RequestParam(defaultValue = "false") boolean rescan) {
+        return ResponseEntity.ok(transcriptionService.forceSync(rescan));
     }
 
     @PostMapping("/transcriptions/check-new")
@@ -110,13 +193,38 @@ public class TranscriptionController {
 
     /**
      * Sync with Server-Sent Events for real-time progress updates.
+     * Corre como trabajo persistido: si ya hay una sincronización en curso se conecta a esa.
      */
     @GetMapping(value = "/sync/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter syncWithProgress(jakarta.servlet.http.HttpServletResponse response) {
+    public SseEmitter syncWithProgress(@RequestParam(defaultValue = "false") boolean rescan,
+                                       jakarta.servlet.http.HttpServletResponse response) {
         response.setHeader("Cache-Control", "no-cache, no-transform");
         response.setHeader("Connection", "keep-alive");
         response.setHeader("X-Accel-Buffering", "no");
-        return transcriptionService.forceSyncWithProgress();
+        return jobService.attach(jobService.startSync(rescan));
+    }
+
+    /**
+     * Exporta todas las transcripciones con su análisis avanzado (CSV o NDJSON), escribiendo
+     * la respuesta a medida que se lee la base. Solo para administradores.
+     */
+    @GetMapping("/transcriptions/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportTranscriptions(@RequestParam(defaultValue = "csv") String format,
+                                     @RequestParam(defaultValue = "false") boolean analyzedOnly,
+                                     @RequestParam(defaultValue = "false") boolean includeText,
+                                     jakarta.servlet.http.HttpServletResponse response) throws java.io.IOException {
+        TranscriptionExportService.Format exportFormat;
+        try {
+            exportFormat = TranscriptionExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        response.setContentType(exportFormat.getContentType() + ";charset=UTF-8");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"transcripciones-" + LocalDate.now() + "." + exportFormat.getExtension() + "\"");
+        response.setHeader("X-Accel-Buffering", "no");
+        exportService.export(response.getOutputStream(), exportFormat, analyzedOnly, includeText);
     }
 
     @GetMapping("/sellers")
@@ -150,7 +258,7 @@ public class TranscriptionController {
         response.setHeader("Cache-Control", "no-cache, no-transform");
         response.setHeader("Connection", "keep-alive");
         response.setHeader("X-Accel-Buffering", "no"); // Disable Nginx buffering
-        return transcriptionService.reanalyzeAllWithProgress();
+        return jobService.attach(jobService.startReanalyzeAll());
     }
     
     /**
@@ -176,9 +284,12 @@ public class TranscriptionController {
     @GetMapping("/transcriptions/search")
     public ResponseEntity<Map<String, Object>> searchTranscriptions(
             @RequestParam String q,
+            @RequestParam(required = false) String speaker,
             @RequestParam(required = false) Long userId,
             @RequestParam(required = false) Long branchId,
-            @RequestParam(required = false) Boolean saleCompleted
+            @RequestParam(required = false) Boolean saleCompleted,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
     ) {
         if (q == null || q.trim().isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El t├®rmino de b├║squeda es requerido");
@@ -190,7 +301,24 @@ public class TranscriptionController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El t├®rmino de b├║squeda no puede exceder 100 caracteres");
         }
         
-        return ResponseEntity.ok(transcriptionService.searchTranscriptions(q, userId, branchId, saleCompleted));
+        if (page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Página inválida");
+        }
+        if (speaker != null && speaker.length() > 40) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Hablante inválido");
+        }
+
+        return ResponseEntity.ok(transcriptionService.searchTranscriptions(q, speaker, userId, branchId, saleCompleted,
+                page, size));
+    }
+
+    /**
+     * Reconstruye el índice de búsqueda desde la base. Solo para administradores.
+     */
+    @PostMapping("/transcriptions/search/reindex")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() throws java.io.IOException {
+        return ResponseEntity.ok(Map.of("documents", searchService.rebuild()));
     }
     
     /**
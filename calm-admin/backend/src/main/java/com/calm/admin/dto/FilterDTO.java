@@ -7,6 +7,7 @@ public class FilterDTO {
     private Long userId;
     private Long branchId;
     private Boolean saleCompleted;
+    private String saleStatus;
     private LocalDate dateFrom;
     private LocalDate dateTo;
     private Integer minScore;
@@ -24,6 +25,9 @@ public class FilterDTO {
     public Boolean getSaleCompleted() { return saleCompleted; }
     public void setSaleCompleted(Boolean saleCompleted) { this.saleCompleted = saleCompleted; }
 
+    public String getSaleStatus() { return saleStatus; }
+    public void setSaleStatus(String saleStatus) { this.saleStatus = saleStatus; }
+
     public LocalDate getDateFrom() { return dateFrom; }
     public void setDateFrom(LocalDate dateFrom) { this.dateFrom = dateFrom; }
 
@@ -0,0 +1,31 @@
+package com.calm.admin.dto;
+
+/**
+ * Transcripción sin análisis avanzado: solo el id, el vendedor y el largo del texto.
+ */
+public class MissingAnalysisDTO {
+
+    private String recordingId;
+    private String userName;
+    private int textLength;
+
+    public MissingAnalysisDTO() {}
+
+    // Usado por la proyección JPQL (SELECT new ...)
+    public MissingAnalysisDTO(String recordingId, String userName, Integer textLength) {
+        this.recordingId = recordingId;
+        this.userName = userName;
+        this.textLength = textLength != null ? textLength : 0;
+    }
+
+    public String getRecordingId() { return recordingId; }
+    public void setRecordingId(String recordingId) { this.recordingId = recordingId; }
+
+    public String getUserName() { return userName; }
+    public void setUserName(String userName) { this.userName = userName; }
+
+    public int getTextLength() { return textLength; }
+    public void setTextLength(int textLength) { this.textLength = textLength; }
+
+    public boolean isHasText() { return textLength > 0; }
+}
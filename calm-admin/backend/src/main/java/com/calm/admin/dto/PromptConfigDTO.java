@@ -6,6 +6,7 @@ public class PromptConfigDTO {
     private String model;
     private Double temperature;
     private Integer maxTokens;
+    private Long version;
 
     public PromptConfigDTO() {
     }
@@ -49,12 +50,21 @@ public class PromptConfigDTO {
         this.maxTokens = maxTokens;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "PromptConfigDTO{" +
                 "model='" + model + '\'' +
                 ", temperature=" + temperature +
                 ", maxTokens=" + maxTokens +
+                ", version=" + version +
                 '}';
     }
 }
@@ -6,6 +6,7 @@ import java.util.List;
 public class SearchResultDTO {
     
     private String recordingId;
+    private Long userId;
     private String userName;
     private String branchName;
     private LocalDateTime recordingDate;
@@ -21,6 +22,9 @@ public class SearchResultDTO {
     public String getRecordingId() { return recordingId; }
     public void setRecordingId(String recordingId) { this.recordingId = recordingId; }
     
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
     public String getUserName() { return userName; }
     public void setUserName(String userName) { this.userName = userName; }
     
@@ -27,6 +27,7 @@ public class TranscriptionDTO {
     private List<String> sellerWeaknesses;
     private LocalDateTime recordingDate;
     private LocalDateTime analyzedAt;
+    private Long analysisConfigVersion;
     private Boolean analyzed;
 
     public TranscriptionDTO() {}
@@ -97,6 +98,9 @@ public class TranscriptionDTO {
     public LocalDateTime getAnalyzedAt() { return analyzedAt; }
     public void setAnalyzedAt(LocalDateTime analyzedAt) { this.analyzedAt = analyzedAt; }
 
+    public Long getAnalysisConfigVersion() { return analysisConfigVersion; }
+    public void setAnalysisConfigVersion(Long analysisConfigVersion) { this.analysisConfigVersion = analysisConfigVersion; }
+
     public Boolean getAnalyzed() { return analyzed; }
     public void setAnalyzed(Boolean analyzed) { this.analyzed = analyzed; }
 }
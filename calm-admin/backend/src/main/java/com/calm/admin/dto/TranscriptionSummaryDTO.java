@@ -0,0 +1,80 @@
+package com.calm.admin.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de listado: solo columnas cortas, sin el texto de la transcripción ni los campos TEXT del análisis.
+ * El detalle completo sale de {@code GET /api/transcriptions/{recordingId}}.
+ */
+public class TranscriptionSummaryDTO {
+
+    private String recordingId;
+    private Long userId;
+    private String userName;
+    private Long branchId;
+    private String branchName;
+    private LocalDateTime recordingDate;
+    private Boolean analyzed;
+    private Boolean saleCompleted;
+    private String saleStatus;
+    private Integer analysisConfidence;
+    private Integer sellerScore;
+    private LocalDateTime analyzedAt;
+
+    public TranscriptionSummaryDTO() {}
+
+    // Usado por la proyección JPQL (SELECT new ...)
+    public TranscriptionSummaryDTO(String recordingId, Long userId, String userName, Long branchId, String branchName,
+                                   LocalDateTime recordingDate, Boolean analyzed, Boolean saleCompleted,
+                                   String saleStatus, Integer analysisConfidence, Integer sellerScore,
+                                   LocalDateTime analyzedAt) {
+        this.recordingId = recordingId;
+        this.userId = userId;
+        this.userName = userName;
+        this.branchId = branchId;
+        this.branchName = branchName;
+        this.recordingDate = recordingDate;
+        this.analyzed = analyzed;
+        this.saleCompleted = saleCompleted;
+        this.saleStatus = saleStatus;
+        this.analysisConfidence = analysisConfidence;
+        this.sellerScore = sellerScore;
+        this.analyzedAt = analyzedAt;
+    }
+
+    public String getRecordingId() { return recordingId; }
+    public void setRecordingId(String recordingId) { this.recordingId = recordingId; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public String getUserName() { return userName; }
+    public void setUserName(String userName) { this.userName = userName; }
+
+    public Long getBranchId() { return branchId; }
+    public void setBranchId(Long branchId) { this.branchId = branchId; }
+
+    public String getBranchName() { return branchName; }
+    public void setBranchName(String branchName) { this.branchName = branchName; }
+
+    public LocalDateTime getRecordingDate() { return recordingDate; }
+    public void setRecordingDate(LocalDateTime recordingDate) { this.recordingDate = recordingDate; }
+
+    public Boolean getAnalyzed() { return analyzed; }
+    public void setAnalyzed(Boolean analyzed) { this.analyzed = analyzed; }
+
+    public Boolean getSaleCompleted() { return saleCompleted; }
+    public void setSaleCompleted(Boolean saleCompleted) { this.saleCompleted = saleCompleted; }
+
+    public String getSaleStatus() { return saleStatus; }
+    public void setSaleStatus(String saleStatus) { this.saleStatus = saleStatus; }
+
+    public Integer getAnalysisConfidence() { return analysisConfidence; }
+    public void setAnalysisConfidence(Integer analysisConfidence) { this.analysisConfidence = analysisConfidence; }
+
+    public Integer getSellerScore() { return sellerScore; }
+    public void setSellerScore(Integer sellerScore) { this.sellerScore = sellerScore; }
+
+    public LocalDateTime getAnalyzedAt() { return analyzedAt; }
+    public void setAnalyzedAt(LocalDateTime analyzedAt) { this.analyzedAt = analyzedAt; }
+}
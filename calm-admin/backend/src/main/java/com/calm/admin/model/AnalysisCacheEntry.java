@@ -0,0 +1,54 @@
+package com.calm.admin.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Resultado de un análisis GPT guardado bajo el hash de sus entradas
+ * (prompt de sistema, modelo, parámetros y transcripción).
+ */
+@Entity
+@Table(name = "analysis_cache")
+public class AnalysisCacheEntry {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    private String model;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String resultJson;
+
+    private int hits;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime lastHitAt;
+
+    public AnalysisCacheEntry() {}
+
+    public AnalysisCacheEntry(String hash, String model, String resultJson) {
+        this.hash = hash;
+        this.model = model;
+        this.resultJson = resultJson;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public String getResultJson() { return resultJson; }
+    public void setResultJson(String resultJson) { this.resultJson = resultJson; }
+
+    public int getHits() { return hits; }
+    public void setHits(int hits) { this.hits = hits; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getLastHitAt() { return lastHitAt; }
+    public void setLastHitAt(LocalDateTime lastHitAt) { this.lastHitAt = lastHitAt; }
+}
@@ -0,0 +1,138 @@
+package com.calm.admin.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Trabajo largo (sincronización o re-análisis) persistido para sobrevivir reinicios
+ * y desconexiones del cliente. El avance por transcripción está en {@link AnalysisJobItem}.
+ */
+@Entity
+@Table(name = "analysis_jobs")
+public class AnalysisJob {
+
+    public static final String TYPE_SYNC = "SYNC";
+    public static final String TYPE_REANALYZE_ALL = "REANALYZE_ALL";
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    public static final String PHASE_IMPORT = "import";
+    public static final String PHASE_BATCH = "batch";      // Análisis enviado a la Batch API de OpenAI
+    public static final String PHASE_ANALYZE = "analyze";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String type;
+
+    @Column(nullable = false)
+    private String status;
+
+    private String phase;
+
+    private boolean rescan;
+
+    private int imported;
+    private int total;      // Ítems a analizar
+    private int completed;  // Ítems analizados OK
+    private int failed;     // Ítems que agotaron sus intentos
+
+    private int cacheHits;  // Resultados reutilizados de analysis_cache
+    private int apiCalls;   // Análisis pedidos a GPT
+    private int unchanged;  // Transcripciones cuyo análisis ya correspondía a las entradas actuales
+
+    private String batchId;      // Lote de OpenAI en curso (fase batch)
+    private String batchStatus;  // Último estado informado por la API para ese lote
+
+    @Column(length = 1000)
+    private String message;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime updatedAt;
+
+    public AnalysisJob() {}
+
+    public AnalysisJob(String type) {
+        this.type = type;
+        this.status = STATUS_PENDING;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status);
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getPhase() { return phase; }
+    public void setPhase(String phase) { this.phase = phase; }
+
+    public boolean isRescan() { return rescan; }
+    public void setRescan(boolean rescan) { this.rescan = rescan; }
+
+    public int getImported() { return imported; }
+    public void setImported(int imported) { this.imported = imported; }
+
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+
+    public int getCompleted() { return completed; }
+    public void setCompleted(int completed) { this.completed = completed; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public int getCacheHits() { return cacheHits; }
+    public void setCacheHits(int cacheHits) { this.cacheHits = cacheHits; }
+
+    public int getApiCalls() { return apiCalls; }
+    public void setApiCalls(int apiCalls) { this.apiCalls = apiCalls; }
+
+    public int getUnchanged() { return unchanged; }
+    public void setUnchanged(int unchanged) { this.unchanged = unchanged; }
+
+    public String getBatchId() { return batchId; }
+    public void setBatchId(String batchId) { this.batchId = batchId; }
+
+    public String getBatchStatus() { return batchStatus; }
+    public void setBatchStatus(String batchStatus) { this.batchStatus = batchStatus; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
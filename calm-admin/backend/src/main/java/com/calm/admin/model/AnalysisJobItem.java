@@ -0,0 +1,104 @@
+package com.calm.admin.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Una transcripción a analizar dentro de un {@link AnalysisJob}.
+ * Se toma con un lease (dueño + vencimiento): si el proceso muere, el ítem vuelve a quedar disponible.
+ */
+@Entity
+@Table(name = "analysis_job_items", indexes = {
+        @Index(name = "idx_job_items_job_status", columnList = "jobId, status")
+})
+public class AnalysisJobItem {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_LEASED = "LEASED";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private String recordingId;
+
+    @Column(nullable = false)
+    private String status;
+
+    private int attempts;
+
+    private String leaseOwner;
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Hash de las entradas del request enviado por lote; el resultado se cachea con este hash
+    @Column(length = 64)
+    private String inputHash;
+
+    // Versión de configuración con la que se armó el request del lote
+    private Long configVersion;
+
+    // Señal de venta que encontró el diccionario vigente al armar el request del lote (null si no hubo)
+    @Column(length = 1000)
+    private String saleSignal;
+
+    private LocalDateTime updatedAt;
+
+    public AnalysisJobItem() {}
+
+    public AnalysisJobItem(Long jobId, String recordingId) {
+        this.jobId = jobId;
+        this.recordingId = recordingId;
+        this.status = STATUS_PENDING;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getJobId() { return jobId; }
+    public void setJobId(Long jobId) { this.jobId = jobId; }
+
+    public String getRecordingId() { return recordingId; }
+    public void setRecordingId(String recordingId) { this.recordingId = recordingId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getLeaseOwner() { return leaseOwner; }
+    public void setLeaseOwner(String leaseOwner) { this.leaseOwner = leaseOwner; }
+
+    public LocalDateTime getLeaseExpiresAt() { return leaseExpiresAt; }
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public String getInputHash() { return inputHash; }
+    public void setInputHash(String inputHash) { this.inputHash = inputHash; }
+
+    public Long getConfigVersion() { return configVersion; }
+    public void setConfigVersion(Long configVersion) { this.configVersion = configVersion; }
+
+    public String getSaleSignal() { return saleSignal; }
+    public void setSaleSignal(String saleSignal) { this.saleSignal = saleSignal; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -19,6 +19,7 @@ public class AnalysisResult {
     private List<String> sellerStrengths;
     private List<String> sellerWeaknesses;
     private String followUpRecommendation;
+    private String advancedJson; // Métricas avanzadas (JSON) cuando se piden en la misma llamada
 
     public AnalysisResult() {}
 
@@ -66,4 +67,7 @@ public class AnalysisResult {
 
     public String getFollowUpRecommendation() { return followUpRecommendation; }
     public void setFollowUpRecommendation(String followUpRecommendation) { this.followUpRecommendation = followUpRecommendation; }
+
+    public String getAdvancedJson() { return advancedJson; }
+    public void setAdvancedJson(String advancedJson) { this.advancedJson = advancedJson; }
 }
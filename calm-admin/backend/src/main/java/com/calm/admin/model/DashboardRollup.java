@@ -0,0 +1,111 @@
+package com.calm.admin.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Agregado del dashboard mantenido en forma incremental: una fila por total general,
+ * vendedor, sucursal, día o motivo de no venta. Se actualiza al importar, analizar o borrar
+ * transcripciones y se reconstruye periódicamente desde la tabla de transcripciones.
+ */
+@Entity
+@Table(name = "dashboard_rollups",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"scope", "rollupKey"}))
+public class DashboardRollup {
+
+    public enum Scope { TOTAL, SELLER, BRANCH, DAY, NO_SALE_REASON }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private Scope scope;
+
+    // Hash de las dimensiones del agregado (los motivos de no venta pueden ser textos largos)
+    @Column(length = 64, nullable = false)
+    private String rollupKey;
+
+    // Dimensiones, según el alcance
+    private Long userId;
+    private String userName;
+    private Long branchId;
+    private String branchName;
+    @Column(name = "rollup_day") // "day" es palabra reservada en H2
+    private LocalDate day;
+
+    @Column(columnDefinition = "TEXT")
+    private String reason;
+
+    // Contadores (el total general incluye las sucursales excluidas, el resto no)
+    private long total;
+    private long pending;
+    private long analyzed;
+    private long sales;
+    private long noSales;
+    private long scoreSum;
+    private long scoreCount;
+
+    private LocalDateTime updatedAt;
+
+    public DashboardRollup() {}
+
+    public DashboardRollup(Scope scope, String rollupKey) {
+        this.scope = scope;
+        this.rollupKey = rollupKey;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Scope getScope() { return scope; }
+    public void setScope(Scope scope) { this.scope = scope; }
+
+    public String getRollupKey() { return rollupKey; }
+    public void setRollupKey(String rollupKey) { this.rollupKey = rollupKey; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public String getUserName() { return userName; }
+    public void setUserName(String userName) { this.userName = userName; }
+
+    public Long getBranchId() { return branchId; }
+    public void setBranchId(Long branchId) { this.branchId = branchId; }
+
+    public String getBranchName() { return branchName; }
+    public void setBranchName(String branchName) { this.branchName = branchName; }
+
+    public LocalDate getDay() { return day; }
+    public void setDay(LocalDate day) { this.day = day; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+
+    public long getPending() { return pending; }
+    public void setPending(long pending) { this.pending = pending; }
+
+    public long getAnalyzed() { return analyzed; }
+    public void setAnalyzed(long analyzed) { this.analyzed = analyzed; }
+
+    public long getSales() { return sales; }
+    public void setSales(long sales) { this.sales = sales; }
+
+    public long getNoSales() { return noSales; }
+    public void setNoSales(long noSales) { this.noSales = noSales; }
+
+    public long getScoreSum() { return scoreSum; }
+    public void setScoreSum(long scoreSum) { this.scoreSum = scoreSum; }
+
+    public long getScoreCount() { return scoreCount; }
+    public void setScoreCount(long scoreCount) { this.scoreCount = scoreCount; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,54 @@
+package com.calm.admin.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Marca de agua de la sincronización con S3.
+ * Guarda hasta qué key (orden lexicográfico) y hasta qué lastModified se procesó
+ * por completo un prefijo, para que las siguientes corridas listen solo lo nuevo.
+ */
+@Entity
+@Table(name = "sync_watermarks")
+public class SyncWatermark {
+
+    @Id
+    private String source;
+
+    @Column(length = 1024)
+    private String lastKey; // Última key contigua ya resuelta (importada, conocida o excluida)
+
+    private Instant lastModified; // lastModified más reciente ya resuelto
+
+    private LocalDateTime lastFullListingAt;
+
+    private LocalDateTime updatedAt;
+
+    public SyncWatermark() {}
+
+    public SyncWatermark(String source) {
+        this.source = source;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public String getLastKey() { return lastKey; }
+    public void setLastKey(String lastKey) { this.lastKey = lastKey; }
+
+    public Instant getLastModified() { return lastModified; }
+    public void setLastModified(Instant lastModified) { this.lastModified = lastModified; }
+
+    public LocalDateTime getLastFullListingAt() { return lastFullListingAt; }
+    public void setLastFullListingAt(LocalDateTime lastFullListingAt) { this.lastFullListingAt = lastFullListingAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,112 @@
+package com.calm.admin.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Métricas de conversación calculadas al importar con los tiempos de AWS Transcribe
+ * (no se le piden al modelo). Tiempos en milisegundos.
+ */
+@Entity
+@Table(name = "talk_metrics")
+public class TalkMetrics implements Persistable<String> {
+
+    @Id
+    private String recordingId;
+
+    // Desde la primera hasta la última palabra
+    private long durationMs;
+
+    private long vendorTalkMs;
+    private long customerTalkMs;
+    private int vendorWords;
+    private int customerWords;
+
+    // Pausas de 2 segundos o más sin nadie hablando
+    private long silenceMs;
+    private int silenceGaps;
+    private long longestSilenceMs;
+
+    // Cambios de hablante antes de que el anterior termine; las del vendedor, aparte
+    private int interruptions;
+    private int vendorInterruptions;
+
+    private Integer vendorTalkPercent;
+    private Integer silencePercent;
+    private Integer vendorWordsPerMinute;
+    private Integer customerWordsPerMinute;
+
+    private LocalDateTime computedAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public TalkMetrics() {}
+
+    public TalkMetrics(String recordingId) {
+        this.recordingId = recordingId;
+        this.computedAt = LocalDateTime.now();
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        isNew = false;
+    }
+
+    @Override
+    public String getId() { return recordingId; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    public String getRecordingId() { return recordingId; }
+    public void setRecordingId(String recordingId) { this.recordingId = recordingId; }
+
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+
+    public long getVendorTalkMs() { return vendorTalkMs; }
+    public void setVendorTalkMs(long vendorTalkMs) { this.vendorTalkMs = vendorTalkMs; }
+
+    public long getCustomerTalkMs() { return customerTalkMs; }
+    public void setCustomerTalkMs(long customerTalkMs) { this.customerTalkMs = customerTalkMs; }
+
+    public int getVendorWords() { return vendorWords; }
+    public void setVendorWords(int vendorWords) { this.vendorWords = vendorWords; }
+
+    public int getCustomerWords() { return customerWords; }
+    public void setCustomerWords(int customerWords) { this.customerWords = customerWords; }
+
+    public long getSilenceMs() { return silenceMs; }
+    public void setSilenceMs(long silenceMs) { this.silenceMs = silenceMs; }
+
+    public int getSilenceGaps() { return silenceGaps; }
+    public void setSilenceGaps(int silenceGaps) { this.silenceGaps = silenceGaps; }
+
+    public long getLongestSilenceMs() { return longestSilenceMs; }
+    public void setLongestSilenceMs(long longestSilenceMs) { this.longestSilenceMs = longestSilenceMs; }
+
+    public int getInterruptions() { return interruptions; }
+    public void setInterruptions(int interruptions) { this.interruptions = interruptions; }
+
+    public int getVendorInterruptions() { return vendorInterruptions; }
+    public void setVendorInterruptions(int vendorInterruptions) { this.vendorInterruptions = vendorInterruptions; }
+
+    public Integer getVendorTalkPercent() { return vendorTalkPercent; }
+    public void setVendorTalkPercent(Integer vendorTalkPercent) { this.vendorTalkPercent = vendorTalkPercent; }
+
+    public Integer getSilencePercent() { return silencePercent; }
+    public void setSilencePercent(Integer silencePercent) { this.silencePercent = silencePercent; }
+
+    public Integer getVendorWordsPerMinute() { return vendorWordsPerMinute; }
+    public void setVendorWordsPerMinute(Integer vendorWordsPerMinute) { this.vendorWordsPerMinute = vendorWordsPerMinute; }
+
+    public Integer getCustomerWordsPerMinute() { return customerWordsPerMinute; }
+    public void setCustomerWordsPerMinute(Integer customerWordsPerMinute) { this.customerWordsPerMinute = customerWordsPerMinute; }
+
+    public LocalDateTime getComputedAt() { return computedAt; }
+    public void setComputedAt(LocalDateTime computedAt) { this.computedAt = computedAt; }
+}
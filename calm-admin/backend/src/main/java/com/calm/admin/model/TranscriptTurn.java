@@ -0,0 +1,110 @@
+package com.calm.admin.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Turno de un hablante dentro de una transcripción: quién habla, cuándo (si el formato trae tiempos)
+ * y qué parte de {@link Transcription#getTranscriptionText()} ocupa su texto.
+ * Se carga al importar, para consultar por turno sin volver a partir el texto completo.
+ */
+@Entity
+@Table(name = "transcript_turns")
+@IdClass(TranscriptTurn.Key.class)
+public class TranscriptTurn implements Persistable<TranscriptTurn.Key> {
+
+    public static class Key implements Serializable {
+        private String recordingId;
+        private int turnIndex;
+
+        public Key() {}
+
+        public Key(String recordingId, int turnIndex) {
+            this.recordingId = recordingId;
+            this.turnIndex = turnIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && turnIndex == key.turnIndex && Objects.equals(recordingId, key.recordingId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(recordingId, turnIndex);
+        }
+    }
+
+    @Id
+    private String recordingId;
+
+    @Id
+    private int turnIndex;
+
+    // Etiqueta como aparece en el texto (Persona 1, Persona 2...), null si la transcripción no separa hablantes
+    @Column(length = 40)
+    private String speaker;
+
+    // Milisegundos desde el inicio de la grabación
+    private Integer startMs;
+    private Integer endMs;
+
+    // Posición del texto del turno, sin la etiqueta: [textStart, textEnd)
+    private int textStart;
+    private int textEnd;
+
+    private int wordCount;
+
+    @Transient
+    private boolean isNew = true;
+
+    public TranscriptTurn() {}
+
+    public TranscriptTurn(String recordingId, int turnIndex) {
+        this.recordingId = recordingId;
+        this.turnIndex = turnIndex;
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        isNew = false;
+    }
+
+    @Override
+    public Key getId() { return new Key(recordingId, turnIndex); }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    public String getRecordingId() { return recordingId; }
+    public void setRecordingId(String recordingId) { this.recordingId = recordingId; }
+
+    public int getTurnIndex() { return turnIndex; }
+    public void setTurnIndex(int turnIndex) { this.turnIndex = turnIndex; }
+
+    public String getSpeaker() { return speaker; }
+    public void setSpeaker(String speaker) { this.speaker = speaker; }
+
+    public Integer getStartMs() { return startMs; }
+    public void setStartMs(Integer startMs) { this.startMs = startMs; }
+
+    public Integer getEndMs() { return endMs; }
+    public void setEndMs(Integer endMs) { this.endMs = endMs; }
+
+    public int getTextStart() { return textStart; }
+    public void setTextStart(int textStart) { this.textStart = textStart; }
+
+    public int getTextEnd() { return textEnd; }
+    public void setTextEnd(int textEnd) { this.textEnd = textEnd; }
+
+    public int getWordCount() { return wordCount; }
+    public void setWordCount(int wordCount) { this.wordCount = wordCount; }
+
+    public String text(String transcript) {
+        return transcript.substring(textStart, textEnd);
+    }
+}
@@ -1,11 +1,21 @@
 package com.calm.admin.model;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transcriptions")
-public class Transcription {
+@Table(name = "transcriptions", indexes = {
+        // Consultas por rango de fechas (comparaciones antes/después de eventos)
+        @Index(name = "idx_transcriptions_date_analyzed_user", columnList = "recordingDate, analyzed, userId"),
+        // Orden y cursor del listado: (columna de orden, recordingId)
+        @Index(name = "idx_transcriptions_date_id", columnList = "recordingDate, recordingId"),
+        @Index(name = "idx_transcriptions_score_id", columnList = "sellerScore, recordingId"),
+        @Index(name = "idx_transcriptions_confidence_id", columnList = "analysisConfidence, recordingId"),
+        @Index(name = "idx_transcriptions_user_name_id", columnList = "userName, recordingId")
+})
+public class Transcription implements Persistable<String> {
 
     @Id
     private String recordingId;
@@ -62,10 +72,21 @@ public class Transcription {
 
     private LocalDateTime recordingDate;
     private LocalDateTime analyzedAt;
+
+    @Column(length = 64)
+    private String analysisHash; // Hash de prompt + modelo + texto con el que se hizo el análisis actual
+
+    private Long analysisConfigVersion; // Versión de la configuración de análisis (prompt, modelo) usada
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private Boolean analyzed;
 
+    // El ID viene de S3 (asignado), así que Spring Data no puede deducir si es nueva:
+    // sin esto cada save() de una importación hace un SELECT previo (merge) y no se agrupa en batch
+    @Transient
+    private boolean isNew = true;
+
     public Transcription() {}
 
     @PrePersist
@@ -80,6 +101,18 @@ public class Transcription {
         updatedAt = LocalDateTime.now();
     }
 
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        isNew = false;
+    }
+
+    @Override
+    public String getId() { return recordingId; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
     // Getters and Setters
     public String getRecordingId() { return recordingId; }
     public void setRecordingId(String recordingId) { this.recordingId = recordingId; }
@@ -147,6 +180,12 @@ public class Transcription {
     public LocalDateTime getAnalyzedAt() { return analyzedAt; }
     public void setAnalyzedAt(LocalDateTime analyzedAt) { this.analyzedAt = analyzedAt; }
     
+    public String getAnalysisHash() { return analysisHash; }
+    public void setAnalysisHash(String analysisHash) { this.analysisHash = analysisHash; }
+
+    public Long getAnalysisConfigVersion() { return analysisConfigVersion; }
+    public void setAnalysisConfigVersion(Long analysisConfigVersion) { this.analysisConfigVersion = analysisConfigVersion; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -1,6 +1,7 @@
 package com.calm.admin.repository;
 
 import com.calm.admin.model.AdvancedAnalysis;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -20,4 +21,51 @@ public interface AdvancedAnalysisRepository extends JpaRepository<AdvancedAnalys
     
     @Query("SELECT COUNT(a) FROM AdvancedAnalysis a")
     long countAnalyzed();
+
+    // Promedios y totales de todos los análisis, en una fila. Los valores faltantes cuentan como en el prompt:
+    // 0 para flujo, confianza y objeciones, 50 para las métricas del vendedor. Silencio y parte del vendedor
+    // se miden con los tiempos y faltan si la transcripción no los tiene: se promedian solo los medidos
+    // y se devuelve cuántos son
+    @Query("SELECT COUNT(a), " +
+           "AVG(COALESCE(a.aperturaPercent, 0)), AVG(COALESCE(a.descubrimientoPercent, 0)), " +
+           "AVG(COALESCE(a.objecionPercent, 0)), AVG(COALESCE(a.argumentoPercent, 0)), " +
+           "AVG(COALESCE(a.cierrePercent, 0)), AVG(a.silencioPercent), " +
+           "AVG(COALESCE(a.customerConfidenceScore, 0)), " +
+           "AVG(a.vendorTalkPercent), AVG(COALESCE(a.activeListeningScore, 50)), " +
+           "AVG(COALESCE(a.objectionHandlingScore, 50)), AVG(COALESCE(a.closingRhythmScore, 50)), " +
+           "AVG(COALESCE(a.empathyScore, 50)), " +
+           "SUM(COALESCE(a.explicitObjections, 0)), SUM(COALESCE(a.implicitObjections, 0)), " +
+           "SUM(COALESCE(a.unansweredObjections, 0)), SUM(COALESCE(a.ineffectiveResponses, 0)), " +
+           "AVG(a.abandonMinute), COUNT(a.silencioPercent), COUNT(a.vendorTalkPercent) " +
+           "FROM AdvancedAnalysis a")
+    List<Object[]> getOverallMetrics();
+
+    // Confianza del cliente por sucursal
+    @Query("SELECT COALESCE(t.branchName, 'desconocido'), AVG(COALESCE(a.customerConfidenceScore, 0)), COUNT(a) " +
+           "FROM AdvancedAnalysis a LEFT JOIN Transcription t ON t.recordingId = a.recordingId " +
+           "GROUP BY COALESCE(t.branchName, 'desconocido') " +
+           "ORDER BY AVG(COALESCE(a.customerConfidenceScore, 0)) DESC")
+    List<Object[]> getConfidenceByBranch();
+
+    // Métricas por vendedor, con la confianza separada entre ventas y no ventas (silencio: solo los medidos)
+    @Query("SELECT COALESCE(t.userName, 'Desconocido'), COUNT(a), " +
+           "AVG(COALESCE(a.customerConfidenceScore, 0)), " +
+           "AVG(CASE WHEN t.saleCompleted = true THEN COALESCE(a.customerConfidenceScore, 0) END), " +
+           "AVG(CASE WHEN t.saleCompleted = true THEN NULL ELSE COALESCE(a.customerConfidenceScore, 0) END), " +
+           "AVG(COALESCE(a.activeListeningScore, 0)), AVG(COALESCE(a.objectionHandlingScore, 0)), " +
+           "AVG(COALESCE(a.closingRhythmScore, 0)), AVG(COALESCE(a.empathyScore, 0)), " +
+           "AVG(COALESCE(a.aperturaPercent, 0)), AVG(COALESCE(a.descubrimientoPercent, 0)), " +
+           "AVG(COALESCE(a.objecionPercent, 0)), AVG(COALESCE(a.argumentoPercent, 0)), " +
+           "AVG(COALESCE(a.cierrePercent, 0)), AVG(a.silencioPercent), COUNT(a.silencioPercent) " +
+           "FROM AdvancedAnalysis a LEFT JOIN Transcription t ON t.recordingId = a.recordingId " +
+           "GROUP BY COALESCE(t.userName, 'Desconocido') " +
+           "ORDER BY COUNT(a) DESC")
+    List<Object[]> getMetricsByVendor();
+
+    // Frases de abandono más repetidas (sin distinguir mayúsculas ni espacios en los extremos)
+    @Query("SELECT MIN(a.keyAbandonPhrase), COUNT(a), AVG(a.abandonMinute) FROM AdvancedAnalysis a " +
+           "WHERE a.keyAbandonPhrase IS NOT NULL AND a.keyAbandonPhrase <> '' " +
+           "GROUP BY LOWER(TRIM(a.keyAbandonPhrase)) " +
+           "ORDER BY COUNT(a) DESC, LOWER(TRIM(a.keyAbandonPhrase))")
+    List<Object[]> getTopAbandonPhrases(Pageable pageable);
 }
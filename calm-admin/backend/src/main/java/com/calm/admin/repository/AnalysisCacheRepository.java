@@ -0,0 +1,20 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.model.AnalysisCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface AnalysisCacheRepository extends JpaRepository<AnalysisCacheEntry, String> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE AnalysisCacheEntry e SET e.hits = e.hits + 1, e.lastHitAt = :now WHERE e.hash = :hash")
+    int recordHit(@Param("hash") String hash, @Param("now") LocalDateTime now);
+}
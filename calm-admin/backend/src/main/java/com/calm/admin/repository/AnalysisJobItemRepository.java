@@ -0,0 +1,52 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.model.AnalysisJobItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AnalysisJobItemRepository extends JpaRepository<AnalysisJobItem, Long> {
+
+    // Ítems disponibles: pendientes o con lease vencido
+    @Query("SELECT i.id FROM AnalysisJobItem i WHERE i.jobId = :jobId AND " +
+           "(i.status = 'PENDING' OR (i.status = 'LEASED' AND i.leaseExpiresAt < :now)) ORDER BY i.id")
+    List<Long> findClaimableIds(@Param("jobId") Long jobId, @Param("now") LocalDateTime now, Pageable pageable);
+
+    // Toma el lease solo si el ítem sigue disponible (otro proceso pudo tomarlo entre la consulta y el update)
+    @Transactional
+    @Modifying
+    @Query("UPDATE AnalysisJobItem i SET i.status = 'LEASED', i.leaseOwner = :owner, i.leaseExpiresAt = :until, " +
+           "i.attempts = i.attempts + 1, i.updatedAt = :now WHERE i.id IN :ids AND " +
+           "(i.status = 'PENDING' OR (i.status = 'LEASED' AND i.leaseExpiresAt < :now))")
+    int lease(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+              @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+
+    List<AnalysisJobItem> findByJobIdAndStatusAndLeaseOwner(Long jobId, String status, String leaseOwner);
+
+    long countByJobId(Long jobId);
+
+    long countByJobIdAndStatus(Long jobId, String status);
+
+    // Libera los leases de un proceso anterior al retomar un trabajo
+    @Transactional
+    @Modifying
+    @Query("UPDATE AnalysisJobItem i SET i.status = 'PENDING', i.leaseOwner = NULL, i.leaseExpiresAt = NULL " +
+           "WHERE i.jobId = :jobId AND i.status = 'LEASED' AND (i.leaseOwner IS NULL OR i.leaseOwner <> :owner)")
+    int releaseForeignLeases(@Param("jobId") Long jobId, @Param("owner") String owner);
+
+    // Devuelve a la cola los ítems que quedaron tomados (p. ej. un lote que venció sin resultado)
+    @Transactional
+    @Modifying
+    @Query("UPDATE AnalysisJobItem i SET i.status = 'PENDING', i.leaseOwner = NULL, i.leaseExpiresAt = NULL " +
+           "WHERE i.jobId = :jobId AND i.status = 'LEASED'")
+    int releaseLeases(@Param("jobId") Long jobId);
+}
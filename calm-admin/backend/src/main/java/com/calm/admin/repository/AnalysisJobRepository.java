@@ -0,0 +1,19 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.model.AnalysisJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, Long> {
+
+    Optional<AnalysisJob> findFirstByTypeAndStatusInOrderByCreatedAtDesc(String type, Collection<String> statuses);
+
+    List<AnalysisJob> findByStatusInOrderByCreatedAtAsc(Collection<String> statuses);
+
+    List<AnalysisJob> findTop20ByOrderByCreatedAtDesc();
+}
@@ -0,0 +1,42 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.model.DashboardRollup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DashboardRollupRepository extends JpaRepository<DashboardRollup, Long> {
+
+    List<DashboardRollup> findByScope(DashboardRollup.Scope scope);
+
+    List<DashboardRollup> findByScopeAndDayBetweenOrderByDay(DashboardRollup.Scope scope, LocalDate from, LocalDate to);
+
+    // Bloquea la fila hasta el fin de la transacción (SELECT ... FOR UPDATE)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM DashboardRollup r WHERE r.scope = :scope AND r.rollupKey = :key")
+    Optional<DashboardRollup> findForUpdate(@Param("scope") DashboardRollup.Scope scope, @Param("key") String key);
+
+    // Suma atómica en la base: dos análisis que terminan a la vez no se pisan los contadores
+    @Transactional
+    @Modifying
+    @Query("UPDATE DashboardRollup r SET r.total = r.total + :total, r.pending = r.pending + :pending, " +
+           "r.analyzed = r.analyzed + :analyzed, r.sales = r.sales + :sales, r.noSales = r.noSales + :noSales, " +
+           "r.scoreSum = r.scoreSum + :scoreSum, r.scoreCount = r.scoreCount + :scoreCount, r.updatedAt = :now " +
+           "WHERE r.scope = :scope AND r.rollupKey = :key")
+    int increment(@Param("scope") DashboardRollup.Scope scope, @Param("key") String key,
+                  @Param("total") long total, @Param("pending") long pending, @Param("analyzed") long analyzed,
+                  @Param("sales") long sales, @Param("noSales") long noSales,
+                  @Param("scoreSum") long scoreSum, @Param("scoreCount") long scoreCount,
+                  @Param("now") LocalDateTime now);
+}
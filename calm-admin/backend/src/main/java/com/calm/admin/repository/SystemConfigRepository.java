@@ -1,7 +1,11 @@
 package com.calm.admin.repository;
 
 import com.calm.admin.model.SystemConfig;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,5 +13,14 @@ import java.util.Optional;
 @Repository
 public interface SystemConfigRepository extends JpaRepository<SystemConfig, String> {
     Optional<SystemConfig> findByConfigKey(String key);
+
+    // Solo el valor: se lee siempre de la base, aunque la fila ya esté cargada en la transacción
+    @Query("SELECT c.configValue FROM SystemConfig c WHERE c.configKey = :key")
+    Optional<String> findValue(@Param("key") String key);
+
+    // Bloquea la fila hasta el fin de la transacción (SELECT ... FOR UPDATE)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM SystemConfig c WHERE c.configKey = :key")
+    Optional<SystemConfig> findForUpdate(@Param("key") String key);
 }
 
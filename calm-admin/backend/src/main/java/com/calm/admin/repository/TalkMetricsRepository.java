@@ -0,0 +1,25 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.model.TalkMetrics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface TalkMetricsRepository extends JpaRepository<TalkMetrics, String> {
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TalkMetrics m WHERE m.recordingId = :recordingId")
+    int deleteByRecordingId(@Param("recordingId") String recordingId);
+
+    // Métricas de transcripciones que ya no existen
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TalkMetrics m WHERE NOT EXISTS " +
+           "(SELECT 1 FROM Transcription t WHERE t.recordingId = m.recordingId)")
+    int deleteOrphans();
+}
@@ -9,4 +9,6 @@ import java.util.List;
 @Repository
 public interface TimelineEventRepository extends JpaRepository<TimelineEvent, Long> {
     List<TimelineEvent> findAllByOrderByEventDateAsc();
+
+    List<TimelineEvent> findByIdInOrderByEventDateAsc(List<Long> ids);
 }
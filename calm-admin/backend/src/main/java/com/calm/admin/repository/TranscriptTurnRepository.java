@@ -0,0 +1,42 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.model.TranscriptTurn;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface TranscriptTurnRepository extends JpaRepository<TranscriptTurn, TranscriptTurn.Key> {
+
+    List<TranscriptTurn> findByRecordingIdOrderByTurnIndex(String recordingId);
+
+    // Por hablante: turnos, palabras y milisegundos hablados (sumando solo los turnos con tiempos)
+    @Query("SELECT u.speaker, COUNT(u), SUM(u.wordCount), SUM(u.endMs - u.startMs) FROM TranscriptTurn u " +
+           "WHERE u.recordingId = :recordingId GROUP BY u.speaker ORDER BY u.speaker")
+    List<Object[]> getSpeakerStats(@Param("recordingId") String recordingId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TranscriptTurn u WHERE u.recordingId = :recordingId")
+    int deleteByRecordingId(@Param("recordingId") String recordingId);
+
+    // Turnos de transcripciones que ya no existen (p. ej. sucursales excluidas purgadas al arrancar)
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TranscriptTurn u WHERE NOT EXISTS " +
+           "(SELECT 1 FROM Transcription t WHERE t.recordingId = u.recordingId)")
+    int deleteOrphans();
+
+    // Transcripciones con texto que todavía no tienen turnos, recorridas por recordingId
+    @Query("SELECT t.recordingId FROM Transcription t " +
+           "LEFT JOIN TranscriptTurn u ON u.recordingId = t.recordingId AND u.turnIndex = 0 " +
+           "WHERE u.recordingId IS NULL AND LENGTH(t.transcriptionText) > 0 AND t.recordingId > :afterId " +
+           "ORDER BY t.recordingId")
+    List<String> findIdsWithoutTurns(@Param("afterId") String afterId, Pageable pageable);
+}
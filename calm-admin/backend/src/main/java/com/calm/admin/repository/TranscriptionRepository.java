@@ -1,6 +1,9 @@
 package com.calm.admin.repository;
 
+import com.calm.admin.dto.MissingAnalysisDTO;
+import com.calm.admin.dto.TranscriptionSummaryDTO;
 import com.calm.admin.model.Transcription;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -10,7 +13,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface TranscriptionRepository extends JpaRepository<Transcription, String> {
+public interface TranscriptionRepository extends JpaRepository<Transcription, String>, TranscriptionRepositoryCustom {
 
     List<Transcription> findByAnalyzedFalse();
     
@@ -20,6 +23,10 @@ public interface TranscriptionRepository extends JpaRepository<Transcription, St
     
     List<Transcription> findBySaleCompleted(Boolean saleCompleted);
     
+    // Transcripciones modificadas después de una fecha (reparación del índice de búsqueda al arrancar)
+    @Query("SELECT t.recordingId FROM Transcription t WHERE t.updatedAt > :since ORDER BY t.recordingId")
+    List<String> findIdsUpdatedAfter(@Param("since") LocalDateTime since);
+
     @Query("SELECT t FROM Transcription t WHERE " +
            "(:userId IS NULL OR t.userId = :userId) AND " +
            "(:branchId IS NULL OR t.branchId = :branchId) AND " +
@@ -79,7 +86,63 @@ public interface TranscriptionRepository extends JpaRepository<Transcription, St
            "FROM Transcription t WHERE t.analyzed = true AND (t.branchId NOT IN (4476, 4495, 4496) OR t.branchId IS NULL) GROUP BY t.branchId, t.branchName")
     List<Object[]> getBranchStats();
 
+    // Dashboard en una sola pasada: un grupo por vendedor, sucursal, estado y motivo; se agrega en DashboardAggregator
+    @Query("SELECT t.userId, t.userName, t.branchId, t.branchName, t.analyzed, t.saleCompleted, " +
+           "CASE WHEN t.analyzed = true AND t.saleCompleted = false THEN t.noSaleReason ELSE NULL END, " +
+           "COUNT(t), SUM(t.sellerScore), COUNT(t.sellerScore) " +
+           "FROM Transcription t " +
+           "GROUP BY t.userId, t.userName, t.branchId, t.branchName, t.analyzed, t.saleCompleted, " +
+           "CASE WHEN t.analyzed = true AND t.saleCompleted = false THEN t.noSaleReason ELSE NULL END")
+    List<Object[]> getDashboardGroups();
+
+    // Igual que getDashboardGroups pero además por día de grabación; base para reconstruir los agregados del dashboard
+    @Query("SELECT t.userId, t.userName, t.branchId, t.branchName, CAST(t.recordingDate AS LocalDate), t.analyzed, t.saleCompleted, " +
+           "CASE WHEN t.analyzed = true AND t.saleCompleted = false THEN t.noSaleReason ELSE NULL END, " +
+           "COUNT(t), SUM(t.sellerScore), COUNT(t.sellerScore) " +
+           "FROM Transcription t " +
+           "GROUP BY t.userId, t.userName, t.branchId, t.branchName, CAST(t.recordingDate AS LocalDate), t.analyzed, t.saleCompleted, " +
+           "CASE WHEN t.analyzed = true AND t.saleCompleted = false THEN t.noSaleReason ELSE NULL END")
+    List<Object[]> getRollupGroups();
+
+    // Serie temporal: una fila por día con los acumulados; las semanas y meses se arman sumando días
+    @Query("SELECT CAST(t.recordingDate AS LocalDate), COUNT(t), " +
+           "SUM(CASE WHEN t.saleCompleted = true THEN 1 ELSE 0 END), " +
+           "SUM(t.sellerScore), COUNT(t.sellerScore), SUM(t.analysisConfidence), COUNT(t.analysisConfidence) " +
+           "FROM Transcription t WHERE t.analyzed = true AND t.recordingDate IS NOT NULL AND " +
+           "(:userId IS NULL OR t.userId = :userId) AND " +
+           "(:branchId IS NULL OR t.branchId = :branchId) AND " +
+           "(:dateFrom IS NULL OR t.recordingDate >= :dateFrom) AND " +
+           "(:dateTo IS NULL OR t.recordingDate < :dateTo) " +
+           "GROUP BY CAST(t.recordingDate AS LocalDate) ORDER BY CAST(t.recordingDate AS LocalDate)")
+    List<Object[]> getDailyTimeline(
+            @Param("userId") Long userId,
+            @Param("branchId") Long branchId,
+            @Param("dateFrom") LocalDateTime dateFrom,
+            @Param("dateTo") LocalDateTime dateTo
+    );
+
+    // Acumulados de una ventana [dateFrom, dateTo); recorre solo el rango del índice por fecha
+    @Query("SELECT COUNT(t), SUM(CASE WHEN t.saleCompleted = true THEN 1 ELSE 0 END), " +
+           "SUM(t.sellerScore), COUNT(t.sellerScore), SUM(t.analysisConfidence), COUNT(t.analysisConfidence) " +
+           "FROM Transcription t WHERE t.recordingDate >= :dateFrom AND t.recordingDate < :dateTo AND " +
+           "t.analyzed = true AND (:userId IS NULL OR t.userId = :userId)")
+    List<Object[]> getWindowStats(
+            @Param("dateFrom") LocalDateTime dateFrom,
+            @Param("dateTo") LocalDateTime dateTo,
+            @Param("userId") Long userId
+    );
+
     boolean existsByRecordingId(String recordingId);
+
+    // Solo los IDs (sin cargar el texto) de las transcripciones que ya existen, para el diff de la sync
+    @Query("SELECT t.recordingId FROM Transcription t WHERE t.recordingId IN :recordingIds")
+    List<String> findExistingRecordingIds(@Param("recordingIds") java.util.Collection<String> recordingIds);
+
+    @Query("SELECT t.recordingId FROM Transcription t ORDER BY t.recordingId")
+    List<String> findAllRecordingIds();
+
+    @Query("SELECT t.recordingId FROM Transcription t WHERE t.analyzed = false ORDER BY t.recordingId")
+    List<String> findUnanalyzedRecordingIds();
     
     List<Transcription> findByBranchIdIn(java.util.Collection<Long> branchIds);
     
@@ -87,18 +150,26 @@ public interface TranscriptionRepository extends JpaRepository<Transcription, St
     @Query("SELECT t FROM Transcription t WHERE t.analyzed = true AND t.saleCompleted = false")
     List<Transcription> findAnalyzedNoSales();
     
-    // Búsqueda de texto en transcripciones
-    @Query("SELECT t FROM Transcription t WHERE " +
-           "LOWER(t.transcriptionText) LIKE LOWER(CONCAT('%', :searchTerm, '%')) AND " +
-           "(:userId IS NULL OR t.userId = :userId) AND " +
-           "(:branchId IS NULL OR t.branchId = :branchId) AND " +
-           "(:saleCompleted IS NULL OR t.saleCompleted = :saleCompleted) " +
-           "ORDER BY t.recordingDate DESC")
-    List<Transcription> searchByText(
-            @Param("searchTerm") String searchTerm,
-            @Param("userId") Long userId,
-            @Param("branchId") Long branchId,
-            @Param("saleCompleted") Boolean saleCompleted
-    );
+    // Transcripciones sin análisis avanzado (anti-join), sin cargar el texto
+    @Query("SELECT new com.calm.admin.dto.MissingAnalysisDTO(t.recordingId, t.userName, LENGTH(t.transcriptionText)) " +
+           "FROM Transcription t LEFT JOIN AdvancedAnalysis a ON a.recordingId = t.recordingId " +
+           "WHERE a.id IS NULL ORDER BY t.recordingId")
+    List<MissingAnalysisDTO> findMissingAdvancedAnalyses();
+
+    // Página de ids con texto y sin análisis avanzado, siguientes a afterId
+    @Query("SELECT t.recordingId FROM Transcription t LEFT JOIN AdvancedAnalysis a ON a.recordingId = t.recordingId " +
+           "WHERE a.id IS NULL AND LENGTH(t.transcriptionText) > 0 AND t.recordingId > :afterId " +
+           "ORDER BY t.recordingId")
+    List<String> findIdsMissingAdvancedAnalysis(@Param("afterId") String afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(t) FROM Transcription t LEFT JOIN AdvancedAnalysis a ON a.recordingId = t.recordingId " +
+           "WHERE a.id IS NULL AND LENGTH(t.transcriptionText) > 0")
+    long countMissingAdvancedAnalysis();
+
+    // Datos de listado de los resultados de una búsqueda (sin el texto)
+    @Query("SELECT new com.calm.admin.dto.TranscriptionSummaryDTO(t.recordingId, t.userId, t.userName, t.branchId, " +
+           "t.branchName, t.recordingDate, t.analyzed, t.saleCompleted, t.saleStatus, t.analysisConfidence, " +
+           "t.sellerScore, t.analyzedAt) FROM Transcription t WHERE t.recordingId IN :ids")
+    List<TranscriptionSummaryDTO> findSummariesByIds(@Param("ids") java.util.Collection<String> ids);
 }
 
@@ -0,0 +1,74 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.dto.FilterDTO;
+import com.calm.admin.dto.TranscriptionSummaryDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Consultas de {@link TranscriptionRepository} que se arman según los filtros y el orden pedidos.
+ */
+public interface TranscriptionRepositoryCustom {
+
+    /**
+     * Columnas por las que se puede ordenar el listado. Los nulls van al final en ambas direcciones
+     * (la columna se compara tal cual, así la base puede usar el índice (columna, recordingId)).
+     */
+    enum SummarySort {
+        RECORDING_DATE("recordingDate", TranscriptionSummaryDTO::getRecordingDate, LocalDateTime::parse),
+        SELLER_SCORE("sellerScore", TranscriptionSummaryDTO::getSellerScore, Integer::valueOf),
+        ANALYSIS_CONFIDENCE("analysisConfidence", TranscriptionSummaryDTO::getAnalysisConfidence, Integer::valueOf),
+        USER_NAME("userName", TranscriptionSummaryDTO::getUserName, Function.identity());
+
+        private final String property;
+        private final Function<TranscriptionSummaryDTO, Object> getter;
+        private final Function<String, Object> parser;
+
+        <T> SummarySort(String property, Function<TranscriptionSummaryDTO, T> getter, Function<String, T> parser) {
+            this.property = property;
+            this.getter = getter::apply;
+            this.parser = parser::apply;
+        }
+
+        public static SummarySort fromProperty(String property) {
+            for (SummarySort sort : values()) {
+                if (sort.property.equals(property)) {
+                    return sort;
+                }
+            }
+            throw new IllegalArgumentException("Orden no soportado: " + property);
+        }
+
+        public String getProperty() { return property; }
+
+        /**
+         * Valor de orden de una fila (puede ser null), para armar el cursor.
+         */
+        public Object valueOf(TranscriptionSummaryDTO row) {
+            return getter.apply(row);
+        }
+
+        public Object parse(String value) {
+            return parser.apply(value);
+        }
+    }
+
+    /**
+     * Página de listado con paginación por clave (keyset): devuelve las filas que siguen a
+     * (afterValue, afterId) en el orden pedido, sin OFFSET.
+     * @param afterValue valor de orden de la última fila de la página anterior; null si ya está en el tramo de nulls
+     * @param afterId recordingId de la última fila de la página anterior, o null para la primera página
+     */
+    List<TranscriptionSummaryDTO> findSummaries(FilterDTO filter, SummarySort sort, boolean ascending,
+                                                Object afterValue, String afterId, int limit);
+
+    /**
+     * Página de exportación: transcripciones con su análisis avanzado ({@code LEFT JOIN}), ordenadas por
+     * recordingId y siguientes a {@code afterId}. Se lee como stream hacia adelante; cerrarlo al terminar.
+     * @param columns expresiones a proyectar, sobre {@code t} (Transcription) y {@code a} (AdvancedAnalysis)
+     */
+    Stream<Object[]> streamExportPage(List<String> columns, boolean analyzedOnly, String afterId, int limit);
+}
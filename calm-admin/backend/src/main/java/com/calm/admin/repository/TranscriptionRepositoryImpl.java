@@ -0,0 +1,116 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.dto.FilterDTO;
+import com.calm.admin.dto.TranscriptionSummaryDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Implementación de {@link TranscriptionRepositoryCustom}. Solo agrega al WHERE los filtros presentes,
+ * así la base puede usar los índices (en lugar de {@code :param IS NULL OR ...}).
+ */
+public class TranscriptionRepositoryImpl implements TranscriptionRepositoryCustom {
+
+    private static final String SUMMARY_SELECT = "SELECT new com.calm.admin.dto.TranscriptionSummaryDTO(" +
+            "t.recordingId, t.userId, t.userName, t.branchId, t.branchName, t.recordingDate, t.analyzed, " +
+            "t.saleCompleted, t.saleStatus, t.analysisConfidence, t.sellerScore, t.analyzedAt) " +
+            "FROM Transcription t WHERE 1 = 1";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TranscriptionSummaryDTO> findSummaries(FilterDTO filter, SummarySort sort, boolean ascending,
+                                                       Object afterValue, String afterId, int limit) {
+        StringBuilder jpql = new StringBuilder(SUMMARY_SELECT);
+        Map<String, Object> params = new HashMap<>();
+
+        if (filter != null) {
+            if (filter.getUserId() != null) {
+                jpql.append(" AND t.userId = :userId");
+                params.put("userId", filter.getUserId());
+            }
+            if (filter.getBranchId() != null) {
+                jpql.append(" AND t.branchId = :branchId");
+                params.put("branchId", filter.getBranchId());
+            }
+            if (filter.getSaleCompleted() != null) {
+                jpql.append(" AND t.saleCompleted = :saleCompleted");
+                params.put("saleCompleted", filter.getSaleCompleted());
+            }
+            if (filter.getSaleStatus() != null) {
+                jpql.append(" AND t.saleStatus = :saleStatus");
+                params.put("saleStatus", filter.getSaleStatus());
+            }
+            if (filter.getDateFrom() != null) {
+                jpql.append(" AND t.recordingDate >= :dateFrom");
+                params.put("dateFrom", filter.getDateFrom().atStartOfDay());
+            }
+            if (filter.getDateTo() != null) {
+                jpql.append(" AND t.recordingDate < :dateTo");
+                params.put("dateTo", filter.getDateTo().plusDays(1).atStartOfDay());
+            }
+            if (filter.getMinScore() != null) {
+                jpql.append(" AND t.sellerScore >= :minScore");
+                params.put("minScore", filter.getMinScore());
+            }
+            if (filter.getMaxScore() != null) {
+                jpql.append(" AND t.sellerScore <= :maxScore");
+                params.put("maxScore", filter.getMaxScore());
+            }
+        }
+
+        String column = "t." + sort.getProperty();
+        String direction = ascending ? " ASC" : " DESC";
+
+        // Keyset: (valor, id) estrictamente después de la última fila, con el id como desempate.
+        // Los nulls van al final: siguen a cualquier valor, y entre ellos se ordenan solo por id.
+        if (afterId != null) {
+            String op = ascending ? " > " : " < ";
+            if (afterValue != null) {
+                jpql.append(" AND (").append(column).append(op).append(":afterValue OR (")
+                        .append(column).append(" = :afterValue AND t.recordingId").append(op).append(":afterId) OR ")
+                        .append(column).append(" IS NULL)");
+                params.put("afterValue", afterValue);
+            } else {
+                jpql.append(" AND ").append(column).append(" IS NULL AND t.recordingId").append(op).append(":afterId");
+            }
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY ").append(column).append(direction).append(" NULLS LAST")
+                .append(", t.recordingId").append(direction);
+
+        TypedQuery<TranscriptionSummaryDTO> query = entityManager.createQuery(jpql.toString(), TranscriptionSummaryDTO.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Stream<Object[]> streamExportPage(List<String> columns, boolean analyzedOnly, String afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT ").append(String.join(", ", columns))
+                .append(" FROM Transcription t LEFT JOIN AdvancedAnalysis a ON a.recordingId = t.recordingId WHERE 1 = 1");
+        if (analyzedOnly) {
+            jpql.append(" AND t.analyzed = true");
+        }
+        if (afterId != null) {
+            jpql.append(" AND t.recordingId > :afterId");
+        }
+        jpql.append(" ORDER BY t.recordingId");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+                .setMaxResults(limit)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, Math.min(limit, 1000))
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+        }
+        return query.getResultStream();
+    }
+}
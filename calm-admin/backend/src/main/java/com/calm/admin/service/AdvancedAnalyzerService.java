@@ -1,26 +1,34 @@
 package com.calm.admin.service;
 
+import com.calm.admin.dto.MissingAnalysisDTO;
 import com.calm.admin.model.AdvancedAnalysis;
+import com.calm.admin.model.SystemConfig;
 import com.calm.admin.model.Transcription;
 import com.calm.admin.repository.AdvancedAnalysisRepository;
+import com.calm.admin.repository.SystemConfigRepository;
 import com.calm.admin.repository.TranscriptionRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
 import com.theokanning.openai.completion.chat.ChatMessage;
-import com.theokanning.openai.service.OpenAiService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.time.Duration;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AdvancedAnalyzerService {
@@ -30,9 +38,37 @@ public class AdvancedAnalyzerService {
     private final AdvancedAnalysisRepository advancedAnalysisRepository;
     private final TranscriptionRepository transcriptionRepository;
     private final ObjectMapper objectMapper;
+    private final LlmClient llmClient;
+    private final AnalysisExecutor analysisExecutor;
+    private final OpenAiBatchClient batchClient;
+    private final TranscriptTurnService turnService;
+    private final SystemConfigRepository configRepository;
     
-    @Value("${openai.api.key:}")
-    private String openaiApiKey;
+    // Lote de OpenAI en curso: se guarda al enviarlo y se borra al aplicar sus resultados
+    private static final String BATCH_ID_KEY = "advanced_batch_id";
+    
+    // Un solo lote a la vez: una corrida nueva espera al lote retomado en lugar de reenviar las mismas transcripciones
+    private final Object openAiBatchLock = new Object();
+    
+    private static final String ADVANCED_MODEL = "gpt-4o-mini";
+    private static final String ADVANCED_SYSTEM_PROMPT = "Eres un analista experto en conversaciones de venta. Responde solo con JSON válido.";
+    private static final double ADVANCED_TEMPERATURE = 0.3;
+    private static final int ADVANCED_MAX_TOKENS = 1000;
+    
+    // Transcripciones cargadas por vez al recorrer las que no tienen análisis avanzado
+    private static final int MISSING_PAGE_SIZE = 200;
+    
+    private static final int TOP_LOSS_MOMENTS = 5;
+    
+    // Métricas del dashboard de recomendaciones en cache, válidas mientras no cambie la generación
+    private record CachedMetrics<T>(T value, long generation, long loadedAtNanos) {}
+    
+    private final AtomicLong metricsGeneration = new AtomicLong();
+    private volatile CachedMetrics<Map<String, Object>> aggregatedCache;
+    private volatile CachedMetrics<List<Map<String, Object>>> byVendorCache;
+    
+    @Value("${recommendations.metrics.cache-seconds:300}")
+    private long metricsCacheSeconds;
     
     private static final String ADVANCED_ANALYSIS_PROMPT = """
         Eres un experto en análisis de conversaciones de venta. Analiza la siguiente transcripción de una interacción presencial en una tienda de colchones y extrae métricas detalladas.
@@ -41,19 +77,17 @@ public class AdvancedAnalyzerService {
         
         Analiza y devuelve:
         
-        1. CONVERSATION_FLOW: Estima el porcentaje de tiempo dedicado a cada fase (deben sumar 100):
+        1. CONVERSATION_FLOW: Estima el porcentaje de la conversación dedicado a cada fase (deben sumar 100; los silencios se miden aparte):
            - apertura: Saludo inicial, presentación
            - descubrimiento: Preguntas sobre necesidades del cliente
            - objecion: Momentos donde el cliente expresa dudas o resistencia
            - argumento: Vendedor explicando beneficios, características
            - cierre: Intento de cerrar la venta, negociación final
-           - silencio: Pausas, silencios, momentos sin interacción clara
         
         2. CUSTOMER_CONFIDENCE: Score 0-100 del nivel de confianza/interés del cliente durante la conversación.
            Considera: tono, preguntas del cliente, engagement, respuestas positivas.
         
         3. VENDOR_METRICS: Evalúa al vendedor (cada uno 0-100):
-           - vendorTalkPercent: % estimado del tiempo que habla el vendedor vs cliente
            - activeListening: Qué tan bien escucha y responde a las necesidades
            - objectionHandling: Cómo maneja las objeciones del cliente
            - closingRhythm: Timing y efectividad en el intento de cierre
@@ -76,12 +110,10 @@ public class AdvancedAnalyzerService {
                 "descubrimiento": <int 0-100>,
                 "objecion": <int 0-100>,
                 "argumento": <int 0-100>,
-                "cierre": <int 0-100>,
-                "silencio": <int 0-100>
+                "cierre": <int 0-100>
             },
             "customerConfidence": <int 0-100>,
             "vendorMetrics": {
-                "vendorTalkPercent": <int 0-100>,
                 "activeListening": <int 0-100>,
                 "objectionHandling": <int 0-100>,
                 "closingRhythm": <int 0-100>,
@@ -102,52 +134,86 @@ public class AdvancedAnalyzerService {
         TRANSCRIPCIÓN A ANALIZAR:
         """;
     
+    // Métricas y formato del prompt avanzado, para pedirlas junto con el análisis básico (modo combinado)
+    static final String ADVANCED_METRICS_SPEC = ADVANCED_ANALYSIS_PROMPT.substring(
+            ADVANCED_ANALYSIS_PROMPT.indexOf("1. CONVERSATION_FLOW"),
+            ADVANCED_ANALYSIS_PROMPT.indexOf("TRANSCRIPCIÓN A ANALIZAR:")).strip();
+    
     public AdvancedAnalyzerService(
             AdvancedAnalysisRepository advancedAnalysisRepository,
             TranscriptionRepository transcriptionRepository,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            LlmClient llmClient,
+            AnalysisExecutor analysisExecutor,
+            OpenAiBatchClient batchClient,
+            TranscriptTurnService turnService,
+            SystemConfigRepository configRepository) {
         this.advancedAnalysisRepository = advancedAnalysisRepository;
         this.transcriptionRepository = transcriptionRepository;
         this.objectMapper = objectMapper;
+        this.llmClient = llmClient;
+        this.analysisExecutor = analysisExecutor;
+        this.batchClient = batchClient;
+        this.turnService = turnService;
+        this.configRepository = configRepository;
     }
     
     /**
      * Analiza una transcripción individual con el prompt avanzado
      */
     public AdvancedAnalysis analyzeTranscription(Transcription transcription) {
-        if (openaiApiKey == null || openaiApiKey.isEmpty()) {
+        if (!llmClient.isConfigured()) {
             logger.warn("OpenAI API key not configured");
             return null;
         }
         
         try {
-            OpenAiService service = new OpenAiService(openaiApiKey, Duration.ofSeconds(120));
-            
-            String fullPrompt = ADVANCED_ANALYSIS_PROMPT + "\n\n" + transcription.getTranscriptionText();
-            
-            ChatCompletionRequest request = ChatCompletionRequest.builder()
-                    .model("gpt-4o-mini")
-                    .messages(List.of(
-                            new ChatMessage("system", "Eres un analista experto en conversaciones de venta. Responde solo con JSON válido."),
-                            new ChatMessage("user", fullPrompt)
-                    ))
-                    .temperature(0.3)
-                    .maxTokens(1000)
-                    .build();
-            
-            String response = service.createChatCompletion(request)
-                    .getChoices().get(0).getMessage().getContent();
-            
-            logger.info("Advanced analysis response received for {}", transcription.getRecordingId());
-            
+            String response = requestAnalysis(transcription);
             return parseAndSaveAnalysis(transcription.getRecordingId(), response);
             
         } catch (Exception e) {
+            RateLimitedException.rethrowIfRateLimited(e);
             logger.error("Error in advanced analysis for {}: {}", transcription.getRecordingId(), e.getMessage());
             return null;
         }
     }
     
+    /**
+     * Llamada a GPT con el prompt avanzado. No toca la base, así puede correr en los workers de AnalysisExecutor.
+     * @return el texto de la respuesta, sin parsear
+     */
+    private String requestAnalysis(Transcription transcription) throws InterruptedException {
+        String fullPrompt = ADVANCED_ANALYSIS_PROMPT + "\n\n" + transcription.getTranscriptionText();
+        
+        ChatCompletionRequest request = ChatCompletionRequest.builder()
+                .model(ADVANCED_MODEL)
+                .messages(List.of(
+                        new ChatMessage("system", ADVANCED_SYSTEM_PROMPT),
+                        new ChatMessage("user", fullPrompt)
+                ))
+                .temperature(ADVANCED_TEMPERATURE)
+                .maxTokens(ADVANCED_MAX_TOKENS)
+                .build();
+        
+        int estimatedTokens = fullPrompt.length() / 4 + ADVANCED_MAX_TOKENS;
+        try {
+            ChatCompletionResult completion = llmClient.createChatCompletion(request, estimatedTokens);
+            String response = completion.getChoices().get(0).getMessage().getContent();
+            logger.info("Advanced analysis response received for {}", transcription.getRecordingId());
+            return response;
+        } catch (RuntimeException e) {
+            RateLimitedException.rethrowIfRateLimited(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Guarda las métricas avanzadas que vinieron en la respuesta del análisis combinado.
+     */
+    public AdvancedAnalysis saveCombinedAnalysis(String recordingId, String advancedJson) {
+        return parseAndSaveAnalysis(recordingId, advancedJson);
+    }
+    
     /**
      * Parsea la respuesta de GPT y guarda en la base de datos
      */
@@ -179,7 +245,6 @@ public class AdvancedAnalyzerService {
                 analysis.setObjecionPercent(getIntValue(flow, "objecion", 0));
                 analysis.setArgumentoPercent(getIntValue(flow, "argumento", 0));
                 analysis.setCierrePercent(getIntValue(flow, "cierre", 0));
-                analysis.setSilencioPercent(getIntValue(flow, "silencio", 0));
             }
             
             // Customer Confidence
@@ -188,7 +253,6 @@ public class AdvancedAnalyzerService {
             // Vendor Metrics
             JsonNode vendor = root.get("vendorMetrics");
             if (vendor != null) {
-                analysis.setVendorTalkPercent(getIntValue(vendor, "vendorTalkPercent", 50));
                 analysis.setActiveListeningScore(getIntValue(vendor, "activeListening", 50));
                 analysis.setObjectionHandlingScore(getIntValue(vendor, "objectionHandling", 50));
                 analysis.setClosingRhythmScore(getIntValue(vendor, "closingRhythm", 50));
@@ -215,10 +279,21 @@ public class AdvancedAnalyzerService {
                 }
             }
             
+            // Parte del vendedor y silencios: medidos con los tiempos de la transcripción, no estimados por GPT
+            TranscriptTurnService.LocalMetrics local = turnService.getLocalMetrics(recordingId);
+            analysis.setVendorTalkPercent(local.vendorTalkPercent());
+            analysis.setSilencioPercent(local.silencePercent());
+            if (analysis.getAbandonMinute() != null && local.durationMs() != null) {
+                int lastMinute = (int) (local.durationMs() / 60000);
+                analysis.setAbandonMinute(Math.max(0, Math.min(analysis.getAbandonMinute(), lastMinute)));
+            }
+            
             analysis.setAnalyzedAt(LocalDateTime.now());
             analysis.setRawAnalysisJson(cleanJson);
             
-            return advancedAnalysisRepository.save(analysis);
+            AdvancedAnalysis saved = advancedAnalysisRepository.save(analysis);
+            invalidateMetrics();
+            return saved;
             
         } catch (Exception e) {
             logger.error("Error parsing advanced analysis for {}: {}", recordingId, e.getMessage());
@@ -242,42 +317,22 @@ public class AdvancedAnalyzerService {
         
         executor.execute(() -> {
             try {
-                // Obtener transcripciones que no tienen análisis avanzado
-                List<Transcription> allTranscriptions = transcriptionRepository.findAll();
-                List<String> analyzedIds = advancedAnalysisRepository.findAll()
-                        .stream().map(AdvancedAnalysis::getRecordingId).toList();
-                
-                List<Transcription> toAnalyze = allTranscriptions.stream()
-                        .filter(t -> !analyzedIds.contains(t.getRecordingId()))
-                        .filter(t -> t.getTranscriptionText() != null && !t.getTranscriptionText().isEmpty())
-                        .toList();
-                
-                int total = toAnalyze.size();
-                int current = 0;
-                int success = 0;
+                // Transcripciones con texto que no tienen análisis avanzado
+                int total = (int) transcriptionRepository.countMissingAdvancedAnalysis();
                 
                 sendEvent(emitter, "start", null, "Iniciando análisis avanzado de " + total + " transcripciones", 0, total);
                 
-                for (Transcription transcription : toAnalyze) {
-                    current++;
-                    
-                    sendEvent(emitter, "progress", transcription.getRecordingId(), 
-                            "Analizando: " + transcription.getUserName(), current, total);
-                    
-                    AdvancedAnalysis result = analyzeTranscription(transcription);
-                    if (result != null) {
-                        success++;
-                    }
-                    
-                    // Pequeña pausa para no saturar la API
-                    Thread.sleep(500);
-                }
+                int[] counts = batchClient.isEnabled() && total > 0
+                        ? runOpenAiBatch(emitter)
+                        : runMissingPages(emitter, total);
+                int success = counts[0];
+                int failed = counts[1];
                 
                 // Resultado final
                 Map<String, Object> result = new HashMap<>();
                 result.put("total", total);
                 result.put("success", success);
-                result.put("failed", total - success);
+                result.put("failed", failed);
                 
                 sendEvent(emitter, "complete", null, "Análisis completado", total, total);
                 
@@ -303,7 +358,183 @@ public class AdvancedAnalyzerService {
         return emitter;
     }
     
+    /**
+     * Analiza las transcripciones faltantes página por página.
+     * @return {éxitos, errores}
+     */
+    private int[] runMissingPages(SseEmitter emitter, int total) {
+        int[] counts = new int[2];
+        forEachMissingPage(page -> {
+            AnalysisExecutor.BatchResult batch = runBatch(emitter, page, counts[0] + counts[1], total);
+            counts[0] += batch.getSuccess();
+            counts[1] += batch.getErrors();
+        });
+        return counts;
+    }
+    
+    /**
+     * Recorre por páginas las transcripciones con texto y sin análisis avanzado (por recordingId, sin OFFSET),
+     * así nunca hay más de una página de textos en memoria.
+     */
+    private void forEachMissingPage(MissingPageHandler handler) {
+        String afterId = "";
+        while (true) {
+            List<String> ids = transcriptionRepository.findIdsMissingAdvancedAnalysis(afterId,
+                    PageRequest.of(0, MISSING_PAGE_SIZE));
+            if (ids.isEmpty()) {
+                return;
+            }
+            handler.accept(transcriptionRepository.findAllById(ids));
+            if (ids.size() < MISSING_PAGE_SIZE) {
+                return;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+    
+    private interface MissingPageHandler {
+        void accept(List<Transcription> page);
+    }
+    
+    /**
+     * Analiza en paralelo (con el límite de tasa compartido) y emite un evento por cada transcripción terminada.
+     * Los workers solo llaman a GPT; cada respuesta se parsea y se guarda en este hilo, como en la importación.
+     * @param offset transcripciones ya procesadas en páginas anteriores, para el progreso
+     */
+    private AnalysisExecutor.BatchResult runBatch(SseEmitter emitter, List<Transcription> transcriptions,
+                                                  int offset, int total) {
+        return analysisExecutor.runAll(transcriptions, this::requestAnalysis,
+                (transcription, response, completed, pageTotal, error) -> {
+                    String id = transcription.getRecordingId();
+                    AdvancedAnalysis analysis = null;
+                    if (error != null) {
+                        logger.error("Error in advanced analysis for {}: {}", id, error.getMessage());
+                    } else {
+                        analysis = parseAndSaveAnalysis(id, response);
+                    }
+                    sendEvent(emitter, "progress", id,
+                            (analysis != null ? "Analizado: " : "Error: ") + transcription.getUserName(), offset + completed, total);
+                    if (error == null && analysis == null) {
+                        throw new IllegalStateException("Sin resultado para " + id);
+                    }
+                });
+    }
+    
+    /**
+     * Retoma el lote de OpenAI que quedó en curso cuando se detuvo la aplicación: espera a que termine
+     * y guarda sus resultados, en lugar de perderlo y volver a pagar esas transcripciones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOpenAiBatch() {
+        Optional<String> batchId = configRepository.findValue(BATCH_ID_KEY);
+        if (batchId.isEmpty() || !batchClient.isEnabled()) {
+            return;
+        }
+        logger.info("Resuming advanced analysis OpenAI batch {}", batchId.get());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> {
+            try {
+                int[] counts = runOpenAiBatch(null);
+                logger.info("Resumed advanced analysis batch done: {} analyzed, {} failed", counts[0], counts[1]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Error resuming advanced analysis batch: {}", e.getMessage());
+            } finally {
+                executor.shutdown();
+            }
+        });
+    }
+    
+    /**
+     * Modo lote: envía todas las transcripciones a la Batch API de OpenAI y guarda cada resultado a medida que se lee.
+     * Las que fallen quedan sin análisis avanzado y se toman en la próxima corrida.
+     * El id del lote queda guardado hasta aplicar sus resultados: si hay uno pendiente se retoma en lugar de enviar otro.
+     * @param emitter cliente SSE a informar; null al retomar en el arranque
+     * @return {éxitos, errores}
+     */
+    private int[] runOpenAiBatch(SseEmitter emitter) throws IOException, InterruptedException {
+        synchronized (openAiBatchLock) {
+            int[] total = {0};
+            String batchId = configRepository.findValue(BATCH_ID_KEY).orElse(null);
+            if (batchId == null) {
+                try (OpenAiBatchClient.BatchInput input = batchClient.newInput()) {
+                    // El archivo del lote se escribe en disco página por página
+                    forEachMissingPage(page -> {
+                        for (Transcription transcription : page) {
+                            try {
+                                input.add(transcription.getRecordingId(), buildRequestBody(transcription));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    });
+                    total[0] = input.size();
+                    if (total[0] == 0) {
+                        return new int[2];
+                    }
+                    batchId = batchClient.submit(input);
+                }
+                configRepository.save(new SystemConfig(BATCH_ID_KEY, batchId, "Lote de OpenAI del análisis avanzado en curso"));
+                sendEvent(emitter, "progress", null, "Lote enviado a OpenAI: " + total[0] + " transcripciones", 0, total[0]);
+            } else {
+                logger.info("Waiting for pending advanced analysis OpenAI batch {}", batchId);
+                sendEvent(emitter, "progress", null, "Retomando lote de OpenAI en curso", 0, 0);
+            }
+            
+            OpenAiBatchClient.BatchStatus status = batchClient.awaitCompletion(batchId, polled -> {
+                // Al retomar, el total sale del lote
+                total[0] = Math.max(total[0], polled.total());
+                sendEvent(emitter, "progress", null,
+                        "Lote " + polled.status() + ": " + polled.completed() + "/" + polled.total() + " resueltas por OpenAI",
+                        0, total[0]);
+            });
+            int[] counts = readOpenAiBatchResults(emitter, status, Math.max(total[0], status.total()));
+            configRepository.deleteById(BATCH_ID_KEY);
+            return counts;
+        }
+    }
+    
+    private int[] readOpenAiBatchResults(SseEmitter emitter, OpenAiBatchClient.BatchStatus status, int total)
+            throws IOException, InterruptedException {
+        int[] counts = new int[2];
+        for (String fileId : new String[] {status.outputFileId(), status.errorFileId()}) {
+            if (fileId == null) {
+                continue;
+            }
+            batchClient.readResults(fileId, line -> {
+                AdvancedAnalysis analysis = line.isSuccess() ? parseAndSaveAnalysis(line.customId(), line.content()) : null;
+                if (analysis != null) {
+                    counts[0]++;
+                } else {
+                    counts[1]++;
+                    logger.warn("Advanced batch result failed for {}: {}", line.customId(), line.error());
+                }
+                sendEvent(emitter, "progress", line.customId(),
+                        (analysis != null ? "Analizado: " : "Error: ") + line.customId(), counts[0] + counts[1], total);
+            });
+        }
+        // Lo que no volvió en el lote (vencido o cancelado) cuenta como error
+        counts[1] = total - counts[0];
+        return counts;
+    }
+    
+    private Map<String, Object> buildRequestBody(Transcription transcription) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", ADVANCED_MODEL);
+        body.put("messages", List.of(
+                Map.of("role", "system", "content", ADVANCED_SYSTEM_PROMPT),
+                Map.of("role", "user", "content", ADVANCED_ANALYSIS_PROMPT + "\n\n" + transcription.getTranscriptionText())
+        ));
+        body.put("temperature", ADVANCED_TEMPERATURE);
+        body.put("max_tokens", ADVANCED_MAX_TOKENS);
+        return body;
+    }
+    
     private void sendEvent(SseEmitter emitter, String type, String id, String message, int current, int total) {
+        if (emitter == null) {
+            return;
+        }
         try {
             Map<String, Object> data = new HashMap<>();
             data.put("type", type);
@@ -316,228 +547,178 @@ public class AdvancedAnalyzerService {
             emitter.send(SseEmitter.event()
                     .name("progress")
                     .data(objectMapper.writeValueAsString(data)));
-        } catch (IOException e) {
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException: el emitter ya venció (los lotes pueden tardar más que el timeout)
             logger.warn("Error sending SSE event: {}", e.getMessage());
         }
     }
     
     /**
-     * Obtiene métricas agregadas para el dashboard de recomendaciones
+     * Obtiene métricas agregadas para el dashboard de recomendaciones.
+     * Se calculan con consultas agrupadas y quedan en cache hasta el próximo análisis guardado.
      */
     public Map<String, Object> getAggregatedMetrics() {
-        List<AdvancedAnalysis> analyses = advancedAnalysisRepository.findAll();
-        List<Transcription> transcriptions = transcriptionRepository.findAll();
+        Map<String, Object> metrics = new HashMap<>(cached(aggregatedCache, this::computeAggregatedMetrics,
+                value -> aggregatedCache = value));
+        // El total cambia con cada importación: se cuenta siempre
+        metrics.put("totalCount", transcriptionRepository.count());
+        return metrics;
+    }
+    
+    private Map<String, Object> computeAggregatedMetrics() {
+        Object[] overall = advancedAnalysisRepository.getOverallMetrics().get(0);
+        long analyzedCount = toLong(overall[0]);
         
         Map<String, Object> metrics = new HashMap<>();
-        
-        if (analyses.isEmpty()) {
+        metrics.put("analyzedCount", analyzedCount);
+        if (analyzedCount == 0) {
             metrics.put("hasData", false);
-            metrics.put("analyzedCount", 0);
-            metrics.put("totalCount", transcriptions.size());
             return metrics;
         }
-        
         metrics.put("hasData", true);
-        metrics.put("analyzedCount", analyses.size());
-        metrics.put("totalCount", transcriptions.size());
         
         // Promedios generales de Conversation Flow
-        Map<String, Double> avgFlow = new HashMap<>();
-        avgFlow.put("apertura", analyses.stream().mapToInt(a -> a.getAperturaPercent() != null ? a.getAperturaPercent() : 0).average().orElse(0));
-        avgFlow.put("descubrimiento", analyses.stream().mapToInt(a -> a.getDescubrimientoPercent() != null ? a.getDescubrimientoPercent() : 0).average().orElse(0));
-        avgFlow.put("objecion", analyses.stream().mapToInt(a -> a.getObjecionPercent() != null ? a.getObjecionPercent() : 0).average().orElse(0));
-        avgFlow.put("argumento", analyses.stream().mapToInt(a -> a.getArgumentoPercent() != null ? a.getArgumentoPercent() : 0).average().orElse(0));
-        avgFlow.put("cierre", analyses.stream().mapToInt(a -> a.getCierrePercent() != null ? a.getCierrePercent() : 0).average().orElse(0));
-        avgFlow.put("silencio", analyses.stream().mapToInt(a -> a.getSilencioPercent() != null ? a.getSilencioPercent() : 0).average().orElse(0));
-        metrics.put("avgConversationFlow", avgFlow);
+        metrics.put("avgConversationFlow", flowMap(overall, 1));
+        // Análisis con silencio medido (el resto no entra en el promedio)
+        metrics.put("silencioSamples", toLong(overall[18]));
         
         // Customer Confidence promedio
-        metrics.put("avgCustomerConfidence", analyses.stream()
-                .mapToInt(a -> a.getCustomerConfidenceScore() != null ? a.getCustomerConfidenceScore() : 0)
-                .average().orElse(0));
+        metrics.put("avgCustomerConfidence", toDouble(overall[7]));
         
-        // Customer Confidence por sucursal - usar branchName
-        Map<String, String> recordingToBranch = new HashMap<>();
-        for (Transcription t : transcriptions) {
-            String branchName = t.getBranchName() != null ? t.getBranchName() : "desconocido";
-            recordingToBranch.put(t.getRecordingId(), branchName);
-        }
-        
-        Map<String, List<AdvancedAnalysis>> byBranch = analyses.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                        a -> recordingToBranch.getOrDefault(a.getRecordingId(), "desconocido")
-                ));
-        
-        List<Map<String, Object>> confidenceByBranch = byBranch.entrySet().stream()
-                .map(e -> {
+        // Customer Confidence por sucursal
+        metrics.put("confidenceByBranch", advancedAnalysisRepository.getConfidenceByBranch().stream()
+                .map(row -> {
                     Map<String, Object> branchData = new HashMap<>();
-                    branchData.put("branchName", e.getKey());
-                    branchData.put("avgConfidence", e.getValue().stream()
-                            .mapToInt(a -> a.getCustomerConfidenceScore() != null ? a.getCustomerConfidenceScore() : 0)
-                            .average().orElse(0));
-                    branchData.put("count", e.getValue().size());
+                    branchData.put("branchName", row[0]);
+                    branchData.put("avgConfidence", toDouble(row[1]));
+                    branchData.put("count", toLong(row[2]));
                     return branchData;
                 })
-                .sorted((a, b) -> Double.compare((double) b.get("avgConfidence"), (double) a.get("avgConfidence")))
-                .toList();
-        metrics.put("confidenceByBranch", confidenceByBranch);
+                .toList());
         
         // Vendor Metrics promedio
         Map<String, Double> avgVendor = new HashMap<>();
-        avgVendor.put("vendorTalkPercent", analyses.stream().mapToInt(a -> a.getVendorTalkPercent() != null ? a.getVendorTalkPercent() : 50).average().orElse(50));
-        avgVendor.put("activeListening", analyses.stream().mapToInt(a -> a.getActiveListeningScore() != null ? a.getActiveListeningScore() : 50).average().orElse(50));
-        avgVendor.put("objectionHandling", analyses.stream().mapToInt(a -> a.getObjectionHandlingScore() != null ? a.getObjectionHandlingScore() : 50).average().orElse(50));
-        avgVendor.put("closingRhythm", analyses.stream().mapToInt(a -> a.getClosingRhythmScore() != null ? a.getClosingRhythmScore() : 50).average().orElse(50));
-        avgVendor.put("empathy", analyses.stream().mapToInt(a -> a.getEmpathyScore() != null ? a.getEmpathyScore() : 50).average().orElse(50));
+        avgVendor.put("vendorTalkPercent", toDoubleOrNull(overall[8]));
+        avgVendor.put("activeListening", toDouble(overall[9]));
+        avgVendor.put("objectionHandling", toDouble(overall[10]));
+        avgVendor.put("closingRhythm", toDouble(overall[11]));
+        avgVendor.put("empathy", toDouble(overall[12]));
         metrics.put("avgVendorMetrics", avgVendor);
+        metrics.put("vendorTalkSamples", toLong(overall[19]));
         
         // Total de objeciones por tipo
-        Map<String, Integer> totalObjections = new HashMap<>();
-        totalObjections.put("explicit", analyses.stream().mapToInt(a -> a.getExplicitObjections() != null ? a.getExplicitObjections() : 0).sum());
-        totalObjections.put("implicit", analyses.stream().mapToInt(a -> a.getImplicitObjections() != null ? a.getImplicitObjections() : 0).sum());
-        totalObjections.put("unanswered", analyses.stream().mapToInt(a -> a.getUnansweredObjections() != null ? a.getUnansweredObjections() : 0).sum());
-        totalObjections.put("ineffective", analyses.stream().mapToInt(a -> a.getIneffectiveResponses() != null ? a.getIneffectiveResponses() : 0).sum());
+        Map<String, Long> totalObjections = new HashMap<>();
+        totalObjections.put("explicit", toLong(overall[13]));
+        totalObjections.put("implicit", toLong(overall[14]));
+        totalObjections.put("unanswered", toLong(overall[15]));
+        totalObjections.put("ineffective", toLong(overall[16]));
         metrics.put("totalObjections", totalObjections);
         
-        // Top Loss Moments (frases más comunes) - normalizar para agrupar similares
-        Map<String, List<AdvancedAnalysis>> phraseGroups = analyses.stream()
-                .filter(a -> a.getKeyAbandonPhrase() != null && !a.getKeyAbandonPhrase().isEmpty())
-                .collect(java.util.stream.Collectors.groupingBy(
-                        a -> a.getKeyAbandonPhrase().toLowerCase().trim()
-                ));
-        
-        List<Map<String, Object>> lossMoments = phraseGroups.entrySet().stream()
-                .sorted((a, b) -> Integer.compare(b.getValue().size(), a.getValue().size()))
-                .limit(5)
-                .map(e -> {
+        // Top Loss Moments (frases más comunes, agrupadas sin distinguir mayúsculas)
+        metrics.put("topLossMoments", advancedAnalysisRepository.getTopAbandonPhrases(PageRequest.of(0, TOP_LOSS_MOMENTS))
+                .stream()
+                .map(row -> {
                     Map<String, Object> moment = new HashMap<>();
-                    // Usar la frase original del primer elemento (con capitalización original)
-                    moment.put("phrase", e.getValue().get(0).getKeyAbandonPhrase());
-                    moment.put("count", e.getValue().size());
-                    // Calcular minuto promedio específico para esta frase
-                    double avgMin = e.getValue().stream()
-                            .filter(a -> a.getAbandonMinute() != null)
-                            .mapToInt(AdvancedAnalysis::getAbandonMinute)
-                            .average().orElse(0);
-                    moment.put("avgMinute", Math.round(avgMin * 10.0) / 10.0);
+                    moment.put("phrase", row[0]);
+                    moment.put("count", toLong(row[1]));
+                    moment.put("avgMinute", round1(toDouble(row[2])));
                     return moment;
                 })
-                .toList();
-        metrics.put("topLossMoments", lossMoments);
+                .toList());
         
         // Minuto promedio de abandono general
-        metrics.put("avgAbandonMinute", Math.round(analyses.stream()
-                .filter(a -> a.getAbandonMinute() != null)
-                .mapToInt(AdvancedAnalysis::getAbandonMinute)
-                .average().orElse(0) * 10.0) / 10.0);
+        metrics.put("avgAbandonMinute", round1(toDouble(overall[17])));
         
         return metrics;
     }
     
     /**
-     * Obtiene análisis por vendedor con datos separados por venta/no venta
+     * Obtiene métricas por vendedor (en cache hasta el próximo análisis guardado).
      */
     public List<Map<String, Object>> getMetricsByVendor() {
-        List<AdvancedAnalysis> analyses = advancedAnalysisRepository.findAll();
-        List<Transcription> transcriptions = transcriptionRepository.findAll();
-        
-        // Crear mapas de recordingId -> datos de transcripción
-        Map<String, String> recordingToUser = new HashMap<>();
-        Map<String, Boolean> recordingToSale = new HashMap<>();
-        
-        for (Transcription t : transcriptions) {
-            recordingToUser.put(t.getRecordingId(), t.getUserName() != null ? t.getUserName() : "Desconocido");
-            recordingToSale.put(t.getRecordingId(), Boolean.TRUE.equals(t.getSaleCompleted()));
-        }
-        
-        // Agrupar análisis por vendedor
-        Map<String, List<AdvancedAnalysis>> byVendor = analyses.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                        a -> recordingToUser.getOrDefault(a.getRecordingId(), "Desconocido")
-                ));
-        
-        return byVendor.entrySet().stream()
-                .map(e -> {
-                    String vendor = e.getKey();
-                    List<AdvancedAnalysis> vendorAnalyses = e.getValue();
-                    
-                    // Separar por venta/no venta
-                    List<AdvancedAnalysis> withSale = vendorAnalyses.stream()
-                            .filter(a -> Boolean.TRUE.equals(recordingToSale.get(a.getRecordingId())))
-                            .toList();
-                    List<AdvancedAnalysis> withoutSale = vendorAnalyses.stream()
-                            .filter(a -> !Boolean.TRUE.equals(recordingToSale.get(a.getRecordingId())))
-                            .toList();
-                    
+        return cached(byVendorCache, this::computeMetricsByVendor, value -> byVendorCache = value);
+    }
+    
+    private List<Map<String, Object>> computeMetricsByVendor() {
+        return advancedAnalysisRepository.getMetricsByVendor().stream()
+                .map(row -> {
                     Map<String, Object> vendorMetrics = new HashMap<>();
-                    vendorMetrics.put("userName", vendor);
-                    vendorMetrics.put("count", vendorAnalyses.size());
-                    
-                    // Promedios generales
-                    vendorMetrics.put("avgConfidence", vendorAnalyses.stream()
-                            .mapToInt(a -> a.getCustomerConfidenceScore() != null ? a.getCustomerConfidenceScore() : 0)
-                            .average().orElse(0));
-                    
+                    vendorMetrics.put("userName", row[0]);
+                    vendorMetrics.put("count", toLong(row[1]));
+                    vendorMetrics.put("avgConfidence", toDouble(row[2]));
                     // Confidence separado por venta/no venta
-                    vendorMetrics.put("avgConfidenceWithSale", withSale.stream()
-                            .mapToInt(a -> a.getCustomerConfidenceScore() != null ? a.getCustomerConfidenceScore() : 0)
-                            .average().orElse(0));
-                    vendorMetrics.put("avgConfidenceWithoutSale", withoutSale.stream()
-                            .mapToInt(a -> a.getCustomerConfidenceScore() != null ? a.getCustomerConfidenceScore() : 0)
-                            .average().orElse(0));
-                    
-                    vendorMetrics.put("avgActiveListening", vendorAnalyses.stream()
-                            .mapToInt(a -> a.getActiveListeningScore() != null ? a.getActiveListeningScore() : 0)
-                            .average().orElse(0));
-                    vendorMetrics.put("avgObjectionHandling", vendorAnalyses.stream()
-                            .mapToInt(a -> a.getObjectionHandlingScore() != null ? a.getObjectionHandlingScore() : 0)
-                            .average().orElse(0));
-                    vendorMetrics.put("avgClosingRhythm", vendorAnalyses.stream()
-                            .mapToInt(a -> a.getClosingRhythmScore() != null ? a.getClosingRhythmScore() : 0)
-                            .average().orElse(0));
-                    vendorMetrics.put("avgEmpathy", vendorAnalyses.stream()
-                            .mapToInt(a -> a.getEmpathyScore() != null ? a.getEmpathyScore() : 0)
-                            .average().orElse(0));
-                    
-                    // Conversation Flow promedio
-                    Map<String, Double> flow = new HashMap<>();
-                    flow.put("apertura", vendorAnalyses.stream().mapToInt(a -> a.getAperturaPercent() != null ? a.getAperturaPercent() : 0).average().orElse(0));
-                    flow.put("descubrimiento", vendorAnalyses.stream().mapToInt(a -> a.getDescubrimientoPercent() != null ? a.getDescubrimientoPercent() : 0).average().orElse(0));
-                    flow.put("objecion", vendorAnalyses.stream().mapToInt(a -> a.getObjecionPercent() != null ? a.getObjecionPercent() : 0).average().orElse(0));
-                    flow.put("argumento", vendorAnalyses.stream().mapToInt(a -> a.getArgumentoPercent() != null ? a.getArgumentoPercent() : 0).average().orElse(0));
-                    flow.put("cierre", vendorAnalyses.stream().mapToInt(a -> a.getCierrePercent() != null ? a.getCierrePercent() : 0).average().orElse(0));
-                    flow.put("silencio", vendorAnalyses.stream().mapToInt(a -> a.getSilencioPercent() != null ? a.getSilencioPercent() : 0).average().orElse(0));
-                    vendorMetrics.put("conversationFlow", flow);
-                    
+                    vendorMetrics.put("avgConfidenceWithSale", toDouble(row[3]));
+                    vendorMetrics.put("avgConfidenceWithoutSale", toDouble(row[4]));
+                    vendorMetrics.put("avgActiveListening", toDouble(row[5]));
+                    vendorMetrics.put("avgObjectionHandling", toDouble(row[6]));
+                    vendorMetrics.put("avgClosingRhythm", toDouble(row[7]));
+                    vendorMetrics.put("avgEmpathy", toDouble(row[8]));
+                    vendorMetrics.put("conversationFlow", flowMap(row, 9));
+                    vendorMetrics.put("silencioSamples", toLong(row[15]));
                     return vendorMetrics;
                 })
-                .sorted((a, b) -> Integer.compare((int) b.get("count"), (int) a.get("count")))
                 .toList();
     }
     
+    /**
+     * Descarta las métricas en cache. Se llama al guardar o borrar análisis, y cuando cambia
+     * el resultado de venta de una transcripción.
+     */
+    public void invalidateMetrics() {
+        metricsGeneration.incrementAndGet();
+    }
+    
+    // Valor en cache si no hubo escrituras desde que se calculó y no venció (cambios hechos desde otra instancia)
+    private <T> T cached(CachedMetrics<T> current, java.util.function.Supplier<T> compute,
+                         java.util.function.Consumer<CachedMetrics<T>> store) {
+        long generation = metricsGeneration.get();
+        long now = System.nanoTime();
+        if (current != null && current.generation() == generation
+                && now - current.loadedAtNanos() < TimeUnit.SECONDS.toNanos(metricsCacheSeconds)) {
+            return current.value();
+        }
+        T value = compute.get();
+        store.accept(new CachedMetrics<>(value, generation, now));
+        return value;
+    }
+    
+    // Seis porcentajes del flujo de conversación a partir de la columna first (silencio null si no hay medidos)
+    private static Map<String, Double> flowMap(Object[] row, int first) {
+        Map<String, Double> flow = new HashMap<>();
+        flow.put("apertura", toDouble(row[first]));
+        flow.put("descubrimiento", toDouble(row[first + 1]));
+        flow.put("objecion", toDouble(row[first + 2]));
+        flow.put("argumento", toDouble(row[first + 3]));
+        flow.put("cierre", toDouble(row[first + 4]));
+        flow.put("silencio", toDoubleOrNull(row[first + 5]));
+        return flow;
+    }
+    
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0;
+    }
+    
+    private static Double toDoubleOrNull(Object value) {
+        return value != null ? ((Number) value).doubleValue() : null;
+    }
+    
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+    
+    private static double round1(double value) {
+        return Math.round(value * 10.0) / 10.0;
+    }
+    
     /**
      * Obtiene lista de transcripciones sin análisis avanzado
      */
-    public List<Map<String, Object>> getMissingAnalyses() {
-        List<Transcription> allTranscriptions = transcriptionRepository.findAll();
-        List<String> analyzedIds = advancedAnalysisRepository.findAll()
-                .stream().map(AdvancedAnalysis::getRecordingId).toList();
-        
-        return allTranscriptions.stream()
-                .filter(t -> !analyzedIds.contains(t.getRecordingId()))
-                .map(t -> {
-                    Map<String, Object> info = new HashMap<>();
-                    info.put("recordingId", t.getRecordingId());
-                    info.put("userName", t.getUserName());
-                    info.put("hasText", t.getTranscriptionText() != null && !t.getTranscriptionText().isEmpty());
-                    info.put("textLength", t.getTranscriptionText() != null ? t.getTranscriptionText().length() : 0);
-                    return info;
-                })
-                .toList();
+    public List<MissingAnalysisDTO> getMissingAnalyses() {
+        return transcriptionRepository.findMissingAdvancedAnalyses();
     }
     
     /**
-     * Reintenta análisis de transcripciones faltantes (incluye las que tienen texto vacío)
+     * Reintenta análisis de transcripciones faltantes (las que tienen texto)
      */
     public SseEmitter retryMissingAnalyses() {
         SseEmitter emitter = new SseEmitter(600000L);
@@ -545,38 +726,16 @@ public class AdvancedAnalyzerService {
         
         executor.execute(() -> {
             try {
-                List<Transcription> allTranscriptions = transcriptionRepository.findAll();
-                List<String> analyzedIds = advancedAnalysisRepository.findAll()
-                        .stream().map(AdvancedAnalysis::getRecordingId).toList();
-                
-                List<Transcription> missing = allTranscriptions.stream()
-                        .filter(t -> !analyzedIds.contains(t.getRecordingId()))
-                        .filter(t -> t.getTranscriptionText() != null && !t.getTranscriptionText().isEmpty())
-                        .toList();
-                
-                int total = missing.size();
-                int current = 0;
-                int success = 0;
+                int total = (int) transcriptionRepository.countMissingAdvancedAnalysis();
                 
                 sendEvent(emitter, "start", null, "Reintentando " + total + " transcripciones faltantes", 0, total);
                 
-                for (Transcription transcription : missing) {
-                    current++;
-                    sendEvent(emitter, "progress", transcription.getRecordingId(), 
-                            "Analizando: " + transcription.getUserName(), current, total);
-                    
-                    AdvancedAnalysis result = analyzeTranscription(transcription);
-                    if (result != null) {
-                        success++;
-                    }
-                    
-                    Thread.sleep(500);
-                }
+                int[] counts = runMissingPages(emitter, total);
                 
                 Map<String, Object> result = new HashMap<>();
                 result.put("total", total);
-                result.put("success", success);
-                result.put("failed", total - success);
+                result.put("success", counts[0]);
+                result.put("failed", counts[1]);
                 
                 sendEvent(emitter, "complete", null, "Reintento completado", total, total);
                 
@@ -608,6 +767,7 @@ public class AdvancedAnalyzerService {
     public long clearAllAnalyses() {
         long count = advancedAnalysisRepository.count();
         advancedAnalysisRepository.deleteAll();
+        invalidateMetrics();
         logger.info("Deleted {} advanced analyses", count);
         return count;
     }
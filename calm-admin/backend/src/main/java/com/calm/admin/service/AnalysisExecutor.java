@@ -0,0 +1,171 @@
+package com.calm.admin.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool compartido para los análisis con GPT.
+ *
+ * Mantiene hasta {@code openai.analysis.concurrency} requests en vuelo; el ritmo real lo
+ * marca {@link TokenBucketRateLimiter}. Ante un 429 pausa el limitador y reintenta con
+ * backoff exponencial. Los workers solo hacen la llamada a la API: el resultado y el progreso
+ * se entregan siempre en el hilo que llamó a {@link #runAll}, así las escrituras quedan en su
+ * transacción y los eventos SSE salen de un solo hilo.
+ */
+@Service
+public class AnalysisExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisExecutor.class);
+
+    private static final long BASE_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 60000;
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final ExecutorService workers;
+
+    @Value("${openai.analysis.max-retries:5}")
+    private int maxRetries;
+
+    public AnalysisExecutor(TokenBucketRateLimiter rateLimiter,
+                            @Value("${openai.analysis.concurrency:4}") int concurrency) {
+        this.rateLimiter = rateLimiter;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+            Thread t = new Thread(r, "gpt-analysis-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Trabajo a ejecutar por cada ítem. Si lanza excepción el ítem cuenta como error.
+     */
+    @FunctionalInterface
+    public interface Task<T, R> {
+        R run(T item) throws Exception;
+    }
+
+    /**
+     * Recibe el resultado de cada ítem a medida que termina (en orden de finalización).
+     * Si el listener lanza excepción el ítem pasa a contar como error.
+     * @param error null si el ítem terminó bien
+     */
+    @FunctionalInterface
+    public interface ProgressListener<T, R> {
+        void onItemDone(T item, R result, int completed, int total, Exception error) throws Exception;
+    }
+
+    /**
+     * Resultado de una corrida.
+     */
+    public static class BatchResult {
+        private final int total;
+        private int success;
+        private int errors;
+
+        BatchResult(int total) {
+            this.total = total;
+        }
+
+        public int getTotal() { return total; }
+        public int getSuccess() { return success; }
+        public int getErrors() { return errors; }
+    }
+
+    private record Outcome<T, R>(T item, R result, Exception error) {}
+
+    /**
+     * Ejecuta {@code task} sobre todos los ítems y espera a que terminen.
+     */
+    public <T, R> BatchResult runAll(List<T> items, Task<T, R> task, ProgressListener<T, R> listener) {
+        BatchResult result = new BatchResult(items.size());
+        if (items.isEmpty()) {
+            return result;
+        }
+
+        CompletionService<Outcome<T, R>> completion = new ExecutorCompletionService<>(workers);
+        List<Future<Outcome<T, R>>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(completion.submit(() -> runWithRetry(item, task)));
+        }
+
+        int completed = 0;
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                Outcome<T, R> outcome;
+                try {
+                    outcome = completion.take().get();
+                } catch (ExecutionException e) {
+                    // runWithRetry no lanza; esto solo ocurre ante errores inesperados del ejecutor
+                    log.error("Unexpected error in analysis worker: {}", e.getMessage());
+                    result.errors++;
+                    completed++;
+                    continue;
+                }
+                completed++;
+                Exception error = outcome.error();
+                if (listener != null) {
+                    try {
+                        listener.onItemDone(outcome.item(), outcome.result(), completed, items.size(), error);
+                    } catch (Exception e) {
+                        log.error("Error handling analysis result: {}", e.getMessage());
+                        error = error != null ? error : e;
+                    }
+                }
+                if (error == null) {
+                    result.success++;
+                } else {
+                    result.errors++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            log.warn("Analysis batch interrupted after {} of {} items", completed, items.size());
+        }
+
+        return result;
+    }
+
+    private <T, R> Outcome<T, R> runWithRetry(T item, Task<T, R> task) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new Outcome<>(item, task.run(item), null);
+            } catch (RateLimitedException e) {
+                if (attempt >= maxRetries) {
+                    log.error("Giving up after {} rate-limited attempts", attempt + 1);
+                    return new Outcome<>(item, null, e);
+                }
+                long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << attempt);
+                backoff += ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+                rateLimiter.pause(Duration.ofMillis(backoff));
+                log.info("Rate limited, retry {}/{} in {} ms", attempt + 1, maxRetries, backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Outcome<>(item, null, e);
+            } catch (Exception e) {
+                return new Outcome<>(item, null, e);
+            }
+        }
+    }
+}
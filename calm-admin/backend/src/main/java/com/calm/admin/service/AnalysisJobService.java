@@ -0,0 +1,681 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.AnalysisJob;
+import com.calm.admin.model.AnalysisJobItem;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.AnalysisJobItemRepository;
+import com.calm.admin.repository.AnalysisJobRepository;
+import com.calm.admin.repository.TranscriptionRepository;
+import com.calm.admin.service.ChatGPTAnalyzerService.AnalysisSource;
+import com.calm.admin.service.ChatGPTAnalyzerService.CachedAnalysis;
+import com.calm.admin.service.ChatGPTAnalyzerService.PreparedAnalysis;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Trabajos largos persistidos: sincronización con S3 + análisis, y re-análisis completo.
+ *
+ * Cada transcripción a analizar es un {@link AnalysisJobItem} que se toma con lease, así que
+ * un reinicio solo pierde los ítems que estaban en vuelo. Al arrancar la aplicación se retoman
+ * los trabajos que quedaron a medias. Hay un solo trabajo activo por tipo: pedir otro devuelve
+ * el que ya está corriendo. Los clientes SSE se conectan y reconectan vía {@link JobProgressBroadcaster};
+ * los eventos mantienen los nombres y campos que ya consume el frontend.
+ */
+@Service
+public class AnalysisJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisJobService.class);
+
+    private static final long BATCH_LEASE_HOURS = 25; // ventana de completado de OpenAI (24h) con margen
+
+    private static final List<String> ACTIVE_STATUSES =
+            List.of(AnalysisJob.STATUS_PENDING, AnalysisJob.STATUS_RUNNING);
+
+    private final AnalysisJobRepository jobRepository;
+    private final AnalysisJobItemRepository itemRepository;
+    private final TranscriptionRepository transcriptionRepository;
+    private final TranscriptionService transcriptionService;
+    private final AnalysisExecutor analysisExecutor;
+    private final JobProgressBroadcaster broadcaster;
+    private final OpenAiBatchClient batchClient;
+
+    // Un trabajo a la vez: sync y re-análisis compiten por el mismo cupo de la API
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "analysis-job-runner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Identifica los leases de este proceso; los de procesos anteriores se liberan al retomar
+    private final String leaseOwner = UUID.randomUUID().toString();
+
+    @Value("${jobs.lease-batch-size:20}")
+    private int leaseBatchSize;
+
+    @Value("${jobs.lease-minutes:10}")
+    private long leaseMinutes;
+
+    @Value("${jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    public AnalysisJobService(AnalysisJobRepository jobRepository,
+                              AnalysisJobItemRepository itemRepository,
+                              TranscriptionRepository transcriptionRepository,
+                              TranscriptionService transcriptionService,
+                              AnalysisExecutor analysisExecutor,
+                              JobProgressBroadcaster broadcaster,
+                              OpenAiBatchClient batchClient) {
+        this.jobRepository = jobRepository;
+        this.itemRepository = itemRepository;
+        this.transcriptionRepository = transcriptionRepository;
+        this.transcriptionService = transcriptionService;
+        this.analysisExecutor = analysisExecutor;
+        this.broadcaster = broadcaster;
+        this.batchClient = batchClient;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * Inicia una sincronización (importación + análisis), o devuelve la que ya está en curso.
+     */
+    public AnalysisJob startSync(boolean rescan) {
+        return startOrJoin(AnalysisJob.TYPE_SYNC, rescan);
+    }
+
+    /**
+     * Inicia un re-análisis de todas las transcripciones, o devuelve el que ya está en curso.
+     */
+    public AnalysisJob startReanalyzeAll() {
+        return startOrJoin(AnalysisJob.TYPE_REANALYZE_ALL, false);
+    }
+
+    public Optional<AnalysisJob> getJob(Long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    public List<AnalysisJob> getRecentJobs() {
+        return jobRepository.findTop20ByOrderByCreatedAtDesc();
+    }
+
+    /**
+     * Conecta un cliente SSE al trabajo. Si ya terminó recibe el estado final y se cierra.
+     * El estado se vuelve a leer al conectar, para que no quede atrás de los eventos ya publicados.
+     */
+    public SseEmitter attach(AnalysisJob job) {
+        return broadcaster.attach(job.getId(), () -> jobRepository.findById(job.getId()).orElse(job),
+                AnalysisJob::isFinished);
+    }
+
+    /**
+     * Retoma los trabajos que quedaron pendientes o corriendo cuando se detuvo la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (AnalysisJob job : jobRepository.findByStatusInOrderByCreatedAtAsc(ACTIVE_STATUSES)) {
+            int released = itemRepository.releaseForeignLeases(job.getId(), leaseOwner);
+            log.info("Resuming {} job {} (phase {}, {} leased items released)",
+                    job.getType(), job.getId(), job.getPhase(), released);
+            runner.execute(() -> run(job.getId()));
+        }
+    }
+
+    private synchronized AnalysisJob startOrJoin(String type, boolean rescan) {
+        Optional<AnalysisJob> active = jobRepository.findFirstByTypeAndStatusInOrderByCreatedAtDesc(type, ACTIVE_STATUSES);
+        if (active.isPresent()) {
+            log.info("{} job {} already active, attaching to it", type, active.get().getId());
+            return active.get();
+        }
+
+        AnalysisJob job = new AnalysisJob(type);
+        job.setRescan(rescan);
+        job.setMessage("En cola");
+        job = jobRepository.save(job);
+        log.info("Created {} job {}", type, job.getId());
+
+        Long jobId = job.getId();
+        runner.execute(() -> run(jobId));
+        return job;
+    }
+
+    /**
+     * Estado mutable de una corrida; el trabajo se re-asigna en cada guardado.
+     */
+    private class JobRun {
+        private AnalysisJob job;
+
+        JobRun(AnalysisJob job) {
+            this.job = job;
+        }
+
+        Long id() {
+            return job.getId();
+        }
+
+        void checkpoint() {
+            job = jobRepository.save(job);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ItemCallback {
+        void onItem(Transcription transcription, AnalysisJobItem item, Exception error);
+    }
+
+    private void run(Long jobId) {
+        AnalysisJob loaded = jobRepository.findById(jobId).orElse(null);
+        if (loaded == null || loaded.isFinished()) {
+            return;
+        }
+        JobRun run = new JobRun(loaded);
+        try {
+            run.job.setStatus(AnalysisJob.STATUS_RUNNING);
+            if (run.job.getStartedAt() == null) {
+                run.job.setStartedAt(LocalDateTime.now());
+            }
+            run.checkpoint();
+
+            if (AnalysisJob.TYPE_SYNC.equals(run.job.getType())) {
+                runSync(run);
+            } else {
+                runReanalyzeAll(run);
+            }
+        } catch (Exception e) {
+            log.error("Job {} failed: {}", jobId, e.getMessage(), e);
+            run.job.setStatus(AnalysisJob.STATUS_FAILED);
+            run.job.setMessage("Error: " + e.getMessage());
+            run.job.setFinishedAt(LocalDateTime.now());
+            try { run.checkpoint(); } catch (Exception ignored) {}
+
+            if (AnalysisJob.TYPE_SYNC.equals(run.job.getType())) {
+                broadcaster.publish(jobId, "error", String.valueOf(e.getMessage()));
+            } else {
+                broadcaster.publish(jobId, "error", Map.of("message", "Error: " + e.getMessage()));
+            }
+        } finally {
+            broadcaster.complete(jobId);
+        }
+    }
+
+    // ===== Sincronización =====
+
+    private void runSync(JobRun run) {
+        Long jobId = run.id();
+
+        if (!AnalysisJob.PHASE_ANALYZE.equals(run.job.getPhase())) {
+            run.job.setPhase(AnalysisJob.PHASE_IMPORT);
+            run.checkpoint();
+            syncEvent(jobId, "phase", "import", "Buscando nuevas transcripciones en S3...", 0, 0);
+
+            final int[] totalToImport = {0};
+            TranscriptionImportPipeline.ImportResult importResult = transcriptionService.importNewRecordings(
+                    run.job.isRescan(), new TranscriptionImportPipeline.ProgressListener() {
+                        @Override
+                        public void onStart(int total) {
+                            totalToImport[0] = total;
+                            syncEvent(jobId, "import_start", null,
+                                    "Importando " + total + " transcripciones nuevas...", 0, total);
+                        }
+
+                        @Override
+                        public void onProgress(String recordingId, int processed, int total) {
+                            syncEvent(jobId, "import_progress", recordingId, "Importando: " + recordingId, processed, total);
+                        }
+                    });
+
+            run.job.setImported(run.job.getImported() + importResult.getImported());
+            syncEvent(jobId, "import_complete", null,
+                    "Importación completada: " + run.job.getImported() + " nuevas", run.job.getImported(), totalToImport[0]);
+
+            createItems(run, transcriptionRepository.findUnanalyzedRecordingIds());
+        }
+
+        int total = run.job.getTotal();
+        if (total > 0) {
+            syncEvent(jobId, "analyze_start", null,
+                    "Analizando " + total + " transcripciones con GPT...", run.job.getCompleted(), total);
+        }
+
+        boolean drained = processItems(run, (transcription, item, error) -> {
+            if (error == null) {
+                int analyzed = run.job.getCompleted();
+                syncEvent(jobId, "analyze_progress", item.getRecordingId(),
+                        "Analizando: " + (transcription.getUserName() != null ? transcription.getUserName() : item.getRecordingId())
+                        + " (" + analyzed + "/" + total + ")",
+                        analyzed, total);
+            }
+        });
+        if (!drained) {
+            log.info("Sync job {} interrupted, it will resume on next start", jobId);
+            return;
+        }
+
+        finish(run);
+        int imported = run.job.getImported();
+        int analyzed = run.job.getCompleted();
+        log.info("Sync job {} complete: {} imported, {} analyzed, {} errors ({} from cache, {} unchanged, {} API calls)",
+                jobId, imported, analyzed, run.job.getFailed(),
+                run.job.getCacheHits(), run.job.getUnchanged(), run.job.getApiCalls());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("imported", imported);
+        result.put("analyzed", analyzed);
+        result.put("errors", run.job.getFailed());
+        result.put("cacheHits", run.job.getCacheHits());
+        result.put("unchanged", run.job.getUnchanged());
+        result.put("apiCalls", run.job.getApiCalls());
+        result.put("timestamp", LocalDateTime.now().toString());
+
+        if (total > 0) {
+            syncEvent(jobId, "complete", null,
+                    "Completado: " + imported + " importadas, " + analyzed + " analizadas", analyzed, total);
+        } else {
+            syncEvent(jobId, "complete", null,
+                    "Completado: " + imported + " importadas, sin pendientes de análisis", 0, 0);
+        }
+        broadcaster.publish(jobId, "result", result);
+    }
+
+    private void syncEvent(Long jobId, String type, String id, String message, int current, int total) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("jobId", jobId);
+        data.put("type", type);
+        data.put("id", id);
+        data.put("message", message);
+        data.put("current", current);
+        data.put("total", total);
+        data.put("percent", total > 0 ? Math.round((current * 100.0) / total) : 0);
+        broadcaster.publish(jobId, "progress", data);
+    }
+
+    // ===== Re-análisis completo =====
+
+    private void runReanalyzeAll(JobRun run) throws IOException {
+        Long jobId = run.id();
+
+        if (run.job.getPhase() == null) {
+            createItems(run, transcriptionRepository.findAllRecordingIds());
+            if (batchClient.isEnabled()) {
+                run.job.setPhase(AnalysisJob.PHASE_BATCH);
+                run.checkpoint();
+            }
+        }
+
+        int total = run.job.getTotal();
+        broadcaster.publish(jobId, "start", Map.of(
+                "jobId", jobId,
+                "message", "Iniciando re-análisis de " + total + " transcripciones",
+                "total", total
+        ));
+
+        ItemCallback progress = (transcription, item, error) -> {
+            int current = run.job.getCompleted() + run.job.getFailed();
+            String message;
+            if (error == null) {
+                log.info("Re-análisis {}/{} OK: {}", current, total, item.getRecordingId());
+                message = "Analizado: " + item.getRecordingId();
+            } else {
+                message = "Error: " + item.getRecordingId() + " - " + error.getMessage();
+            }
+            broadcaster.publish(jobId, "progress", Map.of(
+                    "current", current,
+                    "total", total,
+                    "recordingId", item.getRecordingId(),
+                    "userName", transcription != null && transcription.getUserName() != null ? transcription.getUserName() : "Desconocido",
+                    "message", message
+            ));
+        };
+
+        boolean drained = (!AnalysisJob.PHASE_BATCH.equals(run.job.getPhase()) || runBatchPhase(run, progress))
+                && processItems(run, progress);
+        if (!drained) {
+            log.info("Re-analysis job {} interrupted, it will resume on next start", jobId);
+            return;
+        }
+
+        finish(run);
+        log.info("Re-análisis completado: {} total, {} exitosos, {} errores ({} desde caché, {} sin cambios, {} llamadas a GPT)",
+                total, run.job.getCompleted(), run.job.getFailed(),
+                run.job.getCacheHits(), run.job.getUnchanged(), run.job.getApiCalls());
+
+        broadcaster.publish(jobId, "complete", Map.of(
+                "message", "Re-análisis completado",
+                "total", total,
+                "success", run.job.getCompleted(),
+                "errors", run.job.getFailed(),
+                "cacheHits", run.job.getCacheHits(),
+                "unchanged", run.job.getUnchanged(),
+                "apiCalls", run.job.getApiCalls()
+        ));
+    }
+
+    // ===== Batch API =====
+
+    /**
+     * Envía los ítems pendientes como un lote de OpenAI, espera a que termine y aplica los resultados.
+     * Lo que el lote no resuelve (errores, vencimiento) vuelve a la cola y se analiza en modo interactivo.
+     * El id del lote queda en el trabajo, así que un reinicio retoma la espera en lugar de reenviarlo.
+     * @return false si se interrumpió
+     */
+    private boolean runBatchPhase(JobRun run, ItemCallback callback) throws IOException {
+        Long jobId = run.id();
+        try {
+            if (run.job.getBatchId() == null && !submitBatch(run, callback)) {
+                log.info("Re-analysis job {}: nothing to send in batch, all items resolved locally", jobId);
+                endBatchPhase(run);
+                return true;
+            }
+
+            OpenAiBatchClient.BatchStatus status = batchClient.awaitCompletion(run.job.getBatchId(), polled -> {
+                run.job.setBatchStatus(polled.status());
+                run.job.setMessage("Lote " + polled.status() + ": " + polled.completed() + "/" + polled.total()
+                        + " resueltas por OpenAI");
+                run.checkpoint();
+                broadcaster.publish(jobId, "progress", Map.of(
+                        "current", run.job.getCompleted() + run.job.getFailed(),
+                        "total", run.job.getTotal(),
+                        "recordingId", "",
+                        "userName", "",
+                        "message", run.job.getMessage()
+                ));
+            });
+            if (!"completed".equals(status.status())) {
+                log.warn("OpenAI batch {} ended as {}, remaining items fall back to interactive analysis",
+                        status.id(), status.status());
+            }
+
+            int[] applied = {0};
+            for (String fileId : new String[] {status.outputFileId(), status.errorFileId()}) {
+                if (fileId == null) {
+                    continue;
+                }
+                batchClient.readResults(fileId, line -> {
+                    applyBatchResult(run, line, callback);
+                    if (++applied[0] % leaseBatchSize == 0) {
+                        run.checkpoint();
+                    }
+                });
+            }
+            log.info("Re-analysis job {}: applied {} batch results", jobId, applied[0]);
+            endBatchPhase(run);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Arma el archivo del lote con los ítems que no se pueden resolver desde el caché y lo envía.
+     * @return false si no hizo falta enviar nada
+     */
+    private boolean submitBatch(JobRun run, ItemCallback callback) throws IOException, InterruptedException {
+        Long jobId = run.id();
+        try (OpenAiBatchClient.BatchInput input = batchClient.newInput()) {
+            while (true) {
+                LocalDateTime now = LocalDateTime.now();
+                List<Long> claimable = itemRepository.findClaimableIds(jobId, now, PageRequest.of(0, leaseBatchSize));
+                if (claimable.isEmpty()) {
+                    break;
+                }
+                // El lease cubre la ventana del lote; si el proceso se reinicia se libera igual al retomar
+                itemRepository.lease(claimable, leaseOwner, now.plusHours(BATCH_LEASE_HOURS), now);
+                List<AnalysisJobItem> leased = itemRepository.findAllById(claimable).stream()
+                        .filter(item -> AnalysisJobItem.STATUS_LEASED.equals(item.getStatus())
+                                && leaseOwner.equals(item.getLeaseOwner()))
+                        .toList();
+
+                Map<String, Transcription> transcriptions = transcriptionRepository.findAllById(
+                                leased.stream().map(AnalysisJobItem::getRecordingId).toList())
+                        .stream()
+                        .collect(Collectors.toMap(Transcription::getRecordingId, Function.identity()));
+
+                for (AnalysisJobItem item : leased) {
+                    Transcription transcription = transcriptions.get(item.getRecordingId());
+                    Exception failure = null;
+                    if (transcription == null) {
+                        failure = new IllegalStateException("Transcription not found: " + item.getRecordingId());
+                        item.setAttempts(maxAttempts);
+                    } else {
+                        try {
+                            PreparedAnalysis prepared = transcriptionService.prepareAnalysis(transcription);
+                            CachedAnalysis reused = transcriptionService.reuseAnalysis(transcription, prepared);
+                            if (reused == null) {
+                                item.setInputHash(prepared.hash());
+                                item.setConfigVersion(prepared.configVersion());
+                                item.setSaleSignal(prepared.saleSignal());
+                                itemRepository.save(item);
+                                input.add(String.valueOf(item.getId()), prepared.body());
+                                continue;
+                            }
+                            transcriptionService.saveAnalysis(transcription, reused);
+                            countSource(run, reused.source());
+                        } catch (Exception e) {
+                            failure = e;
+                        }
+                    }
+                    settle(run, item, failure);
+                    callback.onItem(transcription, item, failure);
+                }
+            }
+
+            if (input.size() == 0) {
+                return false;
+            }
+            run.job.setBatchId(batchClient.submit(input));
+            run.job.setMessage("Lote enviado a OpenAI: " + input.size() + " transcripciones");
+            run.checkpoint();
+            log.info("Re-analysis job {}: {} items sent as OpenAI batch {}", jobId, input.size(), run.job.getBatchId());
+            return true;
+        }
+    }
+
+    private void applyBatchResult(JobRun run, OpenAiBatchClient.ResultLine line, ItemCallback callback) {
+        AnalysisJobItem item;
+        try {
+            item = itemRepository.findById(Long.valueOf(line.customId())).orElse(null);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring batch result with unknown custom_id {}", line.customId());
+            return;
+        }
+        // Ítems de otro trabajo o ya resueltos (p. ej. resultados releídos tras un reinicio)
+        if (item == null || !run.id().equals(item.getJobId())
+                || AnalysisJobItem.STATUS_DONE.equals(item.getStatus())
+                || AnalysisJobItem.STATUS_FAILED.equals(item.getStatus())) {
+            return;
+        }
+
+        Transcription transcription = transcriptionRepository.findById(item.getRecordingId()).orElse(null);
+        Exception failure = null;
+        if (transcription == null) {
+            failure = new IllegalStateException("Transcription not found: " + item.getRecordingId());
+            item.setAttempts(maxAttempts);
+        } else if (!line.isSuccess()) {
+            failure = new IllegalStateException(line.error());
+        } else {
+            try {
+                CachedAnalysis analysis = transcriptionService.completeBatchAnalysis(
+                        item.getInputHash(), item.getConfigVersion(), item.getSaleSignal(), line.model(), line.content());
+                requireResult(analysis);
+                transcriptionService.saveAnalysis(transcription, analysis);
+                countSource(run, analysis.source());
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            log.error("Batch result error for {}: {}", item.getRecordingId(), failure.getMessage());
+        }
+        settle(run, item, failure);
+        callback.onItem(transcription, item, failure);
+    }
+
+    private void endBatchPhase(JobRun run) {
+        int released = itemRepository.releaseLeases(run.id());
+        if (released > 0) {
+            log.info("Re-analysis job {}: {} items without batch result go back to the queue", run.id(), released);
+        }
+        run.job.setPhase(AnalysisJob.PHASE_ANALYZE);
+        run.checkpoint();
+    }
+
+    // ===== Ítems =====
+
+    /**
+     * Crea los ítems del trabajo y pasa a la fase de análisis. Si ya existen (reinicio durante
+     * la creación) se reutilizan; saveAll es transaccional así que no quedan a medias.
+     */
+    private void createItems(JobRun run, List<String> recordingIds) {
+        Long jobId = run.id();
+        if (itemRepository.countByJobId(jobId) == 0 && !recordingIds.isEmpty()) {
+            List<AnalysisJobItem> items = new ArrayList<>(recordingIds.size());
+            for (String recordingId : recordingIds) {
+                items.add(new AnalysisJobItem(jobId, recordingId));
+            }
+            itemRepository.saveAll(items);
+        }
+        run.job.setTotal((int) itemRepository.countByJobId(jobId));
+        run.job.setPhase(AnalysisJob.PHASE_ANALYZE);
+        run.checkpoint();
+    }
+
+    /**
+     * Toma ítems por lotes con lease, los analiza en paralelo y guarda cada resultado.
+     * Los errores vuelven a la cola hasta agotar {@code jobs.max-attempts}.
+     * @return false si se interrumpió (apagado) antes de vaciar la cola; el trabajo se retoma al reiniciar
+     */
+    private boolean processItems(JobRun run, ItemCallback callback) {
+        Long jobId = run.id();
+
+        // Los contadores se recalculan desde los ítems: el último checkpoint pudo quedar atrás
+        run.job.setCompleted((int) itemRepository.countByJobIdAndStatus(jobId, AnalysisJobItem.STATUS_DONE));
+        run.job.setFailed((int) itemRepository.countByJobIdAndStatus(jobId, AnalysisJobItem.STATUS_FAILED));
+        run.checkpoint();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> claimable = itemRepository.findClaimableIds(jobId, now, PageRequest.of(0, leaseBatchSize));
+            if (claimable.isEmpty()) {
+                break;
+            }
+            itemRepository.lease(claimable, leaseOwner, now.plusMinutes(leaseMinutes), now);
+            List<AnalysisJobItem> leased = itemRepository.findByJobIdAndStatusAndLeaseOwner(
+                    jobId, AnalysisJobItem.STATUS_LEASED, leaseOwner);
+            if (leased.isEmpty()) {
+                continue;
+            }
+
+            Map<String, Transcription> transcriptions = transcriptionRepository.findAllById(
+                            leased.stream().map(AnalysisJobItem::getRecordingId).toList())
+                    .stream()
+                    .collect(Collectors.toMap(Transcription::getRecordingId, Function.identity()));
+
+            List<AnalysisJobItem> runnable = new ArrayList<>(leased.size());
+            for (AnalysisJobItem item : leased) {
+                if (transcriptions.containsKey(item.getRecordingId())) {
+                    runnable.add(item);
+                } else {
+                    // La transcripción se borró mientras el trabajo estaba en curso
+                    Exception notFound = new IllegalStateException("Transcription not found: " + item.getRecordingId());
+                    item.setAttempts(maxAttempts);
+                    settle(run, item, notFound);
+                    callback.onItem(null, item, notFound);
+                }
+            }
+
+            analysisExecutor.runAll(runnable,
+                    item -> transcriptionService.requestAnalysis(transcriptions.get(item.getRecordingId())),
+                    (AnalysisJobItem item, CachedAnalysis analysis, int completed, int count, Exception error) -> {
+                        Transcription transcription = transcriptions.get(item.getRecordingId());
+                        Exception failure = error;
+                        if (failure == null) {
+                            try {
+                                requireResult(analysis);
+                                transcriptionService.saveAnalysis(transcription, analysis);
+                                countSource(run, analysis.source());
+                            } catch (Exception e) {
+                                failure = e;
+                            }
+                        }
+                        if (failure != null) {
+                            log.error("Error analyzing {} (attempt {}): {}", item.getRecordingId(), item.getAttempts(), failure.getMessage());
+                        }
+                        settle(run, item, failure);
+                        callback.onItem(transcription, item, failure);
+                    });
+
+            run.job.setMessage(run.job.getCompleted() + run.job.getFailed() + "/" + run.job.getTotal() + " procesadas");
+            run.checkpoint();
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    // Un análisis de error (API caída, respuesta ilegible) no pisa el análisis guardado: el ítem vuelve a la cola
+    private static void requireResult(CachedAnalysis analysis) {
+        if (analysis.source() == AnalysisSource.ERROR) {
+            throw new IllegalStateException(analysis.result().getNoSaleReason());
+        }
+    }
+
+    /**
+     * Cierra el lease de un ítem: DONE, FAILED (sin más intentos) o de vuelta a PENDING.
+     */
+    private void settle(JobRun run, AnalysisJobItem item, Exception error) {
+        if (error == null) {
+            item.setStatus(AnalysisJobItem.STATUS_DONE);
+            item.setLastError(null);
+            run.job.setCompleted(run.job.getCompleted() + 1);
+        } else {
+            String message = String.valueOf(error.getMessage());
+            item.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+            if (item.getAttempts() >= maxAttempts) {
+                item.setStatus(AnalysisJobItem.STATUS_FAILED);
+                run.job.setFailed(run.job.getFailed() + 1);
+            } else {
+                item.setStatus(AnalysisJobItem.STATUS_PENDING);
+            }
+        }
+        item.setLeaseOwner(null);
+        item.setLeaseExpiresAt(null);
+        itemRepository.save(item);
+    }
+
+    // Contadores informativos: se acumulan en memoria y se persisten con cada checkpoint
+    private void countSource(JobRun run, AnalysisSource source) {
+        switch (source) {
+            case CACHE -> run.job.setCacheHits(run.job.getCacheHits() + 1);
+            case UNCHANGED -> run.job.setUnchanged(run.job.getUnchanged() + 1);
+            case API -> run.job.setApiCalls(run.job.getApiCalls() + 1);
+        }
+    }
+
+    private void finish(JobRun run) {
+        run.job.setStatus(AnalysisJob.STATUS_COMPLETED);
+        run.job.setFinishedAt(LocalDateTime.now());
+        run.job.setMessage("Completado: " + run.job.getCompleted() + " analizadas, " + run.job.getFailed() + " con error");
+        run.checkpoint();
+    }
+}
@@ -1,27 +1,38 @@
 package com.calm.admin.service;
 
+import com.calm.admin.model.AnalysisCacheEntry;
 import com.calm.admin.model.AnalysisResult;
 import com.calm.admin.model.SystemConfig;
+import com.calm.admin.repository.AnalysisCacheRepository;
 import com.calm.admin.repository.SystemConfigRepository;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.completion.chat.ChatMessageRole;
-import com.theokanning.openai.service.OpenAiService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ChatGPTAnalyzerService {
@@ -32,6 +43,23 @@ public class ChatGPTAnalyzerService {
     private static final String MODEL_KEY = "openai_model";
     private static final String TEMPERATURE_KEY = "openai_temperature";
     private static final String MAX_TOKENS_KEY = "openai_max_tokens";
+    private static final String CONFIG_VERSION_KEY = "analysis_config_version";
+    public static final String SALE_SIGNALS_KEY = "sale_signals";
+
+    // Modo combinado: el mismo request pide también las métricas del análisis avanzado
+    private static final int COMBINED_EXTRA_TOKENS = 1000;
+    private static final String COMBINED_PROMPT_SUFFIX = """
+
+
+═══════════════════════════════════════════════════════════════════
+📈 MÉTRICAS AVANZADAS (EN LA MISMA RESPUESTA)
+═══════════════════════════════════════════════════════════════════
+
+Además de los campos anteriores, agrega al MISMO objeto JSON un campo
+"advanced" con las siguientes métricas de la conversación:
+
+%s
+""";
 
     private static final String DEFAULT_PROMPT = """
 Eres un analista experto en ventas presenciales de productos de descanso
@@ -237,175 +265,423 @@ Prioriza confiabilidad, explicabilidad y usabilidad por sobre completitud.
 Si no hay evidencia, dilo y deja arrays vacíos.
 """;
 
-    @Value("${openai.api.key}")
-    private String apiKey;
-
     @Value("${openai.model}")
     private String defaultModel;
 
-    private OpenAiService openAiService;
+    @Value("${openai.analysis.combined:false}")
+    private boolean combinedAnalysis;
+
+    // Cada cuánto se vuelve a leer la versión de la configuración (cambios hechos desde otra instancia)
+    @Value("${openai.analysis.config-refresh-seconds:30}")
+    private long configRefreshSeconds;
+
+    private record LoadedSettings(PromptSettings settings, long loadedAtNanos) {}
+
+    private volatile LoadedSettings loadedSettings;
+
     private final ObjectMapper objectMapper;
     private final SystemConfigRepository configRepository;
+    private final LlmClient llmClient;
+    private final AnalysisCacheRepository cacheRepository;
+    private final TransactionTemplate transaction;
 
-    public ChatGPTAnalyzerService(ObjectMapper objectMapper, SystemConfigRepository configRepository) {
+    public ChatGPTAnalyzerService(ObjectMapper objectMapper, SystemConfigRepository configRepository,
+                                  LlmClient llmClient, AnalysisCacheRepository cacheRepository,
+                                  PlatformTransactionManager transactionManager) {
         this.objectMapper = objectMapper;
         this.configRepository = configRepository;
+        this.llmClient = llmClient;
+        this.cacheRepository = cacheRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
     }
 
     @PostConstruct
     public void init() {
-        if (apiKey != null && !apiKey.equals("sk-placeholder") && !apiKey.isEmpty()) {
-            this.openAiService = new OpenAiService(apiKey, Duration.ofSeconds(120));
-            log.info("OpenAI service initialized with model: {}", defaultModel);
+        if (llmClient.isConfigured()) {
+            log.info("OpenAI analysis enabled with model: {}", defaultModel);
         } else {
             log.warn("OpenAI API key not configured. Analysis will be disabled.");
         }
+        // La fila de la versión tiene que existir para poder bloquearla al cambiar la configuración
+        if (configRepository.findByConfigKey(CONFIG_VERSION_KEY).isEmpty()) {
+            try {
+                configRepository.save(newVersionConfig());
+            } catch (Exception e) {
+                log.debug("Config version row created concurrently: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Versión de la configuración de análisis vigente. Se incrementa con cada cambio de prompt o parámetros.
+     */
+    public long getConfigVersion() {
+        return loadSettings().version();
+    }
+
+    /**
+     * Aplica un cambio de configuración e incrementa la versión en la misma transacción, con la fila de la
+     * versión bloqueada: dos cambios simultáneos quedan en versiones distintas y nadie lee los valores
+     * nuevos con la versión anterior. Descarta la copia en memoria.
+     * @param changes escrituras de la configuración (prompt, modelo, parámetros, diccionario)
+     * @return la nueva versión
+     */
+    public long updateConfig(Runnable changes) {
+        Long version = transaction.execute(status -> {
+            SystemConfig versionConfig = configRepository.findForUpdate(CONFIG_VERSION_KEY).orElseGet(this::newVersionConfig);
+            changes.run();
+            long next = parseVersion(versionConfig.getConfigValue()) + 1;
+            versionConfig.setConfigValue(String.valueOf(next));
+            configRepository.save(versionConfig);
+            return next;
+        });
+        loadedSettings = null;
+        log.info("Analysis config changed, now at version {}", version);
+        return version != null ? version : 0L;
+    }
+
+    private SystemConfig newVersionConfig() {
+        return new SystemConfig(CONFIG_VERSION_KEY, "0", "Versión de la configuración de análisis");
+    }
+
+    private long readConfigVersion() {
+        return configRepository.findValue(CONFIG_VERSION_KEY)
+                .map(ChatGPTAnalyzerService::parseVersion)
+                .orElse(0L);
+    }
+
+    private static long parseVersion(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (RuntimeException e) {
+            return 0L;
+        }
     }
 
     private String getSystemPrompt() {
-        return configRepository.findByConfigKey(PROMPT_KEY)
-                .map(SystemConfig::getConfigValue)
-                .orElse(DEFAULT_PROMPT);
+        return configRepository.findValue(PROMPT_KEY).orElse(DEFAULT_PROMPT);
     }
 
     private String getModel() {
-        return configRepository.findByConfigKey(MODEL_KEY)
-                .map(SystemConfig::getConfigValue)
-                .orElse(defaultModel);
+        return configRepository.findValue(MODEL_KEY).orElse(defaultModel);
     }
 
     private Double getTemperature() {
-        return configRepository.findByConfigKey(TEMPERATURE_KEY)
-                .map(c -> Double.parseDouble(c.getConfigValue()))
+        return configRepository.findValue(TEMPERATURE_KEY)
+                .map(Double::parseDouble)
                 .orElse(0.3);
     }
 
     private Integer getMaxTokens() {
-        return configRepository.findByConfigKey(MAX_TOKENS_KEY)
-                .map(c -> Integer.parseInt(c.getConfigValue()))
+        return configRepository.findValue(MAX_TOKENS_KEY)
+                .map(Integer::parseInt)
                 .orElse(3000);
     }
 
+    /**
+     * Origen de un resultado de {@link #analyzeWithCache}.
+     * UNCHANGED: las entradas son las mismas del análisis actual, no hay resultado nuevo.
+     * ERROR: la API falló o la respuesta no se pudo interpretar; el resultado es el análisis de error.
+     */
+    public enum AnalysisSource { UNCHANGED, CACHE, API, ERROR }
+
+    /**
+     * Resultado de análisis junto con el hash de sus entradas (null si el análisis falló y no debe reutilizarse)
+     * y la versión de configuración con la que se armaron esas entradas (null si no se llegó a leer).
+     */
+    public record CachedAnalysis(AnalysisResult result, String hash, AnalysisSource source, Long configVersion) {}
+
+    // Parámetros efectivos de una llamada y la versión de configuración de la que salen
+    private record PromptSettings(long version, String systemPrompt, String model, Double temperature, Integer maxTokens,
+                                  SaleSignalMatcher saleSignals) {
+
+        // Modelos 5.x no soportan max_tokens ni temperature custom
+        // Solo aceptan defaults (temperature=1, sin max_tokens)
+        boolean isNewModel() {
+            return model.startsWith("gpt-5") || model.startsWith("o1") || model.startsWith("o3") || model.startsWith("o4");
+        }
+    }
+
+    /**
+     * Configuración en memoria: se relee de la base solo si cambió la versión,
+     * que se consulta como mucho cada {@code openai.analysis.config-refresh-seconds}.
+     */
+    private PromptSettings loadSettings() {
+        long now = System.nanoTime();
+        LoadedSettings current = loadedSettings;
+        if (current != null && now - current.loadedAtNanos() < Duration.ofSeconds(configRefreshSeconds).toNanos()) {
+            return current.settings();
+        }
+
+        PromptSettings settings = transaction.execute(status -> {
+            long version = readConfigVersion();
+            if (current != null && current.settings().version() == version) {
+                return current.settings();
+            }
+            // Si la versión cambió mientras se leían los valores, se vuelven a leer
+            while (true) {
+                PromptSettings read = readSettings(version);
+                long after = readConfigVersion();
+                if (after == version) {
+                    return read;
+                }
+                version = after;
+            }
+        });
+        loadedSettings = new LoadedSettings(settings, now);
+        return settings;
+    }
+
+    private PromptSettings readSettings(long version) {
+        log.info("Loading analysis config version {}", version);
+        if (combinedAnalysis) {
+            // El prompt cambia, así que el hash del caché también: no se mezclan resultados de ambos modos
+            return new PromptSettings(version,
+                    getSystemPrompt() + String.format(COMBINED_PROMPT_SUFFIX, AdvancedAnalyzerService.ADVANCED_METRICS_SPEC),
+                    getModel(), getTemperature(), getMaxTokens() + COMBINED_EXTRA_TOKENS, getSaleSignals());
+        }
+        return new PromptSettings(version, getSystemPrompt(), getModel(), getTemperature(), getMaxTokens(), getSaleSignals());
+    }
+
+    private SaleSignalMatcher getSaleSignals() {
+        return SaleSignalMatcher.compile(configRepository.findValue(SALE_SIGNALS_KEY)
+                .orElse(SaleSignalMatcher.DEFAULT_DICTIONARY));
+    }
+
+    /**
+     * Frases de venta del diccionario vigente que aparecen en el texto, con su posición.
+     * No llama a la API: sirve para filtrar o resaltar antes de pedir un análisis.
+     */
+    public List<SaleSignalMatcher.Match> findSaleSignals(String transcriptionText) {
+        return loadSettings().saleSignals().findAll(transcriptionText);
+    }
+
     public AnalysisResult analyzeTranscription(String transcriptionText, String sellerName, String branchName) {
-        if (openAiService == null) {
+        if (!llmClient.isConfigured()) {
             log.warn("OpenAI service not initialized, returning mock analysis");
             return createErrorAnalysis("API Key de OpenAI no configurada");
         }
 
         try {
-            String systemPrompt = getSystemPrompt();
-            String model = getModel();
-            Double temperature = getTemperature();
-            Integer maxTokens = getMaxTokens();
-
-            String userPrompt = String.format("""
-                Analiza la siguiente transcripción de una atención en la sucursal "%s" por el vendedor "%s":
-                
-                TRANSCRIPCIÓN:
-                %s
-                
-                Proporciona un análisis completo en formato JSON.
-                """, branchName, sellerName, transcriptionText);
-
-            List<ChatMessage> messages = new ArrayList<>();
-            messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), systemPrompt));
-            messages.add(new ChatMessage(ChatMessageRole.USER.value(), userPrompt));
-
-            // Modelos 5.x no soportan max_tokens ni temperature custom
-            // Solo aceptan defaults (temperature=1, sin max_tokens)
-            boolean isNewModel = model.startsWith("gpt-5") || model.startsWith("o1") || model.startsWith("o3") || model.startsWith("o4");
-            
-            ChatCompletionRequest.ChatCompletionRequestBuilder requestBuilder = ChatCompletionRequest.builder()
-                    .model(model)
-                    .messages(messages);
-            
-            if (!isNewModel) {
-                requestBuilder.temperature(temperature);
-                requestBuilder.maxTokens(maxTokens);
-            }
-            
-            ChatCompletionRequest request = requestBuilder.build();
+            return requestAnalysis(loadSettings(), transcriptionText, sellerName, branchName);
+        } catch (UnparseableResponseException e) {
+            return createErrorAnalysis(e.getMessage());
+        } catch (Exception e) {
+            RateLimitedException.rethrowIfRateLimited(e);
+            log.error("Error analyzing transcription with ChatGPT: {}", e.getMessage(), e);
+            return createErrorAnalysis("Error en análisis GPT: " + e.getMessage());
+        }
+    }
 
-            String response = openAiService.createChatCompletion(request)
-                    .getChoices()
-                    .get(0)
-                    .getMessage()
-                    .getContent();
+    /**
+     * Analiza reutilizando resultados previos con las mismas entradas.
+     * @param previousHash hash del análisis que ya tiene la transcripción; si coincide no se hace nada
+     * @param force true para ignorar el caché y llamar siempre a la API (el resultado igual se guarda)
+     */
+    public CachedAnalysis analyzeWithCache(String transcriptionText, String sellerName, String branchName,
+                                           String previousHash, boolean force) {
+        if (!llmClient.isConfigured()) {
+            log.warn("OpenAI service not initialized, returning mock analysis");
+            return new CachedAnalysis(createErrorAnalysis("API Key de OpenAI no configurada"), null, AnalysisSource.ERROR, null);
+        }
 
-            log.info("Received analysis response from ChatGPT");
-            AnalysisResult result = parseAnalysisResponse(response);
-            
-            // Post-processing: Override ChatGPT decision if clear sale signals are detected
-            String saleSignal = detectSaleSignals(transcriptionText);
-            if (saleSignal != null && !result.isSaleCompleted()) {
-                log.info("Sale signal detected by keyword matching, overriding ChatGPT decision: {}", saleSignal);
-                result.setSaleCompleted(true);
-                result.setSaleStatus("SALE_CONFIRMED");
-                result.setSaleEvidence("Detectado por palabras clave: " + saleSignal);
-                result.setNoSaleReason(null);
-                if (result.getAnalysisConfidence() < 80) {
-                    result.setAnalysisConfidence(80);
-                }
-                if (result.getSellerScore() <= 0) {
-                    result.setSellerScore(7); // Score razonable por defecto para venta detectada
-                }
+        PromptSettings settings = loadSettings();
+        String hash = computeHash(settings, transcriptionText, sellerName, branchName);
+
+        if (!force) {
+            CachedAnalysis reused = reuseAnalysis(hash, previousHash, settings.version());
+            if (reused != null) {
+                return reused;
             }
-            
-            return result;
+        }
 
+        try {
+            AnalysisResult result = requestAnalysis(settings, transcriptionText, sellerName, branchName);
+            writeCache(hash, settings.model(), result);
+            return new CachedAnalysis(result, hash, AnalysisSource.API, settings.version());
+        } catch (UnparseableResponseException e) {
+            return new CachedAnalysis(createErrorAnalysis(e.getMessage()), null, AnalysisSource.ERROR, settings.version());
         } catch (Exception e) {
+            RateLimitedException.rethrowIfRateLimited(e);
             log.error("Error analyzing transcription with ChatGPT: {}", e.getMessage(), e);
-            return createErrorAnalysis("Error en análisis GPT: " + e.getMessage());
+            return new CachedAnalysis(createErrorAnalysis("Error en análisis GPT: " + e.getMessage()), null,
+                    AnalysisSource.ERROR, settings.version());
         }
     }
-    
+
     /**
-     * Detects clear sale signals in the transcription text using keyword matching.
-     * This acts as a safety net when ChatGPT fails to detect obvious sales.
-     * @return The detected signal phrase, or null if no clear sale signal found
+     * Request listo para enviar por la Batch API, con el hash de sus entradas, la versión de configuración
+     * con la que se armó y la señal de venta que encontró su diccionario (null si no hay): la respuesta
+     * puede llegar después de otro cambio de configuración y se interpreta con los datos del request.
      */
-    private String detectSaleSignals(String text) {
-        if (text == null) return null;
-        
-        String lowerText = text.toLowerCase()
-                .replace("ã¡", "a").replace("ã©", "e").replace("ã­", "i")
-                .replace("ã³", "o").replace("ãº", "u").replace("ã±", "n");
-        
-        // Phrases that ONLY appear when a sale is being processed
-        String[][] saleSignals = {
-            {"direccion de entrega", "dirección de entrega"},
-            {"nombre y apellido"},
-            {"te llega manana", "te llega mañana", "llegando manana", "llegando mañana"},
-            {"entregado para manana", "entregado para mañana"},
-            {"rango horario de"},
-            {"coordinamos el envio", "coordinamos el envío"},
-            {"sale del deposito", "sale del depósito"},
-            {"genero la factura"},
-            {"paso la tarjeta", "pasame la tarjeta"},
-            {"te queda en", "te quedaria en"}  // Price confirmation
-        };
-        
-        for (String[] signals : saleSignals) {
-            for (String signal : signals) {
-                if (lowerText.contains(signal)) {
-                    return signal;
-                }
+    public record PreparedAnalysis(String hash, Map<String, Object> body, long configVersion, String saleSignal) {}
+
+    /**
+     * Arma el cuerpo del request de chat completion (el mismo que usa el análisis interactivo)
+     * para enviarlo en un lote.
+     */
+    public PreparedAnalysis prepareAnalysis(String transcriptionText, String sellerName, String branchName) {
+        PromptSettings settings = loadSettings();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", settings.model());
+        body.put("messages", List.of(
+                Map.of("role", ChatMessageRole.SYSTEM.value(), "content", settings.systemPrompt()),
+                Map.of("role", ChatMessageRole.USER.value(), "content", buildUserPrompt(transcriptionText, sellerName, branchName))
+        ));
+        if (!settings.isNewModel()) {
+            body.put("temperature", settings.temperature());
+            body.put("max_tokens", settings.maxTokens());
+        }
+        return new PreparedAnalysis(computeHash(settings, transcriptionText, sellerName, branchName), body, settings.version(),
+                settings.saleSignals().detect(transcriptionText));
+    }
+
+    /**
+     * Resultado sin llamar a la API: UNCHANGED si el hash coincide con el actual, CACHE si está cacheado.
+     * @param configVersion versión de configuración con la que se calculó el hash
+     * @return null si hay que pedir el análisis
+     */
+    public CachedAnalysis reuseAnalysis(String hash, String previousHash, long configVersion) {
+        if (hash.equals(previousHash)) {
+            return new CachedAnalysis(null, hash, AnalysisSource.UNCHANGED, configVersion);
+        }
+        AnalysisResult cached = readCache(hash);
+        return cached != null ? new CachedAnalysis(cached, hash, AnalysisSource.CACHE, configVersion) : null;
+    }
+
+    /**
+     * Interpreta la respuesta de un request enviado por lote y la guarda en el caché.
+     * @param saleSignal señal de venta con la que se armó el request ({@link PreparedAnalysis}), no la del diccionario actual
+     * @param configVersion versión de configuración con la que se armó el request
+     */
+    public CachedAnalysis completeAnalysis(String hash, String model, String response, String saleSignal,
+                                           Long configVersion) {
+        try {
+            AnalysisResult result = interpretResponse(response, saleSignal);
+            writeCache(hash, model, result);
+            return new CachedAnalysis(result, hash, AnalysisSource.API, configVersion);
+        } catch (UnparseableResponseException e) {
+            return new CachedAnalysis(createErrorAnalysis(e.getMessage()), null, AnalysisSource.ERROR, configVersion);
+        }
+    }
+
+    /**
+     * SHA-256 de todo lo que determina el resultado: prompt de sistema, modelo, parámetros efectivos,
+     * el prompt de usuario (texto, vendedor y sucursal) y el diccionario de señales de venta que lo corrige.
+     */
+    private String computeHash(PromptSettings settings, String transcriptionText, String sellerName, String branchName) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String params = settings.isNewModel() ? "default" : settings.temperature() + "/" + settings.maxTokens();
+            for (String part : new String[] {"v1", settings.systemPrompt(), settings.model(), params,
+                    sellerName, branchName, transcriptionText, settings.saleSignals().dictionary()}) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
             }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
+    }
+
+    private AnalysisResult readCache(String hash) {
+        try {
+            AnalysisCacheEntry entry = cacheRepository.findById(hash).orElse(null);
+            if (entry == null) {
+                return null;
+            }
+            AnalysisResult result = objectMapper.readValue(entry.getResultJson(), AnalysisResult.class);
+            cacheRepository.recordHit(hash, LocalDateTime.now());
+            return result;
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable analysis cache entry {}: {}", hash, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(String hash, String model, AnalysisResult result) {
+        try {
+            cacheRepository.save(new AnalysisCacheEntry(hash, model, objectMapper.writeValueAsString(result)));
+        } catch (Exception e) {
+            // Otro worker pudo guardar el mismo hash en paralelo; no es un error
+            log.debug("Could not store analysis cache entry {}: {}", hash, e.getMessage());
+        }
+    }
+
+    private AnalysisResult requestAnalysis(PromptSettings settings, String transcriptionText,
+                                           String sellerName, String branchName) throws Exception {
+        String systemPrompt = settings.systemPrompt();
+        String model = settings.model();
+
+        String userPrompt = buildUserPrompt(transcriptionText, sellerName, branchName);
+        // Se busca antes de llamar a la API: es una sola pasada sobre el texto
+        String saleSignal = settings.saleSignals().detect(transcriptionText);
+
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), systemPrompt));
+        messages.add(new ChatMessage(ChatMessageRole.USER.value(), userPrompt));
+
+        ChatCompletionRequest.ChatCompletionRequestBuilder requestBuilder = ChatCompletionRequest.builder()
+                .model(model)
+                .messages(messages);
         
-        // Combined signals: if address AND tomorrow/delivery mentioned
-        boolean hasDeliveryMention = lowerText.contains("envio") || lowerText.contains("envío") || 
-                                     lowerText.contains("entrega") || lowerText.contains("domicilio");
-        boolean hasTomorrowMention = lowerText.contains("manana") || lowerText.contains("mañana");
-        boolean hasNameRequest = lowerText.contains("nombre") || lowerText.contains("apellido");
-        
-        if (hasDeliveryMention && hasTomorrowMention && hasNameRequest) {
-            return "Combinación: nombre + entrega + mañana";
+        if (!settings.isNewModel()) {
+            requestBuilder.temperature(settings.temperature());
+            requestBuilder.maxTokens(settings.maxTokens());
         }
         
-        return null;
+        ChatCompletionRequest request = requestBuilder.build();
+
+        // Estimación gruesa (~4 caracteres por token) + la respuesta máxima; se corrige con el uso real
+        int estimatedTokens = (systemPrompt.length() + userPrompt.length()) / 4 + settings.maxTokens();
+        ChatCompletionResult completion = llmClient.createChatCompletion(request, estimatedTokens);
+        String response = completion
+                .getChoices()
+                .get(0)
+                .getMessage()
+                .getContent();
+
+        log.info("Received analysis response from ChatGPT");
+        return interpretResponse(response, saleSignal);
     }
 
+    private String buildUserPrompt(String transcriptionText, String sellerName, String branchName) {
+        return String.format("""
+            Analiza la siguiente transcripción de una atención en la sucursal "%s" por el vendedor "%s":
+            
+            TRANSCRIPCIÓN:
+            %s
+            
+            Proporciona un análisis completo en formato JSON.
+            """, branchName, sellerName, transcriptionText);
+    }
+
+    /**
+     * @param saleSignal señal de venta encontrada en la transcripción por {@link SaleSignalMatcher}, o null.
+     *                   Si GPT no detectó la venta, la señal la confirma igual.
+     */
+    private AnalysisResult interpretResponse(String response, String saleSignal) throws UnparseableResponseException {
+        AnalysisResult result = parseAnalysisResponse(response);
+        
+        // Post-processing: Override ChatGPT decision if clear sale signals are detected
+        if (saleSignal != null && !result.isSaleCompleted()) {
+            log.info("Sale signal detected by keyword matching, overriding ChatGPT decision: {}", saleSignal);
+            result.setSaleCompleted(true);
+            result.setSaleStatus("SALE_CONFIRMED");
+            result.setSaleEvidence("Detectado por palabras clave: " + saleSignal);
+            result.setNoSaleReason(null);
+            if (result.getAnalysisConfidence() < 80) {
+                result.setAnalysisConfidence(80);
+            }
+            if (result.getSellerScore() <= 0) {
+                result.setSellerScore(7); // Score razonable por defecto para venta detectada
+            }
+        }
+        
+        return result;
+    }
+    
     /**
      * Extrae el bloque JSON de la respuesta de GPT (puede venir con markdown, texto extra, etc.)
      */
@@ -790,7 +1066,7 @@ Si no hay evidencia, dilo y deja arrays vacíos.
         };
     }
     
-    private AnalysisResult parseAnalysisResponse(String response) {
+    private AnalysisResult parseAnalysisResponse(String response) throws UnparseableResponseException {
         try {
             String cleanJson = extractJsonBlock(response);
             
@@ -837,12 +1113,24 @@ Si no hay evidencia, dilo y deja arrays vacíos.
             result.setSellerWeaknesses(jsonArrayToList(root.get("sellerWeaknesses")));
             result.setFollowUpRecommendation(root.has("followUpRecommendation") 
                     ? root.get("followUpRecommendation").asText() : null);
+            if (root.has("advanced") && root.get("advanced").isObject()) {
+                result.setAdvancedJson(root.get("advanced").toString());
+            }
             return result;
 
         } catch (Exception e) {
             log.error("Error parsing analysis response: {}. Raw response (first 500 chars): {}", 
                     e.getMessage(), response != null && response.length() > 500 ? response.substring(0, 500) : response);
-            return createErrorAnalysis("Error parseando respuesta de GPT: " + e.getMessage());
+            throw new UnparseableResponseException("Error parseando respuesta de GPT: " + e.getMessage());
+        }
+    }
+
+    /**
+     * GPT respondió pero no se pudo interpretar el JSON: se devuelve un análisis de error que no se cachea.
+     */
+    private static class UnparseableResponseException extends Exception {
+        UnparseableResponseException(String message) {
+            super(message);
         }
     }
 
@@ -0,0 +1,162 @@
+package com.calm.admin.service;
+
+import com.calm.admin.dto.DashboardMetricsDTO;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Arma las métricas del dashboard a partir de los grupos de
+ * {@code TranscriptionRepository.getDashboardGroups()}: la tabla se recorre una sola vez
+ * y los totales, vendedores, sucursales y motivos de no venta se acumulan en memoria.
+ *
+ * Mantiene los mismos criterios que las consultas individuales: el total cuenta todo,
+ * el resto excluye las sucursales de {@link TranscriptionImportPipeline#EXCLUDED_BRANCH_IDS}.
+ */
+final class DashboardAggregator {
+
+    private DashboardAggregator() {}
+
+    // Acumulador por vendedor o sucursal
+    private static final class Totals {
+        private final Object[] key;
+        private long interactions;
+        private long sales;
+        private long noSales;
+        private long scoreSum;
+        private long scoreCount;
+
+        Totals(Object... key) {
+            this.key = key;
+        }
+
+        void add(Boolean saleCompleted, long count, long groupScoreSum, long groupScoreCount) {
+            interactions += count;
+            if (Boolean.TRUE.equals(saleCompleted)) {
+                sales += count;
+            } else if (Boolean.FALSE.equals(saleCompleted)) {
+                noSales += count;
+            }
+            scoreSum += groupScoreSum;
+            scoreCount += groupScoreCount;
+        }
+
+        double averageScore() {
+            return scoreCount > 0 ? (double) scoreSum / scoreCount : 0.0;
+        }
+    }
+
+    /**
+     * @param groups filas (userId, userName, branchId, branchName, analyzed, saleCompleted, noSaleReason,
+     *               count, sum(sellerScore), count(sellerScore))
+     */
+    static DashboardMetricsDTO aggregate(List<Object[]> groups) {
+        long total = 0;
+        long analyzed = 0;
+        long pending = 0;
+        long sales = 0;
+        long noSales = 0;
+        long scoreSum = 0;
+        long scoreCount = 0;
+        Map<List<Object>, Totals> sellers = new LinkedHashMap<>();
+        Map<List<Object>, Totals> branches = new LinkedHashMap<>();
+        Map<String, Long> noSaleReasons = new LinkedHashMap<>();
+
+        for (Object[] row : groups) {
+            Long userId = (Long) row[0];
+            String userName = (String) row[1];
+            Long branchId = (Long) row[2];
+            String branchName = (String) row[3];
+            Boolean isAnalyzed = (Boolean) row[4];
+            Boolean saleCompleted = (Boolean) row[5];
+            String noSaleReason = (String) row[6];
+            long count = toLong(row[7]);
+            long groupScoreSum = toLong(row[8]);
+            long groupScoreCount = toLong(row[9]);
+
+            total += count;
+            if (branchId != null && TranscriptionImportPipeline.EXCLUDED_BRANCH_IDS.contains(branchId)) {
+                continue;
+            }
+            if (!Boolean.TRUE.equals(isAnalyzed)) {
+                pending += count;
+                continue;
+            }
+
+            analyzed += count;
+            if (Boolean.TRUE.equals(saleCompleted)) {
+                sales += count;
+            } else if (Boolean.FALSE.equals(saleCompleted)) {
+                noSales += count;
+                if (noSaleReason != null) {
+                    noSaleReasons.merge(noSaleReason, count, Long::sum);
+                }
+            }
+            scoreSum += groupScoreSum;
+            scoreCount += groupScoreCount;
+
+            // Arrays.asList admite nulls en la clave (vendedores o sucursales sin id)
+            sellers.computeIfAbsent(Arrays.asList(userId, userName, branchName), k -> new Totals(userId, userName, branchName))
+                    .add(saleCompleted, count, groupScoreSum, groupScoreCount);
+            branches.computeIfAbsent(Arrays.asList(branchId, branchName), k -> new Totals(branchId, branchName))
+                    .add(saleCompleted, count, groupScoreSum, groupScoreCount);
+        }
+
+        List<DashboardMetricsDTO.SellerMetrics> sellerMetrics = sellers.values().stream()
+                .map(t -> {
+                    DashboardMetricsDTO.SellerMetrics sm = new DashboardMetricsDTO.SellerMetrics();
+                    sm.setUserId((Long) t.key[0]);
+                    sm.setUserName((String) t.key[1]);
+                    sm.setBranchName((String) t.key[2]);
+                    sm.setTotalInteractions(t.interactions);
+                    sm.setSales(t.sales);
+                    sm.setNoSales(t.noSales);
+                    sm.setConversionRate(calculateRate(t.sales, t.interactions));
+                    sm.setAverageScore(t.averageScore());
+                    return sm;
+                })
+                .sorted((a, b) -> Double.compare(b.getConversionRate(), a.getConversionRate()))
+                .collect(Collectors.toList());
+
+        List<DashboardMetricsDTO.BranchMetrics> branchMetrics = branches.values().stream()
+                .map(t -> {
+                    DashboardMetricsDTO.BranchMetrics bm = new DashboardMetricsDTO.BranchMetrics();
+                    bm.setBranchId((Long) t.key[0]);
+                    bm.setBranchName((String) t.key[1]);
+                    bm.setTotalInteractions(t.interactions);
+                    bm.setSales(t.sales);
+                    bm.setNoSales(t.noSales);
+                    bm.setConversionRate(calculateRate(t.sales, t.interactions));
+                    bm.setAverageScore(t.averageScore());
+                    return bm;
+                })
+                .sorted((a, b) -> Double.compare(b.getConversionRate(), a.getConversionRate()))
+                .collect(Collectors.toList());
+
+        DashboardMetricsDTO metrics = new DashboardMetricsDTO();
+        metrics.setTotalTranscriptions(total);
+        metrics.setAnalyzedTranscriptions(analyzed);
+        metrics.setPendingAnalysis(pending);
+        metrics.setTotalSales(sales);
+        metrics.setTotalNoSales(noSales);
+        // Conversión basada en ANALIZADAS, no en total
+        metrics.setConversionRate(calculateRate(sales, analyzed));
+        metrics.setAverageSellerScore(scoreCount > 0 ? (double) scoreSum / scoreCount : 0.0);
+        metrics.setSellerMetrics(sellerMetrics);
+        metrics.setBranchMetrics(branchMetrics);
+        metrics.setNoSaleReasons(noSaleReasons);
+        return metrics;
+    }
+
+    static double calculateRate(long numerator, long denominator) {
+        if (denominator == 0) return 0.0;
+        return Math.round((double) numerator / denominator * 10000) / 100.0;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+}
@@ -0,0 +1,420 @@
+package com.calm.admin.service;
+
+import com.calm.admin.dto.DashboardMetricsDTO;
+import com.calm.admin.model.DashboardRollup;
+import com.calm.admin.model.DashboardRollup.Scope;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.DashboardRollupRepository;
+import com.calm.admin.repository.TranscriptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Agregados del dashboard (total, por vendedor, por sucursal, por día y por motivo de no venta)
+ * mantenidos en forma incremental, así {@code /api/dashboard} lee unas pocas filas
+ * sin importar cuántas transcripciones haya.
+ *
+ * Cada importación, análisis o borrado suma o resta el aporte de la transcripción en la misma
+ * transacción. Una reconstrucción completa corre al arrancar y todas las noches
+ * ({@code dashboard.rollups.reconcile-cron}) para corregir cualquier desvío.
+ *
+ * Las sumas y la reconstrucción bloquean primero la fila del total general: una reconstrucción
+ * espera a que terminen las transacciones que ya sumaron y las que llegan después suman sobre
+ * los agregados reconstruidos, así no se pierde ningún cambio.
+ */
+@Service
+public class DashboardRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardRollupService.class);
+
+    private static final String TOTAL_KEY = "all";
+
+    private final DashboardRollupRepository rollupRepository;
+    private final TranscriptionRepository transcriptionRepository;
+    private final TransactionTemplate transaction;
+
+    @Value("${dashboard.rollups.enabled:true}")
+    private boolean enabled;
+
+    public DashboardRollupService(DashboardRollupRepository rollupRepository,
+                                  TranscriptionRepository transcriptionRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.transcriptionRepository = transcriptionRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Aporte a los agregados de un grupo de transcripciones con las mismas dimensiones:
+     * una sola transcripción o un grupo de la consulta de reconstrucción.
+     */
+    public record Contribution(Long userId, String userName, Long branchId, String branchName, LocalDate day,
+                               boolean analyzed, Boolean saleCompleted, String noSaleReason,
+                               long count, long scoreSum, long scoreCount) {
+
+        /**
+         * Estado actual de una transcripción. Tomarlo antes de modificarla para poder restar su aporte anterior.
+         */
+        public static Contribution of(Transcription t) {
+            boolean analyzed = Boolean.TRUE.equals(t.getAnalyzed());
+            Integer score = analyzed ? t.getSellerScore() : null;
+            return new Contribution(t.getUserId(), t.getUserName(), t.getBranchId(), t.getBranchName(),
+                    t.getRecordingDate() != null ? t.getRecordingDate().toLocalDate() : null,
+                    analyzed, t.getSaleCompleted(), t.getNoSaleReason(),
+                    1, score != null ? score : 0, score != null ? 1 : 0);
+        }
+
+        boolean excluded() {
+            return branchId != null && TranscriptionImportPipeline.EXCLUDED_BRANCH_IDS.contains(branchId);
+        }
+    }
+
+    // Contadores de una fila de agregado
+    private static final class Counters {
+        long total, pending, analyzed, sales, noSales, scoreSum, scoreCount;
+
+        boolean isZero() {
+            return total == 0 && pending == 0 && analyzed == 0 && sales == 0 && noSales == 0
+                    && scoreSum == 0 && scoreCount == 0;
+        }
+    }
+
+    // Cambio pendiente sobre una fila: dimensiones (para crearla si no existe) y contadores a sumar
+    private static final class Delta {
+        final DashboardRollup template;
+        final Counters counters = new Counters();
+
+        Delta(DashboardRollup template) {
+            this.template = template;
+        }
+    }
+
+    public void recordAdded(Collection<Transcription> transcriptions) {
+        if (!enabled || transcriptions.isEmpty()) {
+            return;
+        }
+        Map<String, Delta> deltas = new TreeMap<>();
+        for (Transcription t : transcriptions) {
+            accumulate(deltas, Contribution.of(t), 1);
+        }
+        apply(deltas);
+    }
+
+    /**
+     * @param before aporte de la transcripción antes del cambio ({@link Contribution#of} antes de modificarla)
+     */
+    public void recordChanged(Contribution before, Transcription after) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Delta> deltas = new TreeMap<>();
+        accumulate(deltas, before, -1);
+        accumulate(deltas, Contribution.of(after), 1);
+        apply(deltas);
+    }
+
+    public void recordRemoved(Transcription transcription) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Delta> deltas = new TreeMap<>();
+        accumulate(deltas, Contribution.of(transcription), -1);
+        apply(deltas);
+    }
+
+    /**
+     * Reparte el aporte entre las filas afectadas. El total general cuenta todo;
+     * vendedores, sucursales, días y motivos excluyen las sucursales excluidas, como el dashboard.
+     */
+    private void accumulate(Map<String, Delta> deltas, Contribution c, int sign) {
+        Counters total = delta(deltas, Scope.TOTAL, TOTAL_KEY, r -> {}).counters;
+        total.total += sign * c.count();
+        if (c.excluded()) {
+            return;
+        }
+
+        List<Counters> rows = new ArrayList<>(4);
+        rows.add(total);
+        rows.add(delta(deltas, Scope.SELLER, key(c.userId(), c.userName(), c.branchName()), r -> {
+            r.setUserId(c.userId());
+            r.setUserName(c.userName());
+            r.setBranchName(c.branchName());
+        }).counters);
+        rows.add(delta(deltas, Scope.BRANCH, key(c.branchId(), c.branchName()), r -> {
+            r.setBranchId(c.branchId());
+            r.setBranchName(c.branchName());
+        }).counters);
+        if (c.day() != null) {
+            rows.add(delta(deltas, Scope.DAY, key(c.day()), r -> r.setDay(c.day())).counters);
+        }
+
+        long n = sign * c.count();
+        for (Counters row : rows) {
+            if (row != total) {
+                row.total += n;
+            }
+            if (!c.analyzed()) {
+                row.pending += n;
+                continue;
+            }
+            row.analyzed += n;
+            if (Boolean.TRUE.equals(c.saleCompleted())) {
+                row.sales += n;
+            } else if (Boolean.FALSE.equals(c.saleCompleted())) {
+                row.noSales += n;
+            }
+            row.scoreSum += sign * c.scoreSum();
+            row.scoreCount += sign * c.scoreCount();
+        }
+
+        if (c.analyzed() && Boolean.FALSE.equals(c.saleCompleted()) && c.noSaleReason() != null) {
+            delta(deltas, Scope.NO_SALE_REASON, key(c.noSaleReason()), r -> r.setReason(c.noSaleReason()))
+                    .counters.noSales += n;
+        }
+    }
+
+    private static Delta delta(Map<String, Delta> deltas, Scope scope, String key,
+                               Consumer<DashboardRollup> dimensions) {
+        return deltas.computeIfAbsent(scope.name() + ":" + key, k -> {
+            DashboardRollup template = new DashboardRollup(scope, key);
+            dimensions.accept(template);
+            return new Delta(template);
+        });
+    }
+
+    /**
+     * Aplica los cambios con sumas atómicas en la base, dentro de la transacción del llamador.
+     * Primero bloquea el total general y después las filas en orden de clave, para que dos
+     * transacciones concurrentes bloqueen las filas siempre en el mismo orden.
+     */
+    private void apply(Map<String, Delta> deltas) {
+        transaction.executeWithoutResult(status -> {
+            lockTotal();
+            LocalDateTime now = LocalDateTime.now();
+            for (Delta delta : deltas.values()) {
+                Counters c = delta.counters;
+                if (c.isZero()) {
+                    continue;
+                }
+                DashboardRollup row = delta.template;
+                if (increment(row, c, now) == 0) {
+                    createRow(row, c);
+                }
+            }
+        });
+    }
+
+    // Toma el bloqueo de la fila del total general (la crea si todavía no hay agregados)
+    private DashboardRollup lockTotal() {
+        return rollupRepository.findForUpdate(Scope.TOTAL, TOTAL_KEY).orElseGet(() -> {
+            rollupRepository.saveAndFlush(new DashboardRollup(Scope.TOTAL, TOTAL_KEY));
+            return rollupRepository.findForUpdate(Scope.TOTAL, TOTAL_KEY).orElseThrow();
+        });
+    }
+
+    private int increment(DashboardRollup row, Counters c, LocalDateTime now) {
+        return rollupRepository.increment(row.getScope(), row.getRollupKey(), c.total, c.pending, c.analyzed,
+                c.sales, c.noSales, c.scoreSum, c.scoreCount, now);
+    }
+
+    // Crea la fila con los contadores ya sumados. Con el total bloqueado nadie más puede estar creándola
+    private void createRow(DashboardRollup row, Counters c) {
+        setCounters(row, c);
+        rollupRepository.saveAndFlush(row);
+    }
+
+    private static void setCounters(DashboardRollup row, Counters c) {
+        row.setTotal(c.total);
+        row.setPending(c.pending);
+        row.setAnalyzed(c.analyzed);
+        row.setSales(c.sales);
+        row.setNoSales(c.noSales);
+        row.setScoreSum(c.scoreSum);
+        row.setScoreCount(c.scoreCount);
+        row.setUpdatedAt(LocalDateTime.now());
+    }
+
+    /**
+     * Reconstruye todos los agregados desde la tabla de transcripciones, actualizando las filas
+     * existentes en lugar de borrarlas. Con el total bloqueado las sumas concurrentes esperan.
+     * @return cantidad de filas de agregado
+     */
+    public int rebuild() {
+        long start = System.currentTimeMillis();
+        Integer rows = transaction.execute(status -> {
+            lockTotal();
+            Map<String, Delta> deltas = new TreeMap<>();
+            // El total existe aunque no haya transcripciones
+            delta(deltas, Scope.TOTAL, TOTAL_KEY, r -> {});
+            for (Object[] group : transcriptionRepository.getRollupGroups()) {
+                accumulate(deltas, new Contribution(
+                        (Long) group[0], (String) group[1], (Long) group[2], (String) group[3],
+                        (LocalDate) group[4], Boolean.TRUE.equals(group[5]), (Boolean) group[6], (String) group[7],
+                        toLong(group[8]), toLong(group[9]), toLong(group[10])), 1);
+            }
+
+            Map<String, DashboardRollup> existing = new HashMap<>();
+            for (DashboardRollup row : rollupRepository.findAll()) {
+                existing.put(row.getScope().name() + ":" + row.getRollupKey(), row);
+            }
+            List<DashboardRollup> created = new ArrayList<>();
+            for (Map.Entry<String, Delta> entry : deltas.entrySet()) {
+                DashboardRollup row = existing.remove(entry.getKey());
+                if (row == null) {
+                    row = entry.getValue().template;
+                    created.add(row);
+                }
+                setCounters(row, entry.getValue().counters);
+            }
+            // Las filas que ya no tienen transcripciones
+            rollupRepository.deleteAll(existing.values());
+            rollupRepository.saveAll(created);
+            return deltas.size();
+        });
+        log.info("Dashboard rollups rebuilt: {} rows in {} ms", rows, System.currentTimeMillis() - start);
+        return rows != null ? rows : 0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        reconcile();
+    }
+
+    /**
+     * Reconciliación periódica: descarta los agregados incrementales y los vuelve a calcular.
+     */
+    @Scheduled(cron = "${dashboard.rollups.reconcile-cron:0 30 4 * * *}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Error rebuilding dashboard rollups: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Métricas del dashboard leídas de los agregados.
+     */
+    public DashboardMetricsDTO getDashboardMetrics() {
+        DashboardMetricsDTO metrics = new DashboardMetricsDTO();
+        List<DashboardRollup> totals = rollupRepository.findByScope(Scope.TOTAL);
+        DashboardRollup total = totals.isEmpty() ? new DashboardRollup(Scope.TOTAL, TOTAL_KEY) : totals.get(0);
+        metrics.setTotalTranscriptions(total.getTotal());
+        metrics.setAnalyzedTranscriptions(total.getAnalyzed());
+        metrics.setPendingAnalysis(total.getPending());
+        metrics.setTotalSales(total.getSales());
+        metrics.setTotalNoSales(total.getNoSales());
+        // Conversión basada en ANALIZADAS, no en total
+        metrics.setConversionRate(DashboardAggregator.calculateRate(total.getSales(), total.getAnalyzed()));
+        metrics.setAverageSellerScore(averageScore(total));
+
+        metrics.setSellerMetrics(rollupRepository.findByScope(Scope.SELLER).stream()
+                .filter(r -> r.getAnalyzed() > 0)
+                .map(r -> {
+                    DashboardMetricsDTO.SellerMetrics sm = new DashboardMetricsDTO.SellerMetrics();
+                    sm.setUserId(r.getUserId());
+                    sm.setUserName(r.getUserName());
+                    sm.setBranchName(r.getBranchName());
+                    sm.setTotalInteractions(r.getAnalyzed());
+                    sm.setSales(r.getSales());
+                    sm.setNoSales(r.getNoSales());
+                    sm.setConversionRate(DashboardAggregator.calculateRate(r.getSales(), r.getAnalyzed()));
+                    sm.setAverageScore(averageScore(r));
+                    return sm;
+                })
+                .sorted((a, b) -> Double.compare(b.getConversionRate(), a.getConversionRate()))
+                .collect(Collectors.toList()));
+
+        metrics.setBranchMetrics(rollupRepository.findByScope(Scope.BRANCH).stream()
+                .filter(r -> r.getAnalyzed() > 0)
+                .map(r -> {
+                    DashboardMetricsDTO.BranchMetrics bm = new DashboardMetricsDTO.BranchMetrics();
+                    bm.setBranchId(r.getBranchId());
+                    bm.setBranchName(r.getBranchName());
+                    bm.setTotalInteractions(r.getAnalyzed());
+                    bm.setSales(r.getSales());
+                    bm.setNoSales(r.getNoSales());
+                    bm.setConversionRate(DashboardAggregator.calculateRate(r.getSales(), r.getAnalyzed()));
+                    bm.setAverageScore(averageScore(r));
+                    return bm;
+                })
+                .sorted((a, b) -> Double.compare(b.getConversionRate(), a.getConversionRate()))
+                .collect(Collectors.toList()));
+
+        Map<String, Long> noSaleReasons = new LinkedHashMap<>();
+        for (DashboardRollup r : rollupRepository.findByScope(Scope.NO_SALE_REASON)) {
+            if (r.getNoSales() > 0) {
+                noSaleReasons.put(r.getReason(), r.getNoSales());
+            }
+        }
+        metrics.setNoSaleReasons(noSaleReasons);
+        return metrics;
+    }
+
+    /**
+     * Métricas por día de grabación entre dos fechas (inclusive).
+     */
+    public List<Map<String, Object>> getDailyMetrics(LocalDate from, LocalDate to) {
+        return rollupRepository.findByScopeAndDayBetweenOrderByDay(Scope.DAY, from, to).stream()
+                // Días que quedaron en cero después de borrar transcripciones
+                .filter(r -> r.getTotal() > 0)
+                .map(r -> {
+                    Map<String, Object> day = new LinkedHashMap<>();
+                    day.put("date", r.getDay());
+                    day.put("total", r.getTotal());
+                    day.put("analyzed", r.getAnalyzed());
+                    day.put("pending", r.getPending());
+                    day.put("sales", r.getSales());
+                    day.put("noSales", r.getNoSales());
+                    day.put("conversionRate", DashboardAggregator.calculateRate(r.getSales(), r.getAnalyzed()));
+                    day.put("averageScore", averageScore(r));
+                    return day;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static double averageScore(DashboardRollup r) {
+        return r.getScoreCount() > 0 ? (double) r.getScoreSum() / r.getScoreCount() : 0.0;
+    }
+
+    // Clave de la fila: hash de las dimensiones (con separador para que ("a", "bc") != ("ab", "c"))
+    private static String key(Object... dimensions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object dimension : dimensions) {
+                digest.update(String.valueOf(dimension).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+}
@@ -0,0 +1,189 @@
+package com.calm.admin.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Reparte los eventos SSE de cada trabajo a todos los clientes conectados.
+ *
+ * Los clientes se pueden conectar y desconectar en cualquier momento sin afectar al trabajo.
+ * Guarda el último evento de cada nombre por trabajo para que quien se re-conecta vea
+ * el estado actual en lugar de esperar al próximo avance.
+ */
+@Component
+public class JobProgressBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(JobProgressBroadcaster.class);
+
+    private static final long EMITTER_TIMEOUT_MS = 900000L; // 15 minutos; el trabajo sigue aunque venza
+    private static final int MAX_REMEMBERED_JOBS = 50;
+
+    private record Event(String name, Object data) {}
+
+    // Un cliente con su cola de eventos. Se envía fuera del lock del trabajo, de a un hilo por cliente y en orden
+    private static final class Subscription {
+        final SseEmitter emitter;
+        final Queue<Event> outbox = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean sending = new AtomicBoolean();
+        // Cerrar la conexión cuando se vacíe la cola
+        volatile boolean closeWhenDrained;
+        volatile boolean closed;
+
+        Subscription(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        boolean hasWork() {
+            return !closed && (!outbox.isEmpty() || closeWhenDrained);
+        }
+    }
+
+    // Estado de un trabajo. Los cambios se hacen con el lock del objeto y cada evento entra a la cola de los
+    // clientes en ese momento, así un cliente que se conecta lo recibe una sola vez: en la reproducción o en vivo
+    private static final class JobStream {
+        final Map<String, Event> lastEvents = new LinkedHashMap<>();
+        final List<Subscription> subscribers = new CopyOnWriteArrayList<>();
+        boolean completed;
+    }
+
+    private final ConcurrentSkipListMap<Long, JobStream> streams = new ConcurrentSkipListMap<>();
+
+    /**
+     * Conecta un nuevo cliente al trabajo.
+     * @param snapshot lee el estado persistido del trabajo, se envía primero como evento "job"
+     * @param finished si el trabajo ya terminó se envían los últimos eventos y se cierra la conexión
+     */
+    public <T> SseEmitter attach(Long jobId, Supplier<T> snapshot, Predicate<T> finished) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscription subscription = new Subscription(emitter);
+        JobStream stream = stream(jobId);
+
+        emitter.onCompletion(() -> stream.subscribers.remove(subscription));
+        emitter.onTimeout(() -> stream.subscribers.remove(subscription));
+        emitter.onError(ex -> stream.subscribers.remove(subscription));
+
+        synchronized (stream) {
+            // Con el lock tomado no se publica nada entre la lectura del estado y el registro
+            T job = snapshot.get();
+            subscription.outbox.add(new Event("job", job));
+            subscription.outbox.addAll(stream.lastEvents.values());
+            if (finished.test(job) || stream.completed) {
+                stream.completed = true;
+                subscription.closeWhenDrained = true;
+            } else {
+                stream.subscribers.add(subscription);
+            }
+        }
+        drain(stream, subscription);
+        evictFinished();
+        return emitter;
+    }
+
+    /**
+     * Envía un evento a todos los clientes del trabajo.
+     */
+    public void publish(Long jobId, String name, Object data) {
+        JobStream stream = stream(jobId);
+        Event event = new Event(name, data);
+        List<Subscription> targets;
+        synchronized (stream) {
+            stream.lastEvents.remove(name); // re-insertar para respetar el orden de llegada al reproducir
+            stream.lastEvents.put(name, event);
+            targets = List.copyOf(stream.subscribers);
+            for (Subscription subscription : targets) {
+                subscription.outbox.add(event);
+            }
+        }
+        for (Subscription subscription : targets) {
+            drain(stream, subscription);
+        }
+        evictFinished();
+    }
+
+    /**
+     * Cierra todas las conexiones del trabajo (terminó), después de enviarles los eventos pendientes.
+     * Los que se conecten después se cierran al conectarse.
+     */
+    public void complete(Long jobId) {
+        JobStream stream = stream(jobId);
+        List<Subscription> targets;
+        synchronized (stream) {
+            stream.completed = true;
+            targets = List.copyOf(stream.subscribers);
+            stream.subscribers.clear();
+            for (Subscription subscription : targets) {
+                subscription.closeWhenDrained = true;
+            }
+        }
+        for (Subscription subscription : targets) {
+            drain(stream, subscription);
+        }
+        evictFinished();
+    }
+
+    /**
+     * Envía la cola del cliente. Si otro hilo ya la está enviando no espera: ese hilo toma también los eventos nuevos.
+     */
+    private void drain(JobStream stream, Subscription subscription) {
+        while (subscription.hasWork() && subscription.sending.compareAndSet(false, true)) {
+            try {
+                Event event;
+                while (!subscription.closed && (event = subscription.outbox.poll()) != null) {
+                    if (!send(subscription.emitter, event.name(), event.data())) {
+                        subscription.closed = true;
+                        subscription.outbox.clear();
+                        stream.subscribers.remove(subscription);
+                    }
+                }
+                if (subscription.closeWhenDrained && !subscription.closed) {
+                    subscription.closed = true;
+                    try { subscription.emitter.complete(); } catch (Exception ignored) {}
+                }
+            } finally {
+                subscription.sending.set(false);
+            }
+        }
+    }
+
+    private JobStream stream(Long jobId) {
+        return streams.computeIfAbsent(jobId, id -> new JobStream());
+    }
+
+    // Olvida los trabajos terminados más viejos; los que siguen corriendo conservan sus clientes
+    private void evictFinished() {
+        for (Map.Entry<Long, JobStream> entry : streams.entrySet()) {
+            if (streams.size() <= MAX_REMEMBERED_JOBS) {
+                return;
+            }
+            JobStream stream = entry.getValue();
+            synchronized (stream) {
+                if (stream.completed) {
+                    streams.remove(entry.getKey(), stream);
+                }
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (Exception e) {
+            log.debug("SSE client disconnected from job stream, job continues in background");
+            return false;
+        }
+    }
+}
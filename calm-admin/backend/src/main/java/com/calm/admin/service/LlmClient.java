@@ -0,0 +1,167 @@
+package com.calm.admin.service;
+
+import com.theokanning.openai.OpenAiHttpException;
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.service.OpenAiService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cliente de OpenAI compartido por los analizadores.
+ *
+ * Un solo OkHttpClient (pool de conexiones con keep-alive, HTTP/2) para toda la aplicación,
+ * así las llamadas reutilizan conexiones TLS en lugar de abrir una nueva cada vez.
+ * Aplica el límite de tasa compartido y lleva métricas de latencia y tokens.
+ */
+@Component
+public class LlmClient {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmClient.class);
+
+    private final TokenBucketRateLimiter rateLimiter;
+
+    @Value("${openai.api.key:}")
+    private String apiKey;
+
+    @Value("${openai.http.connect-timeout-seconds:10}")
+    private long connectTimeoutSeconds;
+
+    @Value("${openai.http.read-timeout-seconds:120}")
+    private long readTimeoutSeconds;
+
+    @Value("${openai.http.max-idle-connections:16}")
+    private int maxIdleConnections;
+
+    @Value("${openai.http.keep-alive-minutes:5}")
+    private long keepAliveMinutes;
+
+    private OkHttpClient httpClient;
+    private OpenAiService openAiService;
+
+    // Métricas desde el arranque
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder totalLatencyMs = new LongAdder();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+    private final Map<String, LongAdder> tokensByModel = new ConcurrentHashMap<>();
+
+    public LlmClient(TokenBucketRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (apiKey == null || apiKey.isEmpty() || apiKey.equals("sk-placeholder")) {
+            log.warn("OpenAI API key not configured. LLM client disabled.");
+            return;
+        }
+        httpClient = OpenAiService.defaultClient(apiKey, Duration.ofSeconds(readTimeoutSeconds))
+                .newBuilder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMinutes, TimeUnit.MINUTES))
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .build();
+        OpenAiApi api = OpenAiService.defaultRetrofit(httpClient, OpenAiService.defaultObjectMapper())
+                .create(OpenAiApi.class);
+        openAiService = new OpenAiService(api, httpClient.dispatcher().executorService());
+        log.info("OpenAI client initialized (pool of {} idle connections, keep-alive {} min, read timeout {}s)",
+                maxIdleConnections, keepAliveMinutes, readTimeoutSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (openAiService != null) {
+            openAiService.shutdownExecutor();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
+    public boolean isConfigured() {
+        return openAiService != null;
+    }
+
+    /**
+     * Chat completion con límite de tasa y métricas.
+     * @param estimatedTokens reserva en el bucket de tokens; se corrige con el uso real de la respuesta
+     */
+    public ChatCompletionResult createChatCompletion(ChatCompletionRequest request, int estimatedTokens)
+            throws InterruptedException {
+        if (openAiService == null) {
+            throw new IllegalStateException("OpenAI API key not configured");
+        }
+        rateLimiter.acquire(estimatedTokens);
+
+        long start = System.nanoTime();
+        try {
+            ChatCompletionResult result = openAiService.createChatCompletion(request);
+            if (result.getUsage() != null) {
+                rateLimiter.reconcile(estimatedTokens, result.getUsage().getTotalTokens());
+                promptTokens.add(result.getUsage().getPromptTokens());
+                completionTokens.add(result.getUsage().getCompletionTokens());
+                tokensByModel.computeIfAbsent(request.getModel(), m -> new LongAdder())
+                        .add(result.getUsage().getTotalTokens());
+            }
+            return result;
+        } catch (RuntimeException e) {
+            failures.increment();
+            if (e instanceof OpenAiHttpException http && http.statusCode == 429) {
+                rateLimited.increment();
+            }
+            throw e;
+        } finally {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            requests.increment();
+            totalLatencyMs.add(elapsedMs);
+            maxLatencyMs.accumulateAndGet(elapsedMs, Math::max);
+        }
+    }
+
+    /**
+     * Métricas acumuladas desde el arranque.
+     */
+    public Map<String, Object> getMetrics() {
+        long count = requests.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("configured", isConfigured());
+        metrics.put("requests", count);
+        metrics.put("failures", failures.sum());
+        metrics.put("rateLimited", rateLimited.sum());
+        metrics.put("avgLatencyMs", count > 0 ? totalLatencyMs.sum() / count : 0);
+        metrics.put("maxLatencyMs", maxLatencyMs.get());
+        metrics.put("promptTokens", promptTokens.sum());
+        metrics.put("completionTokens", completionTokens.sum());
+        metrics.put("totalTokens", promptTokens.sum() + completionTokens.sum());
+
+        Map<String, Long> byModel = new TreeMap<>();
+        tokensByModel.forEach((model, tokens) -> byModel.put(model, tokens.sum()));
+        metrics.put("tokensByModel", byModel);
+
+        if (httpClient != null) {
+            metrics.put("openConnections", httpClient.connectionPool().connectionCount());
+            metrics.put("idleConnections", httpClient.connectionPool().idleConnectionCount());
+        }
+        return metrics;
+    }
+}
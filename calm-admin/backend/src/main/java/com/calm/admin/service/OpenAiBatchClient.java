@@ -0,0 +1,310 @@
+package com.calm.admin.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Cliente de la Batch API de OpenAI: sube un archivo JSONL con todos los requests,
+ * crea el lote, consulta su estado y lee el archivo de resultados línea por línea.
+ *
+ * Los lotes no consumen el límite de tasa interactivo y se resuelven dentro de la
+ * ventana de completado (24h). La URL base es configurable para apuntar a un servidor local en tests.
+ */
+@Component
+public class OpenAiBatchClient {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAiBatchClient.class);
+
+    private static final String CHAT_COMPLETIONS_ENDPOINT = "/v1/chat/completions";
+    private static final List<String> TERMINAL_STATUSES = List.of("completed", "failed", "expired", "cancelled");
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String apiKey;
+    private final boolean enabled;
+
+    @Value("${openai.batch.completion-window:24h}")
+    private String completionWindow = "24h";
+
+    @Value("${openai.batch.poll-seconds:30}")
+    private long pollSeconds = 30;
+
+    // Consultas de estado seguidas que pueden fallar (red, 5xx) antes de abandonar la espera
+    @Value("${openai.batch.max-poll-failures:8}")
+    private int maxPollFailures = 8;
+
+    // Tope de la espera entre reintentos de una consulta fallida
+    private static final Duration MAX_POLL_BACKOFF = Duration.ofMinutes(10);
+
+    public OpenAiBatchClient(ObjectMapper objectMapper,
+                             @Value("${openai.batch.enabled:false}") boolean enabled,
+                             @Value("${openai.batch.base-url:https://api.openai.com/v1}") String baseUrl,
+                             @Value("${openai.api.key:}") String apiKey) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    /**
+     * true si el modo lote está activado y hay API key configurada.
+     */
+    public boolean isEnabled() {
+        return enabled && apiKey != null && !apiKey.isEmpty() && !apiKey.equals("sk-placeholder");
+    }
+
+    /**
+     * Estado de un lote según la API.
+     */
+    public record BatchStatus(String id, String status, String outputFileId, String errorFileId,
+                              int total, int completed, int failed) {
+
+        public boolean isTerminal() {
+            return TERMINAL_STATUSES.contains(status);
+        }
+    }
+
+    /**
+     * Una línea del archivo de resultados (o de errores) de un lote.
+     * @param content contenido de la respuesta del modelo; null si el request falló
+     * @param error descripción del error; null si el request salió bien
+     */
+    public record ResultLine(String customId, String model, String content, String error) {
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Archivo JSONL en construcción. Cada request se escribe a disco al agregarlo,
+     * así que un lote grande no queda entero en memoria.
+     */
+    public class BatchInput implements Closeable {
+        private final Path file;
+        private final BufferedWriter writer;
+        private int count;
+
+        private BatchInput() throws IOException {
+            this.file = Files.createTempFile("openai-batch-", ".jsonl");
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Agrega un request de chat completion.
+         * @param customId identificador con el que vuelve el resultado
+         * @param body cuerpo del request (model, messages, ...)
+         */
+        public void add(String customId, Map<String, Object> body) throws IOException {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("custom_id", customId);
+            line.put("method", "POST");
+            line.put("url", CHAT_COMPLETIONS_ENDPOINT);
+            line.put("body", body);
+            writer.write(objectMapper.writeValueAsString(line));
+            writer.write('\n');
+            count++;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public BatchInput newInput() throws IOException {
+        return new BatchInput();
+    }
+
+    /**
+     * Sube el archivo y crea el lote.
+     * @return id del lote
+     */
+    public String submit(BatchInput input) throws IOException, InterruptedException {
+        input.writer.flush();
+
+        String boundary = "----calm-batch-" + UUID.randomUUID();
+        String head = "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"purpose\"\r\n\r\n" +
+                "batch\r\n" +
+                "--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"batch.jsonl\"\r\n" +
+                "Content-Type: application/jsonl\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        HttpRequest upload = request("/files")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(head),
+                        HttpRequest.BodyPublishers.ofFile(input.file),
+                        HttpRequest.BodyPublishers.ofString(tail)))
+                .build();
+        String fileId = sendForJson(upload).path("id").asText();
+
+        Map<String, Object> batch = Map.of(
+                "input_file_id", fileId,
+                "endpoint", CHAT_COMPLETIONS_ENDPOINT,
+                "completion_window", completionWindow);
+        HttpRequest create = request("/batches")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(batch)))
+                .build();
+        String batchId = sendForJson(create).path("id").asText();
+
+        log.info("Submitted OpenAI batch {} with {} requests (input file {})", batchId, input.size(), fileId);
+        return batchId;
+    }
+
+    public BatchStatus getStatus(String batchId) throws IOException, InterruptedException {
+        JsonNode root = sendForJson(request("/batches/" + batchId).GET().build());
+        JsonNode counts = root.path("request_counts");
+        return new BatchStatus(
+                root.path("id").asText(batchId),
+                root.path("status").asText(),
+                textOrNull(root, "output_file_id"),
+                textOrNull(root, "error_file_id"),
+                counts.path("total").asInt(0),
+                counts.path("completed").asInt(0),
+                counts.path("failed").asInt(0));
+    }
+
+    /**
+     * Consulta el lote cada {@code openai.batch.poll-seconds} hasta que termine.
+     */
+    public BatchStatus awaitCompletion(String batchId, Consumer<BatchStatus> onPoll)
+            throws IOException, InterruptedException {
+        return awaitCompletion(batchId, Duration.ofSeconds(pollSeconds), onPoll);
+    }
+
+    /**
+     * Consulta el lote cada {@code pollInterval} hasta que termine. Una consulta fallida se reintenta
+     * duplicando la espera (hasta {@code openai.batch.max-poll-failures} fallas seguidas): el lote sigue
+     * corriendo en OpenAI aunque la red o la API fallen un rato.
+     * @param onPoll recibe cada estado consultado (para informar progreso)
+     */
+    public BatchStatus awaitCompletion(String batchId, Duration pollInterval, Consumer<BatchStatus> onPoll)
+            throws IOException, InterruptedException {
+        int failures = 0;
+        while (true) {
+            BatchStatus status;
+            try {
+                status = getStatus(batchId);
+                failures = 0;
+            } catch (IOException e) {
+                if (++failures >= maxPollFailures) {
+                    throw e;
+                }
+                long backoff = Math.min(pollInterval.toMillis() << Math.min(failures, 20), MAX_POLL_BACKOFF.toMillis());
+                log.warn("Polling OpenAI batch {} failed ({}/{}), retrying in {} ms: {}",
+                        batchId, failures, maxPollFailures, backoff, e.getMessage());
+                Thread.sleep(backoff);
+                continue;
+            }
+            onPoll.accept(status);
+            if (status.isTerminal()) {
+                log.info("OpenAI batch {} finished with status {} ({} completed, {} failed)",
+                        batchId, status.status(), status.completed(), status.failed());
+                return status;
+            }
+            Thread.sleep(pollInterval.toMillis());
+        }
+    }
+
+    /**
+     * Descarga un archivo de resultados y lo procesa línea por línea a medida que llega.
+     */
+    public void readResults(String fileId, Consumer<ResultLine> consumer) throws IOException, InterruptedException {
+        HttpRequest download = request("/files/" + fileId + "/content").GET().build();
+        HttpResponse<InputStream> response = httpClient.send(download, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("OpenAI batch API " + response.statusCode() + " downloading " + fileId);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                consumer.accept(parseResultLine(line));
+            }
+        }
+    }
+
+    private ResultLine parseResultLine(String line) throws IOException {
+        JsonNode root = objectMapper.readTree(line);
+        String customId = root.path("custom_id").asText();
+
+        JsonNode error = root.path("error");
+        if (!error.isMissingNode() && !error.isNull()) {
+            return new ResultLine(customId, null, null, error.path("message").asText(error.toString()));
+        }
+
+        JsonNode response = root.path("response");
+        int statusCode = response.path("status_code").asInt(0);
+        JsonNode body = response.path("body");
+        if (statusCode != 200) {
+            String message = body.path("error").path("message").asText("HTTP " + statusCode);
+            return new ResultLine(customId, null, null, message);
+        }
+
+        JsonNode content = body.path("choices").path(0).path("message").path("content");
+        if (content.isMissingNode() || content.isNull()) {
+            return new ResultLine(customId, null, null, "Respuesta sin contenido");
+        }
+        return new ResultLine(customId, textOrNull(body, "model"), content.asText(), null);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMinutes(5))
+                .header("Authorization", "Bearer " + apiKey);
+    }
+
+    private JsonNode sendForJson(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("OpenAI batch API " + response.statusCode() + " on "
+                    + request.method() + " " + request.uri().getPath() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,25 @@
+package com.calm.admin.service;
+
+import com.theokanning.openai.OpenAiHttpException;
+
+/**
+ * La API de OpenAI respondió 429: el llamador debe reintentar más tarde.
+ */
+public class RateLimitedException extends RuntimeException {
+
+    public RateLimitedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Relanza como {@link RateLimitedException} si la excepción es un 429 de OpenAI.
+     */
+    public static void rethrowIfRateLimited(Exception e) {
+        if (e instanceof RateLimitedException rateLimited) {
+            throw rateLimited;
+        }
+        if (e instanceof OpenAiHttpException http && http.statusCode == 429) {
+            throw new RateLimitedException("OpenAI rate limit: " + e.getMessage(), e);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.time.Duration;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -33,6 +34,7 @@ public class S3Service {
     private final S3Client transcriptionsS3Client;
     private final S3Presigner metadataS3Presigner;
     private final ObjectMapper objectMapper;
+    private final TranscriptJsonDecoder transcriptDecoder;
 
     @Value("${aws.s3.metadata.bucket}")
     private String metadataBucket;
@@ -56,43 +58,80 @@ public class S3Service {
         this.transcriptionsS3Client = transcriptionsS3Client;
         this.metadataS3Presigner = metadataS3Presigner;
         this.objectMapper = objectMapper;
+        this.transcriptDecoder = new TranscriptJsonDecoder(objectMapper);
     }
 
     public boolean isConfigured() {
         return metadataS3Client != null && transcriptionsS3Client != null;
     }
 
+    /**
+     * Grabación listada en el bucket de metadata, con su key y fecha de modificación.
+     */
+    public record RecordingObject(String recordingId, String key, Instant lastModified) {}
+
+    /**
+     * Resultado de un listado del bucket de metadata.
+     * @param complete false si el listado se cortó por un error (o no hay cliente) antes de la última página
+     */
+    public record RecordingListing(List<RecordingObject> recordings, boolean complete) {}
+
     public List<String> listAllRecordingIds() {
-        List<String> recordingIds = new ArrayList<>();
+        return listRecordingObjects(null).stream()
+                .map(RecordingObject::recordingId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lista las grabaciones del prefijo de metadata siguiendo los continuation tokens,
+     * en orden lexicográfico de key.
+     * @param startAfter key a partir de la cual listar (exclusiva), o null para listar todo
+     */
+    public List<RecordingObject> listRecordingObjects(String startAfter) {
+        return listRecordings(startAfter).recordings();
+    }
+
+    /**
+     * Igual que {@link #listRecordingObjects}, indicando además si se llegó a la última página.
+     */
+    public RecordingListing listRecordings(String startAfter) {
+        List<RecordingObject> recordings = new ArrayList<>();
         
         if (metadataS3Client == null) {
             log.warn("S3 metadata client not configured. Returning empty list.");
-            return recordingIds;
+            return new RecordingListing(recordings, false);
         }
         
+        int pages = 0;
         try {
-            ListObjectsV2Request request = ListObjectsV2Request.builder()
+            ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
                     .bucket(metadataBucket)
-                    .prefix(metadataPrefix)
-                    .build();
+                    .prefix(metadataPrefix);
+            if (startAfter != null && !startAfter.isEmpty()) {
+                request.startAfter(startAfter);
+            }
 
-            ListObjectsV2Response response = metadataS3Client.listObjectsV2(request);
-            
-            for (S3Object object : response.contents()) {
-                String key = object.key();
-                if (key.endsWith(".json")) {
-                    String fileName = key.substring(key.lastIndexOf("/") + 1);
-                    String recordingId = fileName.replace(".json", "");
-                    recordingIds.add(recordingId);
+            for (ListObjectsV2Response page : metadataS3Client.listObjectsV2Paginator(request.build())) {
+                pages++;
+                for (S3Object object : page.contents()) {
+                    String key = object.key();
+                    if (key.endsWith(".json")) {
+                        String fileName = key.substring(key.lastIndexOf("/") + 1);
+                        String recordingId = fileName.replace(".json", "");
+                        recordings.add(new RecordingObject(recordingId, key, object.lastModified()));
+                    }
                 }
             }
             
-            log.info("Found {} recording IDs in metadata bucket", recordingIds.size());
+            log.info("Found {} recording IDs in metadata bucket ({} pages, startAfter={})",
+                    recordings.size(), pages, startAfter);
         } catch (Exception e) {
-            log.error("Error listing objects from metadata bucket: {}", e.getMessage());
+            // Las páginas ya leídas siguen siendo válidas: se devuelven en orden de key
+            log.error("Error listing objects from metadata bucket after {} pages: {}", pages, e.getMessage());
+            return new RecordingListing(recordings, false);
         }
         
-        return recordingIds;
+        return new RecordingListing(recordings, true);
     }
 
     public Map<String, Object> getMetadata(String recordingId) {
@@ -140,7 +179,23 @@ public class S3Service {
         return metadata;
     }
 
+    /**
+     * Texto de una transcripción con sus turnos por hablante, las métricas de tiempos y la fecha del archivo en S3.
+     */
+    public record TranscriptObject(String text, List<TranscriptJsonDecoder.Turn> turns, TalkMetricsCalculator.Result talk,
+                                   Instant lastModified) {}
+
     public String getTranscription(String recordingId) {
+        TranscriptObject transcript = fetchTranscription(recordingId);
+        return transcript != null ? transcript.text() : null;
+    }
+
+    /**
+     * Descarga y parsea la transcripción con un único GET, leyendo el JSON a medida que llega.
+     * La fecha se toma de la misma respuesta, sin HEAD adicional.
+     * @return la transcripción, o null si no existe o no se pudo leer
+     */
+    public TranscriptObject fetchTranscription(String recordingId) {
         if (transcriptionsS3Client == null) {
             log.warn("S3 transcriptions client not configured.");
             return null;
@@ -155,69 +210,12 @@ public class S3Service {
                     .build();
 
             ResponseInputStream<GetObjectResponse> response = transcriptionsS3Client.getObject(request);
-            String content = new BufferedReader(new InputStreamReader(response, StandardCharsets.UTF_8))
-                    .lines()
-                    .collect(Collectors.joining("\n"));
-
-            JsonNode root = objectMapper.readTree(content);
-            StringBuilder transcriptionText = new StringBuilder();
-            
-            if (root.isArray()) {
-                String lastSpeaker = null;
-                for (JsonNode segment : root) {
-                    String text = null;
-                    String speaker = null;
-                    
-                    // Obtener el texto
-                    if (segment.has("text")) {
-                        text = segment.get("text").asText();
-                    } else if (segment.has("transcript")) {
-                        text = segment.get("transcript").asText();
-                    }
-                    
-                    // Obtener el speaker
-                    if (segment.has("speaker")) {
-                        speaker = segment.get("speaker").asText();
-                    } else if (segment.has("speaker_label")) {
-                        speaker = segment.get("speaker_label").asText();
-                    }
-                    
-                    if (text != null && !text.isBlank()) {
-                        // Si hay speaker y es diferente al último, agregar etiqueta
-                        if (speaker != null && !speaker.equals(lastSpeaker)) {
-                            if (transcriptionText.length() > 0) {
-                                transcriptionText.append("\n\n");
-                            }
-                            // Convertir spk_0, spk_1 a nombres más legibles
-                            String speakerLabel = formatSpeakerLabel(speaker);
-                            transcriptionText.append("[").append(speakerLabel).append("]: ");
-                            lastSpeaker = speaker;
-                        } else if (speaker == null && transcriptionText.length() > 0) {
-                            transcriptionText.append(" ");
-                        }
-                        transcriptionText.append(text);
-                    }
-                }
-            } else if (root.has("results")) {
-                JsonNode results = root.get("results");
-                // AWS Transcribe format con speaker labels
-                if (results.has("speaker_labels") && results.has("items")) {
-                    transcriptionText.append(parseAwsTranscribeWithSpeakers(results));
-                } else if (results.has("transcripts") && results.get("transcripts").isArray()) {
-                    for (JsonNode transcript : results.get("transcripts")) {
-                        transcriptionText.append(transcript.get("transcript").asText()).append(" ");
-                    }
-                }
-            } else if (root.has("text")) {
-                transcriptionText.append(root.get("text").asText());
-            } else if (root.has("transcript")) {
-                transcriptionText.append(root.get("transcript").asText());
-            } else {
-                transcriptionText.append(content);
-            }
+            TranscriptJsonDecoder.Decoded decoded = transcriptDecoder.decode(response);
             
-            log.info("Retrieved transcription for recording {} ({} chars)", recordingId, transcriptionText.length());
-            return transcriptionText.toString().trim();
+            log.info("Retrieved transcription for recording {} ({} chars, {} turns)",
+                    recordingId, decoded.text().length(), decoded.turns().size());
+            return new TranscriptObject(decoded.text(), decoded.turns(), decoded.talk(),
+                    response.response().lastModified());
             
         } catch (NoSuchKeyException e) {
             log.warn("Transcription not found for recording {}", recordingId);
@@ -228,88 +226,6 @@ public class S3Service {
         }
     }
     
-    /**
-     * Convierte etiquetas de speaker (spk_0, spk_1, speaker_0, etc.) a nombres legibles.
-     */
-    private String formatSpeakerLabel(String speaker) {
-        if (speaker == null) return "Desconocido";
-        
-        String normalized = speaker.toLowerCase().trim();
-        
-        // spk_0, speaker_0, spk0 -> Persona 1
-        if (normalized.matches(".*[_]?0$") || normalized.equals("spk0")) {
-            return "Persona 1";
-        }
-        if (normalized.matches(".*[_]?1$") || normalized.equals("spk1")) {
-            return "Persona 2";
-        }
-        if (normalized.matches(".*[_]?2$") || normalized.equals("spk2")) {
-            return "Persona 3";
-        }
-        if (normalized.matches(".*[_]?3$") || normalized.equals("spk3")) {
-            return "Persona 4";
-        }
-        
-        // Si tiene un formato reconocible, extraer el número
-        if (normalized.startsWith("spk") || normalized.startsWith("speaker")) {
-            String num = normalized.replaceAll("[^0-9]", "");
-            if (!num.isEmpty()) {
-                int n = Integer.parseInt(num) + 1;
-                return "Persona " + n;
-            }
-        }
-        
-        return speaker; // Devolver original si no se reconoce
-    }
-    
-    /**
-     * Parsea el formato AWS Transcribe con speaker labels.
-     */
-    private String parseAwsTranscribeWithSpeakers(JsonNode results) {
-        StringBuilder text = new StringBuilder();
-        
-        try {
-            if (!results.has("items")) {
-                return "";
-            }
-            
-            JsonNode items = results.get("items");
-            String lastSpeaker = null;
-            
-            for (JsonNode item : items) {
-                if (item.has("alternatives") && item.get("alternatives").isArray() 
-                    && item.get("alternatives").size() > 0) {
-                    
-                    String content = item.get("alternatives").get(0).get("content").asText();
-                    String speaker = item.has("speaker_label") ? item.get("speaker_label").asText() : null;
-                    String type = item.has("type") ? item.get("type").asText() : "pronunciation";
-                    
-                    if (speaker != null && !speaker.equals(lastSpeaker)) {
-                        if (text.length() > 0) {
-                            text.append("\n\n");
-                        }
-                        text.append("[").append(formatSpeakerLabel(speaker)).append("]: ");
-                        lastSpeaker = speaker;
-                    }
-                    
-                    // No agregar espacio antes de puntuación
-                    if ("punctuation".equals(type)) {
-                        text.append(content);
-                    } else {
-                        if (text.length() > 0 && !text.toString().endsWith(": ") && !text.toString().endsWith("\n")) {
-                            text.append(" ");
-                        }
-                        text.append(content);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error parsing AWS Transcribe format: {}", e.getMessage());
-        }
-        
-        return text.toString();
-    }
-
     public boolean transcriptionExists(String recordingId) {
         if (transcriptionsS3Client == null) {
             return false;
@@ -0,0 +1,323 @@
+package com.calm.admin.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frases que solo aparecen cuando se concreta una venta, buscadas todas juntas en una sola pasada
+ * (autómata de Aho–Corasick) sobre el texto en minúsculas y sin acentos.
+ *
+ * El diccionario tiene una señal por línea. Las alternativas de una señal se separan con {@code |};
+ * una línea con {@code +} es una combinación que exige al menos una alternativa de cada grupo en
+ * cualquier parte del texto. Las líneas vacías o que empiezan con {@code #} se ignoran.
+ */
+public class SaleSignalMatcher {
+
+    public static final String DEFAULT_DICTIONARY = """
+            direccion de entrega
+            nombre y apellido
+            te llega mañana | llegando mañana
+            entregado para mañana
+            rango horario de
+            coordinamos el envio
+            sale del deposito
+            genero la factura
+            paso la tarjeta | pasame la tarjeta
+            # Confirmación de precio
+            te queda en | te quedaria en
+            # El nombre de una combinación usa la primera alternativa de cada grupo
+            nombre | apellido + entrega | envio | domicilio + mañana
+            """;
+
+    /**
+     * Una frase del diccionario encontrada en el texto.
+     * @param start posición en el texto original (incluida)
+     * @param end posición en el texto original (excluida)
+     */
+    public record Match(String phrase, int start, int end) {}
+
+    // Una línea del diccionario: grupos de frases (índices en phrases)
+    private record Signal(String name, int[][] groups) {}
+
+    private final String dictionary;
+    private final List<String> phrases;
+    private final int[] phraseLengths;
+    private final List<Signal> signals;
+    private final int maxLength;
+
+    // Autómata determinista: delta[estado * classes + clase]; la clase 0 son los caracteres que no aparecen en ninguna frase
+    private final int[] asciiClass = new int[128];
+    private final Map<Character, Integer> otherClass = new HashMap<>();
+    private final int classes;
+    private final int[] delta;
+    // Frases que terminan en cada estado, incluidas las de sus sufijos
+    private final int[][] output;
+
+    private SaleSignalMatcher(String dictionary, List<String> phrases, List<String> folded, List<Signal> signals) {
+        this.dictionary = dictionary;
+        this.phrases = phrases;
+        this.signals = signals;
+        this.phraseLengths = folded.stream().mapToInt(String::length).toArray();
+        this.maxLength = Math.max(1, Arrays.stream(phraseLengths).max().orElse(1));
+
+        int nextClass = 1;
+        for (String phrase : folded) {
+            for (int i = 0; i < phrase.length(); i++) {
+                char c = phrase.charAt(i);
+                if (c < 128) {
+                    if (asciiClass[c] == 0) {
+                        asciiClass[c] = nextClass++;
+                    }
+                } else if (!otherClass.containsKey(c)) {
+                    otherClass.put(c, nextClass++);
+                }
+            }
+        }
+        this.classes = nextClass;
+
+        // Trie
+        List<int[]> gotoRows = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        gotoRows.add(newRow());
+        ends.add(new ArrayList<>());
+        for (int p = 0; p < folded.size(); p++) {
+            String phrase = folded.get(p);
+            int state = 0;
+            for (int i = 0; i < phrase.length(); i++) {
+                int cls = classOf(phrase.charAt(i));
+                if (gotoRows.get(state)[cls] < 0) {
+                    gotoRows.get(state)[cls] = gotoRows.size();
+                    gotoRows.add(newRow());
+                    ends.add(new ArrayList<>());
+                }
+                state = gotoRows.get(state)[cls];
+            }
+            ends.get(state).add(p);
+        }
+
+        // Enlaces de falla en anchura, completando las transiciones que faltan
+        int states = gotoRows.size();
+        this.delta = new int[states * classes];
+        this.output = new int[states][];
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        output[0] = ends.get(0).stream().mapToInt(Integer::intValue).toArray();
+        for (int cls = 0; cls < classes; cls++) {
+            int next = gotoRows.get(0)[cls];
+            if (next > 0) {
+                fail[next] = 0;
+                queue.add(next);
+            }
+            delta[cls] = Math.max(next, 0);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> found = new ArrayList<>(ends.get(state));
+            for (int p : output[fail[state]]) {
+                found.add(p);
+            }
+            output[state] = found.stream().mapToInt(Integer::intValue).toArray();
+            for (int cls = 0; cls < classes; cls++) {
+                int next = gotoRows.get(state)[cls];
+                if (next > 0) {
+                    fail[next] = delta[fail[state] * classes + cls];
+                    queue.add(next);
+                    delta[state * classes + cls] = next;
+                } else {
+                    delta[state * classes + cls] = delta[fail[state] * classes + cls];
+                }
+            }
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[classes];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private int classOf(char c) {
+        if (c < 128) {
+            return asciiClass[c];
+        }
+        Integer cls = otherClass.get(c);
+        return cls != null ? cls : 0;
+    }
+
+    /**
+     * Arma el autómata a partir del diccionario (ver formato en la clase).
+     */
+    public static SaleSignalMatcher compile(String dictionary) {
+        Map<String, Integer> indexByFolded = new LinkedHashMap<>();
+        List<String> phrases = new ArrayList<>();
+        List<Signal> signals = new ArrayList<>();
+        for (String line : dictionary.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            List<int[]> groups = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (String group : trimmed.split("\\+")) {
+                List<Integer> ids = new ArrayList<>();
+                for (String alternative : group.split("\\|")) {
+                    String phrase = alternative.trim();
+                    String folded = fold(phrase);
+                    if (folded.isEmpty()) {
+                        continue;
+                    }
+                    Integer id = indexByFolded.get(folded);
+                    if (id == null) {
+                        id = phrases.size();
+                        indexByFolded.put(folded, id);
+                        phrases.add(phrase);
+                    }
+                    ids.add(id);
+                }
+                if (!ids.isEmpty()) {
+                    groups.add(ids.stream().mapToInt(Integer::intValue).toArray());
+                    names.add(phrases.get(ids.get(0)));
+                }
+            }
+            if (!groups.isEmpty()) {
+                String name = groups.size() > 1 ? "Combinación: " + String.join(" + ", names) : null;
+                signals.add(new Signal(name, groups.toArray(new int[0][])));
+            }
+        }
+        return new SaleSignalMatcher(dictionary, phrases, new ArrayList<>(indexByFolded.keySet()), signals);
+    }
+
+    /**
+     * El texto del diccionario con el que se armó el autómata.
+     */
+    public String dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Todas las apariciones de frases del diccionario, en orden de aparición, con su posición en el texto original.
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        if (text == null) {
+            return matches;
+        }
+        // Posición original de los últimos caracteres normalizados, para ubicar el inicio de cada frase
+        int[] origin = new int[maxLength];
+        int state = 0;
+        int k = 0;
+        for (int i = 0, n = text.length(); i < n; k++) {
+            origin[k % maxLength] = i;
+            int consumed = mojibakeLength(text, i);
+            char c = consumed == 2 ? foldMojibake(text.charAt(i + 1)) : fold(text.charAt(i));
+            i += consumed;
+            state = delta[state * classes + classOf(c)];
+            for (int p : output[state]) {
+                int start = origin[(k - phraseLengths[p] + 1) % maxLength];
+                matches.add(new Match(phrases.get(p), start, i));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * La primera señal del diccionario (en el orden en que están escritas) que aparece en el texto.
+     * @return la frase encontrada o el nombre de la combinación, o null si no hay señal de venta
+     */
+    public String detect(CharSequence text) {
+        if (text == null || signals.isEmpty()) {
+            return null;
+        }
+        boolean[] found = new boolean[phrases.size()];
+        int[] first = signals.get(0).groups().length == 1 ? signals.get(0).groups()[0] : new int[0];
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; ) {
+            int consumed = mojibakeLength(text, i);
+            char c = consumed == 2 ? foldMojibake(text.charAt(i + 1)) : fold(text.charAt(i));
+            i += consumed;
+            state = delta[state * classes + classOf(c)];
+            for (int p : output[state]) {
+                found[p] = true;
+            }
+            // Con la primera señal ya no puede ganar otra
+            for (int p : first) {
+                if (found[p]) {
+                    return phrases.get(p);
+                }
+            }
+        }
+
+        for (Signal signal : signals) {
+            String matched = null;
+            for (int[] group : signal.groups()) {
+                matched = null;
+                for (int p : group) {
+                    if (found[p]) {
+                        matched = phrases.get(p);
+                        break;
+                    }
+                }
+                if (matched == null) {
+                    break;
+                }
+            }
+            if (matched != null) {
+                return signal.name() != null ? signal.name() : matched;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Minúsculas y sin acentos, carácter por carácter (la forma en que se comparan las frases).
+     */
+    static String fold(CharSequence text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0, n = text.length(); i < n; ) {
+            int consumed = mojibakeLength(text, i);
+            folded.append(consumed == 2 ? foldMojibake(text.charAt(i + 1)) : fold(text.charAt(i)));
+            i += consumed;
+        }
+        return folded.toString();
+    }
+
+    private static char fold(char c) {
+        char lower = Character.toLowerCase(c);
+        return switch (lower) {
+            case 'á', 'à', 'ä', 'â', 'ã' -> 'a';
+            case 'é', 'è', 'ë', 'ê' -> 'e';
+            case 'í', 'ì', 'ï', 'î' -> 'i';
+            case 'ó', 'ò', 'ö', 'ô', 'õ' -> 'o';
+            case 'ú', 'ù', 'ü', 'û' -> 'u';
+            case 'ñ' -> 'n';
+            case 'ç' -> 'c';
+            default -> lower;
+        };
+    }
+
+    // Acentos de UTF-8 leídos como Latin-1 ("Ã¡" por "á"): 2 si en la posición hay uno de esos pares
+    private static int mojibakeLength(CharSequence text, int i) {
+        char c = text.charAt(i);
+        if ((c == 'Ã' || c == 'ã') && i + 1 < text.length() && foldMojibake(text.charAt(i + 1)) != 0) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static char foldMojibake(char second) {
+        return switch (second) {
+            case '¡', '\u0081' -> 'a';
+            case '©', '\u0089' -> 'e';
+            case '\u00AD', '\u008D' -> 'i';
+            case '³', '\u0093' -> 'o';
+            case 'º', '\u009A' -> 'u';
+            case '±', '\u0091' -> 'n';
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.calm.admin.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Convierte los IDs de hablante de los proveedores de transcripción (spk_0, speaker_1, spk2...)
+ * en etiquetas legibles ({@code Persona 1}, {@code Persona 2}...).
+ *
+ * Una instancia por transcripción: cada ID distinto se resuelve una sola vez y después sale del cache.
+ * La conversión mira caracteres sueltos en lugar de expresiones regulares.
+ */
+public final class SpeakerLabelMapper {
+
+    // Largo máximo de una etiqueta: la columna de TranscriptTurn y TranscriptTurnParser.SPEAKER_LABEL
+    public static final int MAX_LENGTH = 40;
+
+    private static final String[] FIRST_LABELS = {"Persona 1", "Persona 2", "Persona 3", "Persona 4"};
+
+    private final Map<String, String> labels = new HashMap<>(8);
+
+    /**
+     * Etiqueta para un ID de hablante, cacheada dentro de esta transcripción.
+     */
+    public String label(String speaker) {
+        if (speaker == null) {
+            return format(null);
+        }
+        String label = labels.get(speaker);
+        if (label == null) {
+            label = format(speaker);
+            labels.put(speaker, label);
+        }
+        return label;
+    }
+
+    /**
+     * Conversión sin cache:
+     * <ul>
+     *   <li>termina en 0 a 3 (spk_0, speaker_1, spk2) → Persona 1 a 4</li>
+     *   <li>empieza con spk o speaker → Persona (número + 1), con los dígitos que tenga</li>
+     *   <li>cualquier otro → el ID original, cortado en {@link #MAX_LENGTH} caracteres</li>
+     * </ul>
+     */
+    public static String format(String speaker) {
+        if (speaker == null) return "Desconocido";
+
+        // Límites sin los espacios de los extremos, como trim()
+        int start = 0;
+        int end = speaker.length();
+        while (start < end && speaker.charAt(start) <= ' ') start++;
+        while (end > start && speaker.charAt(end - 1) <= ' ') end--;
+        if (start == end) {
+            return raw(speaker);
+        }
+
+        char last = speaker.charAt(end - 1);
+        if (last >= '0' && last <= '3') {
+            return FIRST_LABELS[last - '0'];
+        }
+
+        if (speaker.regionMatches(true, start, "spk", 0, 3) || speaker.regionMatches(true, start, "speaker", 0, 7)) {
+            int number = 0;
+            int significant = 0;
+            boolean hasDigits = false;
+            for (int i = start; i < end; i++) {
+                char c = speaker.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    hasDigits = true;
+                    // Sin desbordar int: los ceros a la izquierda no cuentan
+                    if ((significant > 0 || c != '0') && ++significant > 9) {
+                        return raw(speaker);
+                    }
+                    number = number * 10 + (c - '0');
+                }
+            }
+            if (hasDigits) {
+                return "Persona " + (number + 1);
+            }
+        }
+
+        return raw(speaker); // Devolver original si no se reconoce
+    }
+
+    private static String raw(String speaker) {
+        return speaker.length() > MAX_LENGTH ? speaker.substring(0, MAX_LENGTH) : speaker;
+    }
+}
@@ -0,0 +1,161 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.SyncWatermark;
+import com.calm.admin.repository.SyncWatermarkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Listado incremental del bucket de metadata usando una marca de agua persistida.
+ *
+ * Las corridas normales listan con startAfter = última key resuelta, así que el costo es
+ * O(grabaciones nuevas). Como S3 solo permite saltar por orden de key, cada
+ * {@code full-listing-interval-hours} se hace un listado completo filtrado por lastModified
+ * para no perder grabaciones que lleguen con keys menores a la marca. Un listado completo que se
+ * corta por un error no cuenta: el próximo vuelve a intentarlo.
+ */
+@Service
+public class SyncWatermarkService {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncWatermarkService.class);
+
+    private static final String METADATA_SOURCE = "metadata";
+
+    private final SyncWatermarkRepository repository;
+    private final S3Service s3Service;
+
+    @Value("${aws.s3.sync.full-listing-interval-hours:24}")
+    private long fullListingIntervalHours;
+
+    @Value("${aws.s3.sync.pending-grace-hours:24}")
+    private long pendingGraceHours;
+
+    public SyncWatermarkService(SyncWatermarkRepository repository, S3Service s3Service) {
+        this.repository = repository;
+        this.s3Service = s3Service;
+    }
+
+    /**
+     * Lista las grabaciones que todavía no fueron resueltas por una sincronización anterior.
+     * @param rescan true para ignorar la marca de agua y listar el bucket completo
+     */
+    @Transactional
+    public List<S3Service.RecordingObject> listNewRecordings(boolean rescan) {
+        SyncWatermark watermark = repository.findById(METADATA_SOURCE).orElse(null);
+
+        if (rescan || watermark == null || watermark.getLastKey() == null) {
+            S3Service.RecordingListing all = s3Service.listRecordings(null);
+            markFullListing(watermark, all);
+            return all.recordings();
+        }
+
+        boolean fullListingDue = watermark.getLastFullListingAt() == null
+                || watermark.getLastFullListingAt().isBefore(LocalDateTime.now().minusHours(fullListingIntervalHours));
+
+        if (!fullListingDue) {
+            return s3Service.listRecordingObjects(watermark.getLastKey());
+        }
+
+        // Listado completo de control: solo interesa lo posterior a la marca, por key o por fecha
+        String lastKey = watermark.getLastKey();
+        Instant lastModified = watermark.getLastModified();
+        S3Service.RecordingListing listing = s3Service.listRecordings(null);
+        List<S3Service.RecordingObject> fresh = listing.recordings().stream()
+                .filter(o -> o.key().compareTo(lastKey) > 0
+                        || lastModified == null
+                        || (o.lastModified() != null && o.lastModified().isAfter(lastModified)))
+                .collect(Collectors.toList());
+        markFullListing(watermark, listing);
+        log.info("Full control listing: {} recordings after watermark {}", fresh.size(), lastKey);
+        return fresh;
+    }
+
+    /**
+     * Avanza la marca de agua hasta la última key contigua resuelta.
+     * Las grabaciones pendientes (metadata sin transcripción todavía, o con error de importación)
+     * frenan el avance para que la próxima corrida las vuelva a listar, salvo que superen el período de gracia.
+     * @param listed grabaciones listadas en esta corrida, en orden de key
+     * @param pendingIds IDs que no se pudieron resolver en esta corrida
+     */
+    @Transactional
+    public void advance(List<S3Service.RecordingObject> listed, Collection<String> pendingIds) {
+        if (listed.isEmpty()) {
+            return;
+        }
+
+        Set<String> pending = Set.copyOf(pendingIds);
+        Instant graceLimit = Instant.now().minus(Duration.ofHours(pendingGraceHours));
+
+        String newLastKey = null;
+        Instant resolvedMaxModified = null;
+        Instant pendingMinModified = null;
+        boolean blocked = false;
+
+        for (S3Service.RecordingObject object : listed) {
+            boolean isPending = pending.contains(object.recordingId())
+                    && (object.lastModified() == null || object.lastModified().isAfter(graceLimit));
+            if (isPending) {
+                blocked = true;
+                if (object.lastModified() != null
+                        && (pendingMinModified == null || object.lastModified().isBefore(pendingMinModified))) {
+                    pendingMinModified = object.lastModified();
+                }
+                continue;
+            }
+            if (!blocked) {
+                newLastKey = object.key();
+            }
+            if (object.lastModified() != null
+                    && (resolvedMaxModified == null || object.lastModified().isAfter(resolvedMaxModified))) {
+                resolvedMaxModified = object.lastModified();
+            }
+        }
+
+        // La fecha tampoco puede pasar a una grabación pendiente
+        if (resolvedMaxModified != null && pendingMinModified != null && !resolvedMaxModified.isBefore(pendingMinModified)) {
+            resolvedMaxModified = pendingMinModified.minusMillis(1);
+        }
+
+        SyncWatermark watermark = repository.findById(METADATA_SOURCE).orElse(new SyncWatermark(METADATA_SOURCE));
+        boolean changed = false;
+
+        if (newLastKey != null && (watermark.getLastKey() == null || newLastKey.compareTo(watermark.getLastKey()) > 0)) {
+            watermark.setLastKey(newLastKey);
+            changed = true;
+        }
+        if (resolvedMaxModified != null
+                && (watermark.getLastModified() == null || resolvedMaxModified.isAfter(watermark.getLastModified()))) {
+            watermark.setLastModified(resolvedMaxModified);
+            changed = true;
+        }
+
+        if (changed) {
+            repository.save(watermark);
+            log.info("Sync watermark advanced to key={} lastModified={} ({} pending)",
+                    watermark.getLastKey(), watermark.getLastModified(), pending.size());
+        }
+    }
+
+    // Solo si el listado llegó a la última página; si no, las páginas que faltaron se listan en la próxima corrida
+    private void markFullListing(SyncWatermark watermark, S3Service.RecordingListing listing) {
+        if (!listing.complete()) {
+            log.warn("Full listing stopped early ({} recordings), keeping previous full-listing time",
+                    listing.recordings().size());
+            return;
+        }
+        SyncWatermark toSave = watermark != null ? watermark : new SyncWatermark(METADATA_SOURCE);
+        toSave.setLastFullListingAt(LocalDateTime.now());
+        repository.save(toSave);
+    }
+}
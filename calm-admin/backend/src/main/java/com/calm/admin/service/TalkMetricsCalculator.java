@@ -0,0 +1,135 @@
+package com.calm.admin.service;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Métricas de conversación calculadas con los tiempos de la transcripción: cuánto habla cada parte,
+ * silencios, interrupciones y velocidad. Recibe las palabras (o segmentos) en orden a medida que se
+ * decodifican, sin guardarlas.
+ *
+ * El vendedor es {@code Persona 1}: el primer hablante que AWS Transcribe etiqueta en la atención.
+ */
+public class TalkMetricsCalculator {
+
+    public static final String VENDOR_SPEAKER = "Persona 1";
+
+    // Pausa mínima sin nadie hablando para contarla como silencio
+    static final int SILENCE_GAP_MS = 2000;
+
+    /**
+     * Resultado en milisegundos. Los porcentajes y velocidades son null cuando no se pueden calcular
+     * (sin hablantes identificados o sin tiempo hablado).
+     */
+    public record Result(long durationMs, long vendorTalkMs, long customerTalkMs, int vendorWords, int customerWords,
+                         long silenceMs, int silenceGaps, long longestSilenceMs,
+                         int interruptions, int vendorInterruptions,
+                         Integer vendorTalkPercent, Integer silencePercent,
+                         Integer vendorWordsPerMinute, Integer customerWordsPerMinute) {}
+
+    private boolean started;
+    private boolean unlabeled;
+    private long firstStart;
+    private long coveredEnd;
+    private String lastSpeaker;
+    private long lastSpeakerEnd;
+
+    private long vendorTalkMs;
+    private long customerTalkMs;
+    private int vendorWords;
+    private int customerWords;
+    private long silenceMs;
+    private int silenceGaps;
+    private long longestSilenceMs;
+    private int interruptions;
+    private int vendorInterruptions;
+
+    /**
+     * Una palabra (AWS Transcribe) o un segmento con sus tiempos.
+     * @param speaker etiqueta del hablante, o null si la transcripción no separa hablantes
+     * @param words palabras que contiene (1 para los items de AWS)
+     */
+    public void add(String speaker, long startMs, long endMs, int words) {
+        if (endMs < startMs) {
+            return;
+        }
+        if (!started) {
+            started = true;
+            firstStart = startMs;
+            coveredEnd = startMs;
+        }
+
+        // Nadie habla entre el final de lo anterior y esta palabra
+        long gap = startMs - coveredEnd;
+        if (gap >= SILENCE_GAP_MS) {
+            silenceMs += gap;
+            silenceGaps++;
+            longestSilenceMs = Math.max(longestSilenceMs, gap);
+        }
+
+        // Cambio de hablante antes de que el anterior termine
+        if (speaker != null && lastSpeaker != null && !speaker.equals(lastSpeaker) && startMs < lastSpeakerEnd) {
+            interruptions++;
+            if (VENDOR_SPEAKER.equals(speaker)) {
+                vendorInterruptions++;
+            }
+        }
+
+        if (speaker == null) {
+            unlabeled = true;
+        } else if (VENDOR_SPEAKER.equals(speaker)) {
+            vendorTalkMs += endMs - startMs;
+            vendorWords += words;
+        } else {
+            customerTalkMs += endMs - startMs;
+            customerWords += words;
+        }
+
+        coveredEnd = Math.max(coveredEnd, endMs);
+        if (!Objects.equals(speaker, lastSpeaker) || endMs > lastSpeakerEnd) {
+            lastSpeakerEnd = endMs;
+        }
+        lastSpeaker = speaker;
+    }
+
+    /**
+     * @return las métricas, o null si no llegó ninguna palabra con tiempos
+     */
+    public Result result() {
+        if (!started) {
+            return null;
+        }
+        long duration = coveredEnd - firstStart;
+        long talk = vendorTalkMs + customerTalkMs;
+        Integer vendorPercent = !unlabeled && talk > 0 ? (int) Math.round(vendorTalkMs * 100.0 / talk) : null;
+        Integer silencePercent = duration > 0 ? (int) Math.round(silenceMs * 100.0 / duration) : null;
+        return new Result(duration, vendorTalkMs, customerTalkMs, vendorWords, customerWords,
+                silenceMs, silenceGaps, longestSilenceMs, interruptions, vendorInterruptions,
+                vendorPercent, silencePercent,
+                wordsPerMinute(vendorWords, vendorTalkMs), wordsPerMinute(customerWords, customerTalkMs));
+    }
+
+    private static Integer wordsPerMinute(int words, long talkMs) {
+        return talkMs > 0 ? (int) Math.round(words * 60000.0 / talkMs) : null;
+    }
+
+    /**
+     * Porcentaje del vendedor calculado por palabras, para las transcripciones sin tiempos.
+     * @param wordsBySpeaker palabras por etiqueta de hablante
+     * @return null si no hay hablantes identificados
+     */
+    public static Integer vendorWordPercent(Map<String, Long> wordsBySpeaker) {
+        long vendor = 0;
+        long total = 0;
+        for (Map.Entry<String, Long> entry : wordsBySpeaker.entrySet()) {
+            if (entry.getKey() == null) {
+                return null;
+            }
+            total += entry.getValue();
+            if (VENDOR_SPEAKER.equals(entry.getKey())) {
+                vendor += entry.getValue();
+            }
+        }
+        return total > 0 ? (int) Math.round(vendor * 100.0 / total) : null;
+    }
+}
@@ -0,0 +1,163 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.TimelineEvent;
+import com.calm.admin.repository.TranscriptionRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Métricas de la línea de tiempo calculadas en la base: la consulta devuelve una fila por día
+ * con conteos y sumas, y acá solo se suman días para armar semanas o meses.
+ * La memoria depende de la cantidad de días del rango, no de la cantidad de transcripciones.
+ */
+@Service
+public class TimelineMetricsService {
+
+    private final TranscriptionRepository repository;
+
+    public TimelineMetricsService(TranscriptionRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Acumulados de un período (día, semana, mes o ventana de comparación).
+     */
+    public static final class PeriodStats {
+        private long total;
+        private long sales;
+        private long scoreSum;
+        private long scoreCount;
+        private long confidenceSum;
+        private long confidenceCount;
+
+        /**
+         * Suma una fila (count, sales, sum(score), count(score), sum(confidence), count(confidence))
+         * a partir de la columna {@code offset}.
+         */
+        void add(Object[] row, int offset) {
+            total += toLong(row[offset]);
+            sales += toLong(row[offset + 1]);
+            scoreSum += toLong(row[offset + 2]);
+            scoreCount += toLong(row[offset + 3]);
+            confidenceSum += toLong(row[offset + 4]);
+            confidenceCount += toLong(row[offset + 5]);
+        }
+
+        public long getTotal() { return total; }
+        public long getSales() { return sales; }
+
+        public double getSaleRate() {
+            return total > 0 ? Math.round(sales * 1000.0 / total) / 10.0 : 0;
+        }
+
+        public double getAvgScore() {
+            return scoreCount > 0 ? Math.round((double) scoreSum / scoreCount * 10.0) / 10.0 : 0;
+        }
+
+        public double getAvgConfidence() {
+            return confidenceCount > 0 ? Math.round((double) confidenceSum / confidenceCount * 10.0) / 10.0 : 0;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("total", total);
+            stats.put("sales", sales);
+            stats.put("saleRate", getSaleRate());
+            stats.put("avgScore", getAvgScore());
+            stats.put("avgConfidence", getAvgConfidence());
+            return stats;
+        }
+    }
+
+    /**
+     * Serie de transcripciones analizadas agrupada por día, semana (desde el lunes) o mes.
+     * @param dateFrom primer día incluido, o null
+     * @param dateTo último día incluido, o null
+     */
+    public List<Map<String, Object>> getSeries(String groupBy, Long userId, Long branchId,
+                                               LocalDate dateFrom, LocalDate dateTo) {
+        List<Object[]> days = repository.getDailyTimeline(userId, branchId,
+                dateFrom != null ? dateFrom.atStartOfDay() : null,
+                dateTo != null ? dateTo.plusDays(1).atStartOfDay() : null);
+
+        Map<String, PeriodStats> buckets = new TreeMap<>();
+        for (Object[] row : days) {
+            buckets.computeIfAbsent(bucket((LocalDate) row[0], groupBy), k -> new PeriodStats()).add(row, 1);
+        }
+
+        List<Map<String, Object>> series = new ArrayList<>(buckets.size());
+        for (var entry : buckets.entrySet()) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("period", entry.getKey());
+            point.putAll(entry.getValue().toMap());
+            series.add(point);
+        }
+        return series;
+    }
+
+    /**
+     * Compara las {@code days} jornadas previas a una fecha contra la fecha y las {@code days} siguientes.
+     * Cada ventana es una consulta por rango sobre el índice (recordingDate, analyzed, userId).
+     */
+    public Map<String, Object> compareAround(LocalDate pivot, int days, Long userId) {
+        PeriodStats before = windowStats(pivot.minusDays(days).atStartOfDay(), pivot.atStartOfDay(), userId);
+        PeriodStats after = windowStats(pivot.atStartOfDay(), pivot.plusDays(days + 1L).atStartOfDay(), userId);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("before", before.toMap());
+        result.put("after", after.toMap());
+        result.put("dayRange", days);
+        result.put("saleRateChange", Math.round((after.getSaleRate() - before.getSaleRate()) * 10.0) / 10.0);
+        result.put("avgScoreChange", Math.round((after.getAvgScore() - before.getAvgScore()) * 10.0) / 10.0);
+        return result;
+    }
+
+    /**
+     * Antes/después de varios eventos en una sola llamada (dos consultas por rango por evento).
+     */
+    public List<Map<String, Object>> compareEvents(List<TimelineEvent> events, int days, Long userId) {
+        List<Map<String, Object>> comparisons = new ArrayList<>(events.size());
+        for (TimelineEvent event : events) {
+            if (event.getEventDate() == null) {
+                continue;
+            }
+            Map<String, Object> comparison = new LinkedHashMap<>();
+            comparison.put("eventId", event.getId());
+            comparison.put("title", event.getTitle());
+            comparison.put("category", event.getCategory());
+            comparison.put("eventDate", event.getEventDate());
+            comparison.putAll(compareAround(event.getEventDate(), days, userId));
+            comparisons.add(comparison);
+        }
+        return comparisons;
+    }
+
+    private PeriodStats windowStats(LocalDateTime from, LocalDateTime to, Long userId) {
+        PeriodStats stats = new PeriodStats();
+        for (Object[] row : repository.getWindowStats(from, to, userId)) {
+            stats.add(row, 0);
+        }
+        return stats;
+    }
+
+    // Clave del período; ordena bien como texto
+    static String bucket(LocalDate day, String groupBy) {
+        return switch (groupBy) {
+            case "month" -> day.getYear() + "-" + String.format("%02d", day.getMonthValue());
+            case "day" -> day.toString();
+            default -> day.with(DayOfWeek.MONDAY).toString();
+        };
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+}
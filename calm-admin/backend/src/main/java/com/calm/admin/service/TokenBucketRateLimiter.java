@@ -0,0 +1,112 @@
+package com.calm.admin.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Límite de tasa compartido para las llamadas a OpenAI: dos token buckets
+ * (requests por minuto y tokens por minuto) que se recargan de forma continua.
+ *
+ * Cada llamada reserva una estimación de tokens antes de salir y luego corrige
+ * con el uso real informado por la API. Ante un 429 se pausa el bucket completo.
+ */
+@Component
+public class TokenBucketRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenBucketRateLimiter.class);
+
+    private static final long NANOS_PER_MINUTE = Duration.ofMinutes(1).toNanos();
+
+    private final double requestCapacity;
+    private final double tokenCapacity;
+
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    public TokenBucketRateLimiter(@Value("${openai.rate-limit.requests-per-minute:500}") int requestsPerMinute,
+                                  @Value("${openai.rate-limit.tokens-per-minute:200000}") int tokensPerMinute) {
+        this.requestCapacity = Math.max(1, requestsPerMinute);
+        this.tokenCapacity = Math.max(1, tokensPerMinute);
+        this.availableRequests = requestCapacity;
+        this.availableTokens = tokenCapacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Bloquea hasta que haya cupo para un request de {@code estimatedTokens}.
+     */
+    public void acquire(int estimatedTokens) throws InterruptedException {
+        while (true) {
+            long waitNanos = tryAcquire(estimatedTokens, System.nanoTime());
+            if (waitNanos <= 0) {
+                return;
+            }
+            Thread.sleep(Math.max(1, waitNanos / 1_000_000));
+        }
+    }
+
+    /**
+     * Corrige la reserva con los tokens que realmente consumió la llamada.
+     * Si se usó más de lo estimado el bucket puede quedar en negativo (deuda).
+     */
+    public synchronized void reconcile(int estimatedTokens, long actualTokens) {
+        if (actualTokens <= 0) {
+            return;
+        }
+        availableTokens = Math.min(tokenCapacity, availableTokens + estimatedTokens - actualTokens);
+    }
+
+    /**
+     * Frena todas las llamadas durante {@code delay} (respuesta 429 de la API).
+     */
+    public synchronized void pause(Duration delay) {
+        long until = System.nanoTime() + delay.toNanos();
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+            availableRequests = 0;
+            log.warn("OpenAI rate limit hit, pausing requests for {} ms", delay.toMillis());
+        }
+    }
+
+    /**
+     * Intenta reservar cupo en el instante {@code nowNanos}.
+     * @return 0 si se reservó, o los nanosegundos a esperar antes de reintentar
+     */
+    synchronized long tryAcquire(int estimatedTokens, long nowNanos) {
+        if (pausedUntilNanos != 0 && pausedUntilNanos - nowNanos > 0) {
+            return pausedUntilNanos - nowNanos;
+        }
+        refill(nowNanos);
+
+        // Un request más grande que el bucket entero se deja pasar con el bucket lleno
+        double tokensNeeded = Math.min(Math.max(0, estimatedTokens), tokenCapacity);
+
+        if (availableRequests >= 1 && availableTokens >= tokensNeeded) {
+            availableRequests -= 1;
+            availableTokens -= tokensNeeded;
+            return 0;
+        }
+
+        double requestWait = availableRequests >= 1 ? 0
+                : (1 - availableRequests) * NANOS_PER_MINUTE / requestCapacity;
+        double tokenWait = availableTokens >= tokensNeeded ? 0
+                : (tokensNeeded - availableTokens) * NANOS_PER_MINUTE / tokenCapacity;
+        return Math.max(1, (long) Math.ceil(Math.max(requestWait, tokenWait)));
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+        availableRequests = Math.min(requestCapacity, availableRequests + elapsed * requestCapacity / NANOS_PER_MINUTE);
+        availableTokens = Math.min(tokenCapacity, availableTokens + elapsed * tokenCapacity / NANOS_PER_MINUTE);
+        lastRefillNanos = nowNanos;
+    }
+}
@@ -0,0 +1,380 @@
+package com.calm.admin.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arma el texto de una transcripción leyendo el JSON de S3 como stream de tokens, sin cargar
+ * el archivo completo ni el árbol de nodos. Formatos soportados:
+ * <ul>
+ *   <li>array de segmentos ({@code text}/{@code transcript}, {@code speaker}/{@code speaker_label})</li>
+ *   <li>AWS Transcribe con {@code results.speaker_labels} y {@code results.items}</li>
+ *   <li>AWS Transcribe sin hablantes ({@code results.transcripts})</li>
+ *   <li>objeto con {@code text} o {@code transcript}</li>
+ * </ul>
+ * Cualquier otro documento se devuelve serializado tal cual.
+ *
+ * Además del texto devuelve los turnos por hablante, con su posición en el texto y, cuando el
+ * formato los trae, sus tiempos.
+ */
+public class TranscriptJsonDecoder {
+
+    /**
+     * Un turno dentro del texto decodificado: etiqueta del hablante (null si el formato no tiene hablantes),
+     * posición {@code [textStart, textEnd)} y tiempos en milisegundos (null si no se conocen).
+     */
+    public record Turn(String speaker, int textStart, int textEnd, Integer startMs, Integer endMs, int wordCount) {}
+
+    /**
+     * Texto sin espacios en los extremos, sus turnos en orden y las métricas de conversación
+     * (null si el formato no trae tiempos).
+     */
+    public record Decoded(String text, List<Turn> turns, TalkMetricsCalculator.Result talk) {}
+
+    private final ObjectMapper objectMapper;
+
+    public TranscriptJsonDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Lee el documento completo y cierra el stream.
+     * @return el texto con una etiqueta {@code [Persona N]: } en cada cambio de hablante
+     */
+    public Decoded decode(InputStream in) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return new Decoded("", List.of(), null);
+            }
+            Output output;
+            if (token == JsonToken.START_ARRAY) {
+                output = readSegments(parser, new SpeakerLabelMapper());
+            } else if (token == JsonToken.START_OBJECT) {
+                output = readRoot(parser, new SpeakerLabelMapper());
+            } else {
+                output = Output.plain(parser.getText());
+            }
+            // Consumir el resto para que el cliente S3 no aborte la conexión al cerrar
+            while (parser.nextToken() != null) {
+                parser.skipChildren();
+            }
+            return output.finish();
+        }
+    }
+
+    // Formato de segmentos: cada uno con su texto y, opcionalmente, su hablante y sus tiempos
+    private Output readSegments(JsonParser parser, SpeakerLabelMapper labels) throws IOException {
+        Output output = new Output();
+        StringBuilder out = output.text;
+        String lastSpeaker = null;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String text = null, transcript = null, speaker = null, speakerLabel = null;
+            String start = null, end = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "text" -> text = valueAsText(parser);
+                    case "transcript" -> transcript = valueAsText(parser);
+                    case "speaker" -> speaker = valueAsText(parser);
+                    case "speaker_label" -> speakerLabel = valueAsText(parser);
+                    case "start", "start_time" -> start = valueAsText(parser);
+                    case "end", "end_time" -> end = valueAsText(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (text == null) text = transcript;
+            if (speaker == null) speaker = speakerLabel;
+
+            if (text != null && !text.isBlank()) {
+                // Si hay speaker y es diferente al último, agregar etiqueta
+                if (speaker != null && !speaker.equals(lastSpeaker)) {
+                    if (out.length() > 0) {
+                        out.append("\n\n");
+                    }
+                    output.startTurn(labels.label(speaker));
+                    lastSpeaker = speaker;
+                } else if (speaker == null && out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(text);
+                output.time(start, end, TranscriptTurnParser.countWords(text, 0, text.length()));
+            }
+        }
+        return output;
+    }
+
+    // Objeto raíz: results tiene prioridad sobre text, y text sobre transcript, sin importar el orden de las claves
+    private Output readRoot(JsonParser parser, SpeakerLabelMapper labels) throws IOException {
+        Output results = null;
+        String text = null, transcript = null;
+        ObjectNode unknown = objectMapper.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "results" -> results = readResults(parser, labels);
+                case "text" -> text = valueAsText(parser);
+                case "transcript" -> transcript = valueAsText(parser);
+                // Claves chicas del encabezado (jobName, status...): se guardan por si el formato no se reconoce
+                default -> unknown.set(field, objectMapper.readTree(parser));
+            }
+        }
+        if (results != null) return results;
+        if (text != null) return Output.plain(text);
+        if (transcript != null) return Output.plain(transcript);
+        return Output.plain(objectMapper.writeValueAsString(unknown));
+    }
+
+    // results de AWS Transcribe: los items con hablantes si hay speaker_labels, si no los transcripts
+    private Output readResults(JsonParser parser, SpeakerLabelMapper labels) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return new Output();
+        }
+        boolean hasSpeakerLabels = false;
+        Output items = null;
+        StringBuilder transcripts = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "speaker_labels" -> {
+                    hasSpeakerLabels = true;
+                    parser.skipChildren();
+                }
+                case "items" -> items = readItems(parser, labels);
+                case "transcripts" -> transcripts = readTranscripts(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        if (hasSpeakerLabels && items != null) return items;
+        return Output.plain(transcripts != null ? transcripts.toString() : "");
+    }
+
+    private StringBuilder readTranscripts(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        StringBuilder out = new StringBuilder();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("transcript".equals(field)) {
+                    out.append(valueAsText(parser)).append(' ');
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Items de AWS Transcribe, una palabra o signo por item. La etiqueta del hablante se agrega en cada cambio
+     * y la puntuación va pegada a la palabra anterior.
+     */
+    private Output readItems(JsonParser parser, SpeakerLabelMapper labels) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        Output output = new Output();
+        StringBuilder out = output.text;
+        String lastSpeaker = null;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String content = null, speaker = null, type = null, start = null, end = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "alternatives" -> content = readFirstAlternative(parser);
+                    case "speaker_label" -> speaker = valueAsText(parser);
+                    case "type" -> type = valueAsText(parser);
+                    case "start_time" -> start = valueAsText(parser);
+                    case "end_time" -> end = valueAsText(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (content == null) {
+                continue;
+            }
+
+            if (speaker != null && !speaker.equals(lastSpeaker)) {
+                if (out.length() > 0) {
+                    out.append("\n\n");
+                }
+                output.startTurn(labels.label(speaker));
+                lastSpeaker = speaker;
+            }
+
+            // No agregar espacio antes de puntuación ni justo después de la etiqueta
+            if (!"punctuation".equals(type) && out.length() > 0 && !endsWithLabelOrNewline(out)) {
+                out.append(' ');
+            }
+            out.append(content);
+            output.time(start, end, "punctuation".equals(type) ? 0 : 1);
+        }
+        return output;
+    }
+
+    // El contenido de la primera alternativa (la más probable)
+    private String readFirstAlternative(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        String content = null;
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    if ("content".equals(field)) {
+                        content = valueAsText(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return content;
+    }
+
+    // Mira sólo los últimos caracteres, sin copiar el texto acumulado
+    private static boolean endsWithLabelOrNewline(StringBuilder out) {
+        int length = out.length();
+        char last = out.charAt(length - 1);
+        return last == '\n' || (last == ' ' && length > 1 && out.charAt(length - 2) == ':');
+    }
+
+    // Igual que JsonNode.asText(): escalares como texto, null como "null", objetos y arrays vacíos
+    private static String valueAsText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        return token == JsonToken.VALUE_NULL ? "null" : parser.getText();
+    }
+
+    /**
+     * Texto en construcción y sus turnos. Cada etiqueta abre un turno nuevo; lo que se escribe
+     * antes de la primera (o todo, si el formato no tiene hablantes) queda en un turno sin hablante.
+     */
+    private static class Output {
+        final StringBuilder text;
+        private final TalkMetricsCalculator talk = new TalkMetricsCalculator();
+        private final List<String> speakers = new ArrayList<>();
+        // Dónde empieza la etiqueta de cada turno (y termina el anterior) y dónde empieza su texto
+        private final List<Integer> labelAt = new ArrayList<>();
+        private final List<Integer> textAt = new ArrayList<>();
+        private final List<Integer> startMs = new ArrayList<>();
+        private final List<Integer> endMs = new ArrayList<>();
+
+        Output() {
+            this(new StringBuilder());
+        }
+
+        private Output(StringBuilder text) {
+            this.text = text;
+            addTurn(null, 0, 0);
+        }
+
+        static Output plain(String text) {
+            return new Output(new StringBuilder(text));
+        }
+
+        // Agrega la etiqueta y abre un turno que empieza justo después
+        void startTurn(String label) {
+            int at = text.length();
+            text.append('[').append(label).append("]: ");
+            addTurn(label, at, text.length());
+        }
+
+        private void addTurn(String speaker, int labelStart, int textStart) {
+            speakers.add(speaker);
+            labelAt.add(labelStart);
+            textAt.add(textStart);
+            startMs.add(null);
+            endMs.add(null);
+        }
+
+        // Extiende los tiempos del turno abierto con los de una palabra o segmento
+        void time(String start, String end, int words) {
+            int last = speakers.size() - 1;
+            Integer startValue = millis(start);
+            Integer endValue = millis(end);
+            if (startValue != null && endValue != null) {
+                talk.add(speakers.get(last), startValue, endValue, words);
+            }
+            if (startValue != null && (startMs.get(last) == null || startValue < startMs.get(last))) {
+                startMs.set(last, startValue);
+            }
+            if (endValue != null && (endMs.get(last) == null || endValue > endMs.get(last))) {
+                endMs.set(last, endValue);
+            }
+        }
+
+        /**
+         * Recorta los espacios del texto y de cada turno, y descarta los turnos vacíos
+         * (como el previo a la primera etiqueta).
+         */
+        Decoded finish() {
+            int lead = 0;
+            int trail = text.length();
+            while (lead < trail && text.charAt(lead) <= ' ') lead++;
+            while (trail > lead && text.charAt(trail - 1) <= ' ') trail--;
+
+            List<Turn> turns = new ArrayList<>(speakers.size());
+            for (int i = 0; i < speakers.size(); i++) {
+                int start = textAt.get(i);
+                int end = i + 1 < speakers.size() ? labelAt.get(i + 1) : trail;
+                while (end > start && text.charAt(end - 1) <= ' ') end--;
+                while (start < end && text.charAt(start) <= ' ') start++;
+                if (end > start) {
+                    turns.add(new Turn(speakers.get(i), start - lead, end - lead, startMs.get(i), endMs.get(i),
+                            TranscriptTurnParser.countWords(text, start, end)));
+                }
+            }
+            return new Decoded(text.substring(lead, trail), turns, talk.result());
+        }
+
+        private static Integer millis(String seconds) {
+            if (seconds == null || seconds.isEmpty()) {
+                return null;
+            }
+            try {
+                return (int) Math.round(Double.parseDouble(seconds) * 1000);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
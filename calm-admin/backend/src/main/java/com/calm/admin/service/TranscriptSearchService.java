@@ -0,0 +1,627 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.TranscriptionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.es.SpanishLightStemFilter;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.pattern.PatternReplaceCharFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Matches;
+import org.apache.lucene.search.MatchesIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.uhighlight.LengthGoalBreakIterator;
+import org.apache.lucene.search.uhighlight.Passage;
+import org.apache.lucene.search.uhighlight.PassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.BreakIterator;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Búsqueda de texto en las transcripciones con un índice Lucene embebido (en disco junto a la base).
+ *
+ * El texto se analiza en español: minúsculas, sin acentos y con stemming liviano, así "financiación"
+ * encuentra "financiaciones" y "financiacion". Los resultados salen ordenados por relevancia (BM25)
+ * y con fragmentos resaltados. Si una búsqueda no encuentra nada se reintenta con tolerancia a errores de tipeo.
+ *
+ * Además del texto completo, cada hablante ({@code [Persona 1]}, {@code [Persona 2]}, ...) tiene su propio campo
+ * con sus turnos, para buscar solo en lo que dijo el vendedor o el cliente. Las etiquetas no se indexan.
+ *
+ * El índice se actualiza al confirmar cada importación, análisis o borrado (visible enseguida, sin esperar
+ * a escribirlo a disco) y se graba cada {@code search.index.commit-interval-ms} y al cerrar. Cada grabación
+ * guarda la hora del último cambio incluido; al arrancar se reindexan las transcripciones modificadas después
+ * (cambios perdidos por una caída) y se reconstruye todo si la cantidad de documentos no coincide con la base.
+ * La reconstrucción se arma aparte y reemplaza al índice de una vez, así las búsquedas nunca ven un índice a medias.
+ */
+@Service
+public class TranscriptSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptSearchService.class);
+
+    private static final String ID = "recordingId";
+    private static final String USER = "userId";
+    private static final String BRANCH = "branchId";
+    private static final String SALE = "saleCompleted";
+    private static final String TEXT = "text";
+    private static final String SPEAKER_PREFIX = "speaker_";
+
+    // Cambia cuando cambian los campos o el análisis: el índice se reconstruye al arrancar
+    private static final String SCHEMA_KEY = "schema";
+    private static final String SCHEMA_VERSION = "2";
+    // Hora del último cambio incluido en la grabación del índice
+    private static final String WATERMARK_KEY = "watermark";
+    // Margen hacia atrás al reparar: transacciones que confirmaron con una hora anterior a la última indexada
+    private static final Duration WATERMARK_OVERLAP = Duration.ofMinutes(10);
+
+    private static final int MAX_SNIPPETS = 3;
+    private static final int SNIPPET_LENGTH = 160;
+    private static final int REBUILD_PAGE_SIZE = 500;
+
+    // Texto guardado con offsets para resaltar sin volver a leerlo de la base
+    private static final FieldType TEXT_TYPE = new FieldType();
+    static {
+        TEXT_TYPE.setTokenized(true);
+        TEXT_TYPE.setStored(true);
+        TEXT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_TYPE.freeze();
+    }
+
+    private final TranscriptionRepository transcriptionRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Analyzer analyzer = new SpanishFoldingAnalyzer();
+
+    // Vacío: índice en memoria (tests)
+    @Value("${search.index.dir:}")
+    private String indexDir;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean schemaCurrent;
+
+    // Escrituras y refrescos del índice; las búsquedas solo toman el último searcher refrescado
+    private final Object writeLock = new Object();
+    // Hay cambios sin grabar a disco
+    private boolean dirty;
+    // Hora del último cambio aplicado al índice (se graba como marca en cada commit)
+    private LocalDateTime lastChangeAt;
+    // Marca leída de la última grabación al abrir (null: índice sin marca)
+    private LocalDateTime committedWatermark;
+    // Cambios que llegan durante una reconstrucción, para reaplicarlos sobre el índice nuevo (null: borrado)
+    private Map<String, Document> changedDuringRebuild;
+
+    public record Hit(String recordingId, float score, List<String> snippets, int matchCount) {}
+
+    public record Result(List<Hit> hits, long totalHits, boolean fuzzy) {}
+
+    public TranscriptSearchService(TranscriptionRepository transcriptionRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.transcriptionRepository = transcriptionRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = indexDir == null || indexDir.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDir));
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+        schemaCurrent = false;
+        committedWatermark = null;
+        if (writer.getLiveCommitData() != null) {
+            for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+                schemaCurrent |= SCHEMA_KEY.equals(entry.getKey()) && SCHEMA_VERSION.equals(entry.getValue());
+                if (WATERMARK_KEY.equals(entry.getKey())) {
+                    committedWatermark = LocalDateTime.parse(entry.getValue());
+                }
+            }
+        }
+        lastChangeAt = committedWatermark;
+        log.info("Search index opened ({} documents)", writer.getDocStats().numDocs);
+    }
+
+    @PreDestroy
+    public void close() {
+        commitPending();
+        try {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            log.error("Error closing search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Busca transcripciones. Admite frases entre comillas, proximidad ({@code "precio final"~3}),
+     * prefijos ({@code financ*}) y exclusiones ({@code -cuotas}).
+     * @param speaker etiqueta del hablante ({@code Persona 1}) para buscar solo en sus turnos, o null para todo el texto
+     * @param page página, desde 0
+     */
+    public Result search(String queryText, String speaker, Long userId, Long branchId, Boolean saleCompleted,
+                         int page, int size) throws IOException {
+        String field = speaker == null || speaker.isBlank() ? TEXT : speakerField(speaker);
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, field);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query textQuery = parser.parse(queryText);
+        if (textQuery == null) {
+            return new Result(List.of(), 0, false);
+        }
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            Query query = withFilters(textQuery, userId, branchId, saleCompleted);
+            int total = searcher.count(query);
+            boolean fuzzy = false;
+            if (total == 0) {
+                Query fuzzyText = fuzzyQuery(field, queryText);
+                if (fuzzyText != null) {
+                    query = withFilters(fuzzyText, userId, branchId, saleCompleted);
+                    total = searcher.count(query);
+                    fuzzy = true;
+                }
+            }
+
+            int from = page * size;
+            if (total <= from) {
+                return new Result(List.of(), total, fuzzy);
+            }
+            TopDocs top = searcher.search(query, from + size);
+            ScoreDoc[] pageDocs = Arrays.copyOfRange(top.scoreDocs, from, Math.min(top.scoreDocs.length, from + size));
+
+            int[] docIds = new int[pageDocs.length];
+            for (int i = 0; i < pageDocs.length; i++) {
+                docIds[i] = pageDocs[i].doc;
+            }
+            Object[] snippets = new SnippetHighlighter(searcher, analyzer).snippets(field, query, docIds);
+            Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+
+            List<Hit> hits = new ArrayList<>();
+            for (int i = 0; i < pageDocs.length; i++) {
+                String recordingId = searcher.storedFields().document(pageDocs[i].doc).get(ID);
+                @SuppressWarnings("unchecked")
+                List<String> docSnippets = snippets[i] != null ? (List<String>) snippets[i] : List.of();
+                hits.add(new Hit(recordingId, pageDocs[i].score, docSnippets, countMatches(searcher, weight, field, pageDocs[i].doc)));
+            }
+            return new Result(hits, total, fuzzy);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Agrega o reemplaza las transcripciones en el índice cuando confirma la transacción actual.
+     */
+    public void index(Collection<Transcription> transcriptions) {
+        List<Document> docs = transcriptions.stream()
+                .map(t -> toDocument(t.getRecordingId(), t.getUserId(), t.getBranchId(), t.getSaleCompleted(),
+                        t.getTranscriptionText()))
+                .toList();
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                for (Document doc : docs) {
+                    writer.updateDocument(new Term(ID, doc.get(ID)), doc);
+                    if (changedDuringRebuild != null) {
+                        changedDuringRebuild.put(doc.get(ID), doc);
+                    }
+                }
+                markChanged();
+                searcherManager.maybeRefresh();
+            }
+        });
+    }
+
+    public void remove(String recordingId) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                writer.deleteDocuments(new Term(ID, recordingId));
+                if (changedDuringRebuild != null) {
+                    changedDuringRebuild.put(recordingId, null);
+                }
+                markChanged();
+                searcherManager.maybeRefresh();
+            }
+        });
+    }
+
+    // Se llama con writeLock tomado, después de confirmar el cambio en la base
+    private void markChanged() {
+        dirty = true;
+        lastChangeAt = LocalDateTime.now();
+    }
+
+    /**
+     * Graba a disco los cambios indexados desde la última vez (un commit por intervalo y no por transcripción),
+     * con la hora del último cambio como marca.
+     */
+    @Scheduled(fixedDelayString = "${search.index.commit-interval-ms:30000}")
+    public void commitPending() {
+        synchronized (writeLock) {
+            if (!dirty) {
+                return;
+            }
+            try {
+                commitWithWatermark();
+            } catch (IOException e) {
+                log.error("Error committing search index: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Se llama con writeLock tomado
+    private void commitWithWatermark() throws IOException {
+        Map<String, String> data = new HashMap<>();
+        data.put(SCHEMA_KEY, schemaCurrent ? SCHEMA_VERSION : "");
+        if (lastChangeAt != null) {
+            data.put(WATERMARK_KEY, lastChangeAt.toString());
+        }
+        writer.setLiveCommitData(data.entrySet());
+        writer.commit();
+        committedWatermark = lastChangeAt;
+        dirty = false;
+    }
+
+    /**
+     * Vuelve a indexar todas las transcripciones, leyendo la tabla por páginas. El índice nuevo se arma
+     * en un directorio aparte y reemplaza al actual en un solo paso; mientras tanto se sigue buscando en el actual.
+     * @return cantidad de documentos indexados
+     */
+    public synchronized long rebuild() throws IOException {
+        long start = System.currentTimeMillis();
+        // Lo que se lee de la base refleja al menos los cambios confirmados hasta acá
+        LocalDateTime readFrom = LocalDateTime.now();
+        synchronized (writeLock) {
+            changedDuringRebuild = new HashMap<>();
+        }
+        Path stagingPath = indexDir == null || indexDir.isBlank() ? null : Path.of(indexDir + "-rebuild");
+        try (Directory staging = stagingPath == null ? new ByteBuffersDirectory() : FSDirectory.open(stagingPath)) {
+            long total = 0;
+            try (IndexWriter stagingWriter = new IndexWriter(staging, new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE))) {
+                List<String> columns = List.of("t.recordingId", "t.userId", "t.branchId", "t.saleCompleted", "t.transcriptionText");
+                String afterId = null;
+                while (true) {
+                    String pageAfterId = afterId;
+                    List<Document> docs = readOnlyTransaction.execute(status -> {
+                        try (Stream<Object[]> stream = transcriptionRepository.streamExportPage(columns, false, pageAfterId, REBUILD_PAGE_SIZE)) {
+                            return stream.map(row -> toDocument((String) row[0], (Long) row[1], (Long) row[2],
+                                    (Boolean) row[3], (String) row[4])).toList();
+                        }
+                    });
+                    stagingWriter.addDocuments(docs);
+                    total += docs.size();
+                    if (docs.size() < REBUILD_PAGE_SIZE) {
+                        break;
+                    }
+                    afterId = docs.get(docs.size() - 1).get(ID);
+                }
+                stagingWriter.commit();
+            }
+
+            // Reemplazo: sin refrescar hasta el commit, las búsquedas siguen sobre el índice anterior
+            synchronized (writeLock) {
+                writer.deleteAll();
+                writer.addIndexes(staging);
+                for (Map.Entry<String, Document> change : changedDuringRebuild.entrySet()) {
+                    if (change.getValue() == null) {
+                        writer.deleteDocuments(new Term(ID, change.getKey()));
+                    } else {
+                        writer.updateDocument(new Term(ID, change.getKey()), change.getValue());
+                    }
+                }
+                schemaCurrent = true;
+                if (lastChangeAt == null || lastChangeAt.isBefore(readFrom)) {
+                    lastChangeAt = readFrom;
+                }
+                commitWithWatermark();
+                searcherManager.maybeRefresh();
+            }
+            log.info("Search index rebuilt: {} documents in {} ms", total, System.currentTimeMillis() - start);
+            return total;
+        } finally {
+            synchronized (writeLock) {
+                changedDuringRebuild = null;
+            }
+            if (stagingPath != null) {
+                deleteStaging(stagingPath);
+            }
+        }
+    }
+
+    private static void deleteStaging(Path stagingPath) {
+        try (Stream<Path> files = Files.list(stagingPath)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(stagingPath);
+        } catch (IOException e) {
+            log.warn("Could not delete search index staging directory {}: {}", stagingPath, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        try {
+            long indexed = writer.getDocStats().numDocs;
+            long stored = transcriptionRepository.count();
+            if (!schemaCurrent) {
+                log.info("Search index schema changed: rebuilding");
+                rebuild();
+            } else if (indexed != stored) {
+                log.info("Search index has {} documents, database has {}: rebuilding", indexed, stored);
+                rebuild();
+            } else if (committedWatermark == null) {
+                log.info("Search index has no commit watermark: rebuilding");
+                rebuild();
+            } else {
+                reindexChangedSince(committedWatermark.minus(WATERMARK_OVERLAP));
+            }
+        } catch (Exception e) {
+            log.error("Error rebuilding search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve a indexar las transcripciones modificadas después de {@code since}: cambios que se confirmaron
+     * en la base pero no llegaron a grabarse en el índice (p. ej. por una caída antes del commit).
+     * @return cantidad de documentos reindexados
+     */
+    long reindexChangedSince(LocalDateTime since) throws IOException {
+        List<String> ids = transcriptionRepository.findIdsUpdatedAfter(since);
+        for (int from = 0; from < ids.size(); from += REBUILD_PAGE_SIZE) {
+            List<String> page = ids.subList(from, Math.min(ids.size(), from + REBUILD_PAGE_SIZE));
+            List<Document> docs = readOnlyTransaction.execute(status -> transcriptionRepository.findAllById(page).stream()
+                    .map(t -> toDocument(t.getRecordingId(), t.getUserId(), t.getBranchId(), t.getSaleCompleted(),
+                            t.getTranscriptionText()))
+                    .toList());
+            synchronized (writeLock) {
+                for (Document doc : docs) {
+                    writer.updateDocument(new Term(ID, doc.get(ID)), doc);
+                }
+                markChanged();
+            }
+        }
+        if (!ids.isEmpty()) {
+            synchronized (writeLock) {
+                commitWithWatermark();
+                searcherManager.maybeRefresh();
+            }
+            log.info("Search index: reindexed {} transcriptions changed since {}", ids.size(), since);
+        }
+        return ids.size();
+    }
+
+    private Document toDocument(String recordingId, Long userId, Long branchId, Boolean saleCompleted, String text) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, recordingId, Field.Store.YES));
+        if (userId != null) {
+            doc.add(new LongPoint(USER, userId));
+        }
+        if (branchId != null) {
+            doc.add(new LongPoint(BRANCH, branchId));
+        }
+        if (saleCompleted != null) {
+            doc.add(new StringField(SALE, saleCompleted.toString(), Field.Store.NO));
+        }
+        if (text != null && !text.isEmpty()) {
+            doc.add(new Field(TEXT, text, TEXT_TYPE));
+            // Un valor por turno: el salto de posiciones entre valores evita frases que crucen turnos
+            for (TranscriptTurnParser.Turn turn : TranscriptTurnParser.parse(text)) {
+                if (turn.speaker() != null) {
+                    doc.add(new Field(speakerField(turn.speaker()), turn.text(text), TEXT_TYPE));
+                }
+            }
+        }
+        return doc;
+    }
+
+    // "Persona 1" -> speaker_persona_1
+    private static String speakerField(String speaker) {
+        return SPEAKER_PREFIX + speaker.trim().toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", "_");
+    }
+
+    private static Query withFilters(Query textQuery, Long userId, Long branchId, Boolean saleCompleted) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder().add(textQuery, BooleanClause.Occur.MUST);
+        if (userId != null) {
+            builder.add(LongPoint.newExactQuery(USER, userId), BooleanClause.Occur.FILTER);
+        }
+        if (branchId != null) {
+            builder.add(LongPoint.newExactQuery(BRANCH, branchId), BooleanClause.Occur.FILTER);
+        }
+        if (saleCompleted != null) {
+            builder.add(new TermQuery(new Term(SALE, saleCompleted.toString())), BooleanClause.Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    // Todas las palabras con hasta 1 o 2 letras de diferencia, según el largo
+    private Query fuzzyQuery(String field, String queryText) throws IOException {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        int terms = 0;
+        try (TokenStream stream = analyzer.tokenStream(field, queryText)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                String value = term.toString();
+                int maxEdits = value.length() >= 8 ? 2 : value.length() >= 4 ? 1 : 0;
+                Query termQuery = maxEdits > 0 ? new FuzzyQuery(new Term(field, value), maxEdits) : new TermQuery(new Term(field, value));
+                builder.add(termQuery, BooleanClause.Occur.MUST);
+                terms++;
+            }
+            stream.end();
+        }
+        return terms > 0 ? builder.build() : null;
+    }
+
+    private static int countMatches(IndexSearcher searcher, Weight weight, String field, int doc) throws IOException {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+        Matches matches = weight.matches(leaf, doc - leaf.docBase);
+        if (matches == null) {
+            return 0;
+        }
+        MatchesIterator it = matches.getMatches(field);
+        int count = 0;
+        while (it != null && it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void afterCommit(IndexTask task) {
+        Runnable run = () -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                log.error("Error updating search index: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    run.run();
+                }
+            });
+        } else {
+            run.run();
+        }
+    }
+
+    private interface IndexTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Resaltado con pasajes de ~{@value #SNIPPET_LENGTH} caracteres alrededor de las coincidencias.
+     */
+    private static class SnippetHighlighter extends UnifiedHighlighter {
+        SnippetHighlighter(IndexSearcher searcher, Analyzer analyzer) {
+            super(UnifiedHighlighter.builder(searcher, analyzer)
+                    .withMaxLength(Integer.MAX_VALUE - 1)
+                    .withBreakIterator(() -> LengthGoalBreakIterator.createClosestToLength(
+                            BreakIterator.getWordInstance(new Locale("es")), SNIPPET_LENGTH, 0.5f))
+                    .withFormatter(new SnippetFormatter()));
+        }
+
+        Object[] snippets(String field, Query query, int[] docIds) throws IOException {
+            return highlightFieldsAsObjects(new String[] {field}, query, docIds, new int[] {MAX_SNIPPETS}).get(field);
+        }
+    }
+
+    /**
+     * Fragmentos como lista, con las coincidencias entre {@code **} (el formato que muestra la pantalla de búsqueda).
+     */
+    private static class SnippetFormatter extends PassageFormatter {
+        @Override
+        public Object format(Passage[] passages, String content) {
+            List<String> snippets = new ArrayList<>();
+            for (Passage passage : passages) {
+                StringBuilder sb = new StringBuilder();
+                if (passage.getStartOffset() > 0) sb.append("...");
+                int pos = passage.getStartOffset();
+                for (int i = 0; i < passage.getNumMatches(); i++) {
+                    int start = passage.getMatchStarts()[i];
+                    int end = passage.getMatchEnds()[i];
+                    if (start < pos) {
+                        continue;
+                    }
+                    sb.append(content, pos, start).append("**").append(content, start, end).append("**");
+                    pos = end;
+                }
+                sb.append(content, pos, passage.getEndOffset());
+                if (passage.getEndOffset() < content.length()) sb.append("...");
+                snippets.add(sb.toString().replaceAll("\\s+", " ").trim());
+            }
+            return snippets;
+        }
+    }
+
+    /**
+     * Analizador para español: minúsculas, sin acentos y stemming liviano. No saca stopwords
+     * porque en una venta "no" o "sin" cambian el sentido de la frase. Las etiquetas de hablante
+     * se descartan antes de separar las palabras (sin mover los offsets del resaltado).
+     */
+    static class SpanishFoldingAnalyzer extends Analyzer {
+        @Override
+        protected Reader initReader(String fieldName, Reader reader) {
+            return new PatternReplaceCharFilter(TranscriptTurnParser.SPEAKER_LABEL, "", reader);
+        }
+
+        @Override
+        public int getPositionIncrementGap(String fieldName) {
+            return 100;
+        }
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer source = new StandardTokenizer();
+            TokenStream result = new LowerCaseFilter(source);
+            result = new ASCIIFoldingFilter(result);
+            result = new SpanishLightStemFilter(result);
+            return new TokenStreamComponents(source, result);
+        }
+
+        @Override
+        protected TokenStream normalize(String fieldName, TokenStream in) {
+            return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+        }
+    }
+}
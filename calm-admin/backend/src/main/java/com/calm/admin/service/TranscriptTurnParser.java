@@ -0,0 +1,72 @@
+package com.calm.admin.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Separa el texto plano de una transcripción ({@code [Persona 1]: ...} al inicio de cada turno,
+ * como lo arma {@link S3Service#getTranscription}) en turnos por hablante.
+ */
+public final class TranscriptTurnParser {
+
+    // Etiqueta de hablante al inicio de línea
+    public static final Pattern SPEAKER_LABEL = Pattern.compile("(?m)^\\[([^\\]\\n]{1,40})\\]:[ \\t]*");
+
+    /**
+     * Un turno: el hablante (null si el texto no tiene etiquetas) y la posición de su texto dentro de la transcripción.
+     */
+    public record Turn(String speaker, int start, int end) {
+        public String text(String transcript) {
+            return transcript.substring(start, end);
+        }
+    }
+
+    private TranscriptTurnParser() {}
+
+    public static List<Turn> parse(String transcript) {
+        List<Turn> turns = new ArrayList<>();
+        if (transcript == null || transcript.isEmpty()) {
+            return turns;
+        }
+        Matcher m = SPEAKER_LABEL.matcher(transcript);
+        String speaker = null;
+        int start = 0;
+        while (m.find()) {
+            addTurn(turns, transcript, speaker, start, m.start());
+            speaker = m.group(1).trim();
+            start = m.end();
+        }
+        addTurn(turns, transcript, speaker, start, transcript.length());
+        return turns;
+    }
+
+    /**
+     * Palabras entre {@code start} y {@code end}: secuencias sin espacios con al menos una letra o dígito
+     * (la puntuación suelta no cuenta).
+     */
+    public static int countWords(CharSequence text, int start, int end) {
+        int words = 0;
+        boolean counted = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                counted = false;
+            } else if (!counted && Character.isLetterOrDigit(c)) {
+                words++;
+                counted = true;
+            }
+        }
+        return words;
+    }
+
+    private static void addTurn(List<Turn> turns, String transcript, String speaker, int start, int end) {
+        // Sin los espacios y saltos de línea que separan los turnos
+        while (end > start && Character.isWhitespace(transcript.charAt(end - 1))) end--;
+        while (start < end && Character.isWhitespace(transcript.charAt(start))) start++;
+        if (end > start) {
+            turns.add(new Turn(speaker, start, end));
+        }
+    }
+}
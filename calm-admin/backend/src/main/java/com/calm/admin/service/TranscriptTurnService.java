@@ -0,0 +1,216 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.TalkMetrics;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.model.TranscriptTurn;
+import com.calm.admin.repository.TalkMetricsRepository;
+import com.calm.admin.repository.TranscriptTurnRepository;
+import com.calm.admin.repository.TranscriptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turnos por hablante de cada transcripción, guardados aparte del texto completo, y las métricas
+ * de conversación calculadas con sus tiempos.
+ *
+ * Al importar se cargan con los tiempos que trae el JSON de S3. Las transcripciones importadas
+ * antes de que existiera la tabla se completan al arrancar a partir del texto, sin tiempos.
+ */
+@Service
+public class TranscriptTurnService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptTurnService.class);
+
+    private static final int BACKFILL_PAGE_SIZE = 200;
+
+    private final TranscriptTurnRepository turnRepository;
+    private final TalkMetricsRepository talkMetricsRepository;
+    private final TranscriptionRepository transcriptionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public TranscriptTurnService(TranscriptTurnRepository turnRepository,
+                                 TalkMetricsRepository talkMetricsRepository,
+                                 TranscriptionRepository transcriptionRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.turnRepository = turnRepository;
+        this.talkMetricsRepository = talkMetricsRepository;
+        this.transcriptionRepository = transcriptionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Turnos de una transcripción recién decodificada, listos para guardar.
+     */
+    public static List<TranscriptTurn> fromDecoded(String recordingId, List<TranscriptJsonDecoder.Turn> decoded) {
+        List<TranscriptTurn> turns = new ArrayList<>(decoded.size());
+        for (TranscriptJsonDecoder.Turn d : decoded) {
+            TranscriptTurn turn = new TranscriptTurn(recordingId, turns.size());
+            turn.setSpeaker(d.speaker());
+            turn.setStartMs(d.startMs());
+            turn.setEndMs(d.endMs());
+            turn.setTextStart(d.textStart());
+            turn.setTextEnd(d.textEnd());
+            turn.setWordCount(d.wordCount());
+            turns.add(turn);
+        }
+        return turns;
+    }
+
+    /**
+     * Turnos a partir del texto plano (etiquetas {@code [Persona N]: }), sin tiempos.
+     */
+    public static List<TranscriptTurn> fromText(String recordingId, String text) {
+        List<TranscriptTurn> turns = new ArrayList<>();
+        for (TranscriptTurnParser.Turn parsed : TranscriptTurnParser.parse(text)) {
+            TranscriptTurn turn = new TranscriptTurn(recordingId, turns.size());
+            turn.setSpeaker(parsed.speaker());
+            turn.setTextStart(parsed.start());
+            turn.setTextEnd(parsed.end());
+            turn.setWordCount(TranscriptTurnParser.countWords(text, parsed.start(), parsed.end()));
+            turns.add(turn);
+        }
+        return turns;
+    }
+
+    /**
+     * Métricas de tiempos de una transcripción recién decodificada.
+     * @return null si la transcripción no trae tiempos
+     */
+    public static TalkMetrics fromTalk(String recordingId, TalkMetricsCalculator.Result talk) {
+        if (talk == null) {
+            return null;
+        }
+        TalkMetrics metrics = new TalkMetrics(recordingId);
+        metrics.setDurationMs(talk.durationMs());
+        metrics.setVendorTalkMs(talk.vendorTalkMs());
+        metrics.setCustomerTalkMs(talk.customerTalkMs());
+        metrics.setVendorWords(talk.vendorWords());
+        metrics.setCustomerWords(talk.customerWords());
+        metrics.setSilenceMs(talk.silenceMs());
+        metrics.setSilenceGaps(talk.silenceGaps());
+        metrics.setLongestSilenceMs(talk.longestSilenceMs());
+        metrics.setInterruptions(talk.interruptions());
+        metrics.setVendorInterruptions(talk.vendorInterruptions());
+        metrics.setVendorTalkPercent(talk.vendorTalkPercent());
+        metrics.setSilencePercent(talk.silencePercent());
+        metrics.setVendorWordsPerMinute(talk.vendorWordsPerMinute());
+        metrics.setCustomerWordsPerMinute(talk.customerWordsPerMinute());
+        return metrics;
+    }
+
+    public void saveAll(List<TranscriptTurn> turns) {
+        if (!turns.isEmpty()) {
+            turnRepository.saveAll(turns);
+        }
+    }
+
+    public void saveTalkMetrics(List<TalkMetrics> metrics) {
+        if (!metrics.isEmpty()) {
+            talkMetricsRepository.saveAll(metrics);
+        }
+    }
+
+    public void remove(String recordingId) {
+        turnRepository.deleteByRecordingId(recordingId);
+        talkMetricsRepository.deleteByRecordingId(recordingId);
+    }
+
+    public TalkMetrics getTalkMetrics(String recordingId) {
+        return talkMetricsRepository.findById(recordingId).orElse(null);
+    }
+
+    /**
+     * Lo que el análisis avanzado ya no le pide al modelo: la parte del vendedor, el silencio y la duración.
+     * Sin tiempos, la parte del vendedor se calcula por palabras y el silencio queda sin dato.
+     */
+    public record LocalMetrics(Integer vendorTalkPercent, Integer silencePercent, Long durationMs) {}
+
+    public LocalMetrics getLocalMetrics(String recordingId) {
+        TalkMetrics talk = getTalkMetrics(recordingId);
+        if (talk != null) {
+            return new LocalMetrics(talk.getVendorTalkPercent(), talk.getSilencePercent(), talk.getDurationMs());
+        }
+        Map<String, Long> words = new HashMap<>();
+        for (Object[] row : turnRepository.getSpeakerStats(recordingId)) {
+            words.put((String) row[0], row[2] != null ? ((Number) row[2]).longValue() : 0L);
+        }
+        return new LocalMetrics(TalkMetricsCalculator.vendorWordPercent(words), null, null);
+    }
+
+    public List<TranscriptTurn> getTurns(String recordingId) {
+        return turnRepository.findByRecordingIdOrderByTurnIndex(recordingId);
+    }
+
+    /**
+     * Resumen por hablante: turnos, palabras y segundos hablados (null si la transcripción no trae tiempos).
+     */
+    public List<Map<String, Object>> getSpeakerStats(String recordingId) {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Object[] row : turnRepository.getSpeakerStats(recordingId)) {
+            Map<String, Object> speaker = new HashMap<>();
+            speaker.put("speaker", row[0]);
+            speaker.put("turns", ((Number) row[1]).longValue());
+            speaker.put("words", row[2] != null ? ((Number) row[2]).longValue() : 0L);
+            speaker.put("seconds", row[3] != null ? ((Number) row[3]).longValue() / 1000.0 : null);
+            stats.add(speaker);
+        }
+        return stats;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            int orphans = turnRepository.deleteOrphans() + talkMetricsRepository.deleteOrphans();
+            if (orphans > 0) {
+                log.info("Deleted {} turn and talk metrics rows of removed transcriptions", orphans);
+            }
+            backfill();
+        } catch (Exception e) {
+            log.error("Error backfilling transcript turns: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Carga los turnos de las transcripciones que no los tienen, por páginas ordenadas por recordingId.
+     * @return cantidad de transcripciones completadas
+     */
+    public int backfill() {
+        int filled = 0;
+        String afterId = "";
+        while (true) {
+            String from = afterId;
+            List<String> ids = turnRepository.findIdsWithoutTurns(from, PageRequest.of(0, BACKFILL_PAGE_SIZE));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer saved = transactionTemplate.execute(status -> {
+                List<TranscriptTurn> turns = new ArrayList<>();
+                for (Transcription t : transcriptionRepository.findAllById(ids)) {
+                    turns.addAll(fromText(t.getRecordingId(), t.getTranscriptionText()));
+                }
+                turnRepository.saveAll(turns);
+                return ids.size();
+            });
+            filled += saved != null ? saved : 0;
+            if (ids.size() < BACKFILL_PAGE_SIZE) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        if (filled > 0) {
+            log.info("Backfilled speaker turns for {} transcriptions", filled);
+        }
+        return filled;
+    }
+}
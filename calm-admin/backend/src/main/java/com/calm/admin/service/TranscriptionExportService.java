@@ -0,0 +1,272 @@
+package com.calm.admin.service;
+
+import com.calm.admin.repository.TranscriptionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Exportación de transcripciones con su análisis avanzado en CSV o NDJSON.
+ *
+ * Recorre la tabla por páginas ordenadas por recordingId (keyset, sin OFFSET) y escribe cada fila
+ * directo en la respuesta a medida que la lee, así la memoria no depende de cuántas filas haya.
+ */
+@Service
+public class TranscriptionExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionExportService.class);
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Formato no soportado: " + value);
+            }
+        }
+
+        public String getContentType() { return contentType; }
+
+        public String getExtension() { return extension; }
+    }
+
+    private record Column(String name, String expression) {}
+
+    // Columnas cortas de la transcripción y del análisis (sin los campos TEXT largos)
+    private static final List<Column> COLUMNS = List.of(
+            new Column("recordingId", "t.recordingId"),
+            new Column("userId", "t.userId"),
+            new Column("userName", "t.userName"),
+            new Column("branchId", "t.branchId"),
+            new Column("branchName", "t.branchName"),
+            new Column("recordingDate", "t.recordingDate"),
+            new Column("analyzed", "t.analyzed"),
+            new Column("analyzedAt", "t.analyzedAt"),
+            new Column("saleCompleted", "t.saleCompleted"),
+            new Column("saleStatus", "t.saleStatus"),
+            new Column("analysisConfidence", "t.analysisConfidence"),
+            new Column("sellerScore", "t.sellerScore"),
+            new Column("noSaleReason", "t.noSaleReason"),
+            new Column("executiveSummary", "t.executiveSummary"),
+            new Column("aperturaPercent", "a.aperturaPercent"),
+            new Column("descubrimientoPercent", "a.descubrimientoPercent"),
+            new Column("objecionPercent", "a.objecionPercent"),
+            new Column("argumentoPercent", "a.argumentoPercent"),
+            new Column("cierrePercent", "a.cierrePercent"),
+            new Column("silencioPercent", "a.silencioPercent"),
+            new Column("customerConfidenceScore", "a.customerConfidenceScore"),
+            new Column("vendorTalkPercent", "a.vendorTalkPercent"),
+            new Column("activeListeningScore", "a.activeListeningScore"),
+            new Column("objectionHandlingScore", "a.objectionHandlingScore"),
+            new Column("closingRhythmScore", "a.closingRhythmScore"),
+            new Column("empathyScore", "a.empathyScore"),
+            new Column("explicitObjections", "a.explicitObjections"),
+            new Column("implicitObjections", "a.implicitObjections"),
+            new Column("unansweredObjections", "a.unansweredObjections"),
+            new Column("ineffectiveResponses", "a.ineffectiveResponses"),
+            new Column("keyAbandonPhrase", "a.keyAbandonPhrase"),
+            new Column("abandonMinute", "a.abandonMinute"));
+
+    private static final Column TEXT_COLUMN = new Column("transcriptionText", "t.transcriptionText");
+
+    private final TranscriptionRepository transcriptionRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${export.page-size:1000}")
+    private int pageSize;
+
+    public TranscriptionExportService(TranscriptionRepository transcriptionRepository, ObjectMapper objectMapper,
+                                      PlatformTransactionManager transactionManager) {
+        this.transcriptionRepository = transcriptionRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Escribe la exportación completa en {@code out}. Cada página corre en su propia transacción de
+     * solo lectura y se hace flush al terminarla, así el cliente recibe datos desde el principio.
+     * @return cantidad de filas exportadas
+     */
+    public long export(OutputStream out, Format format, boolean analyzedOnly, boolean includeText) throws IOException {
+        List<Column> columns = new ArrayList<>(COLUMNS);
+        if (includeText) {
+            columns.add(TEXT_COLUMN);
+        }
+        List<String> expressions = columns.stream().map(Column::expression).toList();
+        RowWriter writer = format == Format.CSV ? new CsvWriter(out, columns) : new NdjsonWriter(out, columns);
+
+        long total = 0;
+        String afterId = null;
+        try {
+            writer.start();
+            while (true) {
+                Page page = writePage(writer, expressions, analyzedOnly, afterId);
+                writer.flush();
+                total += page.rows();
+                if (page.rows() < pageSize) {
+                    break;
+                }
+                afterId = page.lastId();
+            }
+        } catch (UncheckedIOException e) {
+            // El cliente cortó la descarga
+            log.warn("Export aborted after {} rows: {}", total, e.getCause().getMessage());
+            throw e.getCause();
+        }
+        log.info("Exported {} transcriptions as {}", total, format);
+        return total;
+    }
+
+    private record Page(int rows, String lastId) {}
+
+    private Page writePage(RowWriter writer, List<String> expressions, boolean analyzedOnly, String afterId) {
+        return readOnlyTransaction.execute(status -> {
+            int rows = 0;
+            String lastId = null;
+            try (Stream<Object[]> stream = transcriptionRepository.streamExportPage(expressions, analyzedOnly, afterId, pageSize)) {
+                Iterator<Object[]> it = stream.iterator();
+                while (it.hasNext()) {
+                    Object[] row = it.next();
+                    try {
+                        writer.write(row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    lastId = (String) row[0];
+                    rows++;
+                }
+            }
+            return new Page(rows, lastId);
+        });
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+
+        void write(Object[] row) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * CSV (RFC 4180) en UTF-8 con BOM para que Excel respete los acentos.
+     */
+    private static class CsvWriter implements RowWriter {
+        private final Writer out;
+        private final List<Column> columns;
+
+        CsvWriter(OutputStream out, List<Column> columns) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            this.columns = columns;
+        }
+
+        @Override
+        public void start() throws IOException {
+            out.write('\uFEFF');
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) out.write(',');
+                out.write(columns.get(i).name());
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) out.write(',');
+                if (row[i] != null) {
+                    writeField(row[i].toString());
+                }
+            }
+            out.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Un objeto JSON por línea, con los nombres de columna como claves.
+     */
+    private class NdjsonWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private final List<Column> columns;
+
+        NdjsonWriter(OutputStream out, List<Column> columns) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+            this.columns = columns;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < row.length; i++) {
+                generator.writeFieldName(columns.get(i).name());
+                if (row[i] instanceof TemporalAccessor) {
+                    generator.writeString(row[i].toString());
+                } else {
+                    generator.writeObject(row[i]);
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.TalkMetrics;
+import com.calm.admin.model.TranscriptTurn;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.TranscriptionRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipeline de importación desde S3 en dos etapas:
+ * 1) descarga en paralelo (metadata + transcripción, una sola vez cada una por grabación)
+ * 2) inserción en batch de las entidades construidas, desde el hilo que llama.
+ *
+ * La concurrencia está acotada por {@code sync.import.concurrency} para no agotar el pool
+ * de conexiones del cliente S3. Las escrituras quedan en el hilo llamador y los eventos de progreso
+ * se emiten siempre desde un solo hilo. Cada batch se guarda en su propia transacción: si falla,
+ * sus grabaciones quedan pendientes sin deshacer el resto de la sync.
+ */
+@Service
+public class TranscriptionImportPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionImportPipeline.class);
+
+    static final Set<Long> EXCLUDED_BRANCH_IDS = Set.of(4476L, 4495L, 4496L);
+
+    private final S3Service s3Service;
+    private final TranscriptionRepository repository;
+    private final DashboardRollupService rollupService;
+    private final TranscriptSearchService searchService;
+    private final TranscriptTurnService turnService;
+    private final ExecutorService fetchExecutor;
+    private final TransactionTemplate batchTransaction;
+
+    @Value("${sync.import.batch-size:50}")
+    private int batchSize;
+
+    public TranscriptionImportPipeline(S3Service s3Service,
+                                       TranscriptionRepository repository,
+                                       DashboardRollupService rollupService,
+                                       TranscriptSearchService searchService,
+                                       TranscriptTurnService turnService,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${sync.import.concurrency:16}") int concurrency) {
+        this.s3Service = s3Service;
+        this.repository = repository;
+        this.rollupService = rollupService;
+        this.searchService = searchService;
+        this.turnService = turnService;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fetchExecutor = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+            Thread t = new Thread(r, "s3-import-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Recibe avance de la importación, siempre desde el hilo que llamó a {@link #importAll}.
+     */
+    public interface ProgressListener {
+        default void onStart(int total) {}
+
+        void onProgress(String recordingId, int processed, int total);
+    }
+
+    /**
+     * Resultado de una corrida de importación.
+     */
+    public static class ImportResult {
+        private int imported;
+        private int excluded;
+        private int empty;
+        private final List<String> pendingIds = new ArrayList<>();
+
+        public int getImported() { return imported; }
+        public int getExcluded() { return excluded; }
+        public int getEmpty() { return empty; }
+
+        /** Grabaciones sin transcripción todavía o con error: se reintentan en la próxima sync. */
+        public List<String> getPendingIds() { return pendingIds; }
+    }
+
+    private enum Outcome { READY, EXCLUDED, EMPTY, PENDING }
+
+    private record Fetched(String recordingId, Outcome outcome, Transcription transcription,
+                           List<TranscriptTurn> turns, TalkMetrics talk) {
+        Fetched(String recordingId, Outcome outcome) {
+            this(recordingId, outcome, null, List.of(), null);
+        }
+    }
+
+    /**
+     * Importa las grabaciones indicadas (se asume que no existen en la base).
+     */
+    public ImportResult importAll(List<String> recordingIds, ProgressListener listener) {
+        ImportResult result = new ImportResult();
+        int total = recordingIds.size();
+        if (listener != null) {
+            listener.onStart(total);
+        }
+        if (total == 0) {
+            return result;
+        }
+
+        CompletionService<Fetched> completion = new ExecutorCompletionService<>(fetchExecutor);
+        List<Future<Fetched>> futures = new ArrayList<>(total);
+        for (String recordingId : recordingIds) {
+            futures.add(completion.submit(() -> fetch(recordingId)));
+        }
+
+        List<Transcription> batch = new ArrayList<>(batchSize);
+        List<TranscriptTurn> batchTurns = new ArrayList<>();
+        List<TalkMetrics> batchTalk = new ArrayList<>();
+        List<String> batchIds = new ArrayList<>(batchSize);
+        int processed = 0;
+
+        try {
+            for (int i = 0; i < total; i++) {
+                Fetched fetched;
+                try {
+                    fetched = completion.take().get();
+                } catch (java.util.concurrent.ExecutionException e) {
+                    // fetch() no lanza; esto solo ocurre ante errores inesperados del ejecutor
+                    log.error("Unexpected error fetching recording: {}", e.getMessage());
+                    processed++;
+                    continue;
+                }
+
+                switch (fetched.outcome()) {
+                    case READY -> {
+                        batch.add(fetched.transcription());
+                        batchTurns.addAll(fetched.turns());
+                        if (fetched.talk() != null) {
+                            batchTalk.add(fetched.talk());
+                        }
+                        batchIds.add(fetched.recordingId());
+                        if (batch.size() >= batchSize) {
+                            processed = flush(batch, batchTurns, batchTalk, batchIds, result, processed, total, listener);
+                        }
+                        continue;
+                    }
+                    case EXCLUDED -> result.excluded++;
+                    case EMPTY -> result.empty++;
+                    case PENDING -> result.pendingIds.add(fetched.recordingId());
+                }
+                processed++;
+                if (listener != null) {
+                    listener.onProgress(fetched.recordingId(), processed, total);
+                }
+            }
+            flush(batch, batchTurns, batchTalk, batchIds, result, processed, total, listener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            log.warn("Import interrupted after {} of {} recordings", processed, total);
+        }
+
+        log.info("Import pipeline finished: {} imported, {} excluded, {} empty, {} pending",
+                result.imported, result.excluded, result.empty, result.pendingIds.size());
+        return result;
+    }
+
+    /**
+     * Importa una sola grabación usando el mismo armado que el pipeline.
+     * @return la transcripción guardada, o null si se saltea (sucursal excluida, sin texto o no disponible)
+     */
+    public Transcription importOne(String recordingId) {
+        Fetched fetched = fetch(recordingId);
+        if (fetched.outcome() != Outcome.READY) {
+            return null;
+        }
+        Transcription saved = repository.save(fetched.transcription());
+        turnService.saveAll(fetched.turns());
+        if (fetched.talk() != null) {
+            turnService.saveTalkMetrics(List.of(fetched.talk()));
+        }
+        rollupService.recordAdded(List.of(saved));
+        searchService.index(List.of(saved));
+        return saved;
+    }
+
+    private int flush(List<Transcription> batch, List<TranscriptTurn> batchTurns, List<TalkMetrics> batchTalk,
+                      List<String> batchIds, ImportResult result,
+                      int processed, int total, ProgressListener listener) {
+        if (batch.isEmpty()) {
+            return processed;
+        }
+        try {
+            // Con flush dentro de la transacción los errores de constraint salen acá y no al commit de la sync
+            batchTransaction.executeWithoutResult(status -> {
+                repository.saveAllAndFlush(batch);
+                turnService.saveAll(batchTurns);
+                turnService.saveTalkMetrics(batchTalk);
+                rollupService.recordAdded(batch);
+                // Se indexa al confirmar esta transacción, no la de la sync
+                searchService.index(batch);
+            });
+            result.imported += batch.size();
+        } catch (Exception e) {
+            log.error("Error saving import batch of {}: {}", batch.size(), e.getMessage());
+            result.pendingIds.addAll(batchIds);
+        }
+        for (String recordingId : batchIds) {
+            processed++;
+            if (listener != null) {
+                listener.onProgress(recordingId, processed, total);
+            }
+        }
+        batch.clear();
+        batchTurns.clear();
+        batchTalk.clear();
+        batchIds.clear();
+        return processed;
+    }
+
+    /**
+     * Etapa de descarga: corre en el pool, no toca la base.
+     */
+    private Fetched fetch(String recordingId) {
+        try {
+            Map<String, Object> metadata = s3Service.getMetadata(recordingId);
+
+            Long branchIdValue = metadata.get("branchId") != null ? (Long) metadata.get("branchId") : null;
+            if (branchIdValue != null && EXCLUDED_BRANCH_IDS.contains(branchIdValue)) {
+                log.info("Skipping recording {} from excluded branch {}", recordingId, branchIdValue);
+                return new Fetched(recordingId, Outcome.EXCLUDED);
+            }
+
+            S3Service.TranscriptObject transcript = s3Service.fetchTranscription(recordingId);
+            if (transcript == null) {
+                return new Fetched(recordingId, Outcome.PENDING);
+            }
+            if (transcript.text() == null || transcript.text().isEmpty()) {
+                log.warn("No transcription text found for recording {}", recordingId);
+                return new Fetched(recordingId, Outcome.EMPTY);
+            }
+
+            LocalDateTime recordingDate = transcript.lastModified() != null
+                ? LocalDateTime.ofInstant(transcript.lastModified(), ZoneId.systemDefault()).minusHours(3)
+                : LocalDateTime.now();
+
+            // Obtener valores de metadata
+            String userName = metadata.get("userName") != null ? (String) metadata.get("userName") : "Desconocido";
+            String branchName = metadata.get("branchName") != null ? (String) metadata.get("branchName") : "Desconocida";
+
+            Transcription transcription = new Transcription();
+            transcription.setRecordingId(recordingId);
+            transcription.setUserId(metadata.get("userId") != null ? (Long) metadata.get("userId") : null);
+            transcription.setUserName(mapUserName(userName));
+            transcription.setBranchId(branchIdValue);
+            transcription.setBranchName(mapBranchName(branchName));
+            transcription.setTranscriptionText(transcript.text());
+            transcription.setRecordingDate(recordingDate);
+            transcription.setAnalyzed(false);
+
+            return new Fetched(recordingId, Outcome.READY, transcription,
+                    TranscriptTurnService.fromDecoded(recordingId, transcript.turns()),
+                    TranscriptTurnService.fromTalk(recordingId, transcript.talk()));
+        } catch (Exception e) {
+            log.error("Error fetching recording {}: {}", recordingId, e.getMessage());
+            return new Fetched(recordingId, Outcome.PENDING);
+        }
+    }
+
+    /**
+     * Mapea nombres de usuario a nombres reales.
+     * Agregar más mapeos según sea necesario.
+     */
+    private String mapUserName(String originalName) {
+        if (originalName == null) return "Desconocido";
+
+        // Mapeos hardcodeados
+        return switch (originalName.toLowerCase().trim()) {
+            case "calm administrator" -> "Matías Vergara";
+            case "admin" -> "Matías Vergara";
+            default -> originalName;
+        };
+    }
+
+    /**
+     * Mapea nombres de sucursal a nombres reales.
+     * Agregar más mapeos según sea necesario.
+     */
+    private String mapBranchName(String originalName) {
+        if (originalName == null) return "Desconocida";
+
+        // Mapeos hardcodeados
+        return switch (originalName.toLowerCase().trim()) {
+            case "central" -> "Godoy Cruz";
+            default -> originalName;
+        };
+    }
+}
@@ -4,21 +4,25 @@ import com.calm.admin.dto.DashboardMetricsDTO;
 import com.calm.admin.dto.FilterDTO;
 import com.calm.admin.dto.SearchResultDTO;
 import com.calm.admin.dto.TranscriptionDTO;
+import com.calm.admin.dto.TranscriptionSummaryDTO;
 import com.calm.admin.model.AnalysisResult;
+import com.calm.admin.model.TranscriptTurn;
 import com.calm.admin.model.Transcription;
 import com.calm.admin.repository.AdvancedAnalysisRepository;
 import com.calm.admin.repository.TranscriptionRepository;
+import com.calm.admin.repository.TranscriptionRepositoryCustom.SummarySort;
+import com.calm.admin.service.ChatGPTAnalyzerService.AnalysisSource;
+import com.calm.admin.service.ChatGPTAnalyzerService.CachedAnalysis;
+import com.calm.admin.service.ChatGPTAnalyzerService.PreparedAnalysis;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,65 +30,61 @@ public class TranscriptionService {
 
     private static final Logger log = LoggerFactory.getLogger(TranscriptionService.class);
 
-    private static final Set<Long> EXCLUDED_BRANCH_IDS = Set.of(4476L, 4495L, 4496L);
+    // Tamaño de cada IN (...) al comparar el listado de S3 contra la base
+    private static final int EXISTENCE_CHECK_CHUNK = 1000;
 
     private final TranscriptionRepository repository;
     private final AdvancedAnalysisRepository advancedAnalysisRepository;
     private final S3Service s3Service;
     private final ChatGPTAnalyzerService analyzerService;
+    private final SyncWatermarkService watermarkService;
+    private final TranscriptionImportPipeline importPipeline;
+    private final AnalysisExecutor analysisExecutor;
+    private final AdvancedAnalyzerService advancedAnalyzerService;
+    private final DashboardRollupService rollupService;
+    private final TranscriptSearchService searchService;
+    private final TranscriptTurnService turnService;
 
     public TranscriptionService(TranscriptionRepository repository, 
                                 AdvancedAnalysisRepository advancedAnalysisRepository,
                                 S3Service s3Service, 
-                                ChatGPTAnalyzerService analyzerService) {
+                                ChatGPTAnalyzerService analyzerService,
+                                SyncWatermarkService watermarkService,
+                                TranscriptionImportPipeline importPipeline,
+                                AnalysisExecutor analysisExecutor,
+                                AdvancedAnalyzerService advancedAnalyzerService,
+                                DashboardRollupService rollupService,
+                                TranscriptSearchService searchService,
+                                TranscriptTurnService turnService) {
         this.repository = repository;
         this.advancedAnalysisRepository = advancedAnalysisRepository;
         this.s3Service = s3Service;
         this.analyzerService = analyzerService;
+        this.watermarkService = watermarkService;
+        this.importPipeline = importPipeline;
+        this.analysisExecutor = analysisExecutor;
+        this.advancedAnalyzerService = advancedAnalyzerService;
+        this.rollupService = rollupService;
+        this.searchService = searchService;
+        this.turnService = turnService;
     }
 
     @Transactional
     public void syncTranscriptions() {
+        syncTranscriptions(false);
+    }
+
+    @Transactional
+    public void syncTranscriptions(boolean rescan) {
         log.info("Starting transcription sync from S3...");
         
-        List<String> recordingIds = s3Service.listAllRecordingIds();
-        int newCount = 0;
-        
-        for (String recordingId : recordingIds) {
-            if (!repository.existsByRecordingId(recordingId)) {
-                if (s3Service.transcriptionExists(recordingId)) {
-                    try {
-                        Transcription imported = importTranscription(recordingId);
-                        if (imported != null) {
-                            newCount++;
-                        }
-                    } catch (Exception e) {
-                        log.error("Error importing transcription {}: {}", recordingId, e.getMessage());
-                    }
-                }
-            }
-        }
-        
-        log.info("Sync completed. Imported {} new transcriptions", newCount);
+        TranscriptionImportPipeline.ImportResult result = importNewRecordings(rescan, null);
+        log.info("Sync completed. Imported {} new transcriptions", result.getImported());
     }
 
     @Transactional
     public Map<String, Object> quickSync() {
-        List<String> s3Ids = s3Service.listAllRecordingIds();
-        int imported = 0;
-
-        for (String recordingId : s3Ids) {
-            if (!repository.existsByRecordingId(recordingId)) {
-                if (s3Service.transcriptionExists(recordingId)) {
-                    try {
-                        importTranscription(recordingId);
-                        imported++;
-                    } catch (Exception e) {
-                        log.error("quickSync import error {}: {}", recordingId, e.getMessage());
-                    }
-                }
-            }
-        }
+        int imported = importNewRecordings(false, null).getImported();
 
         if (imported > 0) {
             log.info("quickSync: imported {} new, analyzing...", imported);
@@ -96,45 +96,48 @@ public class TranscriptionService {
 
     @Transactional
     public Transcription importTranscription(String recordingId) {
-        Map<String, Object> metadata = s3Service.getMetadata(recordingId);
-        
-        Long branchIdValue = metadata.get("branchId") != null ? (Long) metadata.get("branchId") : null;
-        if (branchIdValue != null && EXCLUDED_BRANCH_IDS.contains(branchIdValue)) {
-            log.info("Skipping recording {} from excluded branch {}", recordingId, branchIdValue);
-            return null;
+        return importPipeline.importOne(recordingId);
+    }
+
+    /**
+     * Lista lo nuevo en S3, importa lo que no está en la base y avanza la marca de agua.
+     * Las sucursales excluidas y las transcripciones pendientes se resuelven dentro del pipeline.
+     */
+    public TranscriptionImportPipeline.ImportResult importNewRecordings(boolean rescan,
+                                                                       TranscriptionImportPipeline.ProgressListener listener) {
+        List<S3Service.RecordingObject> listed = watermarkService.listNewRecordings(rescan);
+        TranscriptionImportPipeline.ImportResult result = importPipeline.importAll(findUnknownIds(listed), listener);
+        watermarkService.advance(listed, result.getPendingIds());
+        return result;
+    }
+
+    /**
+     * IDs listados que todavía no están en la base.
+     * Consulta los existentes por bloques de {@code EXISTENCE_CHECK_CHUNK} y resta en memoria,
+     * en lugar de una consulta por grabación. Conserva el orden del listado.
+     */
+    private List<String> findUnknownIds(List<S3Service.RecordingObject> listed) {
+        Set<String> known = new HashSet<>();
+        List<String> chunk = new ArrayList<>(EXISTENCE_CHECK_CHUNK);
+        for (S3Service.RecordingObject object : listed) {
+            chunk.add(object.recordingId());
+            if (chunk.size() == EXISTENCE_CHECK_CHUNK) {
+                known.addAll(repository.findExistingRecordingIds(chunk));
+                chunk.clear();
+            }
         }
-        
-        String transcriptionText = s3Service.getTranscription(recordingId);
-        
-        if (transcriptionText == null || transcriptionText.isEmpty()) {
-            log.warn("No transcription text found for recording {}", recordingId);
-            return null;
+        if (!chunk.isEmpty()) {
+            known.addAll(repository.findExistingRecordingIds(chunk));
         }
-        
-        java.time.Instant s3Date = s3Service.getTranscriptionDate(recordingId);
-        LocalDateTime recordingDate = s3Date != null 
-            ? LocalDateTime.ofInstant(s3Date, java.time.ZoneId.systemDefault()).minusHours(3)
-            : LocalDateTime.now();
-        
-        // Obtener valores de metadata
-        String userName = metadata.get("userName") != null ? (String) metadata.get("userName") : "Desconocido";
-        String branchName = metadata.get("branchName") != null ? (String) metadata.get("branchName") : "Desconocida";
-        
-        // Mapeo de nombres (hardcoded)
-        userName = mapUserName(userName);
-        branchName = mapBranchName(branchName);
-        
-        Transcription transcription = new Transcription();
-        transcription.setRecordingId(recordingId);
-        transcription.setUserId(metadata.get("userId") != null ? (Long) metadata.get("userId") : null);
-        transcription.setUserName(userName);
-        transcription.setBranchId(metadata.get("branchId") != null ? (Long) metadata.get("branchId") : null);
-        transcription.setBranchName(branchName);
-        transcription.setTranscriptionText(transcriptionText);
-        transcription.setRecordingDate(recordingDate);
-        transcription.setAnalyzed(false);
-        
-        return repository.save(transcription);
+
+        List<String> unknown = new ArrayList<>();
+        for (S3Service.RecordingObject object : listed) {
+            if (!known.contains(object.recordingId())) {
+                unknown.add(object.recordingId());
+            }
+        }
+        log.info("Sync diff: {} listed, {} already imported, {} new", listed.size(), known.size(), unknown.size());
+        return unknown;
     }
 
     @Transactional
@@ -142,13 +145,15 @@ public class TranscriptionService {
         List<Transcription> unanalyzed = repository.findByAnalyzedFalse();
         log.info("Found {} unanalyzed transcriptions", unanalyzed.size());
         
-        for (Transcription transcription : unanalyzed) {
-            try {
-                analyzeTranscription(transcription.getRecordingId());
-            } catch (Exception e) {
-                log.error("Error analyzing transcription {}: {}", transcription.getRecordingId(), e.getMessage());
-            }
-        }
+        AnalysisExecutor.BatchResult result = analysisExecutor.runAll(unanalyzed, this::requestAnalysis,
+                (transcription, analysis, completed, total, error) -> {
+                    if (error != null) {
+                        log.error("Error analyzing transcription {}: {}", transcription.getRecordingId(), error.getMessage());
+                        return;
+                    }
+                    saveAnalysis(transcription, analysis);
+                });
+        log.info("Analysis of unprocessed transcriptions done: {} OK, {} errors", result.getSuccess(), result.getErrors());
     }
 
     @Transactional
@@ -156,59 +161,70 @@ public class TranscriptionService {
         Transcription transcription = repository.findById(recordingId)
                 .orElseThrow(() -> new RuntimeException("Transcription not found: " + recordingId));
         
-        if (transcription.getTranscriptionText() == null || transcription.getTranscriptionText().isEmpty()) {
-            throw new RuntimeException("No transcription text available for analysis");
-        }
-        
-        AnalysisResult analysis = analyzerService.analyzeTranscription(
-                transcription.getTranscriptionText(),
-                transcription.getUserName(),
-                transcription.getBranchName()
-        );
-        
-        transcription.setSaleCompleted(analysis.isSaleCompleted());
-        transcription.setSaleStatus(analysis.getSaleStatus());
-        transcription.setAnalysisConfidence(analysis.getAnalysisConfidence());
-        transcription.setConfidenceTrace(analysis.getConfidenceTrace());
-        transcription.setSaleEvidence(analysis.getSaleEvidence());
-        transcription.setSaleEvidenceMeta(analysis.getSaleEvidenceMeta());
-        transcription.setNoSaleReason(analysis.getNoSaleReason());
-        transcription.setProductsDiscussed(String.join(", ", analysis.getProductsDiscussed()));
-        transcription.setCustomerObjections(String.join(", ", analysis.getCustomerObjections()));
-        transcription.setImprovementSuggestions(String.join(", ", analysis.getImprovementSuggestions()));
-        transcription.setExecutiveSummary(analysis.getExecutiveSummary());
-        transcription.setSellerScore(analysis.getSellerScore());
-        transcription.setSellerStrengths(String.join(", ", analysis.getSellerStrengths()));
-        transcription.setSellerWeaknesses(String.join(", ", analysis.getSellerWeaknesses()));
-        transcription.setAnalyzed(true);
-        transcription.setAnalyzedAt(LocalDateTime.now());
-        
-        repository.save(transcription);
+        // Pedido explícito: siempre va a GPT aunque haya un resultado cacheado
+        saveAnalysis(transcription, requestAnalysis(transcription, true));
         log.info("Analysis completed for transcription {}", recordingId);
         
         return toDTO(transcription);
     }
 
-    public List<TranscriptionDTO> getTranscriptions(FilterDTO filter) {
-        List<Transcription> transcriptions;
-        
-        if (filter != null && hasAnyFilter(filter)) {
-            transcriptions = repository.findWithFilters(
-                    filter.getUserId(),
-                    filter.getBranchId(),
-                    filter.getSaleCompleted(),
-                    filter.getDateFrom() != null ? filter.getDateFrom().atStartOfDay() : null,
-                    filter.getDateTo() != null ? filter.getDateTo().atTime(23, 59, 59) : null,
-                    filter.getMinScore(),
-                    filter.getMaxScore()
-            );
-        } else {
-            transcriptions = repository.findAll();
+    /**
+     * Página del listado.
+     * @param nextCursor cursor para pedir la página siguiente, o null si no hay más
+     */
+    public record SummaryPage(List<TranscriptionSummaryDTO> items, String nextCursor) {}
+
+    /**
+     * Listado liviano (sin texto ni campos TEXT del análisis) con paginación por cursor.
+     * @param sort propiedad de orden: recordingDate, sellerScore, analysisConfidence o userName
+     * @param cursor cursor devuelto por la página anterior, o null para la primera
+     * @throws IllegalArgumentException si el orden o el cursor no son válidos
+     */
+    public SummaryPage getTranscriptionSummaries(FilterDTO filter, String sort, boolean ascending,
+                                                 String cursor, int limit) {
+        SummarySort summarySort = SummarySort.fromProperty(sort);
+        Object afterValue = null;
+        String afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = cursor.split("\\.", -1);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            try {
+                afterValue = NULL_CURSOR_VALUE.equals(parts[0]) ? null : summarySort.parse(decodeCursorPart(parts[0]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            afterId = decodeCursorPart(parts[1]);
+        }
+
+        // Una fila de más para saber si hay página siguiente
+        List<TranscriptionSummaryDTO> rows = repository.findSummaries(filter, summarySort, ascending,
+                afterValue, afterId, limit + 1);
+        if (rows.size() <= limit) {
+            return new SummaryPage(rows, null);
+        }
+        List<TranscriptionSummaryDTO> page = rows.subList(0, limit);
+        TranscriptionSummaryDTO last = page.get(limit - 1);
+        Object lastValue = summarySort.valueOf(last);
+        String nextCursor = (lastValue == null ? NULL_CURSOR_VALUE : encodeCursorPart(String.valueOf(lastValue))) + "."
+                + encodeCursorPart(last.getRecordingId());
+        return new SummaryPage(new ArrayList<>(page), nextCursor);
+    }
+
+    // Valor de orden null en el cursor ('~' no es un carácter de base64url)
+    private static final String NULL_CURSOR_VALUE = "~";
+
+    private static String encodeCursorPart(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursorPart(String value) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
         }
-        
-        return transcriptions.stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
     }
 
     public TranscriptionDTO getTranscription(String recordingId) {
@@ -217,67 +233,44 @@ public class TranscriptionService {
                 .orElseThrow(() -> new RuntimeException("Transcription not found: " + recordingId));
     }
 
+    /**
+     * Turnos por hablante de una transcripción, con su texto, y el resumen por hablante.
+     */
+    public Map<String, Object> getTurns(String recordingId) {
+        Transcription transcription = repository.findById(recordingId)
+                .orElseThrow(() -> new RuntimeException("Transcription not found: " + recordingId));
+        String text = transcription.getTranscriptionText();
+        List<Map<String, Object>> turns = new ArrayList<>();
+        for (TranscriptTurn turn : turnService.getTurns(recordingId)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("speaker", turn.getSpeaker());
+            item.put("startMs", turn.getStartMs());
+            item.put("endMs", turn.getEndMs());
+            item.put("wordCount", turn.getWordCount());
+            item.put("text", text != null && turn.getTextEnd() <= text.length() ? turn.text(text) : null);
+            turns.add(item);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("turns", turns);
+        response.put("speakers", turnService.getSpeakerStats(recordingId));
+        response.put("talk", turnService.getTalkMetrics(recordingId));
+        return response;
+    }
+
+    /**
+     * Frases de venta del diccionario que aparecen en la transcripción, con su posición en el texto.
+     */
+    public List<SaleSignalMatcher.Match> getSaleSignals(String recordingId) {
+        Transcription transcription = repository.findById(recordingId)
+                .orElseThrow(() -> new RuntimeException("Transcription not found: " + recordingId));
+        return analyzerService.findSaleSignals(transcription.getTranscriptionText());
+    }
+
     public DashboardMetricsDTO getDashboardMetrics() {
-        long total = repository.count();
-        long analyzed = repository.countAnalyzed();
-        long pendingAnalysis = repository.countPendingAnalysis();
-        long sales = repository.countSales();
-        long noSales = repository.countNoSales();
-        Double avgScore = repository.averageSellerScore();
-        
-        List<DashboardMetricsDTO.SellerMetrics> sellerMetrics = repository.getSellerStats().stream()
-                .map(row -> {
-                    DashboardMetricsDTO.SellerMetrics sm = new DashboardMetricsDTO.SellerMetrics();
-                    sm.setUserId((Long) row[0]);
-                    sm.setUserName((String) row[1]);
-                    sm.setBranchName((String) row[2]);
-                    sm.setTotalInteractions(((Number) row[3]).longValue());
-                    sm.setSales(((Number) row[4]).longValue());
-                    sm.setNoSales(((Number) row[5]).longValue()); // Ahora viene directo de la query
-                    sm.setConversionRate(calculateRate(((Number) row[4]).longValue(), ((Number) row[3]).longValue()));
-                    sm.setAverageScore(row[6] != null ? ((Number) row[6]).doubleValue() : 0.0);
-                    return sm;
-                })
-                .sorted((a, b) -> Double.compare(b.getConversionRate(), a.getConversionRate()))
-                .collect(Collectors.toList());
-        
-        List<DashboardMetricsDTO.BranchMetrics> branchMetrics = repository.getBranchStats().stream()
-                .map(row -> {
-                    DashboardMetricsDTO.BranchMetrics bm = new DashboardMetricsDTO.BranchMetrics();
-                    bm.setBranchId((Long) row[0]);
-                    bm.setBranchName((String) row[1]);
-                    bm.setTotalInteractions(((Number) row[2]).longValue());
-                    bm.setSales(((Number) row[3]).longValue());
-                    bm.setNoSales(((Number) row[4]).longValue()); // Ahora viene directo de la query
-                    bm.setConversionRate(calculateRate(((Number) row[3]).longValue(), ((Number) row[2]).longValue()));
-                    bm.setAverageScore(row[5] != null ? ((Number) row[5]).doubleValue() : 0.0);
-                    return bm;
-                })
-                .sorted((a, b) -> Double.compare(b.getConversionRate(), a.getConversionRate()))
-                .collect(Collectors.toList());
-        
-        Map<String, Long> noSaleReasons = repository.countByNoSaleReason().stream()
-                .collect(Collectors.toMap(
-                        row -> (String) row[0],
-                        row -> ((Number) row[1]).longValue(),
-                        (a, b) -> a,
-                        LinkedHashMap::new
-                ));
-        
-        DashboardMetricsDTO metrics = new DashboardMetricsDTO();
-        metrics.setTotalTranscriptions(total);
-        metrics.setAnalyzedTranscriptions(analyzed);
-        metrics.setPendingAnalysis(pendingAnalysis);
-        metrics.setTotalSales(sales);
-        metrics.setTotalNoSales(noSales);
-        // Conversión basada en ANALIZADAS, no en total
-        metrics.setConversionRate(calculateRate(sales, analyzed));
-        metrics.setAverageSellerScore(avgScore != null ? avgScore : 0.0);
-        metrics.setSellerMetrics(sellerMetrics);
-        metrics.setBranchMetrics(branchMetrics);
-        metrics.setNoSaleReasons(noSaleReasons);
-        
-        return metrics;
+        if (rollupService.isEnabled()) {
+            return rollupService.getDashboardMetrics();
+        }
+        return DashboardAggregator.aggregate(repository.getDashboardGroups());
     }
 
     public List<Map<String, Object>> getSellers() {
@@ -304,8 +297,16 @@ public class TranscriptionService {
 
     @Transactional
     public Map<String, Object> forceSync() {
+        return forceSync(false);
+    }
+
+    /**
+     * @param rescan true para ignorar la marca de agua y volver a listar el bucket completo
+     */
+    @Transactional
+    public Map<String, Object> forceSync(boolean rescan) {
         long beforeCount = repository.count();
-        syncTranscriptions();
+        syncTranscriptions(rescan);
         long afterCount = repository.count();
         long imported = afterCount - beforeCount;
         
@@ -322,159 +323,6 @@ public class TranscriptionService {
         return result;
     }
 
-    /**
-     * Sync with Server-Sent Events for real-time progress updates.
-     * Resiliente a desconexiones del cliente.
-     */
-    public SseEmitter forceSyncWithProgress() {
-        SseEmitter emitter = new SseEmitter(900000L); // 15 minutes timeout
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        
-        final boolean[] emitterAlive = {true};
-        
-        emitter.onCompletion(() -> { emitterAlive[0] = false; executor.shutdown(); });
-        emitter.onTimeout(() -> { emitterAlive[0] = false; executor.shutdown(); });
-        emitter.onError((ex) -> { emitterAlive[0] = false; });
-
-        executor.execute(() -> {
-            try {
-                // Phase 1: Import from S3
-                safeSendEvent(emitter, emitterAlive, "phase", "import", "Buscando nuevas transcripciones en S3...", 0, 0);
-                
-                List<String> recordingIds = s3Service.listAllRecordingIds();
-                
-                // Count new ones first (pre-filter excluded branches via metadata check)
-                List<String> newIds = new ArrayList<>();
-                for (String recordingId : recordingIds) {
-                    if (!repository.existsByRecordingId(recordingId) && s3Service.transcriptionExists(recordingId)) {
-                        Map<String, Object> meta = s3Service.getMetadata(recordingId);
-                        Long bId = meta.get("branchId") != null ? (Long) meta.get("branchId") : null;
-                        if (bId != null && EXCLUDED_BRANCH_IDS.contains(bId)) {
-                            log.info("Skipping recording {} from excluded branch {}", recordingId, bId);
-                            continue;
-                        }
-                        newIds.add(recordingId);
-                    }
-                }
-                int totalToImport = newIds.size();
-                
-                safeSendEvent(emitter, emitterAlive, "import_start", null, 
-                        "Importando " + totalToImport + " transcripciones nuevas...", 0, totalToImport);
-                
-                int importedCount = 0;
-                for (String recordingId : newIds) {
-                    try {
-                        importTranscription(recordingId);
-                        importedCount++;
-                        safeSendEvent(emitter, emitterAlive, "import_progress", recordingId, 
-                                "Importando: " + recordingId, importedCount, totalToImport);
-                    } catch (Exception e) {
-                        log.error("Error importing {}: {}", recordingId, e.getMessage());
-                    }
-                }
-                
-                safeSendEvent(emitter, emitterAlive, "import_complete", null, 
-                        "Importación completada: " + importedCount + " nuevas", importedCount, totalToImport);
-                
-                // Phase 2: Analyze unanalyzed
-                List<Transcription> unanalyzed = repository.findByAnalyzedFalse();
-                int totalToAnalyze = unanalyzed.size();
-                
-                if (totalToAnalyze > 0) {
-                    safeSendEvent(emitter, emitterAlive, "analyze_start", null, 
-                            "Analizando " + totalToAnalyze + " transcripciones con GPT...", 0, totalToAnalyze);
-                    
-                    int analyzedCount = 0;
-                    int errors = 0;
-                    for (Transcription transcription : unanalyzed) {
-                        try {
-                            doAnalyzeTranscription(transcription.getRecordingId());
-                            analyzedCount++;
-                            safeSendEvent(emitter, emitterAlive, "analyze_progress", transcription.getRecordingId(), 
-                                    "Analizando: " + (transcription.getUserName() != null ? transcription.getUserName() : transcription.getRecordingId()) 
-                                    + " (" + analyzedCount + "/" + totalToAnalyze + ")", 
-                                    analyzedCount, totalToAnalyze);
-                            
-                            // Pausa para no saturar API
-                            Thread.sleep(300);
-                        } catch (Exception e) {
-                            errors++;
-                            log.error("Error analyzing {}: {}", transcription.getRecordingId(), e.getMessage());
-                        }
-                    }
-                    
-                    log.info("Sync analysis complete: {} OK, {} errors", analyzedCount, errors);
-                    
-                    // Complete
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("imported", importedCount);
-                    result.put("analyzed", analyzedCount);
-                    result.put("errors", errors);
-                    result.put("timestamp", LocalDateTime.now().toString());
-                    
-                    safeSendEvent(emitter, emitterAlive, "complete", null, 
-                            "Completado: " + importedCount + " importadas, " + analyzedCount + " analizadas", 
-                            analyzedCount, totalToAnalyze);
-                    
-                    if (emitterAlive[0]) {
-                        try {
-                            emitter.send(SseEmitter.event().name("result").data(result));
-                            emitter.complete();
-                        } catch (Exception ignored) {}
-                    }
-                } else {
-                    // Nothing to analyze
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("imported", importedCount);
-                    result.put("analyzed", 0);
-                    result.put("errors", 0);
-                    result.put("timestamp", LocalDateTime.now().toString());
-                    
-                    safeSendEvent(emitter, emitterAlive, "complete", null, 
-                            "Completado: " + importedCount + " importadas, sin pendientes de análisis", 0, 0);
-                    
-                    if (emitterAlive[0]) {
-                        try {
-                            emitter.send(SseEmitter.event().name("result").data(result));
-                            emitter.complete();
-                        } catch (Exception ignored) {}
-                    }
-                }
-                
-            } catch (Exception e) {
-                log.error("Error during sync: {}", e.getMessage(), e);
-                if (emitterAlive[0]) {
-                    try {
-                        emitter.send(SseEmitter.event().name("error").data(e.getMessage()));
-                        emitter.completeWithError(e);
-                    } catch (Exception ignored) {}
-                }
-            } finally {
-                executor.shutdown();
-                try { emitter.complete(); } catch (Exception ignored) {}
-            }
-        });
-        
-        return emitter;
-    }
-
-    private void safeSendEvent(SseEmitter emitter, boolean[] alive, String type, String id, String message, int current, int total) {
-        if (!alive[0]) return;
-        try {
-            Map<String, Object> data = new HashMap<>();
-            data.put("type", type);
-            data.put("id", id);
-            data.put("message", message);
-            data.put("current", current);
-            data.put("total", total);
-            data.put("percent", total > 0 ? Math.round((current * 100.0) / total) : 0);
-            emitter.send(SseEmitter.event().name("progress").data(data));
-        } catch (Exception e) {
-            alive[0] = false;
-            log.debug("SSE client disconnected during sync, continuing in background");
-        }
-    }
-    
     /**
      * Re-analiza solo las transcripciones marcadas como "no venta".
      * Útil para corregir posibles errores de detección después de mejorar el prompt.
@@ -484,186 +332,129 @@ public class TranscriptionService {
         List<Transcription> noSales = repository.findAnalyzedNoSales();
         log.info("🔄 Re-analizando {} transcripciones marcadas como 'no venta'...", noSales.size());
         
-        int reanalyzed = 0;
-        int corrected = 0;
+        final int[] corrected = {0};
         
-        for (Transcription transcription : noSales) {
-            try {
-                boolean wasSale = transcription.getSaleCompleted() != null && transcription.getSaleCompleted();
-                
-                // Re-analyze
-                analyzeTranscription(transcription.getRecordingId());
-                reanalyzed++;
-                
-                // Check if it was corrected
-                Transcription updated = repository.findById(transcription.getRecordingId()).orElse(null);
-                if (updated != null && updated.getSaleCompleted() != null && updated.getSaleCompleted() && !wasSale) {
-                    corrected++;
-                    log.info("✅ Corregida: {} - {} (ahora es VENTA)", 
-                            transcription.getRecordingId(), transcription.getUserName());
-                }
-            } catch (Exception e) {
-                log.error("Error re-analizando {}: {}", transcription.getRecordingId(), e.getMessage());
-            }
-        }
+        AnalysisExecutor.BatchResult batch = analysisExecutor.runAll(noSales, this::requestAnalysis,
+                (transcription, analysis, completed, total, error) -> {
+                    if (error != null) {
+                        log.error("Error re-analizando {}: {}", transcription.getRecordingId(), error.getMessage());
+                        return;
+                    }
+                    boolean wasSale = transcription.getSaleCompleted() != null && transcription.getSaleCompleted();
+                    
+                    saveAnalysis(transcription, analysis);
+                    
+                    // Check if it was corrected
+                    if (transcription.getSaleCompleted() != null && transcription.getSaleCompleted() && !wasSale) {
+                        corrected[0]++;
+                        log.info("✅ Corregida: {} - {} (ahora es VENTA)", 
+                                transcription.getRecordingId(), transcription.getUserName());
+                    }
+                });
+        int reanalyzed = batch.getSuccess();
         
         log.info("🏁 Re-análisis completado: {} procesadas, {} corregidas a VENTA", reanalyzed, corrected);
         
         Map<String, Object> result = new HashMap<>();
         result.put("totalNoSales", noSales.size());
         result.put("reanalyzed", reanalyzed);
-        result.put("correctedToSale", corrected);
+        result.put("correctedToSale", corrected[0]);
         result.put("timestamp", LocalDateTime.now());
         
         return result;
     }
     
     /**
-     * Re-analiza TODAS las transcripciones con el prompt actual.
-     * Usa SSE para mostrar progreso en tiempo real.
-     * Resiliente a desconexiones del cliente - sigue procesando aunque el frontend se desconecte.
+     * Llama a GPT para una transcripción (o reutiliza un resultado cacheado con las mismas entradas).
+     * No toca la transcripción, así que puede correr en los workers de {@link AnalysisExecutor}.
      */
-    public SseEmitter reanalyzeAllWithProgress() {
-        SseEmitter emitter = new SseEmitter(900000L); // 15 minutos timeout
-        ExecutorService executor = java.util.concurrent.Executors.newSingleThreadExecutor();
-        
-        // Track if emitter is still connected
-        final boolean[] emitterAlive = {true};
-        
-        emitter.onCompletion(() -> {
-            emitterAlive[0] = false;
-            executor.shutdown();
-        });
-        emitter.onTimeout(() -> {
-            emitterAlive[0] = false;
-            executor.shutdown();
-        });
-        emitter.onError((ex) -> {
-            emitterAlive[0] = false;
-            log.warn("SSE emitter error (client disconnected?): {}", ex.getMessage());
-        });
-        
-        executor.execute(() -> {
-            try {
-                List<Transcription> all = repository.findAll();
-                int total = all.size();
-                int current = 0;
-                int success = 0;
-                int errors = 0;
-                
-                // Enviar inicio
-                safeSend(emitter, emitterAlive, SseEmitter.event()
-                        .name("start")
-                        .data(Map.of(
-                                "message", "Iniciando re-análisis de " + total + " transcripciones",
-                                "total", total
-                        )));
-                
-                for (Transcription transcription : all) {
-                    current++;
-                    
-                    try {
-                        // Enviar progreso
-                        safeSend(emitter, emitterAlive, SseEmitter.event()
-                                .name("progress")
-                                .data(Map.of(
-                                        "current", current,
-                                        "total", total,
-                                        "recordingId", transcription.getRecordingId(),
-                                        "userName", transcription.getUserName() != null ? transcription.getUserName() : "Desconocido",
-                                        "message", "Analizando: " + transcription.getRecordingId()
-                                )));
-                        
-                        // Re-analizar directamente (sin pasar por @Transactional proxy)
-                        doAnalyzeTranscription(transcription.getRecordingId());
-                        success++;
-                        
-                        log.info("Re-análisis {}/{} OK: {}", current, total, transcription.getRecordingId());
-                        
-                        // Pequeña pausa para no saturar la API de OpenAI
-                        Thread.sleep(500);
-                        
-                    } catch (Exception e) {
-                        errors++;
-                        log.error("Error re-analizando {}: {}", transcription.getRecordingId(), e.getMessage(), e);
-                        
-                        // Enviar progreso con error para esta transcripción
-                        safeSend(emitter, emitterAlive, SseEmitter.event()
-                                .name("progress")
-                                .data(Map.of(
-                                        "current", current,
-                                        "total", total,
-                                        "recordingId", transcription.getRecordingId(),
-                                        "userName", transcription.getUserName() != null ? transcription.getUserName() : "Desconocido",
-                                        "message", "Error: " + transcription.getRecordingId() + " - " + e.getMessage()
-                                )));
-                    }
-                }
-                
-                log.info("Re-análisis completado: {} total, {} exitosos, {} errores", total, success, errors);
-                
-                // Enviar completado
-                safeSend(emitter, emitterAlive, SseEmitter.event()
-                        .name("complete")
-                        .data(Map.of(
-                                "message", "Re-análisis completado",
-                                "total", total,
-                                "success", success,
-                                "errors", errors
-                        )));
-                
-                if (emitterAlive[0]) {
-                    try { emitter.complete(); } catch (Exception ignored) {}
-                }
-                
-            } catch (Exception e) {
-                log.error("Error fatal en re-análisis: {}", e.getMessage(), e);
-                if (emitterAlive[0]) {
-                    try {
-                        emitter.send(SseEmitter.event()
-                                .name("error")
-                                .data(Map.of("message", "Error: " + e.getMessage())));
-                        emitter.completeWithError(e);
-                    } catch (Exception ignored) {}
-                }
-            } finally {
-                executor.shutdown();
-            }
-        });
+    public CachedAnalysis requestAnalysis(Transcription transcription) {
+        return requestAnalysis(transcription, false);
+    }
+    
+    private CachedAnalysis requestAnalysis(Transcription transcription, boolean force) {
+        requireText(transcription);
         
-        return emitter;
+        return analyzerService.analyzeWithCache(
+                transcription.getTranscriptionText(),
+                transcription.getUserName(),
+                transcription.getBranchName(),
+                currentAnalysisHash(transcription),
+                force
+        );
     }
     
     /**
-     * Safely send SSE event, catching IOException if client disconnected.
+     * Arma el request de análisis para enviarlo por la Batch API.
      */
-    private void safeSend(SseEmitter emitter, boolean[] alive, SseEmitter.SseEventBuilder event) {
-        if (!alive[0]) return;
-        try {
-            emitter.send(event);
-        } catch (Exception e) {
-            alive[0] = false;
-            log.debug("SSE client disconnected, continuing re-analysis in background");
-        }
+    public PreparedAnalysis prepareAnalysis(Transcription transcription) {
+        requireText(transcription);
+        return analyzerService.prepareAnalysis(
+                transcription.getTranscriptionText(),
+                transcription.getUserName(),
+                transcription.getBranchName()
+        );
     }
     
     /**
-     * Internal method for analyzing a transcription - not @Transactional so it works from background threads.
+     * Resultado que se puede usar sin llamar a la API (sin cambios o cacheado), o null.
      */
-    private void doAnalyzeTranscription(String recordingId) {
-        Transcription transcription = repository.findById(recordingId)
-                .orElseThrow(() -> new RuntimeException("Transcription not found: " + recordingId));
-        
+    public CachedAnalysis reuseAnalysis(Transcription transcription, PreparedAnalysis prepared) {
+        return analyzerService.reuseAnalysis(prepared.hash(), currentAnalysisHash(transcription), prepared.configVersion());
+    }
+    
+    /**
+     * Interpreta la respuesta de un request enviado por lote, con los datos guardados al armarlo.
+     */
+    public CachedAnalysis completeBatchAnalysis(String hash, Long configVersion, String saleSignal,
+                                                String model, String response) {
+        return analyzerService.completeAnalysis(hash, model, response, saleSignal, configVersion);
+    }
+    
+    private void requireText(Transcription transcription) {
         if (transcription.getTranscriptionText() == null || transcription.getTranscriptionText().isEmpty()) {
             throw new RuntimeException("No transcription text available for analysis");
         }
+    }
+    
+    // Hash de las entradas del análisis vigente (null si nunca se analizó)
+    private String currentAnalysisHash(Transcription transcription) {
+        return Boolean.TRUE.equals(transcription.getAnalyzed()) ? transcription.getAnalysisHash() : null;
+    }
+    
+    /**
+     * Aplica el resultado del análisis y guarda la transcripción. Si las entradas no cambiaron solo
+     * registra que el análisis sigue vigente para la versión de configuración con la que se comparó.
+     */
+    public void saveAnalysis(Transcription transcription, CachedAnalysis analysis) {
+        if (analysis.source() == AnalysisSource.UNCHANGED) {
+            if (analysis.configVersion() != null
+                    && !analysis.configVersion().equals(transcription.getAnalysisConfigVersion())) {
+                transcription.setAnalysisConfigVersion(analysis.configVersion());
+                repository.save(transcription);
+            }
+            return;
+        }
+        DashboardRollupService.Contribution before = DashboardRollupService.Contribution.of(transcription);
+        applyAnalysis(transcription, analysis.result());
+        transcription.setAnalysisHash(analysis.hash());
+        // La versión con la que se armó el request, no la vigente al guardar (lotes, caché, cambios a mitad de corrida)
+        transcription.setAnalysisConfigVersion(analysis.configVersion());
+        repository.save(transcription);
+        rollupService.recordChanged(before, transcription);
+        searchService.index(List.of(transcription));
+        advancedAnalyzerService.invalidateMetrics();
         
-        AnalysisResult analysis = analyzerService.analyzeTranscription(
-                transcription.getTranscriptionText(),
-                transcription.getUserName(),
-                transcription.getBranchName()
-        );
-        
+        // Modo combinado: la misma respuesta trae el análisis avanzado
+        if (analysis.result().getAdvancedJson() != null) {
+            advancedAnalyzerService.saveCombinedAnalysis(transcription.getRecordingId(), analysis.result().getAdvancedJson());
+        }
+    }
+    
+    /**
+     * Copia el resultado del análisis a la entidad (sin guardar).
+     */
+    private void applyAnalysis(Transcription transcription, AnalysisResult analysis) {
         transcription.setSaleCompleted(analysis.isSaleCompleted());
         transcription.setSaleStatus(analysis.getSaleStatus());
         transcription.setAnalysisConfidence(analysis.getAnalysisConfidence());
@@ -680,23 +471,6 @@ public class TranscriptionService {
         transcription.setSellerWeaknesses(String.join(", ", analysis.getSellerWeaknesses()));
         transcription.setAnalyzed(true);
         transcription.setAnalyzedAt(LocalDateTime.now());
-        
-        repository.save(transcription);
-    }
-
-    private boolean hasAnyFilter(FilterDTO filter) {
-        return filter.getUserId() != null ||
-               filter.getBranchId() != null ||
-               filter.getSaleCompleted() != null ||
-               filter.getDateFrom() != null ||
-               filter.getDateTo() != null ||
-               filter.getMinScore() != null ||
-               filter.getMaxScore() != null;
-    }
-
-    private double calculateRate(long numerator, long denominator) {
-        if (denominator == 0) return 0.0;
-        return Math.round((double) numerator / denominator * 10000) / 100.0;
     }
 
     private TranscriptionDTO toDTO(Transcription t) {
@@ -728,6 +502,7 @@ public class TranscriptionService {
                 ? Arrays.asList(t.getSellerWeaknesses().split(", ")) : new ArrayList<>());
         dto.setRecordingDate(t.getRecordingDate());
         dto.setAnalyzedAt(t.getAnalyzedAt());
+        dto.setAnalysisConfigVersion(t.getAnalysisConfigVersion());
         dto.setAnalyzed(t.getAnalyzed());
         return dto;
     }
@@ -746,137 +521,72 @@ public class TranscriptionService {
         
         // Eliminar la transcripción
         repository.delete(transcription);
+        turnService.remove(recordingId);
+        rollupService.recordRemoved(transcription);
+        searchService.remove(recordingId);
+        advancedAnalyzerService.invalidateMetrics();
         
         log.info("Transcripción eliminada: {}", recordingId);
     }
     
     /**
-     * Mapea nombres de usuario a nombres reales.
-     * Agregar más mapeos según sea necesario.
+     * Busca texto en las transcripciones (índice de búsqueda) y devuelve una página de resultados
+     * ordenados por relevancia, con snippets.
+     * @param speaker hablante ({@code Persona 1}) para buscar solo en sus turnos, o null
+     * @param page página, desde 0
      */
-    private String mapUserName(String originalName) {
-        if (originalName == null) return "Desconocido";
-        
-        // Mapeos hardcodeados
-        return switch (originalName.toLowerCase().trim()) {
-            case "calm administrator" -> "Matías Vergara";
-            case "admin" -> "Matías Vergara";
-            default -> originalName;
-        };
-    }
-    
-    /**
-     * Mapea nombres de sucursal a nombres reales.
-     * Agregar más mapeos según sea necesario.
-     */
-    private String mapBranchName(String originalName) {
-        if (originalName == null) return "Desconocida";
-        
-        // Mapeos hardcodeados
-        return switch (originalName.toLowerCase().trim()) {
-            case "central" -> "Godoy Cruz";
-            default -> originalName;
-        };
-    }
-    
-    /**
-     * Busca texto en las transcripciones y devuelve resultados con snippets.
-     */
-    public Map<String, Object> searchTranscriptions(String searchTerm, Long userId, Long branchId, Boolean saleCompleted) {
+    public Map<String, Object> searchTranscriptions(String searchTerm, String speaker, Long userId, Long branchId,
+                                                    Boolean saleCompleted, int page, int size) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("searchTerm", searchTerm);
+        response.put("speaker", speaker);
+        response.put("page", page);
+        response.put("size", size);
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
-            return Map.of("results", new ArrayList<>(), "totalResults", 0, "totalMatches", 0);
+            response.put("results", new ArrayList<>());
+            response.put("totalResults", 0);
+            response.put("totalMatches", 0);
+            return response;
         }
-        
-        String term = searchTerm.trim().toLowerCase();
-        List<Transcription> transcriptions = repository.searchByText(term, userId, branchId, saleCompleted);
-        
+
+        TranscriptSearchService.Result result;
+        try {
+            result = searchService.search(searchTerm.trim(), speaker, userId, branchId, saleCompleted, page, size);
+        } catch (IOException e) {
+            throw new RuntimeException("Error en la búsqueda: " + e.getMessage(), e);
+        }
+
+        // Datos de listado de la página, en el orden del índice
+        Map<String, TranscriptionSummaryDTO> summaries = repository.findSummariesByIds(
+                        result.hits().stream().map(TranscriptSearchService.Hit::recordingId).toList())
+                .stream().collect(Collectors.toMap(TranscriptionSummaryDTO::getRecordingId, s -> s));
+
         List<SearchResultDTO> results = new ArrayList<>();
         int totalMatches = 0;
-        
-        for (Transcription t : transcriptions) {
+        for (TranscriptSearchService.Hit hit : result.hits()) {
+            TranscriptionSummaryDTO t = summaries.get(hit.recordingId());
+            if (t == null) {
+                continue;
+            }
             SearchResultDTO dto = new SearchResultDTO();
             dto.setRecordingId(t.getRecordingId());
+            dto.setUserId(t.getUserId());
             dto.setUserName(t.getUserName());
             dto.setBranchName(t.getBranchName());
             dto.setRecordingDate(t.getRecordingDate());
             dto.setSaleCompleted(t.getSaleCompleted());
             dto.setSaleStatus(t.getSaleStatus());
             dto.setSellerScore(t.getSellerScore());
-            
-            // Generar snippets
-            List<String> snippets = generateSnippets(t.getTranscriptionText(), term, 3);
-            dto.setSnippets(snippets);
-            
-            // Contar coincidencias
-            int count = countOccurrences(t.getTranscriptionText(), term);
-            dto.setMatchCount(count);
-            totalMatches += count;
-            
+            dto.setSnippets(hit.snippets());
+            dto.setMatchCount(hit.matchCount());
+            totalMatches += hit.matchCount();
             results.add(dto);
         }
-        
-        Map<String, Object> response = new HashMap<>();
+
         response.put("results", results);
-        response.put("totalResults", results.size());
+        response.put("totalResults", result.totalHits());
         response.put("totalMatches", totalMatches);
-        response.put("searchTerm", searchTerm);
-        
+        response.put("fuzzy", result.fuzzy());
         return response;
     }
-    
-    /**
-     * Genera snippets del texto alrededor de las coincidencias.
-     */
-    private List<String> generateSnippets(String text, String searchTerm, int maxSnippets) {
-        List<String> snippets = new ArrayList<>();
-        if (text == null || searchTerm == null) return snippets;
-        
-        String lowerText = text.toLowerCase();
-        String lowerTerm = searchTerm.toLowerCase();
-        int contextLength = 60; // caracteres antes y después
-        
-        int index = 0;
-        while ((index = lowerText.indexOf(lowerTerm, index)) != -1 && snippets.size() < maxSnippets) {
-            int start = Math.max(0, index - contextLength);
-            int end = Math.min(text.length(), index + lowerTerm.length() + contextLength);
-            
-            StringBuilder snippet = new StringBuilder();
-            if (start > 0) snippet.append("...");
-            
-            // Extraer el snippet y marcar la palabra con **
-            String before = text.substring(start, index);
-            String match = text.substring(index, index + lowerTerm.length());
-            String after = text.substring(index + lowerTerm.length(), end);
-            
-            snippet.append(before).append("**").append(match).append("**").append(after);
-            
-            if (end < text.length()) snippet.append("...");
-            
-            // Limpiar saltos de línea
-            String cleanSnippet = snippet.toString().replaceAll("\\s+", " ").trim();
-            snippets.add(cleanSnippet);
-            
-            index += lowerTerm.length();
-        }
-        
-        return snippets;
-    }
-    
-    /**
-     * Cuenta las ocurrencias de un término en el texto.
-     */
-    private int countOccurrences(String text, String searchTerm) {
-        if (text == null || searchTerm == null) return 0;
-        
-        String lowerText = text.toLowerCase();
-        String lowerTerm = searchTerm.toLowerCase();
-        
-        int count = 0;
-        int index = 0;
-        while ((index = lowerText.indexOf(lowerTerm, index)) != -1) {
-            count++;
-            index += lowerTerm.length();
-        }
-        return count;
-    }
 }
@@ -0,0 +1,129 @@
+package com.calm.admin.repository;
+
+import com.calm.admin.dto.FilterDTO;
+import com.calm.admin.dto.MissingAnalysisDTO;
+import com.calm.admin.dto.TranscriptionSummaryDTO;
+import com.calm.admin.model.AdvancedAnalysis;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.TranscriptionRepositoryCustom.SummarySort;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Paginación por clave del listado: recorrer páginas chicas tiene que dar el mismo orden
+ * que una sola página grande, con empates y nulls en la columna de orden.
+ * También las consultas de transcripciones sin análisis avanzado.
+ */
+@DataJpaTest
+public class TranscriptionRepositoryImplTest {
+
+    @Autowired
+    private TranscriptionRepository repository;
+
+    @Autowired
+    private AdvancedAnalysisRepository advancedAnalysisRepository;
+
+    @BeforeEach
+    void seed() {
+        List<Transcription> rows = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            Transcription t = new Transcription();
+            t.setRecordingId(String.format("rec-%02d", i));
+            t.setUserId((long) (i % 3));
+            t.setUserName("Vendedor " + (i % 3));
+            // Empates de fecha y de puntaje, y algunos nulls
+            t.setRecordingDate(i % 7 == 0 ? null : LocalDateTime.of(2024, 1, 1 + i % 5, 10, 0));
+            t.setSellerScore(i % 4 == 0 ? null : i % 6);
+            t.setTranscriptionText("texto largo " + i);
+            t.setAnalyzed(i % 2 == 0);
+            rows.add(t);
+        }
+        repository.saveAll(rows);
+    }
+
+    @Test
+    void pagesMatchSingleQueryForEverySortAndDirection() {
+        for (SummarySort sort : SummarySort.values()) {
+            for (boolean ascending : new boolean[] {true, false}) {
+                List<String> all = ids(repository.findSummaries(null, sort, ascending, null, null, 100));
+                assertEquals(23, all.size());
+                assertEquals(all, pageThrough(null, sort, ascending, 4), sort + " " + ascending);
+            }
+        }
+    }
+
+    @Test
+    void nullsSortLastInBothDirections() {
+        for (boolean ascending : new boolean[] {true, false}) {
+            List<TranscriptionSummaryDTO> rows = repository.findSummaries(null, SummarySort.SELLER_SCORE, ascending, null, null, 100);
+            // rec-00, rec-04, ... rec-20 no tienen puntaje
+            assertTrue(rows.subList(0, 17).stream().allMatch(r -> r.getSellerScore() != null), "ascending " + ascending);
+            assertTrue(rows.subList(17, 23).stream().allMatch(r -> r.getSellerScore() == null), "ascending " + ascending);
+        }
+    }
+
+    @Test
+    void filtersApplyAcrossPages() {
+        FilterDTO filter = new FilterDTO();
+        filter.setUserId(1L);
+        filter.setMinScore(1);
+        List<String> paged = pageThrough(filter, SummarySort.RECORDING_DATE, false, 2);
+        assertEquals(ids(repository.findSummaries(filter, SummarySort.RECORDING_DATE, false, null, null, 100)), paged);
+        assertFalse(paged.isEmpty());
+        for (String id : paged) {
+            Transcription t = repository.findById(id).orElseThrow();
+            assertEquals(1L, t.getUserId());
+            assertTrue(t.getSellerScore() >= 1);
+        }
+    }
+
+    @Test
+    void findsMissingAdvancedAnalysesWithAntiJoin() {
+        for (String id : List.of("rec-00", "rec-05", "rec-10")) {
+            advancedAnalysisRepository.save(new AdvancedAnalysis(id));
+        }
+        Transcription empty = repository.findById("rec-22").orElseThrow();
+        empty.setTranscriptionText("");
+        repository.save(empty);
+
+        List<MissingAnalysisDTO> missing = repository.findMissingAdvancedAnalyses();
+        assertEquals(20, missing.size());
+        assertFalse(missing.stream().anyMatch(m -> m.getRecordingId().equals("rec-05")));
+        assertEquals("texto largo 1".length(), missing.get(0).getTextLength());
+        assertFalse(missing.get(missing.size() - 1).isHasText());
+
+        // Solo las que tienen texto, en páginas por id
+        assertEquals(19, repository.countMissingAdvancedAnalysis());
+        List<String> page = repository.findIdsMissingAdvancedAnalysis("rec-03", PageRequest.of(0, 3));
+        assertEquals(List.of("rec-04", "rec-06", "rec-07"), page);
+    }
+
+    private List<String> pageThrough(FilterDTO filter, SummarySort sort, boolean ascending, int pageSize) {
+        List<String> ids = new ArrayList<>();
+        Object afterValue = null;
+        String afterId = null;
+        while (true) {
+            List<TranscriptionSummaryDTO> page = repository.findSummaries(filter, sort, ascending, afterValue, afterId, pageSize);
+            ids.addAll(ids(page));
+            if (page.size() < pageSize) {
+                return ids;
+            }
+            TranscriptionSummaryDTO last = page.get(page.size() - 1);
+            afterValue = sort.valueOf(last);
+            afterId = last.getRecordingId();
+        }
+    }
+
+    private static List<String> ids(List<TranscriptionSummaryDTO> rows) {
+        return rows.stream().map(TranscriptionSummaryDTO::getRecordingId).toList();
+    }
+}
@@ -0,0 +1,133 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.AdvancedAnalysis;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.AdvancedAnalysisRepository;
+import com.calm.admin.repository.TranscriptionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Métricas del dashboard de recomendaciones calculadas en la base, y su cache hasta el próximo análisis.
+ */
+@DataJpaTest
+public class AdvancedAnalyzerMetricsTest {
+
+    @Autowired
+    private TranscriptionRepository transcriptionRepository;
+
+    @Autowired
+    private AdvancedAnalysisRepository advancedAnalysisRepository;
+
+    private AdvancedAnalyzerService service;
+
+    @BeforeEach
+    void seed() {
+        service = new AdvancedAnalyzerService(advancedAnalysisRepository, transcriptionRepository,
+                new ObjectMapper(), null, null, null, null, null);
+        ReflectionTestUtils.setField(service, "metricsCacheSeconds", 300L);
+
+        transcriptionRepository.saveAll(List.of(
+                transcription("r1", "Ana", "Centro", true),
+                transcription("r2", "Ana", "Centro", false),
+                transcription("r3", "Beto", null, false),
+                transcription("r4", "Beto", "Norte", true)));
+        advancedAnalysisRepository.saveAll(List.of(
+                timed(analysis("r1", 80, 70, "Es muy caro", 4), 60, 10),
+                timed(analysis("r2", 40, null, "es muy caro ", 8), null, 30),
+                analysis("r3", 90, 50, "Lo pienso", null)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aggregatesInTheDatabase() {
+        Map<String, Object> metrics = service.getAggregatedMetrics();
+
+        assertEquals(true, metrics.get("hasData"));
+        assertEquals(3L, metrics.get("analyzedCount"));
+        assertEquals(4L, metrics.get("totalCount"));
+        assertEquals(70.0, (double) metrics.get("avgCustomerConfidence"), 0.001);
+        // Los puntajes faltantes cuentan como 50
+        assertEquals(170.0 / 3, ((Map<String, Double>) metrics.get("avgVendorMetrics")).get("empathy"), 0.001);
+        assertEquals(3L, ((Map<String, Long>) metrics.get("totalObjections")).get("explicit"));
+        assertEquals(6.0, (double) metrics.get("avgAbandonMinute"), 0.001);
+        // Silencio y parte del vendedor: solo los medidos, sin inventar 0 ni 50
+        assertEquals(20.0, ((Map<String, Double>) metrics.get("avgConversationFlow")).get("silencio"), 0.001);
+        assertEquals(2L, metrics.get("silencioSamples"));
+        assertEquals(60.0, ((Map<String, Double>) metrics.get("avgVendorMetrics")).get("vendorTalkPercent"), 0.001);
+        assertEquals(1L, metrics.get("vendorTalkSamples"));
+
+        List<Map<String, Object>> branches = (List<Map<String, Object>>) metrics.get("confidenceByBranch");
+        assertEquals(List.of("desconocido", "Centro"), branches.stream().map(b -> b.get("branchName")).toList());
+        assertEquals(2L, branches.get(1).get("count"));
+
+        List<Map<String, Object>> moments = (List<Map<String, Object>>) metrics.get("topLossMoments");
+        assertEquals(2L, moments.get(0).get("count"));
+        assertEquals(6.0, (double) moments.get(0).get("avgMinute"), 0.001);
+        assertEquals("lo pienso", ((String) moments.get(1).get("phrase")).toLowerCase());
+
+        List<Map<String, Object>> vendors = service.getMetricsByVendor();
+        assertEquals("Ana", vendors.get(0).get("userName"));
+        assertEquals(80.0, (double) vendors.get(0).get("avgConfidenceWithSale"), 0.001);
+        assertEquals(40.0, (double) vendors.get(0).get("avgConfidenceWithoutSale"), 0.001);
+        assertEquals(0.0, (double) vendors.get(1).get("avgConfidenceWithSale"), 0.001);
+        assertEquals(35.0, ((Map<String, Double>) vendors.get(0).get("conversationFlow")).get("apertura"), 0.001);
+        assertEquals(2L, vendors.get(0).get("silencioSamples"));
+        assertEquals(0L, vendors.get(1).get("silencioSamples"));
+        assertNull(((Map<String, Double>) vendors.get(1).get("conversationFlow")).get("silencio"));
+    }
+
+    @Test
+    void cachesUntilTheNextWrite() {
+        assertEquals(3L, service.getAggregatedMetrics().get("analyzedCount"));
+        int vendors = service.getMetricsByVendor().size();
+
+        advancedAnalysisRepository.save(analysis("r4", 90, 90, null, null));
+        assertEquals(3L, service.getAggregatedMetrics().get("analyzedCount"));
+        assertEquals(vendors, service.getMetricsByVendor().size());
+        assertEquals(4L, service.getAggregatedMetrics().get("totalCount"));
+
+        service.invalidateMetrics();
+        assertEquals(4L, service.getAggregatedMetrics().get("analyzedCount"));
+
+        service.clearAllAnalyses();
+        assertEquals(false, service.getAggregatedMetrics().get("hasData"));
+        assertTrue(service.getMetricsByVendor().isEmpty());
+    }
+
+    private static Transcription transcription(String id, String user, String branch, boolean sale) {
+        Transcription t = new Transcription();
+        t.setRecordingId(id);
+        t.setUserName(user);
+        t.setBranchName(branch);
+        t.setAnalyzed(true);
+        t.setSaleCompleted(sale);
+        return t;
+    }
+
+    private static AdvancedAnalysis timed(AdvancedAnalysis a, Integer vendorTalk, Integer silence) {
+        a.setVendorTalkPercent(vendorTalk);
+        a.setSilencioPercent(silence);
+        return a;
+    }
+
+    private static AdvancedAnalysis analysis(String id, int confidence, Integer empathy, String phrase, Integer minute) {
+        AdvancedAnalysis a = new AdvancedAnalysis(id);
+        a.setCustomerConfidenceScore(confidence);
+        a.setEmpathyScore(empathy);
+        a.setAperturaPercent(35);
+        a.setExplicitObjections(1);
+        a.setKeyAbandonPhrase(phrase);
+        a.setAbandonMinute(minute);
+        return a;
+    }
+}
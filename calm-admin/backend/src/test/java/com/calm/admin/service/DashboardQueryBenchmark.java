@@ -0,0 +1,174 @@
+package com.calm.admin.service;
+
+import com.calm.admin.dto.DashboardMetricsDTO;
+import com.calm.admin.repository.TranscriptionRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark del dashboard: las nueve consultas originales, la consulta agrupada de una pasada
+ * y la lectura de los agregados incrementales.
+ * Informa cantidad de consultas y latencia para cada tamaño de tabla.
+ *
+ * Opcional, no corre con el build normal:
+ *   mvn test -Dtest=DashboardQueryBenchmark -Dbenchmarks=true [-Dbenchmarks.sizes=10000,100000,1000000]
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(DashboardRollupService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class DashboardQueryBenchmark {
+
+    private static final int RUNS = 5;
+    private static final Long[] BRANCH_IDS = {1L, 2L, 3L, 4L, 5L, 4476L};
+    private static final String[] REASONS = {"Precio", "Lo va a pensar", "Consulta con pareja", "Sin stock", null};
+
+    @Autowired
+    private TranscriptionRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DashboardRollupService rollupService;
+
+    @Test
+    void compareDashboardQueries() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String sizes = System.getProperty("benchmarks.sizes", "10000,100000,1000000");
+
+        System.out.printf("%n%-10s %-10s %8s %12s%n", "rows", "strategy", "queries", "avg ms");
+        for (String size : sizes.split(",")) {
+            int rows = Integer.parseInt(size.trim());
+            seed(rows);
+
+            statistics.clear();
+            long legacyNanos = 0;
+            DashboardMetricsDTO legacy = null;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                legacy = legacyDashboard();
+                legacyNanos += System.nanoTime() - start;
+            }
+            long legacyQueries = statistics.getPrepareStatementCount() / RUNS;
+
+            statistics.clear();
+            long groupedNanos = 0;
+            DashboardMetricsDTO grouped = null;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                grouped = DashboardAggregator.aggregate(repository.getDashboardGroups());
+                groupedNanos += System.nanoTime() - start;
+            }
+            long groupedQueries = statistics.getPrepareStatementCount() / RUNS;
+
+            rollupService.rebuild();
+            statistics.clear();
+            long rollupNanos = 0;
+            DashboardMetricsDTO rollups = null;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                rollups = rollupService.getDashboardMetrics();
+                rollupNanos += System.nanoTime() - start;
+            }
+            long rollupQueries = statistics.getPrepareStatementCount() / RUNS;
+
+            System.out.printf("%-10d %-10s %8d %12.1f%n", rows, "legacy", legacyQueries, legacyNanos / RUNS / 1e6);
+            System.out.printf("%-10d %-10s %8d %12.1f%n", rows, "grouped", groupedQueries, groupedNanos / RUNS / 1e6);
+            System.out.printf("%-10d %-10s %8d %12.1f%n", rows, "rollups", rollupQueries, rollupNanos / RUNS / 1e6);
+
+            assertEquals(1, groupedQueries);
+            assertSameMetrics(legacy, grouped);
+            assertSameMetrics(legacy, rollups);
+        }
+    }
+
+    private void seed(int rows) {
+        jdbcTemplate.update("DELETE FROM transcriptions");
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>(5000);
+        for (int i = 0; i < rows; i++) {
+            long userId = random.nextInt(60);
+            Long branchId = BRANCH_IDS[(int) (userId % BRANCH_IDS.length)];
+            boolean analyzed = random.nextInt(10) > 0;
+            Boolean sale = analyzed ? random.nextInt(3) == 0 : null;
+            String reason = Boolean.FALSE.equals(sale) ? REASONS[random.nextInt(REASONS.length)] : null;
+            Integer score = analyzed ? 1 + random.nextInt(10) : null;
+            batch.add(new Object[] {"rec-" + i, userId, "Vendedor " + userId, branchId, "Sucursal " + branchId,
+                    analyzed, sale, reason, score});
+            if (batch.size() == 5000 || i == rows - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO transcriptions (recording_id, user_id, user_name, branch_id, " +
+                        "branch_name, analyzed, sale_completed, no_sale_reason, seller_score) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Las nueve consultas que hacía getDashboardMetrics antes de la consulta agrupada
+    private DashboardMetricsDTO legacyDashboard() {
+        DashboardMetricsDTO metrics = new DashboardMetricsDTO();
+        metrics.setTotalTranscriptions(repository.count());
+        metrics.setAnalyzedTranscriptions(repository.countAnalyzed());
+        metrics.setPendingAnalysis(repository.countPendingAnalysis());
+        metrics.setTotalSales(repository.countSales());
+        metrics.setTotalNoSales(repository.countNoSales());
+        Double avgScore = repository.averageSellerScore();
+        metrics.setAverageSellerScore(avgScore != null ? avgScore : 0.0);
+        List<DashboardMetricsDTO.SellerMetrics> sellers = new ArrayList<>();
+        for (Object[] row : repository.getSellerStats()) {
+            DashboardMetricsDTO.SellerMetrics sm = new DashboardMetricsDTO.SellerMetrics();
+            sm.setUserId((Long) row[0]);
+            sm.setTotalInteractions(((Number) row[3]).longValue());
+            sm.setSales(((Number) row[4]).longValue());
+            sellers.add(sm);
+        }
+        metrics.setSellerMetrics(sellers);
+        List<DashboardMetricsDTO.BranchMetrics> branches = new ArrayList<>();
+        for (Object[] row : repository.getBranchStats()) {
+            DashboardMetricsDTO.BranchMetrics bm = new DashboardMetricsDTO.BranchMetrics();
+            bm.setBranchId((Long) row[0]);
+            bm.setTotalInteractions(((Number) row[2]).longValue());
+            branches.add(bm);
+        }
+        metrics.setBranchMetrics(branches);
+        metrics.setNoSaleReasons(new HashMap<>());
+        for (Object[] row : repository.countByNoSaleReason()) {
+            metrics.getNoSaleReasons().put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return metrics;
+    }
+
+    private static void assertSameMetrics(DashboardMetricsDTO expected, DashboardMetricsDTO actual) {
+        assertEquals(expected.getTotalTranscriptions(), actual.getTotalTranscriptions());
+        assertEquals(expected.getAnalyzedTranscriptions(), actual.getAnalyzedTranscriptions());
+        assertEquals(expected.getPendingAnalysis(), actual.getPendingAnalysis());
+        assertEquals(expected.getTotalSales(), actual.getTotalSales());
+        assertEquals(expected.getTotalNoSales(), actual.getTotalNoSales());
+        assertEquals(expected.getAverageSellerScore(), actual.getAverageSellerScore(), 1e-9);
+        assertEquals(expected.getSellerMetrics().size(), actual.getSellerMetrics().size());
+        assertEquals(expected.getBranchMetrics().size(), actual.getBranchMetrics().size());
+        assertEquals(expected.getNoSaleReasons(), actual.getNoSaleReasons());
+        assertEquals(
+                expected.getSellerMetrics().stream().mapToLong(DashboardMetricsDTO.SellerMetrics::getSales).sum(),
+                actual.getSellerMetrics().stream().mapToLong(DashboardMetricsDTO.SellerMetrics::getSales).sum());
+    }
+}
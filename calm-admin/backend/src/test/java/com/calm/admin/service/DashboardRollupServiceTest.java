@@ -0,0 +1,158 @@
+package com.calm.admin.service;
+
+import com.calm.admin.dto.DashboardMetricsDTO;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.TranscriptionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Los agregados incrementales tienen que coincidir con una reconstrucción completa
+ * y con la consulta agrupada de una pasada.
+ */
+@DataJpaTest
+@Import(DashboardRollupService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class DashboardRollupServiceTest {
+
+    @Autowired
+    private DashboardRollupService rollupService;
+
+    @Autowired
+    private TranscriptionRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void incrementalUpdatesMatchRebuild() {
+        repository.deleteAll();
+        rollupService.rebuild();
+
+        // Importación: todas pendientes, una de sucursal excluida
+        List<Transcription> imported = new ArrayList<>();
+        imported.add(transcription("r1", 1L, "Ana", 10L, "Centro", 1));
+        imported.add(transcription("r2", 1L, "Ana", 10L, "Centro", 1));
+        imported.add(transcription("r3", 2L, "Beto", 20L, "Norte", 2));
+        imported.add(transcription("r4", 3L, "Caro", 4476L, "Excluida", 2));
+        imported.add(transcription("r5", 2L, "Beto", 20L, "Norte", 3));
+        repository.saveAll(imported);
+        rollupService.recordAdded(imported);
+
+        analyze("r1", true, null, 8);
+        analyze("r2", false, "Precio", 5);
+        analyze("r3", false, "Precio", 4);
+        analyze("r4", true, null, 9);
+        // Re-análisis: cambia de no venta a venta
+        analyze("r3", true, null, 7);
+
+        Transcription removed = repository.findById("r5").orElseThrow();
+        repository.delete(removed);
+        rollupService.recordRemoved(removed);
+
+        DashboardMetricsDTO incremental = rollupService.getDashboardMetrics();
+        List<Map<String, Object>> incrementalDaily = rollupService.getDailyMetrics(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+
+        assertEquals(5 - 1, incremental.getTotalTranscriptions());
+        assertEquals(3, incremental.getAnalyzedTranscriptions());
+        assertEquals(0, incremental.getPendingAnalysis());
+        assertEquals(2, incremental.getTotalSales());
+        assertEquals(1, incremental.getTotalNoSales());
+        assertEquals(Map.of("Precio", 1L), incremental.getNoSaleReasons());
+        assertEquals((8 + 5 + 7) / 3.0, incremental.getAverageSellerScore(), 1e-9);
+
+        assertSameMetrics(DashboardAggregator.aggregate(repository.getDashboardGroups()), incremental);
+
+        rollupService.rebuild();
+        assertSameMetrics(rollupService.getDashboardMetrics(), incremental);
+        assertEquals(rollupService.getDailyMetrics(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)), incrementalDaily);
+        assertEquals(2, incrementalDaily.size());
+    }
+
+    @Test
+    void rebuildWaitsForOpenIncrements() throws Exception {
+        repository.deleteAll();
+        rollupService.rebuild();
+
+        CompletableFuture<Integer> rebuild = new CompletableFuture<>();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Transcription> imported = List.of(transcription("r1", 1L, "Ana", 10L, "Centro", 1));
+            repository.saveAll(imported);
+            rollupService.recordAdded(imported);
+            // Reconstrucción mientras la importación todavía no confirmó
+            CompletableFuture.runAsync(() -> rebuild.complete(rollupService.rebuild()));
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertFalse(rebuild.isDone());
+        });
+
+        rebuild.get(10, TimeUnit.SECONDS);
+        assertEquals(1, rollupService.getDashboardMetrics().getTotalTranscriptions());
+        assertEquals(1, rollupService.getDashboardMetrics().getPendingAnalysis());
+    }
+
+    private void analyze(String recordingId, boolean sale, String reason, int score) {
+        Transcription t = repository.findById(recordingId).orElseThrow();
+        DashboardRollupService.Contribution before = DashboardRollupService.Contribution.of(t);
+        t.setAnalyzed(true);
+        t.setSaleCompleted(sale);
+        t.setNoSaleReason(reason);
+        t.setSellerScore(score);
+        repository.save(t);
+        rollupService.recordChanged(before, t);
+    }
+
+    private static Transcription transcription(String id, Long userId, String userName, Long branchId,
+                                               String branchName, int day) {
+        Transcription t = new Transcription();
+        t.setRecordingId(id);
+        t.setUserId(userId);
+        t.setUserName(userName);
+        t.setBranchId(branchId);
+        t.setBranchName(branchName);
+        t.setRecordingDate(LocalDateTime.of(2024, 1, day, 10, 0));
+        t.setAnalyzed(false);
+        return t;
+    }
+
+    private static void assertSameMetrics(DashboardMetricsDTO expected, DashboardMetricsDTO actual) {
+        assertEquals(expected.getTotalTranscriptions(), actual.getTotalTranscriptions());
+        assertEquals(expected.getAnalyzedTranscriptions(), actual.getAnalyzedTranscriptions());
+        assertEquals(expected.getPendingAnalysis(), actual.getPendingAnalysis());
+        assertEquals(expected.getTotalSales(), actual.getTotalSales());
+        assertEquals(expected.getTotalNoSales(), actual.getTotalNoSales());
+        assertEquals(expected.getConversionRate(), actual.getConversionRate(), 1e-9);
+        assertEquals(expected.getAverageSellerScore(), actual.getAverageSellerScore(), 1e-9);
+        assertEquals(expected.getNoSaleReasons(), actual.getNoSaleReasons());
+        assertEquals(sellers(expected), sellers(actual));
+        assertEquals(expected.getBranchMetrics().size(), actual.getBranchMetrics().size());
+    }
+
+    private static List<String> sellers(DashboardMetricsDTO metrics) {
+        return metrics.getSellerMetrics().stream()
+                .sorted(Comparator.comparing(DashboardMetricsDTO.SellerMetrics::getUserId))
+                .map(s -> s.getUserId() + "/" + s.getTotalInteractions() + "/" + s.getSales() + "/" + s.getNoSales()
+                        + "/" + s.getAverageScore())
+                .toList();
+    }
+}
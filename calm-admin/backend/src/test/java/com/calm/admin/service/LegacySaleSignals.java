@@ -0,0 +1,49 @@
+package com.calm.admin.service;
+
+/**
+ * ChatGPTAnalyzerService.detectSaleSignals antes de SaleSignalMatcher, como referencia para los tests y el benchmark.
+ */
+final class LegacySaleSignals {
+
+    private LegacySaleSignals() {}
+
+    static String detect(String text) {
+        if (text == null) return null;
+
+        String lowerText = text.toLowerCase()
+                .replace("ã¡", "a").replace("ã©", "e").replace("ã­", "i")
+                .replace("ã³", "o").replace("ãº", "u").replace("ã±", "n");
+
+        String[][] saleSignals = {
+            {"direccion de entrega", "dirección de entrega"},
+            {"nombre y apellido"},
+            {"te llega manana", "te llega mañana", "llegando manana", "llegando mañana"},
+            {"entregado para manana", "entregado para mañana"},
+            {"rango horario de"},
+            {"coordinamos el envio", "coordinamos el envío"},
+            {"sale del deposito", "sale del depósito"},
+            {"genero la factura"},
+            {"paso la tarjeta", "pasame la tarjeta"},
+            {"te queda en", "te quedaria en"}
+        };
+
+        for (String[] signals : saleSignals) {
+            for (String signal : signals) {
+                if (lowerText.contains(signal)) {
+                    return signal;
+                }
+            }
+        }
+
+        boolean hasDeliveryMention = lowerText.contains("envio") || lowerText.contains("envío") ||
+                                     lowerText.contains("entrega") || lowerText.contains("domicilio");
+        boolean hasTomorrowMention = lowerText.contains("manana") || lowerText.contains("mañana");
+        boolean hasNameRequest = lowerText.contains("nombre") || lowerText.contains("apellido");
+
+        if (hasDeliveryMention && hasTomorrowMention && hasNameRequest) {
+            return "Combinación: nombre + entrega + mañana";
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,25 @@
+package com.calm.admin.service;
+
+/**
+ * S3Service.formatSpeakerLabel antes de SpeakerLabelMapper, como referencia para los tests y el benchmark.
+ */
+final class LegacySpeakerLabel {
+
+    private LegacySpeakerLabel() {}
+
+    static String format(String speaker) {
+        if (speaker == null) return "Desconocido";
+        String normalized = speaker.toLowerCase().trim();
+        if (normalized.matches(".*[_]?0$") || normalized.equals("spk0")) return "Persona 1";
+        if (normalized.matches(".*[_]?1$") || normalized.equals("spk1")) return "Persona 2";
+        if (normalized.matches(".*[_]?2$") || normalized.equals("spk2")) return "Persona 3";
+        if (normalized.matches(".*[_]?3$") || normalized.equals("spk3")) return "Persona 4";
+        if (normalized.startsWith("spk") || normalized.startsWith("speaker")) {
+            String num = normalized.replaceAll("[^0-9]", "");
+            if (!num.isEmpty()) {
+                return "Persona " + (Integer.parseInt(num) + 1);
+            }
+        }
+        return speaker;
+    }
+}
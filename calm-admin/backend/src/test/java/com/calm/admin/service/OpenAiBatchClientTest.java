@@ -0,0 +1,165 @@
+package com.calm.admin.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test del cliente de la Batch API contra un servidor HTTP local que imita a OpenAI.
+ */
+public class OpenAiBatchClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer server;
+    private OpenAiBatchClient client;
+
+    private final AtomicReference<String> uploadedBody = new AtomicReference<>();
+    private final AtomicReference<String> batchRequest = new AtomicReference<>();
+    private final AtomicInteger statusPolls = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        server.createContext("/v1/files", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/v1/files") && exchange.getRequestMethod().equals("POST")) {
+                uploadedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                respond(exchange, 200, "{\"id\": \"file-in\"}");
+            } else if (path.equals("/v1/files/file-out/content")) {
+                respond(exchange, 200, String.join("\n",
+                        resultLine("1", 200, "{\\\"ok\\\": true}"),
+                        "",
+                        resultLine("2", 500, null)) + "\n");
+            } else if (path.equals("/v1/files/file-err/content")) {
+                respond(exchange, 200,
+                        "{\"custom_id\": \"3\", \"response\": null, \"error\": {\"code\": \"x\", \"message\": \"request expired\"}}\n");
+            } else {
+                respond(exchange, 404, "{}");
+            }
+        });
+
+        server.createContext("/v1/batches", exchange -> {
+            if (exchange.getRequestMethod().equals("POST")) {
+                assertEquals("Bearer sk-test", exchange.getRequestHeaders().getFirst("Authorization"));
+                batchRequest.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                respond(exchange, 200, "{\"id\": \"batch-1\", \"status\": \"validating\"}");
+            } else if (statusPolls.incrementAndGet() == 2) {
+                // Falla transitoria de la API entre dos consultas
+                respond(exchange, 503, "{\"error\": {\"message\": \"overloaded\"}}");
+            } else if (statusPolls.get() < 4) {
+                respond(exchange, 200, "{\"id\": \"batch-1\", \"status\": \"in_progress\", " +
+                        "\"request_counts\": {\"total\": 3, \"completed\": 1, \"failed\": 0}}");
+            } else {
+                respond(exchange, 200, "{\"id\": \"batch-1\", \"status\": \"completed\", " +
+                        "\"output_file_id\": \"file-out\", \"error_file_id\": \"file-err\", " +
+                        "\"request_counts\": {\"total\": 3, \"completed\": 2, \"failed\": 1}}");
+            }
+        });
+
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        client = new OpenAiBatchClient(objectMapper, true, baseUrl, "sk-test");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void submitsJsonlAndCreatesBatch() throws Exception {
+        String batchId;
+        try (OpenAiBatchClient.BatchInput input = client.newInput()) {
+            input.add("1", Map.of("model", "gpt-4o-mini", "messages", List.of(Map.of("role", "user", "content", "hola"))));
+            input.add("2", Map.of("model", "gpt-4o-mini", "messages", List.of(Map.of("role", "user", "content", "chau"))));
+            assertEquals(2, input.size());
+            batchId = client.submit(input);
+        }
+        assertEquals("batch-1", batchId);
+
+        String upload = uploadedBody.get();
+        assertTrue(upload.contains("name=\"purpose\"\r\n\r\nbatch\r\n"));
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : upload.split("\n")) {
+            if (line.startsWith("{")) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        assertEquals(2, lines.size());
+        assertEquals("1", lines.get(0).get("custom_id").asText());
+        assertEquals("/v1/chat/completions", lines.get(0).get("url").asText());
+        assertEquals("hola", lines.get(0).get("body").get("messages").get(0).get("content").asText());
+
+        JsonNode batch = objectMapper.readTree(batchRequest.get());
+        assertEquals("file-in", batch.get("input_file_id").asText());
+        assertEquals("24h", batch.get("completion_window").asText());
+    }
+
+    @Test
+    void pollsUntilTerminalAndStreamsResults() throws Exception {
+        List<String> seen = new ArrayList<>();
+        OpenAiBatchClient.BatchStatus status = client.awaitCompletion("batch-1", Duration.ofMillis(1),
+                polled -> seen.add(polled.status()));
+
+        // La consulta que falló se reintentó sin cortar la espera
+        assertEquals(4, statusPolls.get());
+        assertEquals(List.of("in_progress", "in_progress", "completed"), seen);
+        assertTrue(status.isTerminal());
+        assertEquals("file-out", status.outputFileId());
+        assertEquals(2, status.completed());
+
+        List<OpenAiBatchClient.ResultLine> results = new ArrayList<>();
+        client.readResults(status.outputFileId(), results::add);
+        client.readResults(status.errorFileId(), results::add);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("{\"ok\": true}", results.get(0).content());
+        assertEquals("gpt-4o-mini", results.get(0).model());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("boom", results.get(1).error());
+        assertEquals("3", results.get(2).customId());
+        assertEquals("request expired", results.get(2).error());
+    }
+
+    @Test
+    void apiErrorsAreReported() {
+        IOException error = assertThrows(IOException.class, () -> client.readResults("file-missing", line -> fail()));
+        assertTrue(error.getMessage().contains("404"));
+    }
+
+    private static String resultLine(String customId, int statusCode, String content) {
+        String body = statusCode == 200
+                ? "{\"model\": \"gpt-4o-mini\", \"choices\": [{\"message\": {\"role\": \"assistant\", \"content\": \"" + content + "\"}}]}"
+                : "{\"error\": {\"message\": \"boom\"}}";
+        return "{\"custom_id\": \"" + customId + "\", \"response\": {\"status_code\": " + statusCode +
+                ", \"body\": " + body + "}, \"error\": null}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
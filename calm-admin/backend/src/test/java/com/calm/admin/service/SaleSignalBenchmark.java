@@ -0,0 +1,83 @@
+package com.calm.admin.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark de la búsqueda de señales de venta: los {@code contains} encadenados que usaba
+ * ChatGPTAnalyzerService contra {@link SaleSignalMatcher}. Informa latencia y bytes asignados.
+ *
+ * Opcional, no corre con el build normal:
+ *   mvn test -Dtest=SaleSignalBenchmark -Dbenchmarks=true [-Dbenchmarks.hours=0.5,1,3]
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class SaleSignalBenchmark {
+
+    private static final int RUNS = 20;
+    private static final int WARMUP = 5;
+    // Unas 150 palabras por minuto
+    private static final int WORDS_PER_HOUR = 9000;
+    private static final String[] WORDS = {"el", "colchón", "tiene", "resortes", "pocket", "y", "la", "garantía",
+            "es", "de", "cinco", "años", "financiación", "cuotas", "sin", "interés", "envío", "gratis", "mañana",
+            "te", "gusta", "muy", "cómodo", "pasá", "probalo", "precio", "efectivo", "tarjeta", "medida"};
+
+    @Test
+    void compareSaleSignalDetection() {
+        String hoursList = System.getProperty("benchmarks.hours", "0.5,1,3");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        SaleSignalMatcher matcher = SaleSignalMatcher.compile(SaleSignalMatcher.DEFAULT_DICTIONARY);
+
+        System.out.printf("%n%-6s %-10s %12s %14s%n", "hours", "strategy", "avg ms", "alloc MB");
+        for (String h : hoursList.split(",")) {
+            double hours = Double.parseDouble(h.trim());
+            // Sin señal: el peor caso, los dos recorren todo el texto
+            String text = transcript((int) (hours * WORDS_PER_HOUR));
+
+            for (int i = 0; i < WARMUP; i++) {
+                LegacySaleSignals.detect(text);
+                matcher.detect(text);
+            }
+
+            long legacyNanos = 0, legacyBytes = 0, matcherNanos = 0, matcherBytes = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                assertNull(LegacySaleSignals.detect(text));
+                legacyNanos += System.nanoTime() - start;
+                legacyBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+
+                bytes = threads.getCurrentThreadAllocatedBytes();
+                start = System.nanoTime();
+                assertNull(matcher.detect(text));
+                matcherNanos += System.nanoTime() - start;
+                matcherBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+            }
+
+            System.out.printf("%-6s %-10s %12.2f %14.2f%n", h, "contains",
+                    legacyNanos / RUNS / 1e6, legacyBytes / RUNS / 1e6);
+            System.out.printf("%-6s %-10s %12.2f %14.2f%n", h, "automaton",
+                    matcherNanos / RUNS / 1e6, matcherBytes / RUNS / 1e6);
+        }
+    }
+
+    private static String transcript(int words) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        int speaker = 0;
+        for (int i = 0; i < words; i++) {
+            if (random.nextInt(25) == 0) {
+                speaker = 1 - speaker;
+                text.append(i > 0 ? "\n\n" : "").append("[Persona ").append(speaker + 1).append("]: ");
+            } else if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.calm.admin.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Señales de venta buscadas en una pasada, sin acentos, con su posición en el texto original.
+ */
+public class SaleSignalMatcherTest {
+
+    private final SaleSignalMatcher matcher = SaleSignalMatcher.compile(SaleSignalMatcher.DEFAULT_DICTIONARY);
+
+    @Test
+    void detectsTheSameSignalsAsKeywordScan() {
+        String[] texts = {
+                "[Persona 1]: Perfecto, ¿me pasás la Dirección de Entrega?",
+                "[Persona 1]: Te llega MAÑANA entre las 9 y las 13.",
+                "[Persona 1]: te llega manana sin falta",
+                "[Persona 1]: Coordinamos el envÃ­o con el depósito.",
+                "[Persona 1]: Necesito tu nombre.\n\n[Persona 2]: Juan. ¿El envío es mañana?",
+                "[Persona 1]: Pasá cuando quieras, el colchón tiene garantía.",
+                "[Persona 2]: Mañana vuelvo con mi nombre anotado.",
+                "",
+        };
+        for (String text : texts) {
+            assertEquals(LegacySaleSignals.detect(text) != null, matcher.detect(text) != null, text);
+        }
+        assertEquals("direccion de entrega", matcher.detect(texts[0]));
+        assertEquals("te llega mañana", matcher.detect(texts[1]));
+        assertEquals(LegacySaleSignals.detect(texts[4]), matcher.detect(texts[4]));
+
+        // Con la frase acentuada el scan anterior no la encontraba
+        String accented = "[Persona 2]: ¿Y con cuotas cuánto te quedaría en total?";
+        assertNull(LegacySaleSignals.detect(accented));
+        assertEquals("te quedaria en", matcher.detect(accented));
+        assertNull(matcher.detect(null));
+    }
+
+    @Test
+    void findsAllPhrasesWithOriginalOffsets() {
+        String text = "Â¿NOMBRE y apellido? El envÃ­o sale del depÃ³sito mañana.";
+        List<SaleSignalMatcher.Match> matches = matcher.findAll(text);
+
+        assertEquals(List.of("nombre", "nombre y apellido", "apellido", "envio", "sale del deposito", "mañana"),
+                matches.stream().map(SaleSignalMatcher.Match::phrase).toList());
+        for (SaleSignalMatcher.Match match : matches) {
+            assertEquals(SaleSignalMatcher.fold(match.phrase()), SaleSignalMatcher.fold(text.substring(match.start(), match.end())));
+        }
+        assertEquals("envÃ­o", text.substring(matches.get(3).start(), matches.get(3).end()));
+        assertEquals("sale del depÃ³sito", text.substring(matches.get(4).start(), matches.get(4).end()));
+    }
+
+    @Test
+    void compilesCustomDictionaries() {
+        SaleSignalMatcher custom = SaleSignalMatcher.compile("""
+                # Comentario
+                seña | señá
+
+                factura A + CUIT
+                """);
+        assertEquals("seña", custom.detect("Dejame una sena y lo reservo"));
+        assertEquals("Combinación: factura A + CUIT", custom.detect("¿Factura A? Pasame el cuit."));
+        assertNull(custom.detect("Factura B"));
+        assertNull(SaleSignalMatcher.compile("").detect("nombre y apellido"));
+    }
+}
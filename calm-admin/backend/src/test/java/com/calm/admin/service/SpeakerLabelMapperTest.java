@@ -0,0 +1,46 @@
+package com.calm.admin.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * El mapper sin regex tiene que dar las mismas etiquetas que la conversión original.
+ */
+public class SpeakerLabelMapperTest {
+
+    @Test
+    void matchesLegacyLabels() {
+        List<String> speakers = Arrays.asList(null, "spk_0", "spk_1", "SPK_2", " spk3 ", "speaker_4", "spk_9",
+                "spk_10", "spk_13", "speaker 7", "Speaker-05", "spk", "vendedor", "cliente2", "Ana", "", "  ",
+                "spk_007", "spk_x9", "spk_00");
+        for (String speaker : speakers) {
+            assertEquals(LegacySpeakerLabel.format(speaker), SpeakerLabelMapper.format(speaker),
+                    String.valueOf(speaker));
+        }
+    }
+
+    @Test
+    void capsUnknownIdsToTheColumnLength() {
+        String id = "cliente-" + "x".repeat(60);
+        assertEquals(id.substring(0, SpeakerLabelMapper.MAX_LENGTH), SpeakerLabelMapper.format(id));
+        assertEquals("spk_" + "9".repeat(36), SpeakerLabelMapper.format("spk_" + "9".repeat(50)));
+        // La etiqueta cortada sigue siendo reconocida en el texto plano
+        String text = "[" + SpeakerLabelMapper.format(id) + "]: Hola";
+        assertEquals(1, TranscriptTurnService.fromText("r1", text).size());
+        assertNotNull(TranscriptTurnService.fromText("r1", text).get(0).getSpeaker());
+    }
+
+    @Test
+    void cachesEachSpeakerWithinATranscript() {
+        SpeakerLabelMapper mapper = new SpeakerLabelMapper();
+        String first = mapper.label("spk_5");
+        assertEquals("Persona 6", first);
+        assertSame(first, mapper.label("spk_5"));
+        assertEquals("Persona 1", mapper.label("spk_0"));
+        assertEquals("Desconocido", mapper.label(null));
+    }
+}
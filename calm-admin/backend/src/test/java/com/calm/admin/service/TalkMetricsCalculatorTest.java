@@ -0,0 +1,63 @@
+package com.calm.admin.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parte del vendedor, silencios e interrupciones calculados con los tiempos de cada palabra.
+ */
+public class TalkMetricsCalculatorTest {
+
+    @Test
+    void measuresTalkSilenceAndInterruptions() {
+        TalkMetricsCalculator talk = new TalkMetricsCalculator();
+        talk.add("Persona 1", 0, 1000, 2);
+        talk.add("Persona 1", 1000, 3000, 4);
+        // 3 segundos sin nadie hablando
+        talk.add("Persona 2", 6000, 7000, 2);
+        // El vendedor interrumpe antes de que termine el cliente
+        talk.add("Persona 2", 7000, 9000, 3);
+        talk.add("Persona 1", 8500, 10000, 3);
+        // Pausa corta: no cuenta como silencio
+        talk.add("Persona 2", 11000, 12000, 1);
+
+        TalkMetricsCalculator.Result result = talk.result();
+        assertEquals(12000, result.durationMs());
+        assertEquals(4500, result.vendorTalkMs());
+        assertEquals(4000, result.customerTalkMs());
+        assertEquals(9, result.vendorWords());
+        assertEquals(6, result.customerWords());
+        assertEquals(3000, result.silenceMs());
+        assertEquals(1, result.silenceGaps());
+        assertEquals(3000, result.longestSilenceMs());
+        assertEquals(1, result.interruptions());
+        assertEquals(1, result.vendorInterruptions());
+        assertEquals(53, result.vendorTalkPercent());
+        assertEquals(25, result.silencePercent());
+        assertEquals(120, result.vendorWordsPerMinute());
+        assertEquals(90, result.customerWordsPerMinute());
+    }
+
+    @Test
+    void leavesVendorShareEmptyWithoutSpeakers() {
+        TalkMetricsCalculator talk = new TalkMetricsCalculator();
+        assertNull(talk.result());
+
+        talk.add(null, 0, 1000, 2);
+        talk.add(null, 4000, 5000, 2);
+        TalkMetricsCalculator.Result result = talk.result();
+        assertNull(result.vendorTalkPercent());
+        assertEquals(60, result.silencePercent());
+
+        Map<String, Long> words = new HashMap<>();
+        words.put("Persona 1", 30L);
+        words.put("Persona 2", 10L);
+        assertEquals(75, TalkMetricsCalculator.vendorWordPercent(words));
+        words.put(null, 5L);
+        assertNull(TalkMetricsCalculator.vendorWordPercent(words));
+    }
+}
@@ -0,0 +1,119 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.TimelineEvent;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.TranscriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Serie temporal armada con la consulta agrupada por día.
+ */
+@DataJpaTest
+@Import(TimelineMetricsService.class)
+public class TimelineMetricsServiceTest {
+
+    @Autowired
+    private TimelineMetricsService service;
+
+    @Autowired
+    private TranscriptionRepository repository;
+
+    @BeforeEach
+    void seed() {
+        // Lunes 1 y miércoles 3 de enero (misma semana), lunes 8 (semana siguiente), 1 de febrero
+        repository.saveAll(List.of(
+                analyzed("a", 1L, 10L, LocalDateTime.of(2024, 1, 1, 9, 0), true, 8, 90),
+                analyzed("b", 1L, 10L, LocalDateTime.of(2024, 1, 3, 18, 30), false, 4, 70),
+                analyzed("c", 2L, 20L, LocalDateTime.of(2024, 1, 8, 11, 0), true, null, null),
+                analyzed("d", 2L, 20L, LocalDateTime.of(2024, 2, 1, 23, 59), false, 6, 80),
+                pending("e", 1L, 10L, LocalDateTime.of(2024, 1, 2, 10, 0))));
+    }
+
+    @Test
+    void groupsByWeekMonthAndDay() {
+        List<Map<String, Object>> weeks = service.getSeries("week", null, null, null, null);
+        assertEquals(List.of("2024-01-01", "2024-01-08", "2024-01-29"), periods(weeks));
+        assertEquals(2L, weeks.get(0).get("total"));
+        assertEquals(1L, weeks.get(0).get("sales"));
+        assertEquals(50.0, weeks.get(0).get("saleRate"));
+        assertEquals(6.0, weeks.get(0).get("avgScore"));
+        assertEquals(80.0, weeks.get(0).get("avgConfidence"));
+        // Sin puntaje ni confianza: promedios en cero
+        assertEquals(0.0, weeks.get(1).get("avgScore"));
+
+        List<Map<String, Object>> months = service.getSeries("month", null, null, null, null);
+        assertEquals(List.of("2024-01", "2024-02"), periods(months));
+        assertEquals(3L, months.get(0).get("total"));
+
+        assertEquals(4, service.getSeries("day", null, null, null, null).size());
+    }
+
+    @Test
+    void filtersBySellerBranchAndDateRange() {
+        assertEquals(List.of("2024-01-01", "2024-01-03"), periods(service.getSeries("day", 1L, null, null, null)));
+        assertEquals(List.of("2024-01-08", "2024-02-01"), periods(service.getSeries("day", null, 20L, null, null)));
+        // El último día del rango se incluye completo
+        assertEquals(List.of("2024-01-03", "2024-01-08"), periods(service.getSeries("day", null, null,
+                LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 8))));
+    }
+
+    @Test
+    void comparesWindowsAroundEvents() {
+        // Antes: [1 ene, 8 ene) -> a, b. Después: 8 ene completo -> c
+        Map<String, Object> comparison = service.compareAround(LocalDate.of(2024, 1, 8), 7, null);
+        assertEquals(2L, ((Map<?, ?>) comparison.get("before")).get("total"));
+        assertEquals(50.0, ((Map<?, ?>) comparison.get("before")).get("saleRate"));
+        assertEquals(1L, ((Map<?, ?>) comparison.get("after")).get("total"));
+        assertEquals(50.0, comparison.get("saleRateChange"));
+
+        TimelineEvent training = new TimelineEvent();
+        training.setId(1L);
+        training.setTitle("Capacitación");
+        training.setEventDate(LocalDate.of(2024, 1, 8));
+        TimelineEvent promo = new TimelineEvent();
+        promo.setId(2L);
+        promo.setTitle("Promo");
+        promo.setEventDate(LocalDate.of(2024, 2, 1));
+
+        List<Map<String, Object>> events = service.compareEvents(List.of(training, promo), 7, 2L);
+        assertEquals(2, events.size());
+        assertEquals(0L, ((Map<?, ?>) events.get(0).get("before")).get("total"));
+        assertEquals(1L, ((Map<?, ?>) events.get(1).get("after")).get("total"));
+        assertEquals("Promo", events.get(1).get("title"));
+    }
+
+    private static List<Object> periods(List<Map<String, Object>> series) {
+        return series.stream().map(p -> p.get("period")).toList();
+    }
+
+    private static Transcription analyzed(String id, Long userId, Long branchId, LocalDateTime date,
+                                          boolean sale, Integer score, Integer confidence) {
+        Transcription t = pending(id, userId, branchId, date);
+        t.setAnalyzed(true);
+        t.setSaleCompleted(sale);
+        t.setSellerScore(score);
+        t.setAnalysisConfidence(confidence);
+        return t;
+    }
+
+    private static Transcription pending(String id, Long userId, Long branchId, LocalDateTime date) {
+        Transcription t = new Transcription();
+        t.setRecordingId(id);
+        t.setUserId(userId);
+        t.setBranchId(branchId);
+        t.setRecordingDate(date);
+        t.setAnalyzed(false);
+        return t;
+    }
+}
@@ -0,0 +1,70 @@
+package com.calm.admin.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test del limitador de tasa de OpenAI usando un reloj simulado (tryAcquire con nanos explícitos).
+ */
+public class TokenBucketRateLimiterTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    @Test
+    void requestBucketLimitsBurstAndRefills() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 1_000_000);
+        long t0 = System.nanoTime();
+
+        for (int i = 0; i < 60; i++) {
+            assertEquals(0, limiter.tryAcquire(10, t0), "request " + i + " should pass");
+        }
+        long wait = limiter.tryAcquire(10, t0);
+        assertTrue(wait > 0, "61st request in the same instant should wait");
+        assertTrue(wait <= SECOND, "60 rpm refills one request per second, wait was " + wait);
+
+        assertEquals(0, limiter.tryAcquire(10, t0 + SECOND));
+    }
+
+    @Test
+    void tokenBucketLimitsLargeRequests() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 6000);
+        long t0 = System.nanoTime();
+
+        assertEquals(0, limiter.tryAcquire(4000, t0));
+        long wait = limiter.tryAcquire(4000, t0);
+        // Faltan 2000 tokens a 100 tokens/segundo
+        assertEquals(20 * SECOND, wait, SECOND / 100);
+        assertEquals(0, limiter.tryAcquire(4000, t0 + wait));
+    }
+
+    @Test
+    void requestLargerThanCapacityPassesWithFullBucket() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 1000);
+        assertEquals(0, limiter.tryAcquire(50_000, System.nanoTime()));
+    }
+
+    @Test
+    void reconcileChargesActualUsage() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 6000);
+        long t0 = System.nanoTime();
+
+        assertEquals(0, limiter.tryAcquire(1000, t0));
+        // La llamada consumió mucho más de lo estimado: el bucket queda en deuda
+        limiter.reconcile(1000, 7000);
+        assertTrue(limiter.tryAcquire(100, t0) > 0);
+    }
+
+    @Test
+    void pauseBlocksUntilDelayElapses() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 1_000_000);
+        limiter.pause(Duration.ofSeconds(5));
+        long now = System.nanoTime();
+
+        long wait = limiter.tryAcquire(10, now);
+        assertTrue(wait > 4 * SECOND && wait <= 5 * SECOND, "wait was " + wait);
+        assertEquals(0, limiter.tryAcquire(10, now + 6 * SECOND));
+    }
+}
@@ -0,0 +1,250 @@
+package com.calm.admin.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark de la lectura de transcripciones: el árbol JsonNode con {@code toString().endsWith}
+ * que usaba S3Service contra el decoder en stream, y las etiquetas de hablante con regex contra
+ * {@link SpeakerLabelMapper}. Informa latencia y bytes asignados.
+ *
+ * Opcional, no corre con el build normal:
+ *   mvn test -Dtest=TranscriptDecoderBenchmark -Dbenchmarks=true
+ *       [-Dbenchmarks.hours=0.5,1,3] [-Dbenchmarks.turns=1000,5000,20000]
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class TranscriptDecoderBenchmark {
+
+    private static final int RUNS = 3;
+    // Unas 150 palabras por minuto
+    private static final int WORDS_PER_HOUR = 9000;
+    private static final String[] WORDS = {"el", "colchón", "tiene", "resortes", "pocket", "y", "la", "garantía",
+            "es", "de", "cinco", "años", "financiación", "cuotas", "sin", "interés", "envío", "gratis"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TranscriptJsonDecoder decoder = new TranscriptJsonDecoder(objectMapper);
+
+    @Test
+    void compareTranscriptDecoders() throws IOException {
+        String hoursList = System.getProperty("benchmarks.hours", "0.5,1,3");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf("%n%-6s %-8s %-10s %12s %14s%n", "hours", "MB", "strategy", "avg ms", "alloc MB");
+        for (String h : hoursList.split(",")) {
+            double hours = Double.parseDouble(h.trim());
+            byte[] json = awsTranscript((int) (hours * WORDS_PER_HOUR));
+            double sizeMb = json.length / 1e6;
+
+            String legacy = null, streamed = null;
+            long legacyNanos = 0, legacyBytes = 0, streamedNanos = 0, streamedBytes = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                legacy = legacyDecode(new ByteArrayInputStream(json));
+                legacyNanos += System.nanoTime() - start;
+                legacyBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+
+                bytes = threads.getCurrentThreadAllocatedBytes();
+                start = System.nanoTime();
+                streamed = decoder.decode(new ByteArrayInputStream(json)).text();
+                streamedNanos += System.nanoTime() - start;
+                streamedBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+            }
+
+            System.out.printf("%-6s %-8.1f %-10s %12.1f %14.1f%n", h, sizeMb, "legacy",
+                    legacyNanos / RUNS / 1e6, legacyBytes / RUNS / 1e6);
+            System.out.printf("%-6s %-8.1f %-10s %12.1f %14.1f%n", h, sizeMb, "streaming",
+                    streamedNanos / RUNS / 1e6, streamedBytes / RUNS / 1e6);
+            assertEquals(legacy, streamed);
+        }
+    }
+
+    @Test
+    void compareSpeakerLabels() throws IOException {
+        String turnsList = System.getProperty("benchmarks.turns", "1000,5000,20000");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf("%n%-8s %-10s %12s %14s%n", "turns", "labels", "avg ms", "alloc MB");
+        for (String t : turnsList.split(",")) {
+            int turns = Integer.parseInt(t.trim());
+            String[] speakers = speakerTurns(turns);
+
+            long regexNanos = 0, regexBytes = 0, mapperNanos = 0, mapperBytes = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                for (String speaker : speakers) {
+                    LegacySpeakerLabel.format(speaker);
+                }
+                regexNanos += System.nanoTime() - start;
+                regexBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+
+                bytes = threads.getCurrentThreadAllocatedBytes();
+                start = System.nanoTime();
+                SpeakerLabelMapper mapper = new SpeakerLabelMapper();
+                for (String speaker : speakers) {
+                    mapper.label(speaker);
+                }
+                mapperNanos += System.nanoTime() - start;
+                mapperBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+            }
+
+            // El transcript completo en formato de segmentos, un segmento por turno
+            byte[] json = segmentTranscript(speakers);
+            long decodeNanos = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                decoder.decode(new ByteArrayInputStream(json));
+                decodeNanos += System.nanoTime() - start;
+            }
+
+            System.out.printf("%-8d %-10s %12.2f %14.2f%n", turns, "regex",
+                    regexNanos / RUNS / 1e6, regexBytes / RUNS / 1e6);
+            System.out.printf("%-8d %-10s %12.2f %14.2f%n", turns, "mapper",
+                    mapperNanos / RUNS / 1e6, mapperBytes / RUNS / 1e6);
+            System.out.printf("%-8d %-10s %12.2f%n", turns, "decode", decodeNanos / RUNS / 1e6);
+            for (String speaker : speakers) {
+                assertEquals(LegacySpeakerLabel.format(speaker), SpeakerLabelMapper.format(speaker));
+            }
+        }
+    }
+
+    // Turnos alternados entre vendedor y cliente, con algún tercero ocasional
+    private static String[] speakerTurns(int turns) {
+        Random random = new Random(7);
+        String[] speakers = new String[turns];
+        for (int i = 0; i < turns; i++) {
+            speakers[i] = random.nextInt(20) == 0 ? "spk_" + (2 + random.nextInt(4)) : "spk_" + (i % 2);
+        }
+        return speakers;
+    }
+
+    private byte[] segmentTranscript(String[] speakers) throws IOException {
+        Random random = new Random(11);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator g = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            g.writeStartArray();
+            for (String speaker : speakers) {
+                StringBuilder text = new StringBuilder();
+                for (int w = 0, words = 3 + random.nextInt(15); w < words; w++) {
+                    text.append(w > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                g.writeStartObject();
+                g.writeStringField("speaker", speaker);
+                g.writeStringField("text", text.append('.').toString());
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+
+    // JSON como lo genera AWS Transcribe: items con tiempos, hablante, alternativas y puntuación
+    private byte[] awsTranscript(int words) throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator g = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            g.writeStartObject();
+            g.writeStringField("jobName", "in-person-recording-bench");
+            g.writeObjectFieldStart("results");
+            g.writeArrayFieldStart("transcripts");
+            g.writeStartObject();
+            g.writeStringField("transcript", "texto completo omitido");
+            g.writeEndObject();
+            g.writeEndArray();
+            g.writeObjectFieldStart("speaker_labels");
+            g.writeNumberField("speakers", 2);
+            g.writeEndObject();
+            g.writeArrayFieldStart("items");
+            double time = 0;
+            int speaker = 0;
+            for (int i = 0; i < words; i++) {
+                if (random.nextInt(25) == 0) {
+                    speaker = 1 - speaker;
+                }
+                double end = time + 0.2 + random.nextDouble() * 0.3;
+                g.writeStartObject();
+                g.writeStringField("start_time", String.format("%.3f", time));
+                g.writeStringField("end_time", String.format("%.3f", end));
+                g.writeArrayFieldStart("alternatives");
+                g.writeStartObject();
+                g.writeStringField("confidence", "0.99");
+                g.writeStringField("content", WORDS[random.nextInt(WORDS.length)]);
+                g.writeEndObject();
+                g.writeEndArray();
+                g.writeStringField("type", "pronunciation");
+                g.writeStringField("speaker_label", "spk_" + speaker);
+                g.writeEndObject();
+                if (random.nextInt(8) == 0) {
+                    g.writeStartObject();
+                    g.writeArrayFieldStart("alternatives");
+                    g.writeStartObject();
+                    g.writeStringField("confidence", "0.0");
+                    g.writeStringField("content", random.nextBoolean() ? "." : ",");
+                    g.writeEndObject();
+                    g.writeEndArray();
+                    g.writeStringField("type", "punctuation");
+                    g.writeStringField("speaker_label", "spk_" + speaker);
+                    g.writeEndObject();
+                }
+                time = end + random.nextDouble() * 0.2;
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+            g.writeStringField("status", "COMPLETED");
+            g.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    // Lo que hacía S3Service.fetchTranscription para este formato antes del decoder en stream
+    private String legacyDecode(InputStream in) throws IOException {
+        String content = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))
+                .lines()
+                .collect(Collectors.joining("\n"));
+        JsonNode results = objectMapper.readTree(content).get("results");
+        StringBuilder text = new StringBuilder();
+        String lastSpeaker = null;
+        for (JsonNode item : results.get("items")) {
+            if (item.has("alternatives") && item.get("alternatives").isArray()
+                    && item.get("alternatives").size() > 0) {
+                String word = item.get("alternatives").get(0).get("content").asText();
+                String speaker = item.has("speaker_label") ? item.get("speaker_label").asText() : null;
+                String type = item.has("type") ? item.get("type").asText() : "pronunciation";
+                if (speaker != null && !speaker.equals(lastSpeaker)) {
+                    if (text.length() > 0) {
+                        text.append("\n\n");
+                    }
+                    text.append("[").append(LegacySpeakerLabel.format(speaker)).append("]: ");
+                    lastSpeaker = speaker;
+                }
+                if ("punctuation".equals(type)) {
+                    text.append(word);
+                } else {
+                    if (text.length() > 0 && !text.toString().endsWith(": ") && !text.toString().endsWith("\n")) {
+                        text.append(" ");
+                    }
+                    text.append(word);
+                }
+            }
+        }
+        return text.toString().trim();
+    }
+}
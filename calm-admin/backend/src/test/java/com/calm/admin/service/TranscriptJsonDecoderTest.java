@@ -0,0 +1,126 @@
+package com.calm.admin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lectura en stream de los cuatro formatos de transcripción que llegan de S3.
+ */
+public class TranscriptJsonDecoderTest {
+
+    private final TranscriptJsonDecoder decoder = new TranscriptJsonDecoder(new ObjectMapper());
+
+    @Test
+    void decodesSegmentArray() throws IOException {
+        String json = """
+                [{"speaker": "spk_0", "text": "Hola, buen día."},
+                 {"text": "¿Busca colchón?", "speaker": "spk_0"},
+                 {"speaker_label": "spk_1", "transcript": "Sí, de dos plazas."},
+                 {"speaker": "spk_1", "text": "  "},
+                 "ignorado",
+                 {"text": "Sin hablante."}]
+                """;
+        assertEquals("[Persona 1]: Hola, buen día.¿Busca colchón?\n\n[Persona 2]: Sí, de dos plazas. Sin hablante.",
+                decode(json));
+    }
+
+    @Test
+    void decodesAwsItemsWithSpeakers() throws IOException {
+        // Claves en cualquier orden: items antes que speaker_labels, alternatives antes que el tipo
+        String json = """
+                {"jobName": "job", "results": {
+                  "transcripts": [{"transcript": "texto plano"}],
+                  "items": [
+                    {"alternatives": [{"confidence": "0.9", "content": "Hola"}, {"content": "Ola"}],
+                     "type": "pronunciation", "speaker_label": "spk_0", "start_time": "0.1"},
+                    {"type": "punctuation", "alternatives": [{"content": ","}], "speaker_label": "spk_0"},
+                    {"speaker_label": "spk_0", "alternatives": [{"content": "señora"}]},
+                    {"speaker_label": "spk_1", "alternatives": [{"content": "Hola"}]},
+                    {"speaker_label": "spk_1", "type": "punctuation", "alternatives": [{"content": "."}]},
+                    {"speaker_label": "spk_1", "alternatives": []}
+                  ],
+                  "speaker_labels": {"speakers": 2, "segments": []}
+                }, "status": "COMPLETED"}
+                """;
+        assertEquals("[Persona 1]: Hola, señora\n\n[Persona 2]: Hola.", decode(json));
+    }
+
+    @Test
+    void returnsTurnsWithOffsetsAndTimes() throws IOException {
+        String json = """
+                {"results": {"speaker_labels": {}, "items": [
+                  {"start_time": "0.5", "end_time": "0.9", "alternatives": [{"content": "Hola"}], "speaker_label": "spk_0"},
+                  {"type": "punctuation", "alternatives": [{"content": ","}], "speaker_label": "spk_0"},
+                  {"start_time": "1.0", "end_time": "1.25", "alternatives": [{"content": "señora"}], "speaker_label": "spk_0"},
+                  {"start_time": "2.0", "end_time": "2.4", "alternatives": [{"content": "Buenas"}], "speaker_label": "spk_1"},
+                  {"start_time": "3.1", "end_time": "3.5", "alternatives": [{"content": "Gracias"}], "speaker_label": "spk_0"}
+                ]}}
+                """;
+        TranscriptJsonDecoder.Decoded decoded = decodeWithTurns(json);
+        String text = decoded.text();
+        assertEquals(3, decoded.turns().size());
+
+        TranscriptJsonDecoder.Turn first = decoded.turns().get(0);
+        assertEquals("Persona 1", first.speaker());
+        assertEquals("Hola, señora", text.substring(first.textStart(), first.textEnd()));
+        assertEquals(500, first.startMs());
+        assertEquals(1250, first.endMs());
+        assertEquals(2, first.wordCount());
+
+        TranscriptJsonDecoder.Turn second = decoded.turns().get(1);
+        assertEquals("Persona 2", second.speaker());
+        assertEquals("Buenas", text.substring(second.textStart(), second.textEnd()));
+        assertEquals(2000, second.startMs());
+        assertEquals("Gracias", text.substring(decoded.turns().get(2).textStart(), decoded.turns().get(2).textEnd()));
+
+        // La puntuación no suma palabras; entre 1.25 y 2.0 no hay pausa suficiente para silencio
+        TalkMetricsCalculator.Result talk = decoded.talk();
+        assertEquals(3000, talk.durationMs());
+        assertEquals(1050, talk.vendorTalkMs());
+        assertEquals(3, talk.vendorWords());
+        assertEquals(1, talk.customerWords());
+        assertEquals(0, talk.silenceGaps());
+        assertEquals(72, talk.vendorTalkPercent());
+
+        // Sin hablantes: un solo turno con todo el texto recortado
+        TranscriptJsonDecoder.Decoded plain = decodeWithTurns("{\"text\": \"  Texto libre. \"}");
+        assertEquals("Texto libre.", plain.text());
+        assertEquals(1, plain.turns().size());
+        assertNull(plain.turns().get(0).speaker());
+        assertEquals(plain.text().length(), plain.turns().get(0).textEnd());
+        assertNull(plain.turns().get(0).startMs());
+        assertNull(plain.talk());
+    }
+
+    @Test
+    void decodesAwsTranscriptsWithoutSpeakers() throws IOException {
+        String json = """
+                {"results": {"items": [{"alternatives": [{"content": "ignorado"}]}],
+                             "transcripts": [{"transcript": "Primera parte."}, {"transcript": "Segunda."}]},
+                 "text": "ignorado"}
+                """;
+        assertEquals("Primera parte. Segunda.", decode(json));
+    }
+
+    @Test
+    void decodesPlainTextAndUnknownDocuments() throws IOException {
+        assertEquals("Texto", decode("{\"transcript\": \"Otro\", \"text\": \"Texto\"}"));
+        assertEquals("Otro", decode("{\"id\": 1, \"transcript\": \"Otro\"}"));
+        assertEquals("{\"id\":1,\"data\":[1,2]}", decode("{\"id\": 1,\n \"data\": [1, 2]}"));
+        assertEquals("", decode(""));
+    }
+
+    private String decode(String json) throws IOException {
+        return decodeWithTurns(json).text();
+    }
+
+    private TranscriptJsonDecoder.Decoded decodeWithTurns(String json) throws IOException {
+        return decoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,127 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.TranscriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Búsqueda con el índice Lucene: acentos, plurales, relevancia, filtros, frases, hablantes y tolerancia a errores.
+ */
+@DataJpaTest
+@Import(TranscriptSearchService.class)
+@TestPropertySource(properties = "search.index.dir=")
+public class TranscriptSearchServiceTest {
+
+    @Autowired
+    private TranscriptSearchService searchService;
+
+    @Autowired
+    private TranscriptionRepository repository;
+
+    @BeforeEach
+    void seed() throws Exception {
+        repository.saveAll(List.of(
+                transcription("a", 1L, true, "Le ofrezco financiación en cuotas. La financiación es sin interés."),
+                transcription("b", 2L, false, "No me interesa, las FINANCIACIONES siempre tienen letra chica."),
+                transcription("c", 1L, false, "Buen día, busco un colchón de dos plazas."),
+                transcription("d", 2L, true, "Me llevo el sommier, pago con tarjeta en cuotas sin interés."),
+                transcription("e", 1L, true, "[Persona 1]: Hola, ¿le interesa el envío gratis?\n\n"
+                        + "[Persona 2]: Sí, y pago en efectivo.\n\n[Persona 1]: Perfecto, el envío llega el lunes.")));
+        assertEquals(5, searchService.rebuild());
+    }
+
+    @Test
+    void foldsAccentsAndPluralsAndRanksByRelevance() throws Exception {
+        TranscriptSearchService.Result result = searchService.search("financiacion", null, null, null, null, 0, 10);
+
+        assertEquals(2, result.totalHits());
+        assertFalse(result.fuzzy());
+        assertEquals(List.of("a", "b"), ids(result));
+        TranscriptSearchService.Hit first = result.hits().get(0);
+        assertEquals(2, first.matchCount());
+        assertTrue(first.snippets().get(0).contains("**financiación**"), first.snippets().toString());
+    }
+
+    @Test
+    void appliesFiltersPhrasesAndPages() throws Exception {
+        assertEquals(List.of("b"), ids(searchService.search("financiación", null, 2L, null, null, 0, 10)));
+        assertEquals(List.of("a"), ids(searchService.search("financiación", null, null, null, true, 0, 10)));
+        assertEquals(List.of("d"), ids(searchService.search("\"tarjeta en cuotas\"", null, null, null, null, 0, 10)));
+
+        TranscriptSearchService.Result secondPage = searchService.search("cuotas interés", null, null, null, null, 1, 1);
+        assertEquals(2, secondPage.totalHits());
+        assertEquals(1, secondPage.hits().size());
+        assertTrue(searchService.search("cuotas", null, null, null, null, 5, 10).hits().isEmpty());
+    }
+
+    @Test
+    void fallsBackToFuzzyMatching() throws Exception {
+        TranscriptSearchService.Result result = searchService.search("colchon sommmier", null, null, null, null, 0, 10);
+        assertEquals(0, result.totalHits());
+
+        result = searchService.search("colchn", null, null, null, null, 0, 10);
+        assertTrue(result.fuzzy());
+        assertEquals(List.of("c"), ids(result));
+    }
+
+    @Test
+    void searchesOnlyTheRequestedSpeaker() throws Exception {
+        assertEquals(List.of("e"), ids(searchService.search("envio", "Persona 1", null, null, null, 0, 10)));
+        assertTrue(searchService.search("envio", "Persona 2", null, null, null, 0, 10).hits().isEmpty());
+        assertEquals(List.of("e"), ids(searchService.search("efectivo", "Persona 2", null, null, null, 0, 10)));
+
+        // Las etiquetas no se indexan, y una frase no cruza de un turno al siguiente
+        assertTrue(searchService.search("persona", null, null, null, null, 0, 10).hits().isEmpty());
+        assertTrue(searchService.search("\"gratis si\"", "Persona 1", null, null, null, 0, 10).hits().isEmpty());
+
+        TranscriptSearchService.Hit hit = searchService.search("\"envio llega\"~2", "Persona 1", null, null, null, 0, 10)
+                .hits().get(0);
+        assertEquals(1, hit.matchCount());
+        assertTrue(hit.snippets().get(0).contains("**envío llega**"), hit.snippets().toString());
+    }
+
+    @Test
+    void rebuildReplacesTheIndexInOneStep() throws Exception {
+        repository.deleteById("c");
+        assertEquals(4, searchService.rebuild());
+        assertTrue(searchService.search("colchón", null, null, null, null, 0, 10).hits().isEmpty());
+        assertEquals(List.of("a", "b"), ids(searchService.search("financiacion", null, null, null, null, 0, 10)));
+    }
+
+    @Test
+    void startupReindexesRowsChangedAfterTheLastCommit() throws Exception {
+        // Cambio confirmado en la base que no llegó al índice (caída antes del commit)
+        Transcription changed = repository.findById("c").orElseThrow();
+        changed.setTranscriptionText("Buen día, busco una almohada de plumas.");
+        repository.saveAndFlush(changed);
+        assertEquals(List.of("c"), ids(searchService.search("colchón", null, null, null, null, 0, 10)));
+
+        searchService.reconcileOnStartup();
+
+        assertTrue(searchService.search("colchón", null, null, null, null, 0, 10).hits().isEmpty());
+        assertEquals(List.of("c"), ids(searchService.search("almohada", null, null, null, null, 0, 10)));
+    }
+
+    private static List<String> ids(TranscriptSearchService.Result result) {
+        return result.hits().stream().map(TranscriptSearchService.Hit::recordingId).toList();
+    }
+
+    private static Transcription transcription(String id, Long userId, boolean sale, String text) {
+        Transcription t = new Transcription();
+        t.setRecordingId(id);
+        t.setUserId(userId);
+        t.setAnalyzed(true);
+        t.setSaleCompleted(sale);
+        t.setTranscriptionText(text);
+        return t;
+    }
+}
@@ -0,0 +1,104 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.TranscriptTurn;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.TalkMetricsRepository;
+import com.calm.admin.repository.TranscriptTurnRepository;
+import com.calm.admin.repository.TranscriptionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Turnos guardados al importar y completados desde el texto para las transcripciones anteriores.
+ */
+@DataJpaTest
+@Import(TranscriptTurnService.class)
+public class TranscriptTurnServiceTest {
+
+    @Autowired
+    private TranscriptTurnService turnService;
+
+    @Autowired
+    private TranscriptTurnRepository turnRepository;
+
+    @Autowired
+    private TalkMetricsRepository talkMetricsRepository;
+
+    @Autowired
+    private TranscriptionRepository transcriptionRepository;
+
+    @Test
+    void storesDecodedTurnsAndSummarizesBySpeaker() {
+        transcriptionRepository.save(transcription("a", "[Persona 1]: Hola, buen día.\n\n[Persona 2]: Hola.\n\n[Persona 1]: ¿Busca colchón?"));
+        turnService.saveAll(TranscriptTurnService.fromDecoded("a", List.of(
+                new TranscriptJsonDecoder.Turn("Persona 1", 13, 28, 0, 1500, 3),
+                new TranscriptJsonDecoder.Turn("Persona 2", 43, 48, 1800, 2300, 1),
+                new TranscriptJsonDecoder.Turn("Persona 1", 63, 78, 2600, 3600, 2))));
+
+        List<TranscriptTurn> turns = turnService.getTurns("a");
+        assertEquals(List.of(0, 1, 2), turns.stream().map(TranscriptTurn::getTurnIndex).toList());
+
+        List<Map<String, Object>> stats = turnService.getSpeakerStats("a");
+        assertEquals("Persona 1", stats.get(0).get("speaker"));
+        assertEquals(2L, stats.get(0).get("turns"));
+        assertEquals(5L, stats.get(0).get("words"));
+        assertEquals(2.5, (Double) stats.get(0).get("seconds"), 0.001);
+        assertEquals(0.5, (Double) stats.get(1).get("seconds"), 0.001);
+
+        // Sin tiempos guardados, la parte del vendedor sale de las palabras
+        assertEquals(83, turnService.getLocalMetrics("a").vendorTalkPercent());
+        assertNull(turnService.getLocalMetrics("a").silencePercent());
+
+        TalkMetricsCalculator talk = new TalkMetricsCalculator();
+        talk.add("Persona 1", 0, 1500, 3);
+        talk.add("Persona 2", 4000, 4500, 1);
+        turnService.saveTalkMetrics(List.of(TranscriptTurnService.fromTalk("a", talk.result())));
+        TranscriptTurnService.LocalMetrics local = turnService.getLocalMetrics("a");
+        assertEquals(75, local.vendorTalkPercent());
+        assertEquals(56, local.silencePercent());
+        assertEquals(4500L, local.durationMs());
+
+        turnService.remove("a");
+        assertTrue(turnService.getTurns("a").isEmpty());
+        assertEquals(0, talkMetricsRepository.count());
+    }
+
+    @Test
+    void backfillsFromTextAndDropsOrphans() {
+        String text = "[Persona 1]: Hola, ¿le interesa el envío gratis?\n\n[Persona 2]: Sí, y pago en efectivo.";
+        transcriptionRepository.saveAll(List.of(transcription("b", text), transcription("c", "Texto sin etiquetas."),
+                transcription("d", "")));
+        turnService.saveAll(TranscriptTurnService.fromText("gone", "[Persona 1]: Ya no existe."));
+
+        assertEquals(2, turnService.backfill());
+        assertEquals(0, turnService.backfill());
+        assertEquals(1, turnRepository.deleteOrphans());
+
+        List<TranscriptTurn> turns = turnService.getTurns("b");
+        assertEquals(2, turns.size());
+        assertEquals("Persona 2", turns.get(1).getSpeaker());
+        assertEquals("Sí, y pago en efectivo.", turns.get(1).text(text));
+        assertEquals(5, turns.get(1).getWordCount());
+        assertNull(turns.get(1).getStartMs());
+
+        TranscriptTurn plain = turnService.getTurns("c").get(0);
+        assertNull(plain.getSpeaker());
+        assertEquals(3, plain.getWordCount());
+        assertTrue(turnService.getSpeakerStats("c").get(0).get("seconds") == null);
+    }
+
+    private static Transcription transcription(String id, String text) {
+        Transcription t = new Transcription();
+        t.setRecordingId(id);
+        t.setAnalyzed(false);
+        t.setTranscriptionText(text);
+        return t;
+    }
+}
@@ -0,0 +1,101 @@
+package com.calm.admin.service;
+
+import com.calm.admin.model.AdvancedAnalysis;
+import com.calm.admin.model.Transcription;
+import com.calm.admin.repository.AdvancedAnalysisRepository;
+import com.calm.admin.repository.TranscriptionRepository;
+import com.calm.admin.service.TranscriptionExportService.Format;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exportación por páginas chicas: todas las filas salen una sola vez, en orden, con el análisis avanzado cuando existe.
+ */
+@DataJpaTest
+@Import({TranscriptionExportService.class, JacksonAutoConfiguration.class})
+@TestPropertySource(properties = "export.page-size=3")
+public class TranscriptionExportServiceTest {
+
+    @Autowired
+    private TranscriptionExportService exportService;
+
+    @Autowired
+    private TranscriptionRepository repository;
+
+    @Autowired
+    private AdvancedAnalysisRepository advancedAnalysisRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void seed() {
+        List<Transcription> rows = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Transcription t = new Transcription();
+            t.setRecordingId(String.format("rec-%02d", i));
+            t.setUserId(1L);
+            t.setUserName("Pérez, \"Juan\"");
+            t.setRecordingDate(LocalDateTime.of(2024, 1, 1 + i, 10, 0));
+            t.setAnalyzed(i % 2 == 0);
+            t.setTranscriptionText("línea 1\nlínea 2");
+            rows.add(t);
+        }
+        repository.saveAll(rows);
+
+        AdvancedAnalysis analysis = new AdvancedAnalysis();
+        analysis.setRecordingId("rec-02");
+        analysis.setEmpathyScore(7);
+        advancedAnalysisRepository.save(analysis);
+    }
+
+    @Test
+    void csvContainsEveryRowOnceWithEscaping() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(7, exportService.export(out, Format.CSV, false, true));
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("﻿recordingId,"));
+        assertTrue(csv.contains("\"Pérez, \"\"Juan\"\"\""));
+        assertTrue(csv.contains("\"línea 1\nlínea 2\""));
+        for (int i = 0; i < 7; i++) {
+            assertEquals(1, csv.split(String.format("rec-%02d,", i), -1).length - 1);
+        }
+    }
+
+    @Test
+    void ndjsonJoinsAdvancedAnalysisAndFiltersAnalyzed() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(4, exportService.export(out, Format.NDJSON, true, false));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        List<String> ids = new ArrayList<>();
+        for (String line : lines) {
+            JsonNode row = objectMapper.readTree(line);
+            ids.add(row.get("recordingId").asText());
+            assertFalse(row.has("transcriptionText"));
+            if ("rec-02".equals(row.get("recordingId").asText())) {
+                assertEquals(7, row.get("empathyScore").asInt());
+            } else {
+                assertTrue(row.get("empathyScore").isNull());
+            }
+        }
+        assertEquals(List.of("rec-00", "rec-02", "rec-04", "rec-06"), ids);
+    }
+}
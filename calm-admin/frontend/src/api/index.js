@@ -55,14 +55,32 @@ export const getTranscriptions = (filters = {}) => {
   if (filters.saleCompleted !== null && filters.saleCompleted !== undefined) {
     params.append('saleCompleted', filters.saleCompleted);
   }
+  if (filters.saleStatus) params.append('saleStatus', filters.saleStatus);
   if (filters.dateFrom) params.append('dateFrom', filters.dateFrom);
   if (filters.dateTo) params.append('dateTo', filters.dateTo);
   if (filters.minScore) params.append('minScore', filters.minScore);
   if (filters.maxScore) params.append('maxScore', filters.maxScore);
+  if (filters.sort) params.append('sort', filters.sort);
+  if (filters.direction) params.append('direction', filters.direction);
+  if (filters.cursor) params.append('cursor', filters.cursor);
+  if (filters.limit) params.append('limit', filters.limit);
   
   return api.get(`/transcriptions?${params.toString()}`);
 };
 
+// Recorre todas las páginas del listado siguiendo el header X-Next-Cursor.
+// Solo para los gráficos del dashboard, que agregan sobre todas las filas; las pantallas de listado paginan.
+export const getAllTranscriptions = async (filters = {}) => {
+  const data = [];
+  let cursor = null;
+  do {
+    const response = await getTranscriptions({ ...filters, cursor });
+    data.push(...response.data);
+    cursor = response.headers['x-next-cursor'] || null;
+  } while (cursor);
+  return { data };
+};
+
 export const getTranscription = (recordingId) => api.get(`/transcriptions/${recordingId}`);
 
 export const getAudioUrl = (recordingId) => api.get(`/transcriptions/${recordingId}/audio`);
@@ -79,10 +97,13 @@ export const checkNewTranscriptions = () => api.post('/transcriptions/check-new'
 export const deleteTranscription = (recordingId) => api.delete(`/transcriptions/${recordingId}`);
 
 // Search
-export const searchTranscriptions = (query, filters = {}) => {
+export const searchTranscriptions = (query, filters = {}, page = 0, size = 20) => {
   const params = new URLSearchParams();
   params.append('q', query);
+  params.append('page', page);
+  params.append('size', size);
   
+  if (filters.speaker) params.append('speaker', filters.speaker);
   if (filters.userId) params.append('userId', filters.userId);
   if (filters.branchId) params.append('branchId', filters.branchId);
   if (filters.saleCompleted !== null && filters.saleCompleted !== undefined) {
@@ -120,9 +141,12 @@ export const getTimelineEvents = () => api.get('/timeline/events');
 export const createTimelineEvent = (event) => api.post('/timeline/events', event);
 export const updateTimelineEvent = (id, event) => api.put(`/timeline/events/${id}`, event);
 export const deleteTimelineEvent = (id) => api.delete(`/timeline/events/${id}`);
-export const getTimelineMetrics = (groupBy = 'week', sellerId = null) => {
+export const getTimelineMetrics = (groupBy = 'week', sellerId = null, { branchId, dateFrom, dateTo } = {}) => {
   const params = new URLSearchParams({ groupBy });
   if (sellerId) params.append('sellerId', sellerId);
+  if (branchId) params.append('branchId', branchId);
+  if (dateFrom) params.append('dateFrom', dateFrom);
+  if (dateTo) params.append('dateTo', dateTo);
   return api.get(`/timeline/metrics?${params.toString()}`);
 };
 export const getTimelineCompare = (eventDate, days = 14, sellerId = null) => {
@@ -130,5 +154,11 @@ export const getTimelineCompare = (eventDate, days = 14, sellerId = null) => {
   if (sellerId) params.append('sellerId', sellerId);
   return api.get(`/timeline/compare?${params.toString()}`);
 };
+export const getTimelineCompareEvents = (eventIds = [], days = 14, sellerId = null) => {
+  const params = new URLSearchParams({ days: String(days) });
+  eventIds.forEach(id => params.append('eventIds', id));
+  if (sellerId) params.append('sellerId', sellerId);
+  return api.get(`/timeline/compare/events?${params.toString()}`);
+};
 
 export default api;
@@ -139,6 +139,7 @@ export default {
     advance: 'Advance',
     noSale: 'No sale',
     notInterp: 'Not interp.',
+    loadMore: 'Load more',
   },
   detail: {
     saleConfirmed: 'Sale Confirmed',
@@ -234,6 +235,11 @@ export default {
     searchDesc: 'Enter a word or phrase to search all conversations. For example: "price", "discount", "competition", "financing".',
     noResultsTitle: 'No results',
     tryWithoutFilters: 'Try without filters',
+    loadMore: 'Load more results',
+    speaker: 'Said by',
+    anySpeaker: 'Anyone',
+    speakerSeller: 'Seller (Persona 1)',
+    speakerCustomer: 'Customer (Persona 2)',
   },
   recommendations: {
     objections: 'Objections',
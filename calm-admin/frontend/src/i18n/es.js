@@ -139,6 +139,7 @@ export default {
     advance: 'Avance',
     noSale: 'Sin venta',
     notInterp: 'No interp.',
+    loadMore: 'Cargar más',
   },
   detail: {
     saleConfirmed: 'Venta Confirmada',
@@ -234,6 +235,11 @@ export default {
     searchDesc: 'Ingresá una palabra o frase para buscar en todas las conversaciones. Por ejemplo: "precio", "descuento", "competencia", "financiación".',
     noResultsTitle: 'Sin resultados',
     tryWithoutFilters: 'Probar sin filtros',
+    loadMore: 'Cargar más resultados',
+    speaker: 'Dicho por',
+    anySpeaker: 'Cualquiera',
+    speakerSeller: 'Vendedor (Persona 1)',
+    speakerCustomer: 'Cliente (Persona 2)',
   },
   recommendations: {
     objections: 'Objeciones',
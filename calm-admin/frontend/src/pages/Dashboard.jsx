@@ -1,4 +1,4 @@
-import { useEffect, useMemo } from 'react';
+import { useEffect, useState } from 'react';
 import { Link } from 'react-router-dom';
 import { 
   FileText, 
@@ -26,6 +26,7 @@ import {
   ZAxis
 } from 'recharts';
 import useStore from '../store/useStore';
+import { getAllTranscriptions } from '../api';
 import { useTheme } from '../context/ThemeContext';
 import { useLanguage } from '../context/LanguageContext';
 import MetricCard from '../components/MetricCard';
@@ -37,25 +38,23 @@ const COLORS = ['#F5A623', '#374151', '#6b7280', '#9ca3af', '#d1d5db'];
 const BRANCH_COLORS = ['#F5A623', '#22c55e', '#3b82f6', '#ef4444', '#8b5cf6', '#ec4899', '#14b8a6'];
 
 export default function Dashboard() {
-  const { dashboardMetrics, transcriptions, loading, fetchDashboardMetrics, fetchTranscriptions } = useStore();
+  const { dashboardMetrics, loading, fetchDashboardMetrics } = useStore();
+  const [myTranscriptions, setMyTranscriptions] = useState([]);
   const { isDark } = useTheme();
   const { t } = useLanguage();
   const DAYS = t('dashboard.daysShort') || [];
   const DAYS_FULL = t('dashboard.daysLong') || [];
 
-  useEffect(() => {
-    fetchDashboardMetrics();
-    fetchTranscriptions();
-  }, [fetchDashboardMetrics, fetchTranscriptions]);
-
   const currentUser = JSON.parse(localStorage.getItem('user') || '{}');
   const userSellerId = currentUser.sellerId;
 
-  const myTranscriptions = useMemo(() => {
-    if (!transcriptions) return [];
-    if (!userSellerId) return transcriptions;
-    return transcriptions.filter(t => String(t.userId) === String(userSellerId));
-  }, [transcriptions, userSellerId]);
+  useEffect(() => {
+    fetchDashboardMetrics();
+    // Los gráficos de tráfico agregan sobre todas las filas; un vendedor solo pide las suyas
+    getAllTranscriptions(userSellerId ? { userId: userSellerId } : {})
+      .then((response) => setMyTranscriptions(response.data))
+      .catch((err) => console.error('Error fetching transcriptions:', err));
+  }, [fetchDashboardMetrics, userSellerId]);
 
   if (loading && !dashboardMetrics) {
     return (
@@ -379,7 +378,7 @@ export default function Dashboard() {
       </div>
 
       {/* Traffic Distribution Section */}
-      {transcriptions?.length > 0 && (
+      {myTranscriptions.length > 0 && (
         <div className="space-y-6">
           <div className="flex items-center gap-3">
             <div className="p-3 bg-[#F5A623]/20 rounded-xl">
@@ -1,6 +1,6 @@
 import { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
-import { Search as SearchIcon, Filter, Calendar, User, Building2, CheckCircle, XCircle, FileText, ChevronRight, Loader2 } from 'lucide-react';
+import { Search as SearchIcon, Filter, Calendar, User, Building2, CheckCircle, XCircle, FileText, ChevronRight, Loader2, MessageSquare } from 'lucide-react';
 import { searchTranscriptions, getSellers, getBranches } from '../api';
 import { useTheme } from '../context/ThemeContext';
 import { useLanguage } from '../context/LanguageContext';
@@ -15,12 +15,15 @@ export default function Search() {
   const [totalResults, setTotalResults] = useState(0);
   const [totalMatches, setTotalMatches] = useState(0);
   const [loading, setLoading] = useState(false);
+  const [loadingMore, setLoadingMore] = useState(false);
+  const [page, setPage] = useState(0);
   const [searched, setSearched] = useState(false);
   
   const [showFilters, setShowFilters] = useState(false);
   const [sellers, setSellers] = useState([]);
   const [branches, setBranches] = useState([]);
   const [filters, setFilters] = useState({
+    speaker: null,
     userId: null,
     branchId: null,
     saleCompleted: null
@@ -54,16 +57,10 @@ export default function Search() {
     setSearched(true);
     
     try {
-      const response = await searchTranscriptions(query.trim(), filters);
-      let searchResults = response.data.results || [];
-      
-      const currentUser = JSON.parse(localStorage.getItem('user') || '{}');
-      if (currentUser.sellerId) {
-        searchResults = searchResults.filter(r => String(r.userId) === String(currentUser.sellerId));
-      }
-      
-      setResults(searchResults);
-      setTotalResults(searchResults.length);
+      const response = await searchTranscriptions(query.trim(), searchFilters());
+      setResults(response.data.results || []);
+      setPage(0);
+      setTotalResults(response.data.totalResults || 0);
       setTotalMatches(response.data.totalMatches || 0);
     } catch (error) {
       console.error('Search error:', error);
@@ -75,8 +72,29 @@ export default function Search() {
     }
   };
   
+  // Los vendedores solo ven sus propias transcripciones
+  const searchFilters = () => {
+    const currentUser = JSON.parse(localStorage.getItem('user') || '{}');
+    return currentUser.sellerId ? { ...filters, userId: currentUser.sellerId } : filters;
+  };
+  
+  const loadMore = async () => {
+    setLoadingMore(true);
+    try {
+      const response = await searchTranscriptions(query.trim(), searchFilters(), page + 1);
+      setResults(prev => [...prev, ...(response.data.results || [])]);
+      setPage(page + 1);
+      setTotalMatches(prev => prev + (response.data.totalMatches || 0));
+    } catch (error) {
+      console.error('Search error:', error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+  
   const clearFilters = () => {
     setFilters({
+      speaker: null,
       userId: null,
       branchId: null,
       saleCompleted: null
@@ -113,7 +131,7 @@ export default function Search() {
     );
   };
   
-  const hasActiveFilters = filters.userId || filters.branchId || filters.saleCompleted !== null;
+  const hasActiveFilters = filters.speaker || filters.userId || filters.branchId || filters.saleCompleted !== null;
   
   return (
     <div className="space-y-6">
@@ -182,7 +200,28 @@ export default function Search() {
           
           {/* Filters Panel */}
           {showFilters && (
-            <div className={`grid grid-cols-1 md:grid-cols-3 gap-4 p-4 rounded-lg ${isDark ? 'bg-slate-700/50' : 'bg-gray-50'}`}>
+            <div className={`grid grid-cols-1 md:grid-cols-4 gap-4 p-4 rounded-lg ${isDark ? 'bg-slate-700/50' : 'bg-gray-50'}`}>
+              {/* Quién lo dijo */}
+              <div>
+                <label className={`block text-sm font-medium mb-2 ${isDark ? 'text-slate-300' : 'text-gray-600'}`}>
+                  <MessageSquare className="w-4 h-4 inline mr-1" />
+                  {t('searchPage.speaker')}
+                </label>
+                <select
+                  value={filters.speaker || ''}
+                  onChange={(e) => setFilters({ ...filters, speaker: e.target.value || null })}
+                  className={`w-full px-3 py-2 rounded-lg border ${
+                    isDark 
+                      ? 'bg-slate-700 border-slate-600 text-white' 
+                      : 'bg-white border-gray-200 text-gray-800'
+                  }`}
+                >
+                  <option value="">{t('searchPage.anySpeaker')}</option>
+                  <option value="Persona 1">{t('searchPage.speakerSeller')}</option>
+                  <option value="Persona 2">{t('searchPage.speakerCustomer')}</option>
+                </select>
+              </div>
+              
               {/* Vendedor */}
               <div>
                 <label className={`block text-sm font-medium mb-2 ${isDark ? 'text-slate-300' : 'text-gray-600'}`}>
@@ -366,6 +405,19 @@ export default function Search() {
               )}
             </div>
           ))}
+          
+          {results.length < totalResults && (
+            <div className="text-center">
+              <button
+                onClick={loadMore}
+                disabled={loadingMore}
+                className="inline-flex items-center gap-2 px-4 py-2 text-[#F5A623] hover:underline disabled:opacity-50"
+              >
+                {loadingMore && <Loader2 className="w-4 h-4 animate-spin" />}
+                {t('searchPage.loadMore')}
+              </button>
+            </div>
+          )}
         </div>
       )}
       
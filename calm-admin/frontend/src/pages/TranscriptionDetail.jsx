@@ -26,8 +26,8 @@ import {
   ChevronLeft,
   ChevronRight
 } from 'lucide-react';
-import { getTranscriptions } from '../api';
 import api from '../api';
+import useStore from '../store/useStore';
 
 // Reproductor de audio personalizado con duración fija
 function AudioPlayerCustom({ src, duration: initialDuration, isDark }) {
@@ -191,9 +191,10 @@ export default function TranscriptionDetail() {
   const [audioAvailable, setAudioAvailable] = useState(false);
   const [audioLoading, setAudioLoading] = useState(true);
   
-  // Navegación entre transcripciones
-  const [allIds, setAllIds] = useState([]);
-  const [currentIndex, setCurrentIndex] = useState(-1);
+  // Navegación entre transcripciones: recorre las páginas del listado ya cargadas y pide la siguiente al llegar al final
+  const { transcriptions: listed, nextCursor, fetchMoreTranscriptions } = useStore();
+  const allIds = listed.map(t => t.recordingId);
+  const currentIndex = allIds.indexOf(id);
   const [audioProgress, setAudioProgress] = useState(0);
   const [audioDuration, setAudioDuration] = useState(null);
   const audioRef = useRef(null);
@@ -314,21 +315,12 @@ export default function TranscriptionDetail() {
     };
   }, [id]);
 
-  // Cargar lista de IDs para navegación
+  // Si es la última fila cargada, se trae la página siguiente para poder avanzar
   useEffect(() => {
-    const fetchAllIds = async () => {
-      try {
-        const response = await getTranscriptions({});
-        const ids = response.data.map(t => t.recordingId);
-        setAllIds(ids);
-        const idx = ids.indexOf(id);
-        setCurrentIndex(idx);
-      } catch (err) {
-        console.error('Error fetching transcription IDs:', err);
-      }
-    };
-    fetchAllIds();
-  }, [id]);
+    if (currentIndex >= 0 && currentIndex === allIds.length - 1 && nextCursor) {
+      fetchMoreTranscriptions();
+    }
+  }, [currentIndex, allIds.length, nextCursor, fetchMoreTranscriptions]);
 
   // Comments
   useEffect(() => {
@@ -468,9 +460,9 @@ export default function TranscriptionDetail() {
             <ChevronLeft className="w-5 h-5" />
           </button>
           
-          {allIds.length > 0 && (
+          {currentIndex >= 0 && (
             <span className={`text-sm px-2 ${isDark ? 'text-slate-400' : 'text-gray-500'}`}>
-              {currentIndex + 1} / {allIds.length}
+              {currentIndex + 1} / {allIds.length}{nextCursor ? '+' : ''}
             </span>
           )}
           
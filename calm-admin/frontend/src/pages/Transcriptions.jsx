@@ -1,4 +1,4 @@
-import { useEffect, useState, useMemo } from 'react';
+import { useEffect, useState, useRef } from 'react';
 import { Link, useSearchParams } from 'react-router-dom';
 import { FileText, CheckCircle, XCircle, Eye, Sparkles, Clock, Trash2, RefreshCw, ChevronUp, ChevronDown, ChevronsUpDown, AlertTriangle, TrendingUp, HelpCircle } from 'lucide-react';
 import useStore from '../store/useStore';
@@ -11,102 +11,56 @@ import { format } from 'date-fns';
 import { es } from 'date-fns/locale';
 
 export default function Transcriptions() {
-  const { transcriptions, loading, recalculating, fetchTranscriptions, analyzeTranscription, deleteTranscription, setFilters, filters } = useStore();
+  const {
+    transcriptions, nextCursor, loading, loadingMore, recalculating, sort, setSort,
+    fetchTranscriptions, fetchMoreTranscriptions, analyzeTranscription, deleteTranscription, setFilters, filters,
+  } = useStore();
   const { isDark } = useTheme();
   const { t } = useLanguage();
   const [searchParams] = useSearchParams();
   const [deleting, setDeleting] = useState(null);
-  const [sortConfig, setSortConfig] = useState({ key: 'recordingDate', direction: 'desc' });
   const [syncing, setSyncing] = useState(false);
+  const loadMoreRef = useRef(null);
   
   const user = JSON.parse(localStorage.getItem('user') || '{}');
   const isAdmin = user.role === 'ADMIN';
 
-  // Función para ordenar
+  // Columnas que el servidor sabe ordenar (el listado viene paginado, no se ordena en el cliente)
+  const SORT_KEYS = ['userName', 'recordingDate', 'sellerScore'];
+
   const handleSort = (key) => {
-    setSortConfig(prev => ({
+    setSort({
       key,
-      direction: prev.key === key && prev.direction === 'asc' ? 'desc' : 'asc'
-    }));
+      direction: sort.key === key && sort.direction === 'asc' ? 'desc' : 'asc'
+    });
   };
 
-  // Filtrado client-side
-  const filteredTranscriptions = useMemo(() => {
-    if (!transcriptions) return [];
-    
-    const currentUser = JSON.parse(localStorage.getItem('user') || '{}');
-    return transcriptions.filter(t => {
-      if (currentUser.sellerId && String(t.userId) !== String(currentUser.sellerId)) return false;
-      // Filtro por vendedor (del panel de filtros)
-      if (filters.userId && String(t.userId) !== String(filters.userId)) return false;
-      // Filtro por sucursal
-      if (filters.branchId && String(t.branchId) !== String(filters.branchId)) return false;
-      // Filtro por estado de venta (saleStatus)
-      if (filters.saleStatus && t.saleStatus !== filters.saleStatus) return false;
-      // Filtro por fecha desde
-      if (filters.dateFrom && t.recordingDate) {
-        const recDate = new Date(t.recordingDate).toISOString().slice(0, 10);
-        if (recDate < filters.dateFrom) return false;
-      }
-      // Filtro por fecha hasta
-      if (filters.dateTo && t.recordingDate) {
-        const recDate = new Date(t.recordingDate).toISOString().slice(0, 10);
-        if (recDate > filters.dateTo) return false;
-      }
-      // Filtro por puntuación mínima
-      if (filters.minScore && (t.sellerScore === null || t.sellerScore === undefined || t.sellerScore < Number(filters.minScore))) return false;
-      // Filtro por puntuación máxima
-      if (filters.maxScore && (t.sellerScore === null || t.sellerScore === undefined || t.sellerScore > Number(filters.maxScore))) return false;
-      return true;
-    });
-  }, [transcriptions, filters]);
+  // Filtros y orden se aplican en el servidor: cada cambio pide de nuevo la primera página
+  useEffect(() => {
+    fetchTranscriptions();
+  }, [filters, sort]);
 
-  // Datos ordenados
-  const sortedTranscriptions = useMemo(() => {
-    if (!filteredTranscriptions) return [];
-    
-    return [...filteredTranscriptions].sort((a, b) => {
-      const { key, direction } = sortConfig;
-      let aVal = a[key];
-      let bVal = b[key];
-      
-      // Manejar nulls
-      if (aVal === null || aVal === undefined) aVal = '';
-      if (bVal === null || bVal === undefined) bVal = '';
-      
-      // Comparar fechas
-      if (key === 'recordingDate') {
-        aVal = aVal ? new Date(aVal).getTime() : 0;
-        bVal = bVal ? new Date(bVal).getTime() : 0;
-      }
-      
-      // Comparar números
-      if (key === 'sellerScore' || key === 'analysisConfidence') {
-        aVal = aVal || 0;
-        bVal = bVal || 0;
-      }
-      
-      // Comparar booleanos
-      if (key === 'saleCompleted' || key === 'analyzed') {
-        aVal = aVal === true ? 1 : aVal === false ? 0 : -1;
-        bVal = bVal === true ? 1 : bVal === false ? 0 : -1;
-      }
-      
-      // Comparar strings
-      if (typeof aVal === 'string') {
-        aVal = aVal.toLowerCase();
-        bVal = bVal.toLowerCase();
-      }
-      
-      if (aVal < bVal) return direction === 'asc' ? -1 : 1;
-      if (aVal > bVal) return direction === 'asc' ? 1 : -1;
-      return 0;
-    });
-  }, [filteredTranscriptions, sortConfig]);
+  // Scroll infinito: al acercarse al final de la tabla se pide la página siguiente
+  useEffect(() => {
+    const sentinel = loadMoreRef.current;
+    if (!sentinel || !nextCursor) return;
+    const observer = new IntersectionObserver((entries) => {
+      if (entries[0].isIntersecting) fetchMoreTranscriptions();
+    }, { rootMargin: '400px' });
+    observer.observe(sentinel);
+    return () => observer.disconnect();
+  }, [nextCursor, fetchMoreTranscriptions]);
 
   // Componente para header ordenable
   const SortableHeader = ({ label, sortKey, className = '' }) => {
-    const isActive = sortConfig.key === sortKey;
+    if (!SORT_KEYS.includes(sortKey)) {
+      return (
+        <th className={`px-6 py-4 text-left text-xs font-semibold uppercase tracking-wider ${isDark ? 'text-slate-400' : 'text-gray-500'} ${className}`}>
+          {label}
+        </th>
+      );
+    }
+    const isActive = sort.key === sortKey;
     return (
       <th 
         className={`px-6 py-4 text-left text-xs font-semibold uppercase tracking-wider cursor-pointer select-none hover:bg-opacity-80 transition-colors ${isDark ? 'text-slate-400 hover:text-white' : 'text-gray-500 hover:text-gray-800'} ${className}`}
@@ -115,7 +69,7 @@ export default function Transcriptions() {
         <div className="flex items-center gap-1">
           {label}
           {isActive ? (
-            sortConfig.direction === 'asc' ? 
+            sort.direction === 'asc' ? 
               <ChevronUp className="w-4 h-4 text-[#F5A623]" /> : 
               <ChevronDown className="w-4 h-4 text-[#F5A623]" />
           ) : (
@@ -160,13 +114,14 @@ export default function Transcriptions() {
         try {
           await checkNewTranscriptions();
           localStorage.setItem('lastS3Check', String(Date.now()));
+          // Puede haber transcripciones nuevas
+          fetchTranscriptions();
         } catch (err) {
           console.error('Auto-check failed:', err);
         } finally {
           setSyncing(false);
         }
       }
-      fetchTranscriptions();
     };
     loadData();
   }, [searchParams]);
@@ -247,12 +202,12 @@ export default function Transcriptions() {
         ) : (
           <>
             <FileText className="w-4 h-4" />
-            <span>{filteredTranscriptions.length} {t('common.of')} {transcriptions.length} {t('common.records')}</span>
+            <span>{transcriptions.length}{nextCursor ? '+' : ''} {t('common.records')}</span>
           </>
         )}
       </div>
 
-      {/* Filters - client-side, no need to re-fetch */}
+      {/* Filters - se aplican en el servidor al cambiar */}
       <Filters />
 
       {/* Table */}
@@ -286,11 +241,11 @@ export default function Transcriptions() {
                 </tr>
               </thead>
               <tbody className={`divide-y ${isDark ? 'divide-slate-700' : 'divide-gray-200'}`}>
-                {sortedTranscriptions.map((transcription, index) => (
+                {transcriptions.map((transcription, index) => (
                   <tr 
                     key={transcription.recordingId}
                     className={`animate-fade-in transition-colors ${isDark ? 'hover:bg-slate-700/50' : 'hover:bg-gray-50'}`}
-                    style={{ animationDelay: `${index * 30}ms` }}
+                    style={{ animationDelay: `${(index % 50) * 30}ms` }}
                   >
                     <td className="px-6 py-4">
                       <span className="font-mono text-sm font-medium text-[#F5A623]">#{transcription.recordingId}</span>
@@ -426,6 +381,18 @@ export default function Transcriptions() {
                 ))}
               </tbody>
             </table>
+            {nextCursor && (
+              <div ref={loadMoreRef} className="p-4 text-center">
+                <button
+                  onClick={fetchMoreTranscriptions}
+                  disabled={loadingMore}
+                  className={`text-sm py-2 px-4 inline-flex items-center gap-2 rounded-lg transition-colors ${isDark ? 'bg-slate-700 text-slate-300 hover:bg-slate-600' : 'bg-gray-100 text-gray-600 hover:bg-gray-200'}`}
+                >
+                  {loadingMore && <RefreshCw className="w-4 h-4 animate-spin" />}
+                  {loadingMore ? t('common.loading') : t('transcriptions.loadMore')}
+                </button>
+              </div>
+            )}
           </div>
         )}
       </div>
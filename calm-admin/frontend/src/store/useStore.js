@@ -1,10 +1,32 @@
 import { create } from 'zustand';
 import * as api from '../api';
 
+// Filas por página del listado de transcripciones
+const PAGE_SIZE = 50;
+
+// Descarta respuestas de páginas pedidas con filtros u orden anteriores
+let listRequest = 0;
+
+// Parámetros del listado: filtros, orden y, para un vendedor, solo sus transcripciones
+const listParams = ({ filters, sort }) => {
+  const currentUser = JSON.parse(localStorage.getItem('user') || '{}');
+  return {
+    ...filters,
+    userId: currentUser.sellerId || filters.userId,
+    sort: sort.key,
+    direction: sort.direction,
+    limit: PAGE_SIZE,
+  };
+};
+
 const useStore = create((set, get) => ({
   // State
   dashboardMetrics: null,
   transcriptions: [],
+  // Cursor de la página siguiente (header X-Next-Cursor), null si no hay más
+  nextCursor: null,
+  loadingMore: false,
+  sort: { key: 'recordingDate', direction: 'desc' },
   selectedTranscription: null,
   sellers: [],
   branches: [],
@@ -28,6 +50,10 @@ const useStore = create((set, get) => ({
     }));
   },
 
+  setSort: (sort) => {
+    set({ sort });
+  },
+
   clearFilters: () => {
     set({
       filters: {
@@ -52,16 +78,45 @@ const useStore = create((set, get) => ({
     }
   },
 
+  // Primera página del listado con los filtros y el orden actuales
   fetchTranscriptions: async () => {
+    const request = ++listRequest;
     set({ loading: true, error: null });
     try {
-      const response = await api.getTranscriptions();
-      set({ transcriptions: response.data, loading: false });
+      const response = await api.getTranscriptions(listParams(get()));
+      if (request !== listRequest) return;
+      set({
+        transcriptions: response.data,
+        nextCursor: response.headers['x-next-cursor'] || null,
+        loading: false,
+        loadingMore: false,
+      });
     } catch (error) {
+      if (request !== listRequest) return;
       set({ error: error.message, loading: false });
     }
   },
 
+  // Agrega la página siguiente al listado (cargar más / scroll infinito)
+  fetchMoreTranscriptions: async () => {
+    const { nextCursor, loadingMore } = get();
+    if (!nextCursor || loadingMore) return;
+    const request = listRequest;
+    set({ loadingMore: true });
+    try {
+      const response = await api.getTranscriptions({ ...listParams(get()), cursor: nextCursor });
+      if (request !== listRequest) return;
+      set((state) => ({
+        transcriptions: [...state.transcriptions, ...response.data],
+        nextCursor: response.headers['x-next-cursor'] || null,
+        loadingMore: false,
+      }));
+    } catch (error) {
+      if (request !== listRequest) return;
+      set({ error: error.message, loadingMore: false });
+    }
+  },
+
   fetchTranscription: async (recordingId) => {
     set({ loading: true, error: null });
     try {